@@ -0,0 +1,91 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import java.io.IOException;
+
+import com.joliciel.talismane.Talismane.Module;
+import com.joliciel.talismane.parser.Parser;
+import com.joliciel.talismane.parser.Parsers;
+import com.joliciel.talismane.posTagger.PosTagger;
+import com.joliciel.talismane.posTagger.PosTaggers;
+import com.joliciel.talismane.sentenceDetector.SentenceDetector;
+import com.joliciel.talismane.tokeniser.Tokeniser;
+import com.typesafe.config.Config;
+
+/**
+ * The modules required to analyse text from the configured start module to the
+ * configured end module. Modules are not thread-safe, so a given instance
+ * should only be used by a single thread at a time. All instances for a given
+ * session share the models cached by the module factories, so it is
+ * relatively cheap to build several of them up-front and hand them out from a
+ * pool.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class AnalysisModules {
+  private final SentenceDetector sentenceDetector;
+  private final Tokeniser tokeniser;
+  private final PosTagger posTagger;
+  private final Parser parser;
+
+  public AnalysisModules(TalismaneSession session) throws IOException, ReflectiveOperationException, TalismaneException {
+    Config analyseConfig = session.getConfig().getConfig("talismane.core.analysis");
+    Module startModule = Module.valueOf(analyseConfig.getString("start-module"));
+    Module endModule = Module.valueOf(analyseConfig.getString("end-module"));
+
+    if (needs(Module.sentenceDetector, startModule, endModule))
+      sentenceDetector = SentenceDetector.getInstance(session);
+    else
+      sentenceDetector = null;
+    if (needs(Module.tokeniser, startModule, endModule))
+      tokeniser = Tokeniser.getInstance(session);
+    else
+      tokeniser = null;
+    if (needs(Module.posTagger, startModule, endModule))
+      posTagger = PosTaggers.getPosTagger(session);
+    else
+      posTagger = null;
+    if (needs(Module.parser, startModule, endModule))
+      parser = Parsers.getParser(session);
+    else
+      parser = null;
+  }
+
+  private static boolean needs(Module module, Module startModule, Module endModule) {
+    return startModule.compareTo(module) <= 0 && endModule.compareTo(module) >= 0;
+  }
+
+  public SentenceDetector getSentenceDetector() {
+    return sentenceDetector;
+  }
+
+  public Tokeniser getTokeniser() {
+    return tokeniser;
+  }
+
+  public PosTagger getPosTagger() {
+    return posTagger;
+  }
+
+  public Parser getParser() {
+    return parser;
+  }
+}
@@ -19,12 +19,20 @@
 package com.joliciel.talismane;
 
 import java.io.Serializable;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Text with related annotations, and observers when annotations are added.
+ * Text with related annotations, and observers when annotations are added.<br/>
+ * <br/>
+ * Annotations are indexed by the class of their data. Annotations added are
+ * only merged into the sorted index when they are next read, so that adding
+ * annotations costs no more than the annotations added, and retrieving the
+ * annotations of a given type only costs the annotations of that type.
  * 
  * @author Assaf Urieli
  *
@@ -33,7 +41,10 @@ public class AnnotatedText {
   private final CharSequence text;
   private final int analysisStart;
   private final int analysisEnd;
-  private List<Annotation<?>> annotations;
+  private final AnnotationRun allAnnotations = new AnnotationRun();
+  private final Map<Class<?>, AnnotationRun> annotationsByClass = new HashMap<>();
+  private final Map<Class<?>, AnnotationRun> annotationsByQuery = new HashMap<>();
+  private int sequence = 0;
   private final List<AnnotationObserver> observers = new ArrayList<>();
 
   /**
@@ -61,7 +72,6 @@ public class AnnotatedText {
     this.text = text;
     this.analysisStart = analysisStart;
     this.analysisEnd = analysisEnd;
-    this.annotations = Collections.emptyList();
   }
 
   /**
@@ -76,8 +86,7 @@ public class AnnotatedText {
     this.text = text;
     this.analysisStart = analysisStart;
     this.analysisEnd = analysisEnd;
-    Collections.sort(annotations);
-    this.annotations = Collections.unmodifiableList(annotations);
+    this.index(annotations);
   }
 
   /**
@@ -92,7 +101,7 @@ public class AnnotatedText {
    * original order if spans are equal.
    */
   public List<Annotation<?>> getAnnotations() {
-    return annotations;
+    return allAnnotations.getAnnotations();
   }
 
   /**
@@ -125,11 +134,7 @@ public class AnnotatedText {
       for (AnnotationObserver observer : observers) {
         observer.beforeAddAnnotations(this, annotations);
       }
-      List<Annotation<?>> newAnnotations = new ArrayList<>(this.annotations.size() + annotations.size());
-      newAnnotations.addAll(this.annotations);
-      newAnnotations.addAll(annotations);
-      Collections.sort(newAnnotations);
-      this.annotations = Collections.unmodifiableList(newAnnotations);
+      this.index(annotations);
 
       for (AnnotationObserver observer : observers) {
         observer.afterAddAnnotations(this);
@@ -138,6 +143,22 @@ public class AnnotatedText {
     }
   }
 
+  private void index(List<? extends Annotation<?>> annotations) {
+    for (Annotation<?> annotation : annotations) {
+      allAnnotations.add(annotation, sequence);
+      Class<?> clazz = annotation.getData().getClass();
+      AnnotationRun run = annotationsByClass.get(clazz);
+      if (run == null) {
+        run = new AnnotationRun();
+        annotationsByClass.put(clazz, run);
+        // a new data class may change the result of any query
+        annotationsByQuery.clear();
+      }
+      run.add(annotation, sequence);
+      sequence++;
+    }
+  }
+
   /**
    * Add an observer to be notified of annotation events.
    */
@@ -146,17 +167,175 @@ public class AnnotatedText {
   }
 
   /**
-   * Return all annotations of a particular type.
+   * Return all annotations of a particular type, as an immutable list in the
+   * same order as {@link #getAnnotations()}.
    */
   public <T extends Serializable> List<Annotation<T>> getAnnotations(Class<T> clazz) {
-    List<Annotation<T>> typedAnnotations = new ArrayList<>();
-    for (Annotation<?> annotation : annotations) {
-      if (clazz.isAssignableFrom(annotation.getData().getClass())) {
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    List<Annotation<T>> typedAnnotations = (List) this.getRun(clazz).getAnnotations();
+    return typedAnnotations;
+  }
+
+  /**
+   * Return all annotations of a particular type which overlap the span
+   * provided, that is which start before the span's end, and end after the
+   * span's start, in the same order as {@link #getAnnotations()}. The search
+   * starts from the last annotation starting before the span's end, found by
+   * binary search, and stops as soon as no earlier annotation can reach the
+   * span.
+   * 
+   * @param start
+   *          the span's start
+   * @param end
+   *          the span's end (exclusive), which should be &gt; start
+   */
+  public <T extends Serializable> List<Annotation<T>> getOverlappingAnnotations(Class<T> clazz, int start, int end) {
+    AnnotationRun run = this.getRun(clazz);
+    List<Annotation<?>> annotations = run.getAnnotations();
+    int[] maxEnds = run.maxEnds;
+    List<Annotation<T>> overlapping = new ArrayList<>();
+    for (int i = run.lowerBound(end) - 1; i >= 0 && maxEnds[i] > start; i--) {
+      Annotation<?> annotation = annotations.get(i);
+      if (annotation.getEnd() > start) {
         @SuppressWarnings("unchecked")
         Annotation<T> typedAnnotation = (Annotation<T>) annotation;
-        typedAnnotations.add(typedAnnotation);
+        overlapping.add(typedAnnotation);
       }
     }
-    return typedAnnotations;
+    Collections.reverse(overlapping);
+    return overlapping;
+  }
+
+  /**
+   * The annotations whose data is assignable to a given class, merged from
+   * the runs of each matching data class, and cached until annotations are
+   * next added.
+   */
+  private AnnotationRun getRun(Class<?> clazz) {
+    AnnotationRun run = annotationsByClass.get(clazz);
+    if (run != null && !clazz.isInterface() && Modifier.isFinal(clazz.getModifiers()))
+      return run;
+
+    run = annotationsByQuery.get(clazz);
+    if (run != null && run.version == sequence)
+      return run;
+
+    List<AnnotationRun> matchingRuns = new ArrayList<>();
+    for (Map.Entry<Class<?>, AnnotationRun> entry : annotationsByClass.entrySet()) {
+      if (clazz.isAssignableFrom(entry.getKey()))
+        matchingRuns.add(entry.getValue());
+    }
+    if (matchingRuns.size() == 1) {
+      run = matchingRuns.get(0);
+    } else {
+      run = new AnnotationRun();
+      for (AnnotationRun matchingRun : matchingRuns) {
+        List<Annotation<?>> annotations = matchingRun.getAnnotations();
+        for (int i = 0; i < annotations.size(); i++)
+          run.add(annotations.get(i), matchingRun.sequences[i]);
+      }
+      run.version = sequence;
+      annotationsByQuery.put(clazz, run);
+    }
+    return run;
+  }
+
+  /**
+   * A list of annotations in span order, and in insertion order for equal
+   * spans, with the maximum end of all annotations up to each position.
+   * Annotations added are kept apart until the list is next read, and then
+   * sorted and merged with the existing list in a single pass.
+   */
+  private static final class AnnotationRun {
+    private List<Annotation<?>> annotations = Collections.emptyList();
+    private int[] sequences = new int[0];
+    private int[] maxEnds = new int[0];
+    private final List<PendingAnnotation> pending = new ArrayList<>();
+    private int version = -1;
+
+    void add(Annotation<?> annotation, int sequence) {
+      pending.add(new PendingAnnotation(annotation, sequence));
+    }
+
+    List<Annotation<?>> getAnnotations() {
+      if (!pending.isEmpty())
+        this.merge();
+      return annotations;
+    }
+
+    /**
+     * The position of the first annotation starting at or after the position
+     * provided.
+     */
+    int lowerBound(int position) {
+      List<Annotation<?>> annotations = this.getAnnotations();
+      int low = 0;
+      int high = annotations.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (annotations.get(mid).getStart() < position)
+          low = mid + 1;
+        else
+          high = mid;
+      }
+      return low;
+    }
+
+    private void merge() {
+      Collections.sort(pending);
+      int size = annotations.size() + pending.size();
+      List<Annotation<?>> merged = new ArrayList<>(size);
+      int[] mergedSequences = new int[size];
+      int[] mergedMaxEnds = new int[size];
+      int i = 0;
+      int j = 0;
+      int maxEnd = Integer.MIN_VALUE;
+      for (int k = 0; k < size; k++) {
+        Annotation<?> annotation;
+        int annotationSequence;
+        if (j == pending.size() || (i < annotations.size() && compare(annotations.get(i), sequences[i], pending.get(j)) <= 0)) {
+          annotation = annotations.get(i);
+          annotationSequence = sequences[i];
+          i++;
+        } else {
+          annotation = pending.get(j).annotation;
+          annotationSequence = pending.get(j).sequence;
+          j++;
+        }
+        merged.add(annotation);
+        mergedSequences[k] = annotationSequence;
+        maxEnd = Math.max(maxEnd, annotation.getEnd());
+        mergedMaxEnds[k] = maxEnd;
+      }
+      pending.clear();
+      annotations = Collections.unmodifiableList(merged);
+      sequences = mergedSequences;
+      maxEnds = mergedMaxEnds;
+    }
+
+    private static int compare(Annotation<?> annotation, int sequence, PendingAnnotation other) {
+      int result = annotation.compareTo(other.annotation);
+      if (result == 0)
+        result = Integer.compare(sequence, other.sequence);
+      return result;
+    }
+  }
+
+  private static final class PendingAnnotation implements Comparable<PendingAnnotation> {
+    private final Annotation<?> annotation;
+    private final int sequence;
+
+    PendingAnnotation(Annotation<?> annotation, int sequence) {
+      this.annotation = annotation;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(PendingAnnotation other) {
+      int result = annotation.compareTo(other.annotation);
+      if (result == 0)
+        result = Integer.compare(sequence, other.sequence);
+      return result;
+    }
   }
 }
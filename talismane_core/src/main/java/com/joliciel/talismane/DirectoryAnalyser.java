@@ -0,0 +1,163 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.utils.LogUtils;
+import com.joliciel.talismane.utils.io.DirectoryReader;
+import com.joliciel.talismane.utils.io.DirectoryWriter;
+
+/**
+ * Analyses every file in a directory structure as an independent unit of work,
+ * rather than as a single concatenated stream, so that several files can be
+ * analysed at once. Each worker thread analyses one file at a time with its own
+ * {@link AnalysisModules}, sharing the models cached by the module factories,
+ * and writes the result to its own output file, in the same relative location
+ * as the output of a {@link DirectoryWriter}.<br/>
+ * <br/>
+ * Files are handed to the workers as they become free, so that no more than
+ * one file per worker is open at any one time. Since each file is analysed on
+ * its own, the analysis of one file never sees the text of its neighbours.
+ * Additional output files (other than the main analysis) are not supported.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class DirectoryAnalyser {
+  private static final Logger LOG = LoggerFactory.getLogger(DirectoryAnalyser.class);
+
+  private final TalismaneSession session;
+  private final int threads;
+  private final boolean stopOnError;
+
+  /**
+   * @param threads
+   *          the number of files to analyse at once
+   */
+  public DirectoryAnalyser(TalismaneSession session, int threads) throws TalismaneException {
+    this.session = session;
+    this.threads = threads;
+    if (this.threads < 1)
+      throw new TalismaneException("Analysis file threads must be >= 1, but was " + this.threads);
+    this.stopOnError = session.getConfig().getBoolean("talismane.core.analysis.stop-on-error");
+  }
+
+  /**
+   * Analyse all of the files in a directory.
+   * 
+   * @param inDir
+   *          the directory containing the files to analyse
+   * @param outDir
+   *          the directory to which the analysis of each file is written
+   * @return the number of files analysed
+   * @throws TalismaneException
+   *           if the analysis of any file fails, and analysis should stop on
+   *           error
+   */
+  public int analyse(File inDir, File outDir) throws IOException, ReflectiveOperationException, TalismaneException {
+    long startTime = System.currentTimeMillis();
+    List<File> files = new DirectoryReader(inDir, session.getInputCharset()).getFiles();
+    LOG.info("Analysing " + files.size() + " files with " + threads + " threads");
+    outDir.mkdirs();
+
+    BlockingQueue<AnalysisModules> modulePool = new ArrayBlockingQueue<>(threads);
+    for (int i = 0; i < threads; i++)
+      modulePool.add(new AnalysisModules(session));
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    Semaphore openFiles = new Semaphore(threads);
+    AtomicReference<Exception> firstError = new AtomicReference<>();
+    AtomicInteger fileCount = new AtomicInteger();
+    try {
+      for (File file : files) {
+        openFiles.acquire();
+        if (firstError.get() != null) {
+          openFiles.release();
+          break;
+        }
+        executor.execute(() -> {
+          AnalysisModules modules = null;
+          try {
+            modules = modulePool.take();
+            this.analyseFile(file, inDir, outDir, modules);
+            fileCount.incrementAndGet();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            LOG.error("Failed to analyse " + file.getPath());
+            LogUtils.logError(LOG, e);
+            if (stopOnError)
+              firstError.compareAndSet(null, e);
+          } finally {
+            if (modules != null)
+              modulePool.add(modules);
+            openFiles.release();
+          }
+        });
+      }
+      executor.shutdown();
+      executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TalismaneException("Interrupted while analysing " + inDir.getPath(), e);
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Exception error = firstError.get();
+    if (error != null) {
+      if (error instanceof IOException)
+        throw (IOException) error;
+      if (error instanceof TalismaneException)
+        throw (TalismaneException) error;
+      if (error instanceof RuntimeException)
+        throw (RuntimeException) error;
+      throw new TalismaneException("Failed to analyse " + inDir.getPath(), error);
+    }
+
+    LOG.info("Analysed " + fileCount.get() + " files in " + (System.currentTimeMillis() - startTime) + " ms");
+    return fileCount.get();
+  }
+
+  private void analyseFile(File file, File inDir, File outDir, AnalysisModules modules)
+      throws IOException, ReflectiveOperationException, TalismaneException {
+    LOG.debug("Analysing " + file.getPath());
+    // a single-file directory reader notifies the rolling text block of the
+    // file, and each sentence's file in turn tells the writer where to write
+    DirectoryReader reader = new DirectoryReader(file, session.getInputCharset());
+    try (DirectoryWriter writer = new DirectoryWriter(inDir, outDir, session.getSuffix(), session.getOutputCharset())) {
+      Talismane talismane = new Talismane(writer, null, session);
+      talismane.analyse(reader, modules);
+    }
+  }
+}
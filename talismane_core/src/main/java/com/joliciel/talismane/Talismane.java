@@ -25,6 +25,12 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,23 +38,19 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.talismane.parser.NonDeterministicParser;
 import com.joliciel.talismane.parser.ParseConfiguration;
 import com.joliciel.talismane.parser.ParseConfigurationProcessor;
-import com.joliciel.talismane.parser.Parser;
-import com.joliciel.talismane.parser.Parsers;
 import com.joliciel.talismane.posTagger.NonDeterministicPosTagger;
 import com.joliciel.talismane.posTagger.PosTagAnnotatedCorpusReader;
 import com.joliciel.talismane.posTagger.PosTagSequence;
 import com.joliciel.talismane.posTagger.PosTagSequenceProcessor;
-import com.joliciel.talismane.posTagger.PosTagger;
-import com.joliciel.talismane.posTagger.PosTaggers;
 import com.joliciel.talismane.rawText.RawTextAnnotator;
 import com.joliciel.talismane.rawText.RollingTextBlock;
 import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.rawText.TextSegmentReader;
 import com.joliciel.talismane.sentenceAnnotators.SentenceAnnotator;
 import com.joliciel.talismane.sentenceDetector.SentenceDetector;
 import com.joliciel.talismane.sentenceDetector.SentenceProcessor;
 import com.joliciel.talismane.tokeniser.TokenSequence;
 import com.joliciel.talismane.tokeniser.TokenSequenceProcessor;
-import com.joliciel.talismane.tokeniser.Tokeniser;
 import com.joliciel.talismane.tokeniser.TokeniserAnnotatedCorpusReader;
 import com.joliciel.talismane.utils.ArrayListNoNulls;
 import com.joliciel.talismane.utils.LogUtils;
@@ -65,6 +67,11 @@ import com.typesafe.config.Config;
  * The processing will go from {@link #getStartModule()} to
  * {@link #getEndModule()}. Not thread-safe.<br/>
  * <br/>
+ * If {@link #getThreads()} is greater than 1, sentence detection remains
+ * sequential, but tokenising, pos-tagging and parsing are performed in a pool
+ * of worker threads, each with its own modules. Results are buffered and sent
+ * to the processors in the original sentence order.<br/>
+ * <br/>
  * Processing will stop when the reader finishes reading, or when three
  * consecutive {@link TalismaneSession#getEndBlockCharacter()} are encountered.
  * <br/>
@@ -167,7 +174,11 @@ public class Talismane {
     /**
      * Include extra columns for user-supplied comments in the training corpus.
      */
-    with_comments
+    with_comments,
+    /**
+     * JSON output, with one JSON object per sentence, each on its own line.
+     */
+    json
   }
 
   private static final Logger LOG = LoggerFactory.getLogger(Talismane.class);
@@ -189,6 +200,11 @@ public class Talismane {
   private final int sentenceCount;
   private final Writer writer;
 
+  private final int threads;
+  private final int maxSentencesInFlight;
+
+  private File currentFile = null;
+
   /**
    * 
    * @param writer
@@ -218,6 +234,11 @@ public class Talismane {
     this.processByDefault = analyseConfig.getBoolean("process-by-default");
     this.stopOnError = analyseConfig.getBoolean("stop-on-error");
     this.sentenceCount = config.getInt("talismane.core.input.sentence-count");
+    this.threads = analyseConfig.getInt("threads");
+    if (this.threads < 1)
+      throw new TalismaneException("Analysis threads must be >= 1, but was " + this.threads);
+    int sentencesInFlight = analyseConfig.getInt("sentences-in-flight");
+    this.maxSentencesInFlight = sentencesInFlight > 0 ? sentencesInFlight : this.threads * 4;
     boolean outputIntermediateModules = analyseConfig.getBoolean("output-intermediate-modules");
 
     if (this.endModule == Module.sentenceDetector) {
@@ -265,20 +286,42 @@ public class Talismane {
    *           if it's impossible to read a sentence from an annotated corpus
    */
   public void analyse(Reader reader) throws IOException, ReflectiveOperationException, TalismaneException {
+    this.analyse(reader, null);
+  }
+
+  /**
+   * Like {@link #analyse(Reader)}, but using modules provided by the caller,
+   * typically borrowed from a pool of pre-built modules. In this case, all
+   * analysis is performed in the calling thread, regardless of
+   * {@link #getThreads()}.
+   * 
+   * @param modules
+   *          the modules to use - if null, modules are built for this call
+   */
+  void analyse(Reader reader, AnalysisModules modules) throws IOException, ReflectiveOperationException, TalismaneException {
     long startTime = System.currentTimeMillis();
+    ExecutorService executor = null;
+    BlockingQueue<AnalysisModules> modulePool = new ArrayBlockingQueue<>(threads);
+    LinkedList<Future<SentenceAnalysis>> pendingAnalyses = new LinkedList<>();
+    this.currentFile = null;
     try {
-      SentenceDetector sentenceDetector = null;
-      Tokeniser tokeniser = null;
-      PosTagger posTagger = null;
-      Parser parser = null;
-      if (this.needsSentenceDetector())
-        sentenceDetector = SentenceDetector.getInstance(session);
-      if (this.needsTokeniser())
-        tokeniser = Tokeniser.getInstance(session);
-      if (this.needsPosTagger())
-        posTagger = PosTaggers.getPosTagger(session);
-      if (this.needsParser())
-        parser = Parsers.getParser(session);
+      AnalysisModules readerModules = modules;
+      if (readerModules == null)
+        readerModules = new AnalysisModules(session);
+      SentenceDetector sentenceDetector = readerModules.getSentenceDetector();
+
+      // Each worker gets its own set of modules, since modules are not
+      // thread-safe. They are all built up-front in the current thread, and
+      // share the models cached by the factories.
+      AnalysisModules serialModules = null;
+      if (modules == null && threads > 1) {
+        executor = Executors.newFixedThreadPool(threads);
+        modulePool.add(readerModules);
+        for (int i = 1; i < threads; i++)
+          modulePool.add(new AnalysisModules(session));
+      } else {
+        serialModules = readerModules;
+      }
 
       TokeniserAnnotatedCorpusReader tokenCorpusReader = null;
       PosTagAnnotatedCorpusReader posTagCorpusReader = null;
@@ -296,7 +339,7 @@ public class Talismane {
       TokenSequence tokenSequence = null;
       PosTagSequence posTagSequence = null;
 
-      StringBuilder stringBuilder = new StringBuilder();
+      TextSegmentReader textSegmentReader = new TextSegmentReader(reader, session);
       boolean finished = false;
       int sentenceCount = 0;
 
@@ -306,10 +349,6 @@ public class Talismane {
         ((CurrentFileProvider) reader).addCurrentFileObserver(rollingTextBlock);
       }
 
-      int endBlockCharacterCount = 0;
-
-      File currentFile = null;
-
       while (!finished) {
         if (this.startModule.equals(Module.sentenceDetector) || this.startModule.equals(Module.tokeniser)) {
           // Note SentenceDetector and Tokeniser start modules treated
@@ -319,63 +358,10 @@ public class Talismane {
           // whereas for Tokeniser we assume all sentence breaks are
           // marked by filters
 
-          // read characters from the reader, one at a time
-          char c;
-          int r = -1;
-          try {
-            r = reader.read();
-          } catch (IOException e) {
-            LogUtils.logError(LOG, e);
-          }
-
-          if (r == -1) {
+          // read up to the next block boundary
+          textSegments.addAll(textSegmentReader.readSegments());
+          if (textSegmentReader.isFinished())
             finished = true;
-            c = '\n';
-          } else {
-            c = (char) r;
-          }
-
-          // Jump out if we have 3 consecutive end-block characters.
-          if (c == session.getEndBlockCharacter()) {
-            endBlockCharacterCount++;
-            if (endBlockCharacterCount == 3) {
-              LOG.info("Three consecutive end-block characters. Exiting.");
-              finished = true;
-            }
-          } else {
-            endBlockCharacterCount = 0;
-          }
-
-          // have sentence detector
-          if (finished || (Character.isWhitespace(c) && c != '\r' && c != '\n' && stringBuilder.length() > session.getBlockSize())
-              || c == session.getEndBlockCharacter()) {
-            if (c == session.getEndBlockCharacter())
-              stringBuilder.append(c);
-            if (stringBuilder.length() > 0) {
-              String textSegment = stringBuilder.toString();
-              stringBuilder = new StringBuilder();
-
-              textSegments.add(textSegment);
-            } // is the current block > 0 characters?
-            if (c == session.getEndBlockCharacter()) {
-              textSegments.addLast("");
-            }
-          } // is there a next block available?
-
-          if (finished) {
-            if (stringBuilder.length() > 0) {
-              textSegments.addLast(stringBuilder.toString());
-              stringBuilder = new StringBuilder();
-            }
-            // add three final text segments to roll everything
-            // through processing
-            textSegments.addLast("");
-            textSegments.addLast("");
-            textSegments.addLast("");
-          }
-
-          if (c != session.getEndBlockCharacter())
-            stringBuilder.append(c);
 
           while (textSegments.size() > 0) {
             // roll in a new block 4, and roll the other blocks
@@ -436,88 +422,45 @@ public class Talismane {
           needToProcess = posTagSequence != null;
 
         while (needToProcess) {
-          Sentence sentence = null;
-          if (this.startModule.compareTo(Module.tokeniser) <= 0 && this.endModule.compareTo(Module.sentenceDetector) >= 0) {
-            sentence = sentences.poll();
+          SentenceAnalysis analysis = null;
+          if (this.startModule.equals(Module.sentenceDetector) || this.startModule.equals(Module.tokeniser)) {
+            Sentence sentence = sentences.poll();
             LOG.debug("Sentence: " + sentence);
 
+            // sentence annotators are applied sequentially, in the reading
+            // thread
             for (SentenceAnnotator annotator : session.getSentenceAnnotators())
               annotator.annotate(sentence);
 
-            if (sentence.getLeftoverOriginalText() != null) {
-              writer.append(sentence.getLeftoverOriginalText() + "\n");
-            }
-            if (writer instanceof CurrentFileObserver && sentence.getFile() != null && !sentence.getFile().equals(currentFile)) {
-              currentFile = sentence.getFile();
-              LOG.debug("Setting current file to " + currentFile.getPath());
-              ((CurrentFileObserver) writer).onNextFile(currentFile);
-            }
-
-            for (SentenceProcessor sentenceProcessor : sentenceProcessors) {
-              sentenceProcessor.onNextSentence(sentence);
-            }
-          } // need to read next sentence
-
-          List<TokenSequence> tokenSequences = null;
-          if (this.needsTokeniser()) {
-            tokenSequences = tokeniser.tokenise(sentence);
-            tokenSequence = tokenSequences.get(0);
-
-            for (TokenSequenceProcessor tokenSequenceProcessor : tokenSequenceProcessors) {
-              tokenSequenceProcessor.onNextTokenSequence(tokenSequence);
-            }
-          } // need to tokenise ?
-
-          List<PosTagSequence> posTagSequences = null;
-          if (this.needsPosTagger()) {
-            posTagSequence = null;
-            if (tokenSequences == null) {
-              tokenSequences = new ArrayListNoNulls<>();
-              tokenSequences.add(tokenSequence);
-            }
-
-            if (posTagger instanceof NonDeterministicPosTagger) {
-              NonDeterministicPosTagger nonDeterministicPosTagger = (NonDeterministicPosTagger) posTagger;
-              posTagSequences = nonDeterministicPosTagger.tagSentence(tokenSequences);
-              posTagSequence = posTagSequences.get(0);
-            } else {
-              posTagSequence = posTagger.tagSentence(tokenSequence);
-            }
-
-            for (PosTagSequenceProcessor posTagSequenceProcessor : this.posTagSequenceProcessors) {
-              posTagSequenceProcessor.onNextPosTagSequence(posTagSequence);
-            }
-
+            analysis = new SentenceAnalysis(sentence, null, null);
+          } else if (this.startModule.equals(Module.posTagger)) {
+            analysis = new SentenceAnalysis(null, tokenSequence, null);
             tokenSequence = null;
-          } // need to postag
-
-          if (this.needsParser()) {
-            if (posTagSequences == null) {
-              posTagSequences = new ArrayListNoNulls<>();
-              posTagSequences.add(posTagSequence);
-            }
+          } else if (this.startModule.equals(Module.parser)) {
+            analysis = new SentenceAnalysis(null, null, posTagSequence);
+            posTagSequence = null;
+          }
 
-            ParseConfiguration parseConfiguration = null;
-            List<ParseConfiguration> parseConfigurations = null;
-            try {
-              if (parser instanceof NonDeterministicParser) {
-                NonDeterministicParser nonDeterministicParser = (NonDeterministicParser) parser;
-                parseConfigurations = nonDeterministicParser.parseSentence(posTagSequences);
-                parseConfiguration = parseConfigurations.get(0);
-              } else {
-                parseConfiguration = parser.parseSentence(posTagSequence);
+          if (executor == null) {
+            this.analyseSentence(analysis, serialModules);
+            this.outputAnalysis(analysis);
+          } else {
+            final SentenceAnalysis parallelAnalysis = analysis;
+            pendingAnalyses.add(executor.submit(() -> {
+              AnalysisModules workerModules = modulePool.take();
+              try {
+                this.analyseSentence(parallelAnalysis, workerModules);
+              } finally {
+                modulePool.put(workerModules);
               }
+              return parallelAnalysis;
+            }));
 
-              for (ParseConfigurationProcessor parseConfigurationProcessor : this.parseConfigurationProcessors) {
-                parseConfigurationProcessor.onNextParseConfiguration(parseConfiguration);
-              }
-            } catch (Exception e) {
-              LogUtils.logError(LOG, e);
-              if (stopOnError)
-                throw new RuntimeException(e);
-            }
-            posTagSequence = null;
-          } // need to parse
+            // the reorder buffer is full: wait for the oldest sentence, so
+            // that output stays in the original sentence order
+            while (pendingAnalyses.size() >= maxSentencesInFlight)
+              this.outputAnalysis(this.getAnalysis(pendingAnalyses.removeFirst()));
+          }
 
           if (this.startModule.equals(Module.sentenceDetector) || this.startModule.equals(Module.tokeniser))
             needToProcess = !sentences.isEmpty();
@@ -528,10 +471,16 @@ public class Talismane {
         } // next sentence
       } // next character
 
+      while (!pendingAnalyses.isEmpty())
+        this.outputAnalysis(this.getAnalysis(pendingAnalyses.removeFirst()));
+
       // Check if there's any leftover output to output!
       if (rollingTextBlock.getLeftoverOriginalText().length() > 0)
         writer.append(rollingTextBlock.getLeftoverOriginalText());
     } finally {
+      if (executor != null)
+        executor.shutdownNow();
+
       IOException exception = null;
       try {
         reader.close();
@@ -588,6 +537,124 @@ public class Talismane {
     }
   }
 
+  /**
+   * Tokenise, pos-tag and parse a single sentence, as required by the
+   * configuration. This is the part of the analysis which can run in parallel:
+   * it only touches the analysis passed in and the modules provided.
+   */
+  private void analyseSentence(SentenceAnalysis analysis, AnalysisModules modules) throws TalismaneException, IOException {
+    List<TokenSequence> tokenSequences = null;
+    if (this.needsTokeniser()) {
+      tokenSequences = modules.getTokeniser().tokenise(analysis.sentence);
+      analysis.tokenSequence = tokenSequences.get(0);
+    } // need to tokenise ?
+
+    List<PosTagSequence> posTagSequences = null;
+    if (this.needsPosTagger()) {
+      if (tokenSequences == null) {
+        tokenSequences = new ArrayListNoNulls<>();
+        tokenSequences.add(analysis.tokenSequence);
+      }
+
+      if (modules.getPosTagger() instanceof NonDeterministicPosTagger) {
+        NonDeterministicPosTagger nonDeterministicPosTagger = (NonDeterministicPosTagger) modules.getPosTagger();
+        posTagSequences = nonDeterministicPosTagger.tagSentence(tokenSequences);
+        analysis.posTagSequence = posTagSequences.get(0);
+      } else {
+        analysis.posTagSequence = modules.getPosTagger().tagSentence(analysis.tokenSequence);
+      }
+    } // need to postag
+
+    if (this.needsParser()) {
+      if (posTagSequences == null) {
+        posTagSequences = new ArrayListNoNulls<>();
+        posTagSequences.add(analysis.posTagSequence);
+      }
+
+      try {
+        if (modules.getParser() instanceof NonDeterministicParser) {
+          NonDeterministicParser nonDeterministicParser = (NonDeterministicParser) modules.getParser();
+          List<ParseConfiguration> parseConfigurations = nonDeterministicParser.parseSentence(posTagSequences);
+          analysis.parseConfiguration = parseConfigurations.get(0);
+        } else {
+          analysis.parseConfiguration = modules.getParser().parseSentence(analysis.posTagSequence);
+        }
+      } catch (Exception e) {
+        LogUtils.logError(LOG, e);
+        if (stopOnError)
+          throw new RuntimeException(e);
+      }
+    } // need to parse
+  }
+
+  /**
+   * Send a sentence's analysis to the various processors. Always called in the
+   * reading thread, in the original sentence order.
+   */
+  private void outputAnalysis(SentenceAnalysis analysis) throws IOException, TalismaneException {
+    Sentence sentence = analysis.sentence;
+    if (sentence != null) {
+      if (sentence.getLeftoverOriginalText() != null) {
+        writer.append(sentence.getLeftoverOriginalText() + "\n");
+      }
+      if (writer instanceof CurrentFileObserver && sentence.getFile() != null && !sentence.getFile().equals(currentFile)) {
+        currentFile = sentence.getFile();
+        LOG.debug("Setting current file to " + currentFile.getPath());
+        ((CurrentFileObserver) writer).onNextFile(currentFile);
+      }
+
+      for (SentenceProcessor sentenceProcessor : sentenceProcessors) {
+        sentenceProcessor.onNextSentence(sentence);
+      }
+    }
+
+    if (this.needsTokeniser() && analysis.tokenSequence != null) {
+      for (TokenSequenceProcessor tokenSequenceProcessor : tokenSequenceProcessors) {
+        tokenSequenceProcessor.onNextTokenSequence(analysis.tokenSequence);
+      }
+    }
+
+    if (this.needsPosTagger() && analysis.posTagSequence != null) {
+      for (PosTagSequenceProcessor posTagSequenceProcessor : this.posTagSequenceProcessors) {
+        posTagSequenceProcessor.onNextPosTagSequence(analysis.posTagSequence);
+      }
+    }
+
+    if (this.needsParser() && analysis.parseConfiguration != null) {
+      try {
+        for (ParseConfigurationProcessor parseConfigurationProcessor : this.parseConfigurationProcessors) {
+          parseConfigurationProcessor.onNextParseConfiguration(analysis.parseConfiguration);
+        }
+      } catch (Exception e) {
+        LogUtils.logError(LOG, e);
+        if (stopOnError)
+          throw new RuntimeException(e);
+      }
+    }
+  }
+
+  /**
+   * Wait for a sentence analysed in a worker thread, re-throwing any exception
+   * thrown during analysis.
+   */
+  private SentenceAnalysis getAnalysis(Future<SentenceAnalysis> future) throws IOException, TalismaneException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TalismaneException("Interrupted while waiting for sentence analysis", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof TalismaneException)
+        throw (TalismaneException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
   /**
    * Does this instance of Talismane need a sentence detector to perform the
    * requested processing.
@@ -661,4 +728,37 @@ public class Talismane {
     return parseConfigurationProcessors;
   }
 
+  /**
+   * The number of threads used to tokenise, pos-tag and parse sentences. If 1,
+   * all analysis is performed in the calling thread.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * The maximum number of sentences read but not yet output when analysing
+   * with several threads.
+   */
+  public int getMaxSentencesInFlight() {
+    return maxSentencesInFlight;
+  }
+
+  /**
+   * The analysis of a single sentence, which passes from the reading stage,
+   * through tokenising, pos-tagging and parsing, to the output stage.
+   */
+  private static final class SentenceAnalysis {
+    private final Sentence sentence;
+    private TokenSequence tokenSequence;
+    private PosTagSequence posTagSequence;
+    private ParseConfiguration parseConfiguration;
+
+    public SentenceAnalysis(Sentence sentence, TokenSequence tokenSequence, PosTagSequence posTagSequence) {
+      this.sentence = sentence;
+      this.tokenSequence = tokenSequence;
+      this.posTagSequence = posTagSequence;
+    }
+  }
+
 }
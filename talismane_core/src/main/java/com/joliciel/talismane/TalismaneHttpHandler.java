@@ -0,0 +1,171 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.Talismane.BuiltInTemplate;
+import com.joliciel.talismane.Talismane.Module;
+import com.joliciel.talismane.utils.LogUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.typesafe.config.Config;
+
+/**
+ * Handles HTTP requests to the Talismane server. Each POST request contains a
+ * single document in its body, and the response contains the analysis of this
+ * document, in the format given by the end module's output template (e.g.
+ * CoNLL, or JSON with one sentence per line for the json built-in template).
+ * <br/>
+ * <br/>
+ * Unlike the raw socket protocol, requests are length-framed, so that a single
+ * keep-alive connection can be used to analyse any number of documents. Each
+ * request borrows a set of pre-built analysis modules from a pool reserved for
+ * HTTP requests.<br/>
+ * <br/>
+ * Requests should be run by an executor built by
+ * {@link #newExecutor(int, int)}: when all of its threads are busy and its
+ * queue is full, requests are answered immediately with 503 Service
+ * Unavailable.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+class TalismaneHttpHandler implements HttpHandler {
+  private static final Logger LOG = LoggerFactory.getLogger(TalismaneHttpHandler.class);
+  private final TalismaneSession session;
+  private final BlockingQueue<AnalysisModules> modulePool;
+  private final String contentType;
+  private final ThreadLocal<Boolean> rejected = ThreadLocal.withInitial(() -> false);
+
+  public TalismaneHttpHandler(TalismaneSession session, BlockingQueue<AnalysisModules> modulePool) {
+    this.session = session;
+    this.modulePool = modulePool;
+
+    Config config = session.getConfig();
+    Module endModule = Module.valueOf(config.getString("talismane.core.analysis.end-module"));
+    String moduleConfigPath = null;
+    switch (endModule) {
+    case tokeniser:
+      moduleConfigPath = "talismane.core.tokeniser";
+      break;
+    case posTagger:
+      moduleConfigPath = "talismane.core.pos-tagger";
+      break;
+    case parser:
+      moduleConfigPath = "talismane.core.parser";
+      break;
+    default:
+      break;
+    }
+
+    boolean json = false;
+    if (moduleConfigPath != null && !config.hasPath(moduleConfigPath + ".output.template")) {
+      BuiltInTemplate builtInTemplate = BuiltInTemplate.valueOf(config.getString(moduleConfigPath + ".output.built-in-template"));
+      json = builtInTemplate == BuiltInTemplate.json;
+    }
+    if (json)
+      this.contentType = "application/x-ndjson; charset=" + session.getOutputCharset().name();
+    else
+      this.contentType = "text/plain; charset=" + session.getOutputCharset().name();
+  }
+
+  /**
+   * An executor for this handler's requests, with a given number of threads
+   * and a queue of a given size for requests waiting for a free thread. The
+   * HTTP server gives no access to a request which its executor rejects, so
+   * rejected requests are handled in the server's dispatching thread instead,
+   * and answered with 503 without being analysed.
+   */
+  public ThreadPoolExecutor newExecutor(int threads, int queueSize) {
+    RejectedExecutionHandler rejectionHandler = (task, executor) -> {
+      rejected.set(true);
+      try {
+        task.run();
+      } finally {
+        rejected.set(false);
+      }
+    };
+    return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize), rejectionHandler);
+  }
+
+  @Override
+  public void handle(HttpExchange exchange) throws IOException {
+    try {
+      if (rejected.get()) {
+        LOG.warn("Server busy, refusing HTTP request from " + exchange.getRemoteAddress());
+        exchange.getResponseHeaders().set("Connection", "close");
+        this.sendError(exchange, 503, "Server busy. Try again later.");
+        return;
+      }
+
+      if (!"POST".equals(exchange.getRequestMethod())) {
+        this.sendError(exchange, 405, "Only POST is supported");
+        return;
+      }
+
+      StringWriter out = new StringWriter();
+      AnalysisModules modules = modulePool.take();
+      try {
+        Reader in = new BufferedReader(new InputStreamReader(exchange.getRequestBody(), session.getInputCharset()));
+        Talismane talismane = new Talismane(out, null, session);
+        talismane.analyse(in, modules);
+      } finally {
+        modulePool.add(modules);
+      }
+
+      byte[] response = out.toString().getBytes(session.getOutputCharset());
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+      exchange.sendResponseHeaders(200, response.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(response);
+      }
+    } catch (TalismaneException | ReflectiveOperationException | RuntimeException e) {
+      LogUtils.logError(LOG, e);
+      this.sendError(exchange, 500, e.getClass().getSimpleName() + ": " + e.getMessage());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      this.sendError(exchange, 503, "Server shutting down");
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void sendError(HttpExchange exchange, int code, String message) throws IOException {
+    byte[] response = (message + "\n").getBytes(session.getOutputCharset());
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=" + session.getOutputCharset().name());
+    exchange.sendResponseHeaders(code, response.length);
+    try (OutputStream os = exchange.getResponseBody()) {
+      os.write(response);
+    }
+  }
+}
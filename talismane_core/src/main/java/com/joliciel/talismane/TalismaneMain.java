@@ -143,6 +143,8 @@ public class TalismaneMain {
     OptionSpec<Mode> modeOption = parser.accepts("mode", "execution mode: " + Arrays.toString(Mode.values())).availableIf("analyse").withRequiredArg()
         .ofType(Mode.class);
     OptionSpec<Integer> portOption = parser.accepts("port", "which port to listen on").availableIf("analyse").withRequiredArg().ofType(Integer.class);
+    OptionSpec<Integer> threadsOption = parser.accepts("threads", "how many threads to use for tokenising, pos-tagging and parsing").availableIf("analyse")
+        .withRequiredArg().ofType(Integer.class);
 
     OptionSpec<File> inFileOption = parser.accepts("inFile", "input file or directory").withRequiredArg().ofType(File.class);
     OptionSpec<File> outFileOption = parser.accepts("outFile", "output file or directory (when inFile is a directory)").withRequiredArg().ofType(File.class);
@@ -321,6 +323,8 @@ public class TalismaneMain {
       values.put("talismane.core.mode", options.valueOf(modeOption).name());
     if (options.has(portOption))
       values.put("talismane.core.port", options.valueOf(portOption));
+    if (options.has(threadsOption))
+      values.put("talismane.core.analysis.threads", options.valueOf(threadsOption));
 
     if (options.has(localeOption))
       values.put("talismane.core.locale", options.valueOf(localeOption));
@@ -621,8 +625,27 @@ public class TalismaneMain {
     try {
       switch (session.getCommand()) {
       case analyse: {
+        Mode mode = Mode.valueOf(config.getString("talismane.core.mode"));
+        if (mode == Mode.server) {
+          TalismaneServer server = new TalismaneServer(session);
+          server.analyse();
+          break;
+        }
+
         Module startModule = Module.valueOf(config.getString("talismane.core.analysis.start-module"));
         Module endModule = Module.valueOf(config.getString("talismane.core.analysis.end-module"));
+
+        int fileThreads = config.getInt("talismane.core.analysis.file-threads");
+        if (fileThreads > 1 && startModule != Module.languageDetector && inFile != null && inFile.isDirectory()) {
+          if (outFile == null || !outFile.isDirectory())
+            throw new TalismaneException("When analysing files in parallel, the output must be a directory");
+          if (outDir != null)
+            throw new TalismaneException("Additional output files are not supported when analysing files in parallel");
+          DirectoryAnalyser directoryAnalyser = new DirectoryAnalyser(session, fileThreads);
+          directoryAnalyser.analyse(inFile, outFile);
+          break;
+        }
+
         Reader reader = getReader(inFile, true, session);
         Writer writer = getWriter(outFile, inFile, session);
 
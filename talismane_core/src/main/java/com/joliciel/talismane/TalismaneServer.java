@@ -19,15 +19,44 @@
 package com.joliciel.talismane;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.net.Socket;
 import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.joliciel.talismane.utils.LogUtils;
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+
 /**
  * A Talismane server, for loading all resources up front and processing
- * sentences received on the fly.
+ * sentences received on the fly.<br/>
+ * <br/>
+ * Connections are analysed by a fixed pool of {@link #getThreads()} worker
+ * threads. Accepted connections wait in a queue of at most
+ * {@link #getQueueSize()} connections for a free worker: when this queue is
+ * full, new connections are immediately refused with an error message rather
+ * than accepted. Each worker borrows a set of pre-built analysis modules from a
+ * pool, so that modules are not rebuilt for every connection.<br/>
+ * <br/>
+ * If {@link #getHttpPort()} is greater than 0, an HTTP endpoint is also opened
+ * alongside the raw socket protocol, at the path /analyse. It accepts one
+ * document per POST request, and any number of requests per keep-alive
+ * connection. HTTP requests are analysed by a separate pool of
+ * {@link #getHttpThreads()} worker threads with their own modules, so that
+ * neither protocol can starve the other, and wait in a separate queue of at
+ * most {@link #getQueueSize()} requests: when this queue is full, new requests
+ * are answered with 503 Service Unavailable.
  * 
  * @author Assaf Urieli
  *
@@ -35,31 +64,90 @@ import org.slf4j.LoggerFactory;
 public class TalismaneServer {
   private static final Logger LOG = LoggerFactory.getLogger(TalismaneServer.class);
   private final int port;
+  private final int threads;
+  private final int queueSize;
+  private final int httpPort;
+  private final int httpThreads;
   private boolean listening = true;
   private final TalismaneSession session;
 
-  public TalismaneServer(TalismaneSession session) throws IOException, ReflectiveOperationException {
+  public TalismaneServer(TalismaneSession session) throws IOException, ReflectiveOperationException, TalismaneException {
     this.session = session;
     this.port = session.getPort();
+    Config serverConfig = session.getConfig().getConfig("talismane.core.server");
+    this.threads = serverConfig.getInt("threads");
+    this.queueSize = serverConfig.getInt("queue-size");
+    this.httpPort = serverConfig.getInt("http-port");
+    this.httpThreads = serverConfig.getInt("http-threads");
+    if (this.threads < 1)
+      throw new TalismaneException("Server threads must be >= 1, but was " + this.threads);
+    if (this.queueSize < 1)
+      throw new TalismaneException("Server queue-size must be >= 1, but was " + this.queueSize);
+    if (this.httpPort > 0 && this.httpThreads < 1)
+      throw new TalismaneException("Server http-threads must be >= 1, but was " + this.httpThreads);
   }
 
-  public void analyse() throws IOException {
+  public void analyse() throws IOException, ReflectiveOperationException, TalismaneException {
     long startTime = new Date().getTime();
     ServerSocket serverSocket = null;
+    ThreadPoolExecutor executor = null;
+    HttpServer httpServer = null;
+    ThreadPoolExecutor httpExecutor = null;
 
     try {
       LOG.info("Starting server...");
 
+      LOG.info("Building analysis modules for " + threads + " threads...");
+      BlockingQueue<AnalysisModules> modulePool = new ArrayBlockingQueue<>(threads);
+      for (int i = 0; i < threads; i++)
+        modulePool.add(new AnalysisModules(session));
+
+      executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(queueSize));
+
+      if (httpPort > 0) {
+        LOG.info("Building analysis modules for " + httpThreads + " HTTP threads...");
+        BlockingQueue<AnalysisModules> httpModulePool = new ArrayBlockingQueue<>(httpThreads);
+        for (int i = 0; i < httpThreads; i++)
+          httpModulePool.add(new AnalysisModules(session));
+
+        TalismaneHttpHandler httpHandler = new TalismaneHttpHandler(session, httpModulePool);
+        httpExecutor = httpHandler.newExecutor(httpThreads, queueSize);
+        httpServer = HttpServer.create(new InetSocketAddress(httpPort), queueSize);
+        httpServer.createContext("/analyse", httpHandler);
+        httpServer.setExecutor(httpExecutor);
+        httpServer.start();
+        LOG.info("HTTP endpoint started on port " + httpPort);
+      }
+
       serverSocket = new ServerSocket(port);
       LOG.info("Server started. Waiting for clients...");
       while (listening) {
-        TalismaneServerThread thread = new TalismaneServerThread(session, serverSocket.accept());
-        thread.start();
+        Socket socket = serverSocket.accept();
+        try {
+          executor.execute(new TalismaneServerThread(session, socket, modulePool));
+        } catch (RejectedExecutionException e) {
+          LOG.warn("Server busy, refusing connection from " + socket.getRemoteSocketAddress());
+          this.refuse(socket);
+        }
       }
     } finally {
       if (serverSocket != null && !serverSocket.isClosed()) {
         serverSocket.close();
       }
+      if (httpServer != null) {
+        httpServer.stop(0);
+      }
+      // let connections already accepted finish their analysis
+      for (ThreadPoolExecutor oneExecutor : new ThreadPoolExecutor[] { executor, httpExecutor }) {
+        if (oneExecutor != null) {
+          oneExecutor.shutdown();
+          try {
+            oneExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
       LOG.info("Server shut down.");
       long endTime = new Date().getTime();
       long totalTime = endTime - startTime;
@@ -67,6 +155,22 @@ public class TalismaneServer {
     }
   }
 
+  private void refuse(Socket socket) {
+    try {
+      Writer out = new OutputStreamWriter(socket.getOutputStream(), session.getOutputCharset());
+      out.write("ERROR: server busy (" + threads + " connections in progress, " + queueSize + " waiting). Try again later.\n");
+      out.flush();
+    } catch (IOException e) {
+      LogUtils.logError(LOG, e);
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LogUtils.logError(LOG, e);
+      }
+    }
+  }
+
   /**
    * The port to listen on.
    */
@@ -74,6 +178,37 @@ public class TalismaneServer {
     return port;
   }
 
+  /**
+   * The port for the HTTP endpoint, or 0 if there is no HTTP endpoint.
+   */
+  public int getHttpPort() {
+    return httpPort;
+  }
+
+  /**
+   * The maximum number of HTTP requests analysed concurrently, in addition to
+   * {@link #getThreads()} socket connections.
+   */
+  public int getHttpThreads() {
+    return httpThreads;
+  }
+
+  /**
+   * The maximum number of connections analysed concurrently.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * The maximum number of accepted connections waiting for a free thread,
+   * beyond which new connections are refused. HTTP requests have a separate
+   * queue of the same size.
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
   /**
    * Whether or not any new connections will be accepted.
    */
@@ -23,44 +23,62 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.joliciel.talismane.utils.LogUtils;
+
 /**
  * A server that processes the text which is sent on a socket. The assumption is
  * that the text should be handled as a single independent block. If the text
  * consists of the command "@SHUTDOWN", the thread will instruct the
  * TalismaneServer which created it to shut down as soon as all current threads
- * are finished processing.
+ * are finished processing.<br/>
+ * <br/>
+ * Despite its name, this is a task run by the server's worker pool, rather
+ * than a thread in its own right. It borrows a set of analysis modules from
+ * the server's pool for the duration of the connection.
  * 
  * @author Assaf Urieli
  *
  */
-class TalismaneServerThread extends Thread {
-  @SuppressWarnings("unused")
+class TalismaneServerThread implements Runnable {
   private static final Logger LOG = LoggerFactory.getLogger(TalismaneServerThread.class);
   private final Socket socket;
   private final TalismaneSession session;
+  private final BlockingQueue<AnalysisModules> modulePool;
 
-  public TalismaneServerThread(TalismaneSession session, Socket socket) {
-    super("TalismaneServerThread");
+  public TalismaneServerThread(TalismaneSession session, Socket socket, BlockingQueue<AnalysisModules> modulePool) {
     this.socket = socket;
     this.session = session;
+    this.modulePool = modulePool;
   }
 
   @Override
   public void run() {
+    AnalysisModules modules = null;
     try {
+      modules = modulePool.take();
+
       OutputStreamWriter out = new OutputStreamWriter(socket.getOutputStream(), session.getOutputCharset());
       BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), session.getInputCharset()));
 
       Talismane talismane = new Talismane(out, null, session);
-      talismane.analyse(in);
-
-      socket.close();
+      talismane.analyse(in, modules);
     } catch (IOException | ReflectiveOperationException | TalismaneException e) {
-      throw new RuntimeException(e);
+      LogUtils.logError(LOG, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      if (modules != null)
+        modulePool.add(modules);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        LogUtils.logError(LOG, e);
+      }
     }
   }
 }
@@ -40,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.talismane.Talismane.Command;
 import com.joliciel.talismane.Talismane.Module;
+import com.joliciel.talismane.lexicon.CachedLexicon;
 import com.joliciel.talismane.lexicon.Diacriticizer;
 import com.joliciel.talismane.lexicon.EmptyLexicon;
 import com.joliciel.talismane.lexicon.LexiconChain;
@@ -218,6 +219,10 @@ public class TalismaneSession {
 
           lexicons = lexiconReader.deserializeLexicons(new ZipInputStream(lexiconFile));
           lexiconMap.put(lexiconPath, lexicons);
+        } else if (new File(lexiconPath).isDirectory()) {
+          // a directory of lexicons in the mapped layout
+          lexicons = lexiconReader.readMappedLexicons(new File(lexiconPath));
+          lexiconMap.put(lexiconPath, lexicons);
         } else {
           // assume it's a lexicon properties file
           File lexiconPropsFile = new File(lexiconPath);
@@ -230,6 +235,7 @@ public class TalismaneSession {
       }
     }
 
+    PosTaggerLexicon mergedLexicon = null;
     if (lexicons.size() == 0)
       mergedLexicon = new EmptyLexicon();
     else if (lexicons.size() == 1)
@@ -239,6 +245,15 @@ public class TalismaneSession {
       mergedLexicon = lexiconChain;
     }
 
+    int lexiconCacheSize = config.getInt("talismane.core.lexicon-cache-size");
+    if (lexicons.size() > 0 && lexiconCacheSize > 0) {
+      CachedLexicon cachedLexicon = new CachedLexicon(mergedLexicon, lexiconCacheSize);
+      if (config.getBoolean("talismane.core.lexicon-cache-precompute"))
+        cachedLexicon.precompute();
+      mergedLexicon = cachedLexicon;
+    }
+    this.mergedLexicon = mergedLexicon;
+
     configPath = "talismane.core.word-lists";
     List<String> wordListPaths = config.getStringList(configPath);
     if (wordListPaths.size() > 0) {
@@ -19,7 +19,6 @@
 package com.joliciel.talismane.languageDetector;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
 import java.util.ArrayList;
@@ -28,7 +27,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,7 +39,6 @@ import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.MachineLearningModelFactory;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
-import com.joliciel.talismane.utils.ConfigUtils;
 import com.joliciel.talismane.utils.WeightedOutcome;
 import com.typesafe.config.Config;
 
@@ -71,9 +68,8 @@ public class LanguageDetector {
       String modelFilePath = config.getString(configPath);
       ClassificationModel model = modelMap.get(modelFilePath);
       if (model == null) {
-        InputStream modelFile = ConfigUtils.getFileFromConfig(config, configPath);
         MachineLearningModelFactory factory = new MachineLearningModelFactory();
-        model = factory.getClassificationModel(new ZipInputStream(modelFile));
+        model = factory.getClassificationModel(config, configPath);
         modelMap.put(modelFilePath, model);
       }
 
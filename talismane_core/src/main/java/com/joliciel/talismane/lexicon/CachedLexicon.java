@@ -0,0 +1,427 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.lexicon;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.posTagger.PosTag;
+import com.joliciel.talismane.posTagger.PosTagSet;
+
+/**
+ * Wraps a lexicon (typically the session's merged lexicon) in a lookup layer,
+ * so that the pos-tags and lexical entries for a given word are only computed
+ * once across all tokens, rather than walking every underlying lexicon on each
+ * call.<br/>
+ * <br/>
+ * The first lookup of a word computes all of its information at once: its
+ * entries, its possible pos-tags as a bitset over the pos-tag set, and its
+ * entries for each of these pos-tags, in an array indexed by pos-tag. Words
+ * are kept in a bounded least-recently-used cache, split into stripes with a
+ * lock each, so that concurrent lookups of different words rarely contend.
+ * Alternatively, {@link #precompute()} computes the information for every word
+ * in the lexicon up front, leaving the cache for unknown words only.
+ * Lemmas are cached in the same way, with their per-pos-tag entries added as
+ * they are requested.<br/>
+ * <br/>
+ * All lists and sets returned by this lexicon are shared immutable views, and
+ * must not be modified. Changing the pos-tag set or pos-tag mapper clears the
+ * cache, including any precomputed words. Thread-safe if the underlying
+ * lexicon is.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class CachedLexicon implements PosTaggerLexicon {
+  private static final long serialVersionUID = 1L;
+  private static final Logger LOG = LoggerFactory.getLogger(CachedLexicon.class);
+  private static final int MAX_STRIPES = 16;
+  private static final int MIN_STRIPE_SIZE = 1024;
+
+  private final PosTaggerLexicon lexicon;
+  private final int maxSize;
+  private transient volatile Cache cache;
+
+  /**
+   * @param lexicon
+   *          the lexicon being wrapped
+   * @param maxSize
+   *          the maximum number of words (and separately, of lemmas) to keep
+   *          in the cache
+   */
+  public CachedLexicon(PosTaggerLexicon lexicon, int maxSize) {
+    this.lexicon = lexicon;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Compute the information for every word in the underlying lexicon, so that
+   * lookups of known words never reach the underlying lexicon, and are never
+   * evicted.
+   */
+  public void precompute() throws TalismaneException {
+    long startTime = System.currentTimeMillis();
+    Cache cache = this.getCache();
+    Map<String, WordInfo> words = new HashMap<>();
+    Iterator<LexicalEntry> entries = lexicon.getAllEntries();
+    while (entries.hasNext()) {
+      String word = entries.next().getWord();
+      if (!words.containsKey(word))
+        words.put(word, this.newWordInfo(word, cache));
+    }
+    cache.precomputedWords = words;
+    LOG.info("Precomputed " + words.size() + " words in " + (System.currentTimeMillis() - startTime) + " ms");
+  }
+
+  /**
+   * The cached information for the current pos-tag set and mapper, replaced
+   * whenever either of them changes.
+   */
+  private Cache getCache() {
+    Cache cache = this.cache;
+    if (cache == null) {
+      synchronized (this) {
+        cache = this.cache;
+        if (cache == null) {
+          cache = new Cache(lexicon.getPosTagSet(), maxSize);
+          this.cache = cache;
+        }
+      }
+    }
+    return cache;
+  }
+
+  private synchronized void clear() {
+    this.cache = null;
+  }
+
+  private static final class Cache {
+    private final PosTag[] posTags;
+    private final Map<PosTag, Integer> posTagIndexes = new HashMap<>();
+    private final Stripe[] wordStripes;
+    private final Stripe[] lemmaStripes;
+    private volatile Map<String, WordInfo> precomputedWords = Collections.emptyMap();
+
+    Cache(PosTagSet posTagSet, int maxSize) {
+      if (posTagSet == null) {
+        posTags = new PosTag[0];
+      } else {
+        posTags = posTagSet.getTags().toArray(new PosTag[0]);
+        for (int i = 0; i < posTags.length; i++)
+          posTagIndexes.put(posTags[i], i);
+      }
+
+      // small caches stay in a single stripe, so as to be strictly
+      // least-recently-used
+      int stripeCount = 1;
+      while (stripeCount < MAX_STRIPES && maxSize / (stripeCount * 2) >= MIN_STRIPE_SIZE)
+        stripeCount *= 2;
+      wordStripes = new Stripe[stripeCount];
+      lemmaStripes = new Stripe[stripeCount];
+      for (int i = 0; i < stripeCount; i++) {
+        int stripeSize = maxSize / stripeCount + (i < maxSize % stripeCount ? 1 : 0);
+        wordStripes[i] = new Stripe(stripeSize);
+        lemmaStripes[i] = new Stripe(stripeSize);
+      }
+    }
+
+    int getIndex(PosTag posTag) {
+      Integer index = posTagIndexes.get(posTag);
+      return index == null ? -1 : index;
+    }
+
+    Stripe getStripe(String word, boolean lemma) {
+      Stripe[] stripes = lemma ? lemmaStripes : wordStripes;
+      int hash = word.hashCode();
+      hash ^= (hash >>> 16);
+      return stripes[hash & (stripes.length - 1)];
+    }
+  }
+
+  /**
+   * A least-recently-used map of words to their information, guarded by its
+   * own lock.
+   */
+  private static final class Stripe {
+    private final Map<String, WordInfo> words;
+
+    Stripe(final int maxSize) {
+      words = new LinkedHashMap<String, WordInfo>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, WordInfo> eldest) {
+          return this.size() > maxSize;
+        }
+      };
+    }
+
+    synchronized WordInfo get(String word) {
+      return words.get(word);
+    }
+
+    synchronized WordInfo putIfAbsent(String word, WordInfo wordInfo) {
+      WordInfo existing = words.putIfAbsent(word, wordInfo);
+      return existing == null ? wordInfo : existing;
+    }
+  }
+
+  /**
+   * The lookup results for a single word or lemma. For words, the pos-tags and
+   * the entries for each of them are filled in on construction. For lemmas,
+   * the pos-tags are not used, and the entries for each pos-tag are added as
+   * they are requested.
+   */
+  private static final class WordInfo {
+    private final List<LexicalEntry> entries;
+    private final Set<PosTag> posTags;
+    private final AtomicReferenceArray<List<LexicalEntry>> entriesPerPosTag;
+
+    WordInfo(List<LexicalEntry> entries, Set<PosTag> posTags, int posTagCount) {
+      this.entries = entries;
+      this.posTags = posTags;
+      this.entriesPerPosTag = new AtomicReferenceArray<>(posTagCount);
+    }
+  }
+
+  /**
+   * An immutable set of pos-tags stored as a bitset over the pos-tag set,
+   * iterated in the pos-tag set's (natural) order.
+   */
+  private static final class PosTagBitSet extends AbstractSet<PosTag> {
+    private final Cache cache;
+    private final long[] bits;
+    private final int size;
+
+    PosTagBitSet(Cache cache, long[] bits, int size) {
+      this.cache = cache;
+      this.bits = bits;
+      this.size = size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      if (!(o instanceof PosTag))
+        return false;
+      int index = cache.getIndex((PosTag) o);
+      return index >= 0 && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    public Iterator<PosTag> iterator() {
+      return new Iterator<PosTag>() {
+        private int next = this.nextIndex(0);
+
+        private int nextIndex(int from) {
+          for (int i = from; i < cache.posTags.length; i++) {
+            if ((bits[i >>> 6] & (1L << i)) != 0)
+              return i;
+          }
+          return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+          return next >= 0;
+        }
+
+        @Override
+        public PosTag next() {
+          if (next < 0)
+            throw new NoSuchElementException();
+          PosTag posTag = cache.posTags[next];
+          next = this.nextIndex(next + 1);
+          return posTag;
+        }
+      };
+    }
+  }
+
+  private WordInfo getWordInfo(String word) throws TalismaneException {
+    Cache cache = this.getCache();
+    WordInfo wordInfo = cache.precomputedWords.get(word);
+    if (wordInfo != null)
+      return wordInfo;
+    Stripe stripe = cache.getStripe(word, false);
+    wordInfo = stripe.get(word);
+    if (wordInfo == null) {
+      // computed outside of the lock: another thread might compute the same
+      // word at the same time, in which case the first one stored is kept
+      wordInfo = stripe.putIfAbsent(word, this.newWordInfo(word, cache));
+    }
+    return wordInfo;
+  }
+
+  private WordInfo newWordInfo(String word, Cache cache) throws TalismaneException {
+    List<LexicalEntry> entries = Collections.unmodifiableList(lexicon.getEntries(word));
+    Set<PosTag> posTags = lexicon.findPossiblePosTags(word);
+    Set<PosTag> posTagView = null;
+    if (posTags.isEmpty()) {
+      posTagView = Collections.emptySortedSet();
+    } else {
+      long[] bits = new long[(cache.posTags.length + 63) >>> 6];
+      for (PosTag posTag : posTags) {
+        int index = cache.getIndex(posTag);
+        if (index < 0) {
+          // a pos-tag outside of the pos-tag set, which can't be stored in
+          // the bitset
+          posTagView = Collections.unmodifiableSortedSet(new TreeSet<>(posTags));
+          break;
+        }
+        bits[index >>> 6] |= (1L << index);
+      }
+      if (posTagView == null)
+        posTagView = new PosTagBitSet(cache, bits, posTags.size());
+    }
+
+    WordInfo wordInfo = new WordInfo(entries, posTagView, cache.posTags.length);
+    for (PosTag posTag : posTags) {
+      int index = cache.getIndex(posTag);
+      if (index >= 0)
+        wordInfo.entriesPerPosTag.set(index, Collections.unmodifiableList(lexicon.findLexicalEntries(word, posTag)));
+    }
+    return wordInfo;
+  }
+
+  private WordInfo getLemmaInfo(String lemma) {
+    Cache cache = this.getCache();
+    Stripe stripe = cache.getStripe(lemma, true);
+    WordInfo lemmaInfo = stripe.get(lemma);
+    if (lemmaInfo == null) {
+      List<LexicalEntry> entries = Collections.unmodifiableList(lexicon.getEntriesForLemma(lemma));
+      lemmaInfo = stripe.putIfAbsent(lemma, new WordInfo(entries, null, cache.posTags.length));
+    }
+    return lemmaInfo;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntries(String word) {
+    try {
+      return this.getWordInfo(word).entries;
+    } catch (TalismaneException e) {
+      // the error will be reported when looking up this word's pos-tags
+      return Collections.unmodifiableList(lexicon.getEntries(word));
+    }
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesForLemma(String lemma) {
+    return this.getLemmaInfo(lemma).entries;
+  }
+
+  @Override
+  public Set<PosTag> findPossiblePosTags(String word) throws TalismaneException {
+    return this.getWordInfo(word).posTags;
+  }
+
+  @Override
+  public List<LexicalEntry> findLexicalEntries(String word, PosTag posTag) {
+    int index = this.getCache().getIndex(posTag);
+    if (index < 0)
+      return Collections.unmodifiableList(lexicon.findLexicalEntries(word, posTag));
+    WordInfo wordInfo = null;
+    try {
+      wordInfo = this.getWordInfo(word);
+    } catch (TalismaneException e) {
+      return Collections.unmodifiableList(lexicon.findLexicalEntries(word, posTag));
+    }
+    // the entries of all possible pos-tags have been filled in
+    List<LexicalEntry> entries = wordInfo.entriesPerPosTag.get(index);
+    if (entries == null)
+      entries = Collections.emptyList();
+    return entries;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesForLemma(String lemma, PosTag posTag) {
+    int index = this.getCache().getIndex(posTag);
+    if (index < 0)
+      return Collections.unmodifiableList(lexicon.getEntriesForLemma(lemma, posTag));
+    WordInfo lemmaInfo = this.getLemmaInfo(lemma);
+    List<LexicalEntry> entries = lemmaInfo.entriesPerPosTag.get(index);
+    if (entries == null) {
+      entries = Collections.unmodifiableList(lexicon.getEntriesForLemma(lemma, posTag));
+      if (!lemmaInfo.entriesPerPosTag.compareAndSet(index, null, entries))
+        entries = lemmaInfo.entriesPerPosTag.get(index);
+    }
+    return entries;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesMatchingCriteria(LexicalEntry lexicalEntry, PosTag posTag, String gender, String number) {
+    return lexicon.getEntriesMatchingCriteria(lexicalEntry, posTag, gender, number);
+  }
+
+  @Override
+  public PosTagSet getPosTagSet() {
+    return lexicon.getPosTagSet();
+  }
+
+  @Override
+  public void setPosTagSet(PosTagSet posTagSet) {
+    lexicon.setPosTagSet(posTagSet);
+    this.clear();
+  }
+
+  @Override
+  public PosTagMapper getPosTagMapper() {
+    return lexicon.getPosTagMapper();
+  }
+
+  @Override
+  public void setPosTagMapper(PosTagMapper posTagMapper) {
+    lexicon.setPosTagMapper(posTagMapper);
+    this.clear();
+  }
+
+  @Override
+  public String getName() {
+    return lexicon.getName();
+  }
+
+  @Override
+  public Iterator<LexicalEntry> getAllEntries() {
+    return lexicon.getAllEntries();
+  }
+
+  /**
+   * The lexicon wrapped by this cache.
+   */
+  public PosTaggerLexicon getLexicon() {
+    return lexicon;
+  }
+}
@@ -74,6 +74,48 @@ public class CompactLexicalEntry implements WritableLexicalEntry, Serializable {
     this.lexicalEntrySupport = lexicalEntrySupport;
   }
 
+  /**
+   * Construct an entry from its attribute marker and codes, as returned by
+   * {@link #getAttributeMarker()} and {@link #getAttributeCodes()}.
+   */
+  CompactLexicalEntry(CompactLexicalEntrySupport lexicalEntrySupport, String word, String lemma, int attributeMarker, byte[] attributeCodes) {
+    this.lexicalEntrySupport = lexicalEntrySupport;
+    this.word = word;
+    this.lemma = lemma;
+    this.attributeMarker = attributeMarker;
+    this.attributeCodes = attributeCodes;
+  }
+
+  CompactLexicalEntrySupport getLexicalEntrySupport() {
+    return lexicalEntrySupport;
+  }
+
+  /**
+   * A bit mask indicating which attributes have values.
+   */
+  int getAttributeMarker() {
+    return attributeMarker;
+  }
+
+  /**
+   * The codes of the attribute values, in the order of the attribute bits.
+   */
+  byte[] getAttributeCodes() {
+    return attributeCodes;
+  }
+
+  /**
+   * The position of a given attribute's code in the attribute codes of an entry
+   * with the attribute marker provided, or -1 if the entry has no value for this
+   * attribute.
+   */
+  static int getCodeIndex(int attributeMarker, LexicalAttribute attribute) {
+    int attributeBit = attributeBitMap.get(attribute);
+    if ((attributeMarker & attributeBit) == 0)
+      return -1;
+    return Integer.bitCount(attributeMarker & (attributeBit - 1));
+  }
+
   @Override
   public boolean hasAttribute(LexicalAttribute attribute) {
     if (attribute == LexicalAttribute.Word || attribute == LexicalAttribute.Lemma)
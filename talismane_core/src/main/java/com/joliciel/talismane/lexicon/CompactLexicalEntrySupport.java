@@ -49,6 +49,18 @@ public class CompactLexicalEntrySupport implements Serializable {
     this.name = name;
   }
 
+  /**
+   * Construct a support sharing the reference data of an existing support, so
+   * that the attribute codes of its entries remain valid.
+   */
+  protected CompactLexicalEntrySupport(CompactLexicalEntrySupport other) {
+    this.name = other.name;
+    this.attributeStringToByteMap = other.attributeStringToByteMap;
+    this.attributeByteToStringMap = other.attributeByteToStringMap;
+    this.nameToAttributeMap = other.nameToAttributeMap;
+    this.otherAttributeIndex = other.otherAttributeIndex;
+  }
+
   public byte getOrCreateAttributeCode(LexicalAttribute attribute, String value) {
     Map<String, Byte> attributeCodes = attributeStringToByteMap.get(attribute);
     Map<Byte, String> attributeValues = attributeByteToStringMap.get(attribute);
@@ -114,8 +114,11 @@ public class LexiconReader {
   public static void main(String[] args) throws Exception {
     OptionParser parser = new OptionParser();
     parser.accepts("serializeLexicon", "serialize lexicon");
-    OptionSpec<File> lexiconPropsFileOption = parser.accepts("lexiconProps", "the lexicon properties file").withRequiredArg().required().ofType(File.class);
+    OptionSpec<File> lexiconPropsFileOption = parser.accepts("lexiconProps", "the lexicon properties file").withRequiredArg().ofType(File.class);
+    OptionSpec<File> lexiconFileOption = parser.accepts("lexicon", "an existing serialized lexicon zip file, to convert to the mapped layout")
+        .requiredUnless(lexiconPropsFileOption).withRequiredArg().ofType(File.class);
     OptionSpec<File> outFileOption = parser.accepts("outFile", "where to write the lexicon").withRequiredArg().required().ofType(File.class);
+    parser.accepts("mapped", "write the lexicon to the outFile directory in the mapped layout, rather than to a zip file");
 
     if (args.length <= 1) {
       parser.printHelpOn(System.out);
@@ -124,7 +127,6 @@ public class LexiconReader {
 
     OptionSet options = parser.parse(args);
 
-    File lexiconPropsFile = options.valueOf(lexiconPropsFileOption);
     File outFile = options.valueOf(outFileOption);
 
     Config config = ConfigFactory.load();
@@ -132,8 +134,16 @@ public class LexiconReader {
     TalismaneSession session = new TalismaneSession(config, sessionId);
 
     LexiconReader lexiconSerializer = new LexiconReader(session);
-    List<PosTaggerLexicon> lexicons = lexiconSerializer.readLexicons(lexiconPropsFile);
-    lexiconSerializer.serializeLexicons(lexicons, outFile);
+    List<PosTaggerLexicon> lexicons = null;
+    if (options.has(lexiconPropsFileOption))
+      lexicons = lexiconSerializer.readLexicons(options.valueOf(lexiconPropsFileOption));
+    else
+      lexicons = lexiconSerializer.deserializeLexicons(options.valueOf(lexiconFileOption));
+
+    if (options.has("mapped"))
+      lexiconSerializer.writeMappedLexicons(lexicons, outFile);
+    else
+      lexiconSerializer.serializeLexicons(lexicons, outFile);
   }
 
   public LexiconReader(TalismaneSession session) {
@@ -326,6 +336,49 @@ public class LexiconReader {
     }
   }
 
+  /**
+   * Write a set of lexicons to a directory in the mapped layout, with one
+   * subdirectory per lexicon, as described in {@link MappedLexicon}, and a
+   * lexicons.txt file giving their order.
+   * 
+   * @throws TalismaneException
+   *           if any of the lexicons is not a {@link LexiconFile}
+   */
+  public void writeMappedLexicons(List<PosTaggerLexicon> lexicons, File outDir) throws IOException, TalismaneException {
+    outDir.mkdirs();
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(outDir, "lexicons.txt"), false), "UTF-8"))) {
+      for (PosTaggerLexicon lexicon : lexicons) {
+        writer.write(lexicon.getName() + "\n");
+      }
+    }
+
+    for (PosTaggerLexicon lexicon : lexicons) {
+      if (!(lexicon instanceof LexiconFile))
+        throw new TalismaneException("Cannot write lexicon " + lexicon.getName() + " in the mapped layout: " + lexicon.getClass().getSimpleName());
+      LOG.debug("Writing mapped lexicon: " + lexicon.getName());
+      MappedLexicon.write((LexiconFile) lexicon, new File(outDir, lexicon.getName()));
+    }
+  }
+
+  /**
+   * Read a set of lexicons written by
+   * {@link #writeMappedLexicons(List, File)}.
+   */
+  public List<PosTaggerLexicon> readMappedLexicons(File lexiconDir) throws ClassNotFoundException, IOException {
+    List<PosTaggerLexicon> lexicons = new ArrayList<PosTaggerLexicon>();
+    try (Scanner scanner = new Scanner(new BufferedReader(new InputStreamReader(new FileInputStream(new File(lexiconDir, "lexicons.txt")), "UTF-8")))) {
+      while (scanner.hasNextLine()) {
+        String lexiconName = scanner.nextLine();
+        if (lexiconName.length() == 0)
+          continue;
+        MappedLexicon lexicon = MappedLexicon.load(new File(lexiconDir, lexiconName));
+        lexicon.setTalismaneSession(session);
+        lexicons.add(lexicon);
+      }
+    }
+    return lexicons;
+  }
+
   public List<PosTaggerLexicon> deserializeLexicons(File lexiconFile) throws ClassNotFoundException, UnsupportedEncodingException, IOException {
     if (!lexiconFile.exists())
       throw new RuntimeException("LexiconFile does not exist: " + lexiconFile.getPath());
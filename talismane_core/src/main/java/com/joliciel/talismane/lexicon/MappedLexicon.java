@@ -0,0 +1,479 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.lexicon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.joliciel.talismane.NeedsTalismaneSession;
+import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.MappedStringTable;
+import com.joliciel.talismane.posTagger.PosTag;
+import com.joliciel.talismane.posTagger.PosTagSet;
+import com.joliciel.talismane.posTagger.UnknownPosTagException;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * <p>
+ * A read-only lexicon stored in a directory of memory-mapped files, which is
+ * loaded almost instantly and whose entries are not held on the heap, so that
+ * several processes using the same lexicon share the same pages. It is built
+ * from an existing {@link LexiconFile} by {@link #write(LexiconFile, File)},
+ * and reuses its attribute codes.
+ * </p>
+ * <p>
+ * The directory contains:
+ * </p>
+ * <ul>
+ * <li><b>words.bin</b>: the sorted word forms, as a {@link MappedStringTable}
+ * giving the index of each word's first entry. Entries are stored in word
+ * order, so that a word's entries run until the next word's first entry.</li>
+ * <li><b>lemmas.bin</b>: the sorted lemmas, as a {@link MappedStringTable}
+ * giving the position of each lemma's first entry index in
+ * lemmaEntries.bin.</li>
+ * <li><b>lemmaEntries.bin</b>: the entry count followed by the index of each
+ * entry in lemma order.</li>
+ * <li><b>entries.bin</b>: the entry count and maximum attribute code count,
+ * followed by a fixed-size record per entry: the word's position in
+ * words.bin, the lemma's position in lemmas.bin, the attribute marker and the
+ * index of the entry's pos-tags (see below), all as ints, followed by the
+ * attribute codes of the entry, as in {@link CompactLexicalEntry}.</li>
+ * <li><b>lexicon.obj</b>: this object serialised, containing the attribute
+ * values for each code, the pos-tag mapper, and the distinct sets of pos-tags
+ * assigned by the pos-tag mapper to the entries.</li>
+ * </ul>
+ * <p>
+ * All binary files are little-endian. Looking up the pos-tags for a word
+ * doesn't construct any lexical entries. Thread-safe.
+ * </p>
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class MappedLexicon extends CompactLexicalEntrySupport implements PosTaggerLexicon, NeedsTalismaneSession {
+  private static final long serialVersionUID = 1L;
+  private static final int ENTRY_HEADER_SIZE = 8;
+  private static final int ENTRY_FIXED_SIZE = 16;
+
+  private PosTagSet posTagSet;
+  private PosTagMapper posTagMapper;
+  private List<Set<PosTag>> posTagSets;
+
+  private transient TalismaneSession talismaneSession;
+  private transient MappedStringTable words;
+  private transient MappedStringTable lemmas;
+  private transient ByteBuffer entries;
+  private transient ByteBuffer lemmaEntries;
+  private transient int entryCount;
+  private transient int recordSize;
+  private transient PosTag[] categoryPosTags;
+
+  private MappedLexicon(LexiconFile lexicon, List<Set<PosTag>> posTagSets) {
+    super(lexicon);
+    this.posTagSet = lexicon.getPosTagSet();
+    this.posTagMapper = lexicon.getPosTagMapper();
+    this.posTagSets = posTagSets;
+  }
+
+  /**
+   * Write an existing lexicon to a directory in the mapped layout.
+   *
+   * @throws TalismaneException
+   *           if the lexicon contains entries from another lexicon
+   */
+  public static void write(LexiconFile lexicon, File directory) throws IOException, TalismaneException {
+    directory.mkdirs();
+
+    TreeSet<String> wordSet = new TreeSet<>();
+    TreeSet<String> lemmaSet = new TreeSet<>();
+    Iterator<LexicalEntry> allEntries = lexicon.getAllEntries();
+    while (allEntries.hasNext()) {
+      LexicalEntry entry = allEntries.next();
+      wordSet.add(entry.getWord());
+      lemmaSet.add(entry.getLemma());
+    }
+
+    TObjectIntMap<String> wordPositions = new TObjectIntHashMap<>(wordSet.size(), 0.7f, -1);
+    for (String word : wordSet)
+      wordPositions.put(word, wordPositions.size());
+    TObjectIntMap<String> lemmaPositions = new TObjectIntHashMap<>(lemmaSet.size(), 0.7f, -1);
+    for (String lemma : lemmaSet)
+      lemmaPositions.put(lemma, lemmaPositions.size());
+
+    // entries in word order
+    List<CompactLexicalEntry> entryList = new ArrayList<>();
+    Map<LexicalEntry, Integer> entryIndexes = new IdentityHashMap<>();
+    TObjectIntMap<String> wordStarts = new TObjectIntHashMap<>(wordSet.size(), 0.7f, -1);
+    int codeCount = 0;
+    for (String word : wordSet) {
+      wordStarts.put(word, entryList.size());
+      for (LexicalEntry entry : lexicon.getEntries(word)) {
+        if (!(entry instanceof CompactLexicalEntry) || ((CompactLexicalEntry) entry).getLexicalEntrySupport() != lexicon)
+          throw new TalismaneException("Lexicon " + lexicon.getName() + " contains an entry from another lexicon: " + entry);
+        CompactLexicalEntry compactEntry = (CompactLexicalEntry) entry;
+        entryIndexes.put(entry, entryList.size());
+        entryList.add(compactEntry);
+        codeCount = Math.max(codeCount, compactEntry.getAttributeCodes().length);
+      }
+    }
+    MappedStringTable.write(new File(directory, "words.bin"), wordStarts);
+
+    TObjectIntMap<String> lemmaStarts = new TObjectIntHashMap<>(lemmaSet.size(), 0.7f, -1);
+    List<Integer> lemmaEntryList = new ArrayList<>(entryList.size());
+    for (String lemma : lemmaSet) {
+      lemmaStarts.put(lemma, lemmaEntryList.size());
+      for (LexicalEntry entry : lexicon.getEntriesForLemma(lemma))
+        lemmaEntryList.add(entryIndexes.get(entry));
+    }
+    MappedStringTable.write(new File(directory, "lemmas.bin"), lemmaStarts);
+
+    ByteBuffer lemmaEntryBuffer = ByteBuffer.allocate(4 + 4 * lemmaEntryList.size()).order(ByteOrder.LITTLE_ENDIAN);
+    lemmaEntryBuffer.putInt(lemmaEntryList.size());
+    for (int entryIndex : lemmaEntryList)
+      lemmaEntryBuffer.putInt(entryIndex);
+    writeBuffer(new File(directory, "lemmaEntries.bin"), lemmaEntryBuffer);
+
+    // pos-tags are only pre-calculated when they depend on a mapper
+    List<Set<PosTag>> posTagSets = null;
+    Map<Set<PosTag>, Integer> posTagSetIndexes = null;
+    if (lexicon.getPosTagMapper() != null) {
+      posTagSets = new ArrayList<>();
+      posTagSetIndexes = new HashMap<>();
+    }
+
+    long fileSize = ENTRY_HEADER_SIZE + (long) entryList.size() * (ENTRY_FIXED_SIZE + codeCount);
+    if (fileSize > Integer.MAX_VALUE)
+      throw new TalismaneException("Lexicon " + lexicon.getName() + " too large to map: " + fileSize + " bytes");
+    ByteBuffer entryBuffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+    entryBuffer.putInt(entryList.size());
+    entryBuffer.putInt(codeCount);
+    for (CompactLexicalEntry entry : entryList) {
+      int posTagSetIndex = -1;
+      if (posTagSets != null) {
+        Set<PosTag> posTags = new TreeSet<>(lexicon.getPosTagMapper().getPosTags(entry));
+        Integer index = posTagSetIndexes.get(posTags);
+        if (index == null) {
+          index = posTagSets.size();
+          posTagSets.add(posTags);
+          posTagSetIndexes.put(posTags, index);
+        }
+        posTagSetIndex = index;
+      }
+      entryBuffer.putInt(wordPositions.get(entry.getWord()));
+      entryBuffer.putInt(lemmaPositions.get(entry.getLemma()));
+      entryBuffer.putInt(entry.getAttributeMarker());
+      entryBuffer.putInt(posTagSetIndex);
+      byte[] codes = entry.getAttributeCodes();
+      entryBuffer.put(codes);
+      for (int i = codes.length; i < codeCount; i++)
+        entryBuffer.put((byte) 0);
+    }
+    writeBuffer(new File(directory, "entries.bin"), entryBuffer);
+
+    MappedLexicon mappedLexicon = new MappedLexicon(lexicon, posTagSets);
+    try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, "lexicon.obj"), false)))) {
+      oos.writeObject(mappedLexicon);
+    }
+  }
+
+  private static void writeBuffer(File file, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    file.delete();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    }
+  }
+
+  /**
+   * Load a lexicon written by {@link #write(LexiconFile, File)}.
+   */
+  public static MappedLexicon load(File directory) throws IOException, ClassNotFoundException {
+    MappedLexicon lexicon = null;
+    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(new File(directory, "lexicon.obj"))))) {
+      lexicon = (MappedLexicon) ois.readObject();
+    }
+    lexicon.words = new MappedStringTable(new File(directory, "words.bin"));
+    lexicon.lemmas = new MappedStringTable(new File(directory, "lemmas.bin"));
+    lexicon.entries = map(new File(directory, "entries.bin"));
+    lexicon.lemmaEntries = map(new File(directory, "lemmaEntries.bin"));
+    lexicon.entryCount = lexicon.entries.getInt(0);
+    lexicon.recordSize = ENTRY_FIXED_SIZE + lexicon.entries.getInt(4);
+    return lexicon;
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+  }
+
+  private int getRecordStart(int entryIndex) {
+    return ENTRY_HEADER_SIZE + entryIndex * recordSize;
+  }
+
+  /**
+   * The index of the first entry for the word at a given position in
+   * words.bin, or the entry count if the position is the word count.
+   */
+  private int getWordStart(int wordPosition) {
+    return wordPosition < words.size() ? words.getValue(wordPosition) : entryCount;
+  }
+
+  private int getLemmaStart(int lemmaPosition) {
+    return lemmaPosition < lemmas.size() ? lemmas.getValue(lemmaPosition) : lemmaEntries.getInt(0);
+  }
+
+  private int getLemmaEntryIndex(int i) {
+    return lemmaEntries.getInt(4 + 4 * i);
+  }
+
+  private CompactLexicalEntry getEntry(int entryIndex, String word, String lemma) {
+    int start = this.getRecordStart(entryIndex);
+    if (word == null)
+      word = words.getString(entries.getInt(start));
+    if (lemma == null)
+      lemma = lemmas.getString(entries.getInt(start + 4));
+    int attributeMarker = entries.getInt(start + 8);
+    byte[] attributeCodes = new byte[Integer.bitCount(attributeMarker)];
+    for (int i = 0; i < attributeCodes.length; i++)
+      attributeCodes[i] = entries.get(start + ENTRY_FIXED_SIZE + i);
+    return new CompactLexicalEntry(this, word, lemma, attributeMarker, attributeCodes);
+  }
+
+  /**
+   * The pos-tag corresponding to an entry's category, when there is no
+   * pos-tag mapper.
+   */
+  private PosTag getCategoryPosTag(int entryIndex) throws UnknownPosTagException {
+    int start = this.getRecordStart(entryIndex);
+    int codeIndex = CompactLexicalEntry.getCodeIndex(entries.getInt(start + 8), LexicalAttribute.Category);
+    byte code = codeIndex < 0 ? 0 : entries.get(start + ENTRY_FIXED_SIZE + codeIndex);
+    PosTag[] categoryPosTags = this.categoryPosTags;
+    if (categoryPosTags == null) {
+      categoryPosTags = new PosTag[256];
+      this.categoryPosTags = categoryPosTags;
+    }
+    PosTag posTag = categoryPosTags[code & 0xFF];
+    if (posTag == null) {
+      posTag = this.getPosTagSet().getPosTag(this.getAttributeValue(LexicalAttribute.Category, code));
+      categoryPosTags[code & 0xFF] = posTag;
+    }
+    return posTag;
+  }
+
+  /**
+   * Whether a given pos-tag is one of the entry's pos-tags.
+   */
+  private boolean hasPosTag(int entryIndex, PosTag posTag, String word, String lemma) {
+    if (posTagMapper == null) {
+      try {
+        return this.getCategoryPosTag(entryIndex).equals(posTag);
+      } catch (UnknownPosTagException e) {
+        return false;
+      }
+    } else if (posTagSets != null) {
+      return posTagSets.get(entries.getInt(this.getRecordStart(entryIndex) + 12)).contains(posTag);
+    } else {
+      return posTagMapper.getPosTags(this.getEntry(entryIndex, word, lemma)).contains(posTag);
+    }
+  }
+
+  @Override
+  public List<LexicalEntry> getEntries(String word) {
+    int wordPosition = words.indexOf(word);
+    if (wordPosition < 0)
+      return Collections.emptyList();
+    int start = this.getWordStart(wordPosition);
+    int end = this.getWordStart(wordPosition + 1);
+    List<LexicalEntry> entryList = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++)
+      entryList.add(this.getEntry(i, word, null));
+    return entryList;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesForLemma(String lemma) {
+    int lemmaPosition = lemmas.indexOf(lemma);
+    if (lemmaPosition < 0)
+      return Collections.emptyList();
+    int start = this.getLemmaStart(lemmaPosition);
+    int end = this.getLemmaStart(lemmaPosition + 1);
+    List<LexicalEntry> entryList = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++)
+      entryList.add(this.getEntry(this.getLemmaEntryIndex(i), null, lemma));
+    return entryList;
+  }
+
+  @Override
+  public Set<PosTag> findPossiblePosTags(String word) throws TalismaneException {
+    // Using TreeSet as set must be ordered
+    Set<PosTag> posTags = new TreeSet<PosTag>();
+    int wordPosition = words.indexOf(word);
+    if (wordPosition < 0)
+      return posTags;
+    int start = this.getWordStart(wordPosition);
+    int end = this.getWordStart(wordPosition + 1);
+    for (int i = start; i < end; i++) {
+      if (posTagMapper == null) {
+        try {
+          posTags.add(this.getCategoryPosTag(i));
+        } catch (UnknownPosTagException upte) {
+          throw new TalismaneException("Unknown postag " + upte.getPosTagCode() + " for word: " + word + " in lexicon " + this.getName());
+        }
+      } else if (posTagSets != null) {
+        posTags.addAll(posTagSets.get(entries.getInt(this.getRecordStart(i) + 12)));
+      } else {
+        posTags.addAll(posTagMapper.getPosTags(this.getEntry(i, word, null)));
+      }
+    }
+    return posTags;
+  }
+
+  @Override
+  public List<LexicalEntry> findLexicalEntries(String word, PosTag posTag) {
+    List<LexicalEntry> entriesForPosTag = new ArrayList<LexicalEntry>();
+    int wordPosition = words.indexOf(word);
+    if (wordPosition < 0)
+      return entriesForPosTag;
+    int start = this.getWordStart(wordPosition);
+    int end = this.getWordStart(wordPosition + 1);
+    for (int i = start; i < end; i++) {
+      if (this.hasPosTag(i, posTag, word, null))
+        entriesForPosTag.add(this.getEntry(i, word, null));
+    }
+    return entriesForPosTag;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesForLemma(String lemma, PosTag posTag) {
+    List<LexicalEntry> entriesForPosTag = new ArrayList<LexicalEntry>();
+    int lemmaPosition = lemmas.indexOf(lemma);
+    if (lemmaPosition < 0)
+      return entriesForPosTag;
+    int start = this.getLemmaStart(lemmaPosition);
+    int end = this.getLemmaStart(lemmaPosition + 1);
+    for (int i = start; i < end; i++) {
+      int entryIndex = this.getLemmaEntryIndex(i);
+      if (this.hasPosTag(entryIndex, posTag, null, lemma))
+        entriesForPosTag.add(this.getEntry(entryIndex, null, lemma));
+    }
+    return entriesForPosTag;
+  }
+
+  @Override
+  public List<LexicalEntry> getEntriesMatchingCriteria(LexicalEntry lexicalEntry, PosTag posTag, String gender, String number) {
+    List<LexicalEntry> lemmaEntries = null;
+    if (posTag != null)
+      lemmaEntries = this.getEntriesForLemma(lexicalEntry.getLemma(), posTag);
+    else
+      lemmaEntries = this.getEntriesForLemma(lexicalEntry.getLemma());
+    List<LexicalEntry> entryList = new ArrayList<LexicalEntry>();
+    for (LexicalEntry lemmaEntry : lemmaEntries) {
+      if ((number == null || number.length() == 0 || lemmaEntry.getNumber().contains(number))
+          && (gender == null || gender.length() == 0 || lemmaEntry.getGender().contains(gender))) {
+        entryList.add(lemmaEntry);
+      }
+    }
+
+    return entryList;
+  }
+
+  @Override
+  public Iterator<LexicalEntry> getAllEntries() {
+    return new Iterator<LexicalEntry>() {
+      int i = 0;
+
+      @Override
+      public boolean hasNext() {
+        return i < entryCount;
+      }
+
+      @Override
+      public LexicalEntry next() {
+        if (i >= entryCount)
+          throw new NoSuchElementException();
+        return getEntry(i++, null, null);
+      }
+    };
+  }
+
+  @Override
+  public PosTagSet getPosTagSet() {
+    if (posTagSet == null && talismaneSession != null) {
+      posTagSet = talismaneSession.getPosTagSet();
+    }
+    return posTagSet;
+  }
+
+  @Override
+  public void setPosTagSet(PosTagSet posTagSet) {
+    this.posTagSet = posTagSet;
+    this.categoryPosTags = null;
+  }
+
+  @Override
+  public PosTagMapper getPosTagMapper() {
+    return posTagMapper;
+  }
+
+  /**
+   * Replacing the pos-tag mapper means the pos-tags pre-calculated when the
+   * lexicon was written can no longer be used, so that looking up pos-tags
+   * requires constructing the lexical entries.
+   */
+  @Override
+  public void setPosTagMapper(PosTagMapper posTagMapper) {
+    this.posTagMapper = posTagMapper;
+    this.posTagSets = null;
+  }
+
+  @Override
+  public TalismaneSession getTalismaneSession() {
+    return talismaneSession;
+  }
+
+  @Override
+  public void setTalismaneSession(TalismaneSession talismaneSession) {
+    this.talismaneSession = talismaneSession;
+  }
+}
@@ -33,7 +33,7 @@ public abstract class AbstractTransition implements Transition {
       if (LOG.isTraceEnabled())
         LOG.trace("Applying " + this.getCode());
       this.applyInternal(configuration);
-      configuration.getTransitions().add(this);
+      configuration.addTransition(this);
     } else
       throw new InvalidTransitionException(this, configuration);
   }
@@ -28,7 +28,7 @@ class DependencyCountComparisonStrategy implements ParseComparisonStrategy {
 
   @Override
   public int getComparisonIndex(ParseConfiguration configuration) {
-    return configuration.getDependencies().size() + 1;
+    return configuration.getDependencyCount() + 1;
   }
 
 }
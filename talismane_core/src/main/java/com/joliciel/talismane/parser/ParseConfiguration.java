@@ -18,7 +18,6 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.parser;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
@@ -38,6 +37,7 @@ import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.Solution;
 import com.joliciel.talismane.machineLearning.features.Feature;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.FeatureResultCache;
 import com.joliciel.talismane.machineLearning.features.HasFeatureCache;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.parser.features.ParseConfigurationWrapper;
@@ -63,31 +63,38 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
   private boolean scoreCalculated = false;
   private boolean useGeometricMeanForProbs = true;
 
-  private Deque<PosTaggedToken> buffer;
-  private Deque<PosTaggedToken> stack;
-  private List<Transition> transitions;
+  // the stack, buffer, transitions, decisions and arcs share their structure
+  // with the configuration they were copied from
+  private PersistentDeque<PosTaggedToken> buffer;
+  private PersistentDeque<PosTaggedToken> stack;
+  private PersistentList<Transition> transitions;
 
   // Projective dependency information
-  private Set<DependencyArc> dependencies;
+  private PersistentList<DependencyArc> arcs;
+  private PersistentList<Transition> arcTransitions;
+  private Set<DependencyArc> dependencies = null;
   private Map<PosTaggedToken, DependencyArc> governingDependencyMap = null;
   private Map<PosTaggedToken, List<PosTaggedToken>> leftDependentMap = null;
   private Map<PosTaggedToken, List<PosTaggedToken>> rightDependentMap = null;
   private Map<PosTaggedToken, List<PosTaggedToken>> dependentMap = null;
   private Map<PosTaggedToken, Map<String, List<PosTaggedToken>>> dependentByLabelMap = null;
-  private Map<PosTaggedToken, Transition> dependentTransitionMap = new HashMap<PosTaggedToken, Transition>();
 
   // Non-projective equivalents to above
   private Set<DependencyArc> dependenciesNonProj;
 
   private DependencyNode parseTree = null;
 
-  private List<Decision> decisions = new ArrayList<Decision>();
+  private PersistentList<Decision> decisions;
+  // running sums over the decisions, so that scoring is independent of the
+  // number of decisions
+  private double decisionProbabilityLogSum = 0;
+  private double decisionScoreSum = 0;
   private int lastProbApplied = 0;
   private List<Solution> underlyingSolutions = new ArrayList<Solution>();
   @SuppressWarnings("rawtypes")
   private ScoringStrategy scoringStrategy;
 
-  private Map<String, FeatureResult<?>> featureCache = new HashMap<String, FeatureResult<?>>();
+  private FeatureResultCache featureCache = new FeatureResultCache();
 
   private long createDate = System.currentTimeMillis();
 
@@ -99,33 +106,41 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
     PosTaggedToken rootToken = posTagSequence.prependRoot();
     this.underlyingSolutions.add(this.posTagSequence);
 
-    this.buffer = new ArrayDeque<PosTaggedToken>(posTagSequence.size());
-    for (PosTaggedToken posTaggedToken : posTagSequence)
-      this.buffer.add(posTaggedToken);
-    this.buffer.remove(rootToken);
+    List<PosTaggedToken> bufferTokens = new ArrayList<PosTaggedToken>(posTagSequence);
+    bufferTokens.remove(rootToken);
+    this.buffer = new PersistentDeque<PosTaggedToken>(bufferTokens);
 
-    this.stack = new ArrayDeque<PosTaggedToken>();
+    this.stack = new PersistentDeque<PosTaggedToken>();
     this.stack.push(rootToken);
 
-    this.dependencies = new TreeSet<DependencyArc>();
-    this.transitions = new ArrayList<Transition>();
+    this.arcs = new PersistentList<DependencyArc>();
+    this.arcTransitions = new PersistentList<Transition>();
+    this.transitions = new PersistentList<Transition>();
+    this.decisions = new PersistentList<Decision>();
     this.scoringStrategy = new GeometricMeanScoringStrategy();
   }
 
   /**
-   * Clones an existing configuration.
+   * Clones an existing configuration. The clone shares its stack, buffer,
+   * transitions, decisions and dependency arcs with the existing
+   * configuration, so that cloning is O(1), and neither configuration is
+   * affected by later changes to the other.
    */
   public ParseConfiguration(ParseConfiguration history) {
-    this.transitions = new ArrayList<Transition>(history.getTransitions());
-    this.dependencies = new TreeSet<DependencyArc>(history.getDependenciesInternal());
+    this.transitions = new PersistentList<Transition>(history.transitions);
+    this.arcs = new PersistentList<DependencyArc>(history.arcs);
+    this.arcTransitions = new PersistentList<Transition>(history.arcTransitions);
+    if (history.dependencies != null)
+      this.dependencies = new TreeSet<DependencyArc>(history.dependencies);
     this.posTagSequence = history.getPosTagSequence();
     posTagSequence.prependRoot();
     this.underlyingSolutions.add(this.posTagSequence);
-    this.buffer = new ArrayDeque<PosTaggedToken>(history.getBuffer());
-    this.stack = new ArrayDeque<PosTaggedToken>(history.getStack());
-    this.dependentTransitionMap = new HashMap<PosTaggedToken, Transition>(history.getDependentTransitionMap());
+    this.buffer = new PersistentDeque<PosTaggedToken>(history.buffer);
+    this.stack = new PersistentDeque<PosTaggedToken>(history.stack);
 
-    this.decisions = new ArrayList<Decision>(history.getDecisions());
+    this.decisions = new PersistentList<Decision>(history.decisions);
+    this.decisionProbabilityLogSum = history.decisionProbabilityLogSum;
+    this.decisionScoreSum = history.decisionScoreSum;
     this.lastProbApplied = history.getLastProbApplied();
     this.scoringStrategy = history.getScoringStrategy();
   }
@@ -197,22 +212,49 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
 
   /**
    * The list of transitions which generated the present parse configuration.
+   * The list is unmodifiable: transitions are added via
+   * {@link Transition#apply(ParseConfiguration)}.
    */
   public List<Transition> getTransitions() {
-    return transitions;
+    return transitions.asList();
   }
 
-  Set<DependencyArc> getDependenciesInternal() {
-    return dependencies;
+  void addTransition(Transition transition) {
+    this.transitions.add(transition);
   }
 
   /**
    * A set of dependency arcs defined by the current configuration.
    */
   public Set<DependencyArc> getDependencies() {
+    if (dependencies == null) {
+      // from now on, this set is the reference for this configuration's arcs
+      dependencies = new TreeSet<DependencyArc>();
+      for (DependencyArc arc : arcs.newestFirst())
+        dependencies.add(arc);
+    }
     return dependencies;
   }
 
+  /**
+   * The number of dependency arcs defined by the current configuration.
+   */
+  public int getDependencyCount() {
+    if (dependencies != null)
+      return dependencies.size();
+    return arcs.size();
+  }
+
+  /**
+   * The current arcs, without building a dependency set if it hasn't been
+   * requested yet.
+   */
+  private Iterable<DependencyArc> getArcs() {
+    if (dependencies != null)
+      return dependencies;
+    return arcs.newestFirst();
+  }
+
   /**
    * A set of potentially non-projective dependency arcs defined by the current
    * configuration, typically because they were read from a manually annotated
@@ -221,7 +263,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
    */
   public Set<DependencyArc> getNonProjectiveDependencies() {
     if (dependenciesNonProj == null)
-      return dependencies;
+      return this.getDependencies();
     return dependenciesNonProj;
   }
 
@@ -230,7 +272,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
    */
   public Set<DependencyArc> getRealDependencies() {
     Set<DependencyArc> realDependencies = new TreeSet<DependencyArc>();
-    for (DependencyArc arc : dependencies) {
+    for (DependencyArc arc : this.getArcs()) {
       if (arc.getHead().getTag().equals(PosTag.ROOT_POS_TAG) && (arc.getLabel() == null || arc.getLabel().length() == 0)) {
         // do nothing
       } else {
@@ -268,8 +310,13 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
    */
   public Transition getTransition(DependencyArc arc) {
     PosTaggedToken dependent = arc.getDependent();
-    Transition transition = this.dependentTransitionMap.get(dependent);
-    return transition;
+    Iterator<Transition> arcTransitionIterator = arcTransitions.newestFirst().iterator();
+    for (DependencyArc oneArc : arcs.newestFirst()) {
+      Transition transition = arcTransitionIterator.next();
+      if (oneArc.getDependent().equals(dependent))
+        return transition;
+    }
+    return null;
   }
 
   /**
@@ -330,7 +377,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
       Map<PosTaggedToken, Set<PosTaggedToken>> rightDependentSetMap = new HashMap<PosTaggedToken, Set<PosTaggedToken>>();
       Map<PosTaggedToken, Map<String, Set<PosTaggedToken>>> dependentSetByLabelMap = new HashMap<PosTaggedToken, Map<String, Set<PosTaggedToken>>>();
 
-      for (DependencyArc arc : this.dependencies) {
+      for (DependencyArc arc : this.getArcs()) {
         this.governingDependencyMap.put(arc.getDependent(), arc);
         Map<PosTaggedToken, Set<PosTaggedToken>> dependentMap = null;
         if (arc.getDependent().getToken().getIndex() < arc.getHead().getToken().getIndex())
@@ -408,8 +455,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
    */
   public DependencyArc addDependency(PosTaggedToken head, PosTaggedToken dependent, String label, Transition transition) throws CircularDependencyException {
     DependencyArc arc = new DependencyArc(head, dependent, label);
-    this.addDependency(arc);
-    this.dependentTransitionMap.put(dependent, transition);
+    this.addDependency(arc, transition);
 
     // calculate probability based on decisions
     if (LOG.isTraceEnabled())
@@ -417,8 +463,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
 
     double probLog = 0.0;
     int numDecisions = 0;
-    for (int i = lastProbApplied; i < this.decisions.size(); i++) {
-      Decision decision = decisions.get(i);
+    for (Decision decision : this.decisions.getLast(this.decisions.size() - lastProbApplied)) {
       probLog += decision.getProbabilityLog();
       if (LOG.isTraceEnabled()) {
         LOG.trace(decision.getOutcome() + ", *= " + decision.getProbability());
@@ -446,20 +491,37 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
    * @throws CircularDependencyException
    *           if this would create a circular dependency.
    */
-  void addDependency(DependencyArc arc) throws CircularDependencyException {
+  void addDependency(DependencyArc arc, Transition transition) throws CircularDependencyException {
     PosTaggedToken ancestor = arc.getHead();
     while (ancestor != null) {
       if (ancestor.equals(arc.getDependent())) {
         throw new CircularDependencyException(this, arc.getHead(), arc.getDependent());
       }
-      ancestor = this.getHead(ancestor);
+      ancestor = this.findHead(ancestor);
     }
 
-    this.dependencies.add(arc);
+    this.arcs.add(arc);
+    this.arcTransitions.add(transition);
+    if (this.dependencies != null)
+      this.dependencies.add(arc);
     // force update of dependency maps
     this.governingDependencyMap = null;
   }
 
+  /**
+   * Like {@link #getHead(PosTaggedToken)}, but without building the dependency
+   * maps, which would be thrown away as soon as the next arc is added.
+   */
+  private PosTaggedToken findHead(PosTaggedToken dependent) {
+    if (this.governingDependencyMap != null)
+      return this.getHead(dependent);
+    for (DependencyArc arc : this.getArcs()) {
+      if (arc.getDependent().equals(dependent))
+        return arc.getHead();
+    }
+    return null;
+  }
+
   /**
    * Add the given dependency to the current configuration's non-projective
    * dependency set. This should only be used when reading a previously
@@ -513,17 +575,16 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
       sb.append(",...");
     sb.append("]");
     sb.append(" Deps[");
-    for (DependencyArc arc : this.dependencies) {
+    Set<DependencyArc> sortedArcs = new TreeSet<DependencyArc>();
+    for (DependencyArc arc : this.getArcs())
+      sortedArcs.add(arc);
+    for (DependencyArc arc : sortedArcs) {
       sb.append(arc.toString() + ",");
     }
     sb.append("]");
     return sb.toString();
   }
 
-  Map<PosTaggedToken, Transition> getDependentTransitionMap() {
-    return dependentTransitionMap;
-  }
-
   /**
    * Get the dependency tree represented by this parse configuration, where the
    * node returned is root.
@@ -555,7 +616,7 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
 
   @Override
   public List<Decision> getDecisions() {
-    return decisions;
+    return decisions.asList();
   }
 
   @Override
@@ -566,6 +627,23 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
   @Override
   public void addDecision(Decision decision) {
     this.decisions.add(decision);
+    this.decisionProbabilityLogSum += decision.getProbabilityLog();
+    this.decisionScoreSum += decision.getScore();
+  }
+
+  @Override
+  public int getDecisionCount() {
+    return decisions.size();
+  }
+
+  @Override
+  public double getDecisionProbabilityLogSum() {
+    return decisionProbabilityLogSum;
+  }
+
+  @Override
+  public double getDecisionScoreSum() {
+    return decisionScoreSum;
   }
 
   @Override
@@ -580,22 +658,13 @@ public final class ParseConfiguration implements Comparable<ParseConfiguration>,
   }
 
   @Override
-  @SuppressWarnings("unchecked")
-
   public <T, Y> FeatureResult<Y> getResultFromCache(Feature<T, Y> feature, RuntimeEnvironment env) {
-    FeatureResult<Y> result = null;
-
-    String key = feature.getName() + env.getKey();
-    if (this.featureCache.containsKey(key)) {
-      result = (FeatureResult<Y>) this.featureCache.get(key);
-    }
-    return result;
+    return this.featureCache.get(feature, env);
   }
 
   @Override
   public <T, Y> void putResultInCache(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
-    String key = feature.getName() + env.getKey();
-    this.featureCache.put(key, featureResult);
+    this.featureCache.put(feature, featureResult, env);
   }
 
   @Override
@@ -120,6 +120,9 @@ public interface ParseConfigurationProcessor extends Closeable {
           case with_comments:
             templateName = "parser_conll_template_with_comments.ftl";
             break;
+          case json:
+            templateName = "parser_template_json.ftl";
+            break;
           default:
             throw new RuntimeException("Unknown builtInTemplate for parser: " + builtInTemplate.name());
           }
@@ -31,28 +31,29 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.talismane.TalismaneException;
 import com.joliciel.talismane.machineLearning.ClassificationEvent;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.EventExtractor;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.parser.features.ParseConfigurationFeature;
 
 /**
- * A classification event stream for parse configurations.
+ * A classification event stream for parse configurations. Can also be used to
+ * extract the events for a single sentence, in a
+ * {@link ParallelClassificationEventStream}.
  * 
  * @author Assaf Urieli
  *
  */
-public class ParseEventStream implements ClassificationEventStream {
+public class ParseEventStream implements ClassificationEventStream, EventExtractor<ParseConfiguration> {
   private static final Logger LOG = LoggerFactory.getLogger(ParseEventStream.class);
 
   private final ParserAnnotatedCorpusReader corpusReader;
   private final Set<ParseConfigurationFeature<?>> parseFeatures;
   private final boolean skipImpossibleSentences;
 
-  ParseConfiguration targetConfiguration;
-  ParseConfiguration currentConfiguration;
-
-  int currentIndex;
-  int eventCount;
+  private List<ClassificationEvent> currentEvents;
+  private int currentIndex;
 
   public ParseEventStream(ParserAnnotatedCorpusReader corpusReader, Set<ParseConfigurationFeature<?>> parseFeatures, boolean skipImpossibleSentences) {
     this.corpusReader = corpusReader;
@@ -62,19 +63,33 @@ public class ParseEventStream implements ClassificationEventStream {
 
   @Override
   public boolean hasNext() throws TalismaneException, IOException {
-    while (targetConfiguration == null) {
-      try {
-        if (this.corpusReader.hasNextSentence()) {
+    while (currentEvents == null) {
+      ParseConfiguration targetConfiguration = this.nextTargetConfiguration();
+      if (targetConfiguration == null)
+        break;
+      currentEvents = this.getEvents(targetConfiguration);
+      currentIndex = 0;
+      if (currentIndex == currentEvents.size()) {
+        currentEvents = null;
+      }
+    }
 
-          targetConfiguration = this.corpusReader.nextConfiguration();
-          currentConfiguration = new ParseConfiguration(targetConfiguration.getPosTagSequence());
-          currentIndex = 0;
-          if (currentIndex == targetConfiguration.getTransitions().size()) {
-            targetConfiguration = null;
-          }
-        } else {
-          break;
-        }
+    if (currentEvents == null) {
+      LOG.debug("Event stream reading complete");
+    }
+    return currentEvents != null;
+  }
+
+  /**
+   * Read the next target configuration from the corpus, skipping impossible
+   * sentences if required, or return null if there are no more sentences.
+   */
+  public ParseConfiguration nextTargetConfiguration() throws TalismaneException, IOException {
+    while (true) {
+      try {
+        if (this.corpusReader.hasNextSentence())
+          return this.corpusReader.nextConfiguration();
+        return null;
       } catch (NonPredictableParseTreeException e) {
         if (skipImpossibleSentences) {
           LOG.error("Impossible sentence, skipping", e);
@@ -83,19 +98,32 @@ public class ParseEventStream implements ClassificationEventStream {
         throw e;
       }
     }
-
-    if (targetConfiguration == null) {
-      LOG.debug("Event stream reading complete");
-    }
-    return targetConfiguration != null;
   }
 
   @Override
   public ClassificationEvent next() throws TalismaneException, IOException {
     ClassificationEvent event = null;
     if (this.hasNext()) {
-      eventCount++;
-      LOG.debug("Event " + eventCount + ": " + currentConfiguration.toString());
+      event = currentEvents.get(currentIndex++);
+      if (currentIndex == currentEvents.size()) {
+        currentEvents = null;
+      }
+    }
+    return event;
+  }
+
+  /**
+   * Get the events for each transition leading to a target configuration, in
+   * order.
+   */
+  @Override
+  public List<ClassificationEvent> getEvents(ParseConfiguration targetConfiguration) throws TalismaneException {
+    List<Transition> transitions = targetConfiguration.getTransitions();
+    List<ClassificationEvent> events = new ArrayList<>(transitions.size());
+    ParseConfiguration currentConfiguration = new ParseConfiguration(targetConfiguration.getPosTagSequence());
+    for (Transition transition : transitions) {
+      if (LOG.isDebugEnabled())
+        LOG.debug("Event " + (events.size() + 1) + ": " + currentConfiguration.toString());
 
       List<FeatureResult<?>> parseFeatureResults = new ArrayList<FeatureResult<?>>();
       for (ParseConfigurationFeature<?> parseFeature : parseFeatures) {
@@ -109,20 +137,14 @@ public class ParseEventStream implements ClassificationEventStream {
         }
       }
 
-      Transition transition = targetConfiguration.getTransitions().get(currentIndex);
       String classification = transition.getCode();
-      event = new ClassificationEvent(parseFeatureResults, classification);
+      events.add(new ClassificationEvent(parseFeatureResults, classification));
 
-      // apply the transition and up the index
+      // apply the transition
       currentConfiguration = new ParseConfiguration(currentConfiguration);
       transition.apply(currentConfiguration);
-      currentIndex++;
-
-      if (currentIndex == targetConfiguration.getTransitions().size()) {
-        targetConfiguration = null;
-      }
     }
-    return event;
+    return events;
   }
 
   @Override
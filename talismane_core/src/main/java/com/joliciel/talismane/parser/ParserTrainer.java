@@ -41,6 +41,7 @@ import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
 import com.joliciel.talismane.machineLearning.MachineLearningModel;
 import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
 import com.joliciel.talismane.parser.features.ParseConfigurationFeature;
 import com.joliciel.talismane.parser.features.ParserFeatureParser;
 import com.joliciel.talismane.sentenceAnnotators.SentenceAnnotatorLoader;
@@ -96,7 +97,22 @@ public class ParserTrainer {
     Set<ParseConfigurationFeature<?>> features = featureParser.getFeatures(featureDescriptors);
 
     boolean skipImpossibleSentences = parserConfig.getBoolean("train.skip-impossible-sentences");
-    eventStream = new ParseEventStream(corpusReader, features, skipImpossibleSentences);
+    ParseEventStream parseEventStream = new ParseEventStream(corpusReader, features, skipImpossibleSentences);
+
+    Config machineLearningConfig = parserConfig.getConfig("train.machine-learning");
+    int featureThreads = machineLearningConfig.getInt("feature-threads");
+    if (featureThreads > 1) {
+      // each thread gets its own features, since features are not
+      // thread-safe
+      List<ParseEventStream> extractors = new ArrayList<>();
+      extractors.add(parseEventStream);
+      for (int i = 1; i < featureThreads; i++)
+        extractors.add(new ParseEventStream(corpusReader, new ParserFeatureParser(session).getFeatures(featureDescriptors), skipImpossibleSentences));
+      eventStream = new ParallelClassificationEventStream<ParseConfiguration>(parseEventStream::nextTargetConfiguration, extractors,
+          machineLearningConfig.getInt("sentences-in-flight"), parseEventStream::getAttributes);
+    } else {
+      eventStream = parseEventStream;
+    }
   }
 
   public ClassificationModel train() throws TalismaneException, IOException {
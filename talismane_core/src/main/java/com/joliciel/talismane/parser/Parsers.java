@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,7 +53,7 @@ public class Parsers {
   private static final Map<String, ClassificationModel> modelMap = new HashMap<>();
   private static final Map<String, Parser> parserMap = new HashMap<>();
 
-  public static Parser getParser(TalismaneSession session) throws IOException, TalismaneException, ClassNotFoundException {
+  public static synchronized Parser getParser(TalismaneSession session) throws IOException, TalismaneException, ClassNotFoundException {
     Parser parser = null;
     if (session.getSessionId() != null)
       parser = parserMap.get(session.getSessionId());
@@ -67,9 +66,8 @@ public class Parsers {
       LOG.debug("Getting parser model from " + modelFilePath);
       ClassificationModel model = modelMap.get(modelFilePath);
       if (model == null) {
-        InputStream tokeniserModelFile = ConfigUtils.getFileFromConfig(config, configPath);
         MachineLearningModelFactory factory = new MachineLearningModelFactory();
-        model = factory.getClassificationModel(new ZipInputStream(tokeniserModelFile));
+        model = factory.getClassificationModel(config, configPath);
         modelMap.put(modelFilePath, model);
       }
 
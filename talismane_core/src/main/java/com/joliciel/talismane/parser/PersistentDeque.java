@@ -0,0 +1,287 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.parser;
+
+import java.util.AbstractCollection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A stack stored as an immutable linked list of nodes, so that a copy shares
+ * all of its nodes with the original and costs O(1) to create. Operations on
+ * the head of the deque (push, pop, peek and their Deque equivalents) are
+ * O(1), and never affect any other copy. Operations on the tail of the deque
+ * that would modify it are not supported.<br/>
+ * <br/>
+ * Used for the stack and buffer of a {@link ParseConfiguration}, which are
+ * copied for each transition tested during a beam search.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PersistentDeque<E> extends AbstractCollection<E>implements Deque<E> {
+  private static final class Node<E> {
+    private final E item;
+    private final Node<E> next;
+
+    private Node(E item, Node<E> next) {
+      this.item = item;
+      this.next = next;
+    }
+  }
+
+  private Node<E> head;
+  private int size;
+
+  /**
+   * An empty deque.
+   */
+  public PersistentDeque() {
+  }
+
+  /**
+   * A copy of an existing deque, sharing its nodes.
+   */
+  public PersistentDeque(PersistentDeque<E> other) {
+    this.head = other.head;
+    this.size = other.size;
+  }
+
+  /**
+   * A deque containing the elements provided, in iteration order.
+   */
+  public PersistentDeque(List<E> elements) {
+    for (int i = elements.size() - 1; i >= 0; i--)
+      this.addFirst(elements.get(i));
+  }
+
+  @Override
+  public void addFirst(E e) {
+    head = new Node<E>(e, head);
+    size++;
+  }
+
+  @Override
+  public boolean offerFirst(E e) {
+    this.addFirst(e);
+    return true;
+  }
+
+  @Override
+  public void push(E e) {
+    this.addFirst(e);
+  }
+
+  @Override
+  public E removeFirst() {
+    if (head == null)
+      throw new NoSuchElementException();
+    return this.pollFirst();
+  }
+
+  @Override
+  public E pollFirst() {
+    if (head == null)
+      return null;
+    E item = head.item;
+    head = head.next;
+    size--;
+    return item;
+  }
+
+  @Override
+  public E pop() {
+    return this.removeFirst();
+  }
+
+  @Override
+  public E remove() {
+    return this.removeFirst();
+  }
+
+  @Override
+  public E poll() {
+    return this.pollFirst();
+  }
+
+  @Override
+  public E getFirst() {
+    if (head == null)
+      throw new NoSuchElementException();
+    return head.item;
+  }
+
+  @Override
+  public E element() {
+    return this.getFirst();
+  }
+
+  @Override
+  public E peekFirst() {
+    if (head == null)
+      return null;
+    return head.item;
+  }
+
+  @Override
+  public E peek() {
+    return this.peekFirst();
+  }
+
+  @Override
+  public E getLast() {
+    if (head == null)
+      throw new NoSuchElementException();
+    return this.peekLast();
+  }
+
+  @Override
+  public E peekLast() {
+    Node<E> node = head;
+    if (node == null)
+      return null;
+    while (node.next != null)
+      node = node.next;
+    return node.item;
+  }
+
+  /**
+   * Removes the first occurrence of an element, copying the nodes preceding
+   * it so that other copies of this deque are unaffected.
+   */
+  @Override
+  public boolean removeFirstOccurrence(Object o) {
+    int index = 0;
+    Node<E> node = head;
+    while (node != null && !(o == null ? node.item == null : o.equals(node.item))) {
+      node = node.next;
+      index++;
+    }
+    if (node == null)
+      return false;
+
+    @SuppressWarnings("unchecked")
+    E[] prefix = (E[]) new Object[index];
+    Node<E> current = head;
+    for (int i = 0; i < index; i++) {
+      prefix[i] = current.item;
+      current = current.next;
+    }
+    Node<E> newHead = node.next;
+    for (int i = index - 1; i >= 0; i--)
+      newHead = new Node<E>(prefix[i], newHead);
+    head = newHead;
+    size--;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return this.removeFirstOccurrence(o);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head == null;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      private Node<E> next = head;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public E next() {
+        if (next == null)
+          throw new NoSuchElementException();
+        E item = next.item;
+        next = next.next;
+        return item;
+      }
+    };
+  }
+
+  @Override
+  public Iterator<E> descendingIterator() {
+    @SuppressWarnings("unchecked")
+    E[] items = (E[]) this.toArray();
+    return new Iterator<E>() {
+      private int i = items.length - 1;
+
+      @Override
+      public boolean hasNext() {
+        return i >= 0;
+      }
+
+      @Override
+      public E next() {
+        if (i < 0)
+          throw new NoSuchElementException();
+        return items[i--];
+      }
+    };
+  }
+
+  @Override
+  public void addLast(E e) {
+    throw new UnsupportedOperationException("Cannot add to the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public boolean offerLast(E e) {
+    throw new UnsupportedOperationException("Cannot add to the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public boolean add(E e) {
+    throw new UnsupportedOperationException("Cannot add to the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public boolean offer(E e) {
+    throw new UnsupportedOperationException("Cannot add to the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public E removeLast() {
+    throw new UnsupportedOperationException("Cannot remove from the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public E pollLast() {
+    throw new UnsupportedOperationException("Cannot remove from the tail of a " + this.getClass().getSimpleName());
+  }
+
+  @Override
+  public boolean removeLastOccurrence(Object o) {
+    throw new UnsupportedOperationException("Cannot remove from the tail of a " + this.getClass().getSimpleName());
+  }
+}
@@ -0,0 +1,139 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.parser;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An append-only list stored as an immutable linked list of nodes from the
+ * last element backwards, so that a copy shares all of its elements with the
+ * original and costs O(1) to create, and appending to one copy never affects
+ * another. A {@link List} view is built on demand and cached until the next
+ * append.<br/>
+ * <br/>
+ * Used for the transitions, decisions and dependency arcs of a
+ * {@link ParseConfiguration}.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PersistentList<E> {
+  private static final class Node<E> {
+    private final E item;
+    private final Node<E> previous;
+
+    private Node(E item, Node<E> previous) {
+      this.item = item;
+      this.previous = previous;
+    }
+  }
+
+  private Node<E> last;
+  private int size;
+  private List<E> list;
+
+  /**
+   * An empty list.
+   */
+  public PersistentList() {
+  }
+
+  /**
+   * A copy of an existing list, sharing its elements.
+   */
+  public PersistentList(PersistentList<E> other) {
+    this.last = other.last;
+    this.size = other.size;
+    this.list = other.list;
+  }
+
+  public void add(E e) {
+    last = new Node<E>(e, last);
+    size++;
+    list = null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * An unmodifiable view of this list, in the order in which elements were
+   * added.
+   */
+  public List<E> asList() {
+    if (list == null) {
+      @SuppressWarnings("unchecked")
+      E[] items = (E[]) new Object[size];
+      Node<E> node = last;
+      for (int i = size - 1; i >= 0; i--) {
+        items[i] = node.item;
+        node = node.previous;
+      }
+      list = Collections.unmodifiableList(Arrays.asList(items));
+    }
+    return list;
+  }
+
+  /**
+   * The last n elements added, in the order in which they were added.
+   */
+  public List<E> getLast(int n) {
+    @SuppressWarnings("unchecked")
+    E[] items = (E[]) new Object[n];
+    Node<E> node = last;
+    for (int i = n - 1; i >= 0; i--) {
+      items[i] = node.item;
+      node = node.previous;
+    }
+    return Arrays.asList(items);
+  }
+
+  /**
+   * The elements from the last added to the first, without building a list
+   * view.
+   */
+  public Iterable<E> newestFirst() {
+    return () -> new Iterator<E>() {
+      private Node<E> next = last;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public E next() {
+        if (next == null)
+          throw new NoSuchElementException();
+        E item = next.item;
+        next = next.previous;
+        return item;
+      }
+    };
+  }
+}
@@ -39,9 +39,12 @@ import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.ExternalResource;
+import com.joliciel.talismane.machineLearning.features.CompiledFeatureSet;
+import com.joliciel.talismane.machineLearning.features.FeatureCompiler;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.parser.features.ParseConfigurationFeature;
+import com.joliciel.talismane.parser.features.ParseConfigurationWrapper;
 import com.joliciel.talismane.parser.features.ParserFeatureParser;
 import com.joliciel.talismane.parser.features.ParserRule;
 import com.joliciel.talismane.posTagger.PosTagSequence;
@@ -66,6 +69,7 @@ public class TransitionBasedParser implements NonDeterministicParser {
   private final DecisionMaker decisionMaker;
   private final TransitionSystem transitionSystem;
   private final Set<ParseConfigurationFeature<?>> parseFeatures;
+  private final CompiledFeatureSet<ParseConfigurationWrapper> compiledFeatures;
   private final int beamWidth;
   private final boolean propagatePosTaggerBeam;
   private final TalismaneSession session;
@@ -87,6 +91,7 @@ public class TransitionBasedParser implements NonDeterministicParser {
     this.decisionMaker = decisionMaker;
     this.transitionSystem = transitionSystem;
     this.parseFeatures = parseFeatures;
+    this.compiledFeatures = null;
     this.beamWidth = beamWidth;
     this.propagatePosTaggerBeam = propagatePosTaggerBeam;
     this.parseComparisonStrategy = parseComparisonStrategy;
@@ -119,6 +124,10 @@ public class TransitionBasedParser implements NonDeterministicParser {
     }
 
     this.parseFeatures = parserFeatureParser.getFeatures(model.getFeatureDescriptors());
+    if (session.getConfig().getBoolean("talismane.core.compile-features"))
+      this.compiledFeatures = new FeatureCompiler().compile(parseFeatures);
+    else
+      this.compiledFeatures = null;
     this.observers = new ArrayList<>();
   }
 
@@ -126,6 +135,7 @@ public class TransitionBasedParser implements NonDeterministicParser {
     this.decisionMaker = parser.decisionMaker;
     this.transitionSystem = parser.transitionSystem;
     this.parseFeatures = new HashSet<>(parser.parseFeatures);
+    this.compiledFeatures = parser.compiledFeatures;
     this.beamWidth = parser.beamWidth;
     this.propagatePosTaggerBeam = parser.propagatePosTaggerBeam;
     this.session = parser.session;
@@ -180,6 +190,9 @@ public class TransitionBasedParser implements NonDeterministicParser {
     heaps.put(0, heap0);
     PriorityQueue<ParseConfiguration> backupHeap = null;
 
+    // a single environment is reused for all top-level features and rules
+    RuntimeEnvironment env = new RuntimeEnvironment();
+
     PriorityQueue<ParseConfiguration> finalHeap = null;
     PriorityQueue<ParseConfiguration> terminalHeap = new PriorityQueue<ParseConfiguration>();
     while (heaps.size() > 0) {
@@ -253,7 +266,7 @@ public class TransitionBasedParser implements NonDeterministicParser {
             if (LOG.isTraceEnabled()) {
               LOG.trace("Checking rule: " + rule.toString());
             }
-            RuntimeEnvironment env = new RuntimeEnvironment();
+            env.clear();
             FeatureResult<Boolean> ruleResult = rule.getCondition().check(history, env);
             if (ruleResult != null && ruleResult.getOutcome()) {
               Decision positiveRuleDecision = new Decision(rule.getTransition().getCode());
@@ -270,13 +283,18 @@ public class TransitionBasedParser implements NonDeterministicParser {
 
         if (!ruleApplied) {
           // test the features on the current configuration
-          List<FeatureResult<?>> parseFeatureResults = new ArrayList<FeatureResult<?>>();
-          for (ParseConfigurationFeature<?> feature : this.parseFeatures) {
-            RuntimeEnvironment env = new RuntimeEnvironment();
-            FeatureResult<?> featureResult = feature.check(history, env);
-            if (featureResult != null)
-              parseFeatureResults.add(featureResult);
+          List<FeatureResult<?>> parseFeatureResults = null;
+          if (compiledFeatures != null) {
+            parseFeatureResults = compiledFeatures.check(history, env);
+          } else {
+            parseFeatureResults = new ArrayList<FeatureResult<?>>();
+            for (ParseConfigurationFeature<?> feature : this.parseFeatures) {
+              env.clear();
+              FeatureResult<?> featureResult = feature.check(history, env);
+              if (featureResult != null)
+                parseFeatureResults.add(featureResult);
 
+            }
           }
           if (LOG_FEATURES.isTraceEnabled()) {
             for (FeatureResult<?> featureResult : parseFeatureResults) {
@@ -305,7 +323,7 @@ public class TransitionBasedParser implements NonDeterministicParser {
               if (LOG.isTraceEnabled()) {
                 LOG.trace("Checking negative rule: " + rule.toString());
               }
-              RuntimeEnvironment env = new RuntimeEnvironment();
+              env.clear();
               FeatureResult<Boolean> ruleResult = rule.getCondition().check(history, env);
               if (ruleResult != null && ruleResult.getOutcome()) {
                 eliminatedTransitions.addAll(rule.getTransitions());
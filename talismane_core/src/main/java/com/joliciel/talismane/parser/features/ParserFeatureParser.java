@@ -35,6 +35,7 @@ import com.joliciel.talismane.machineLearning.features.AbstractFeatureParser;
 import com.joliciel.talismane.machineLearning.features.BooleanFeature;
 import com.joliciel.talismane.machineLearning.features.DoubleFeature;
 import com.joliciel.talismane.machineLearning.features.Feature;
+import com.joliciel.talismane.machineLearning.features.FeatureWrapper;
 import com.joliciel.talismane.machineLearning.features.FeatureClassContainer;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.FunctionDescriptor;
@@ -263,7 +264,8 @@ public class ParserFeatureParser extends AbstractFeatureParser<ParseConfiguratio
     return descriptors;
   }
 
-  private static class ParseConfigurationFeatureWrapper<Y> extends AbstractFeature<ParseConfigurationWrapper, Y>implements ParseConfigurationFeature<Y> {
+  private static class ParseConfigurationFeatureWrapper<Y> extends AbstractFeature<ParseConfigurationWrapper, Y>
+      implements ParseConfigurationFeature<Y>, FeatureWrapper<ParseConfigurationWrapper, Y> {
     private Feature<ParseConfigurationWrapper, Y> wrappedFeature = null;
 
     public ParseConfigurationFeatureWrapper(Feature<ParseConfigurationWrapper, Y> wrappedFeature) {
@@ -278,6 +280,11 @@ public class ParserFeatureParser extends AbstractFeatureParser<ParseConfiguratio
       return wrappedFeature.check(context, env);
     }
 
+    @Override
+    public Feature<ParseConfigurationWrapper, Y> getWrappedFeature() {
+      return wrappedFeature;
+    }
+
     @SuppressWarnings("rawtypes")
     @Override
     public Class<? extends Feature> getFeatureType() {
@@ -24,10 +24,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.slf4j.Logger;
@@ -40,6 +37,8 @@ import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.ExternalResource;
+import com.joliciel.talismane.machineLearning.features.CompiledFeatureSet;
+import com.joliciel.talismane.machineLearning.features.FeatureCompiler;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.posTagger.features.PosTaggerFeature;
@@ -69,6 +68,7 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
   private final List<ClassificationObserver> observers;
 
   private final Set<PosTaggerFeature<?>> posTaggerFeatures;
+  private final CompiledFeatureSet<PosTaggerContext> compiledFeatures;
   private final DecisionMaker decisionMaker;
   private final int beamWidth;
   private final boolean propagateTokeniserBeam;
@@ -88,6 +88,7 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
   public ForwardStatisticalPosTagger(Set<PosTaggerFeature<?>> posTaggerFeatures, DecisionMaker decisionMaker, int beamWidth, boolean propagateTokeniserBeam,
       TalismaneSession talismaneSession) {
     this.posTaggerFeatures = posTaggerFeatures;
+    this.compiledFeatures = null;
     this.beamWidth = beamWidth;
     this.propagateTokeniserBeam = propagateTokeniserBeam;
     this.decisionMaker = decisionMaker;
@@ -97,6 +98,7 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
 
   ForwardStatisticalPosTagger(ForwardStatisticalPosTagger posTagger) {
     this.posTaggerFeatures = new HashSet<>(posTagger.posTaggerFeatures);
+    this.compiledFeatures = posTagger.compiledFeatures;
     this.beamWidth = posTagger.beamWidth;
     this.propagateTokeniserBeam = posTagger.propagateTokeniserBeam;
     this.decisionMaker = posTagger.decisionMaker;
@@ -124,6 +126,10 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
 
     Set<PosTaggerFeature<?>> posTaggerFeatures = featureParser.getFeatureSet(model.getFeatureDescriptors());
     this.posTaggerFeatures = posTaggerFeatures;
+    if (session.getConfig().getBoolean("talismane.core.compile-features"))
+      this.compiledFeatures = new FeatureCompiler().compile(posTaggerFeatures);
+    else
+      this.compiledFeatures = null;
     this.beamWidth = beamWidth;
     this.propagateTokeniserBeam = propagateTokeniserBeam;
     this.decisionMaker = model.getDecisionMaker();
@@ -141,40 +147,71 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
       tokenSequences.add(input.get(0));
     }
 
+    List<PosTagSequence> sequences = null;
+    if (this.isGreedy())
+      sequences = this.tagSentenceGreedy(tokenSequences);
+    else
+      sequences = this.tagSentenceBeam(tokenSequences);
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("####Final postag sequences:");
+      int j = 1;
+      for (PosTagSequence sequence : sequences) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Sequence " + (j++) + ", score=" + df.format(sequence.getScore()));
+          LOG.debug("Sequence: " + sequence);
+        }
+      }
+    }
+
+    return sequences;
+  }
+
+  /**
+   * Find the n most likely pos-tag sequences using a beam search.
+   */
+  private List<PosTagSequence> tagSentenceBeam(List<TokenSequence> tokenSequences) throws TalismaneException, IOException {
     int sentenceLength = tokenSequences.get(0).getSentence().getText().length();
+    int finalBeamIndex = sentenceLength * 2;
 
-    TreeMap<Double, PriorityQueue<PosTagSequence>> heaps = new TreeMap<Double, PriorityQueue<PosTagSequence>>();
+    // One beam per position in the sentence: a token ending at index i is
+    // stored at 2*i, and an empty token at index i is stored at 2*i+1 to
+    // differentiate it from regular ones. Complete sequences are stored at
+    // 2*sentenceLength.
+    PosTagBeam[] beams = new PosTagBeam[finalBeamIndex + 2];
 
-    PriorityQueue<PosTagSequence> heap0 = new PriorityQueue<PosTagSequence>();
+    PosTagBeam beam0 = new PosTagBeam(this.beamWidth);
     for (TokenSequence tokenSequence : tokenSequences) {
       // add an empty PosTagSequence for each token sequence
       PosTagSequence emptySequence = new PosTagSequence(tokenSequence);
       emptySequence.setScoringStrategy(decisionMaker.getDefaultScoringStrategy());
-      heap0.add(emptySequence);
+      beam0.offer(new PosTagHypothesis(emptySequence));
     }
-    heaps.put(0.0, heap0);
+    beams[0] = beam0;
+
+    // a single environment is reused for all top-level features and rules
+    RuntimeEnvironment env = new RuntimeEnvironment();
 
-    PriorityQueue<PosTagSequence> finalHeap = null;
-    while (heaps.size() > 0) {
-      Entry<Double, PriorityQueue<PosTagSequence>> heapEntry = heaps.pollFirstEntry();
+    PosTagBeam finalBeam = null;
+    for (int beamIndex = 0; beamIndex < beams.length; beamIndex++) {
+      PosTagBeam previousBeam = beams[beamIndex];
+      if (previousBeam == null)
+        continue;
       if (LOG.isTraceEnabled()) {
-        LOG.trace("heap key: " + heapEntry.getKey() + ", sentence length: " + sentenceLength);
+        LOG.trace("beam index: " + beamIndex + ", sentence length: " + sentenceLength);
       }
-      if (heapEntry.getKey() == sentenceLength) {
-        finalHeap = heapEntry.getValue();
+      if (beamIndex == finalBeamIndex) {
+        finalBeam = previousBeam;
         break;
       }
-      PriorityQueue<PosTagSequence> previousHeap = heapEntry.getValue();
+      beams[beamIndex] = null;
 
-      // limit the breadth to K
-      int maxSequences = previousHeap.size() > this.beamWidth ? this.beamWidth : previousHeap.size();
-
-      for (int j = 0; j < maxSequences; j++) {
-        PosTagSequence history = previousHeap.poll();
+      for (PosTagHypothesis hypothesis : previousBeam) {
+        PosTagSequence history = hypothesis.getSequence(session);
         Token token = history.getNextToken();
         if (LOG.isTraceEnabled()) {
-          LOG.trace("#### Next history ( " + heapEntry.getKey() + "): " + history.toString());
-          LOG.trace("Prob: " + df.format(history.getScore()));
+          LOG.trace("#### Next history ( " + beamIndex + "): " + history.toString());
+          LOG.trace("Prob: " + df.format(hypothesis.getScore()));
           LOG.trace("Token: " + token.getText());
 
           StringBuilder sb = new StringBuilder();
@@ -187,182 +224,263 @@ public class ForwardStatisticalPosTagger implements PosTagger, NonDeterministicP
           LOG.trace(sb.toString());
         }
 
-        PosTaggerContext context = new PosTaggerContextImpl(token, history);
-        List<Decision> decisions = new ArrayList<Decision>();
+        List<Decision> decisions = this.makeDecisions(token, history, env);
 
-        boolean ruleApplied = false;
+        // add a new hypothesis to the beam for each outcome provided by the
+        // model, without building its sequence unless it survives
+        int nextBeamIndex = this.getBeamIndex(token, history, finalBeamIndex);
 
-        // does this token have an explicit pos-tag already
-        // assigned?
-        if (token.getAttributes().containsKey(PosTagger.POS_TAG_ATTRIBUTE)) {
-          StringAttribute posTagCodeAttribute = (StringAttribute) token.getAttributes().get(PosTagger.POS_TAG_ATTRIBUTE);
-          String posTagCode = posTagCodeAttribute.getValue();
-          Decision positiveRuleDecision = new Decision(posTagCode);
-          decisions.add(positiveRuleDecision);
-          positiveRuleDecision.addAuthority("tokenAttribute");
-          ruleApplied = true;
-          if (LOG.isTraceEnabled()) {
-            LOG.trace("Token has attribute \"" + PosTagger.POS_TAG_ATTRIBUTE + "\". Setting posTag to: " + posTagCode);
-          }
-        }
+        if (LOG.isTraceEnabled())
+          LOG.trace("Beam index: " + nextBeamIndex);
 
-        // test the positive rules on the current token
-        if (!ruleApplied) {
-          if (posTaggerPositiveRules != null) {
-            for (PosTaggerRule rule : posTaggerPositiveRules) {
-              if (LOG.isTraceEnabled()) {
-                LOG.trace("Checking rule: " + rule.getCondition().getName());
-              }
-              RuntimeEnvironment env = new RuntimeEnvironment();
-              FeatureResult<Boolean> ruleResult = rule.getCondition().check(context, env);
-              if (ruleResult != null && ruleResult.getOutcome()) {
-                Decision positiveRuleDecision = new Decision(rule.getTag().getCode());
-                decisions.add(positiveRuleDecision);
-                positiveRuleDecision.addAuthority(rule.getCondition().getName());
-                ruleApplied = true;
-                if (LOG.isTraceEnabled()) {
-                  LOG.trace("Rule applies. Setting posTag to: " + rule.getTag().getCode());
-                }
-                break;
-              }
-            }
-          }
+        PosTagBeam beam = beams[nextBeamIndex];
+        if (beam == null) {
+          beam = new PosTagBeam(this.beamWidth);
+          beams[nextBeamIndex] = beam;
         }
 
-        if (!ruleApplied) {
-          // test the features on the current token
-          List<FeatureResult<?>> featureResults = new ArrayList<FeatureResult<?>>();
-          for (PosTaggerFeature<?> posTaggerFeature : posTaggerFeatures) {
-            RuntimeEnvironment env = new RuntimeEnvironment();
-            FeatureResult<?> featureResult = posTaggerFeature.check(context, env);
-            if (featureResult != null)
-              featureResults.add(featureResult);
-          }
-          if (LOG.isTraceEnabled()) {
-            for (FeatureResult<?> result : featureResults) {
-              LOG.trace(result.toString());
-            }
-          }
+        for (Decision decision : decisions) {
+          if (LOG.isTraceEnabled())
+            LOG.trace("Outcome: " + decision.getOutcome() + ", " + decision.getProbability());
 
-          // evaluate the feature results using the maxent model
-          decisions = this.decisionMaker.decide(featureResults);
+          beam.offer(new PosTagHypothesis(hypothesis, token, decision));
+        } // next outcome for this token
+      } // next history
 
-          for (ClassificationObserver observer : this.observers) {
-            observer.onAnalyse(token, featureResults, decisions);
-          }
+      // an empty token can be followed by another empty token at the same
+      // index, in which case the beam we just emptied needs to be processed
+      // again
+      if (beams[beamIndex] != null)
+        beamIndex--;
+    } // next atomic index
 
-          // apply the negative rules
-          Set<String> eliminatedPosTags = new TreeSet<String>();
-          if (posTaggerNegativeRules != null) {
-            for (PosTaggerRule rule : posTaggerNegativeRules) {
-              if (LOG.isTraceEnabled()) {
-                LOG.trace("Checking negative rule: " + rule.getCondition().getName());
-              }
-              RuntimeEnvironment env = new RuntimeEnvironment();
-              FeatureResult<Boolean> ruleResult = rule.getCondition().check(context, env);
-              if (ruleResult != null && ruleResult.getOutcome()) {
-                eliminatedPosTags.add(rule.getTag().getCode());
-                if (LOG.isTraceEnabled()) {
-                  LOG.trace("Rule applies. Eliminating posTag: " + rule.getTag().getCode());
-                }
-              }
-            }
+    // return the best sequences in the final beam
+    List<PosTagSequence> sequences = new ArrayList<PosTagSequence>();
+    for (PosTagHypothesis hypothesis : finalBeam) {
+      sequences.add(hypothesis.getSequence(session));
+    }
+
+    return sequences;
+  }
+
+  /**
+   * Find the most likely pos-tag sequence when the beam width is 1, by adding
+   * the best decision for each token directly to a single sequence, instead of
+   * copying the sequence for each candidate decision. Since all of the
+   * candidates for a given token add a single decision to the same history,
+   * the best candidate is the one with the best decision (the highest score
+   * for an additive scoring strategy, and the highest probability otherwise),
+   * keeping the first one in case of a tie, exactly as a beam of width 1 would.
+   */
+  private List<PosTagSequence> tagSentenceGreedy(List<TokenSequence> tokenSequences) throws TalismaneException, IOException {
+    int sentenceLength = tokenSequences.get(0).getSentence().getText().length();
+    int finalBeamIndex = sentenceLength * 2;
 
-            if (eliminatedPosTags.size() > 0) {
-              List<Decision> decisionShortList = new ArrayList<Decision>();
-              for (Decision decision : decisions) {
-                if (!eliminatedPosTags.contains(decision.getOutcome())) {
-                  decisionShortList.add(decision);
-                } else {
-                  LOG.trace("Eliminating decision: " + decision.toString());
-                }
-              }
-              if (decisionShortList.size() > 0) {
-                decisions = decisionShortList;
-              } else {
-                LOG.debug("All decisions eliminated! Restoring original decisions.");
-              }
+    // start from the best token sequence
+    PosTagSequence bestEmptySequence = null;
+    for (TokenSequence tokenSequence : tokenSequences) {
+      PosTagSequence emptySequence = new PosTagSequence(tokenSequence);
+      emptySequence.setScoringStrategy(decisionMaker.getDefaultScoringStrategy());
+      if (bestEmptySequence == null || emptySequence.getScore() > bestEmptySequence.getScore())
+        bestEmptySequence = emptySequence;
+    }
+
+    List<PosTagSequence> sequences = new ArrayList<PosTagSequence>(1);
+    if (finalBeamIndex == 0) {
+      sequences.add(bestEmptySequence);
+      return sequences;
+    }
+
+    PosTagSequence sequence = new PosTagSequence(bestEmptySequence);
+    boolean additive = sequence.getScoringStrategy().isAdditive();
+    RuntimeEnvironment env = new RuntimeEnvironment();
+    int beamIndex = 0;
+    while (beamIndex != finalBeamIndex) {
+      Token token = sequence.getNextToken();
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("#### Next history: " + sequence.toString());
+        LOG.trace("Token: " + token.getText());
+      }
+
+      List<Decision> decisions = this.makeDecisions(token, sequence, env);
+
+      Decision bestDecision = null;
+      for (Decision decision : decisions) {
+        if (LOG.isTraceEnabled())
+          LOG.trace("Outcome: " + decision.getOutcome() + ", " + decision.getProbability());
+        if (bestDecision == null)
+          bestDecision = decision;
+        else if (additive ? decision.getScore() > bestDecision.getScore() : decision.getProbability() > bestDecision.getProbability())
+          bestDecision = decision;
+      }
+
+      beamIndex = this.getBeamIndex(token, sequence, finalBeamIndex);
+
+      PosTaggedToken posTaggedToken = new PosTaggedToken(token, bestDecision, this.session);
+      sequence.addPosTaggedToken(posTaggedToken);
+      if (bestDecision.isStatistical())
+        sequence.addDecision(bestDecision);
+    }
+
+    sequences.add(sequence);
+    return sequences;
+  }
+
+  /**
+   * Should we tag greedily rather than via a beam search? True for a beam
+   * width of 1, where both give the same result.
+   */
+  boolean isGreedy() {
+    return this.beamWidth == 1;
+  }
+
+  /**
+   * Get the decisions for the next token in a given history, applying any
+   * pos-tagger rules.
+   */
+  private List<Decision> makeDecisions(Token token, PosTagSequence history, RuntimeEnvironment env) throws TalismaneException, IOException {
+    PosTaggerContext context = new PosTaggerContextImpl(token, history);
+    List<Decision> decisions = new ArrayList<Decision>();
+
+    boolean ruleApplied = false;
+
+    // does this token have an explicit pos-tag already
+    // assigned?
+    if (token.getAttributes().containsKey(PosTagger.POS_TAG_ATTRIBUTE)) {
+      StringAttribute posTagCodeAttribute = (StringAttribute) token.getAttributes().get(PosTagger.POS_TAG_ATTRIBUTE);
+      String posTagCode = posTagCodeAttribute.getValue();
+      Decision positiveRuleDecision = new Decision(posTagCode);
+      decisions.add(positiveRuleDecision);
+      positiveRuleDecision.addAuthority("tokenAttribute");
+      ruleApplied = true;
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Token has attribute \"" + PosTagger.POS_TAG_ATTRIBUTE + "\". Setting posTag to: " + posTagCode);
+      }
+    }
+
+    // test the positive rules on the current token
+    if (!ruleApplied) {
+      if (posTaggerPositiveRules != null) {
+        for (PosTaggerRule rule : posTaggerPositiveRules) {
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Checking rule: " + rule.getCondition().getName());
+          }
+          env.clear();
+          FeatureResult<Boolean> ruleResult = rule.getCondition().check(context, env);
+          if (ruleResult != null && ruleResult.getOutcome()) {
+            Decision positiveRuleDecision = new Decision(rule.getTag().getCode());
+            decisions.add(positiveRuleDecision);
+            positiveRuleDecision.addAuthority(rule.getCondition().getName());
+            ruleApplied = true;
+            if (LOG.isTraceEnabled()) {
+              LOG.trace("Rule applies. Setting posTag to: " + rule.getTag().getCode());
             }
+            break;
           }
+        }
+      }
+    }
 
-          // is this a known word in the lexicon?
+    if (!ruleApplied) {
+      // test the features on the current token
+      List<FeatureResult<?>> featureResults = null;
+      if (compiledFeatures != null) {
+        featureResults = compiledFeatures.check(context, env);
+      } else {
+        featureResults = new ArrayList<FeatureResult<?>>();
+        for (PosTaggerFeature<?> posTaggerFeature : posTaggerFeatures) {
+          env.clear();
+          FeatureResult<?> featureResult = posTaggerFeature.check(context, env);
+          if (featureResult != null)
+            featureResults.add(featureResult);
+        }
+      }
+      if (LOG.isTraceEnabled()) {
+        for (FeatureResult<?> result : featureResults) {
+          LOG.trace(result.toString());
+        }
+      }
+
+      // evaluate the feature results using the maxent model
+      decisions = this.decisionMaker.decide(featureResults);
+
+      for (ClassificationObserver observer : this.observers) {
+        observer.onAnalyse(token, featureResults, decisions);
+      }
+
+      // apply the negative rules
+      Set<String> eliminatedPosTags = new TreeSet<String>();
+      if (posTaggerNegativeRules != null) {
+        for (PosTaggerRule rule : posTaggerNegativeRules) {
           if (LOG.isTraceEnabled()) {
-            String posTags = "";
-            for (PosTag onePosTag : token.getPossiblePosTags()) {
-              posTags += onePosTag.getCode() + ",";
+            LOG.trace("Checking negative rule: " + rule.getCondition().getName());
+          }
+          env.clear();
+          FeatureResult<Boolean> ruleResult = rule.getCondition().check(context, env);
+          if (ruleResult != null && ruleResult.getOutcome()) {
+            eliminatedPosTags.add(rule.getTag().getCode());
+            if (LOG.isTraceEnabled()) {
+              LOG.trace("Rule applies. Eliminating posTag: " + rule.getTag().getCode());
             }
-            LOG.trace("Token: " + token.getText() + ". PosTags: " + posTags);
           }
+        }
 
+        if (eliminatedPosTags.size() > 0) {
           List<Decision> decisionShortList = new ArrayList<Decision>();
-
           for (Decision decision : decisions) {
-            if (decision.getProbability() >= MIN_PROB_TO_STORE) {
+            if (!eliminatedPosTags.contains(decision.getOutcome())) {
               decisionShortList.add(decision);
+            } else {
+              LOG.trace("Eliminating decision: " + decision.toString());
             }
           }
           if (decisionShortList.size() > 0) {
             decisions = decisionShortList;
+          } else {
+            LOG.debug("All decisions eliminated! Restoring original decisions.");
           }
-        } // has a rule been applied?
-
-        // add new TaggedTokenSequences to the heap, one for each
-        // outcome provided by MaxEnt
-        for (Decision decision : decisions) {
-          if (LOG.isTraceEnabled())
-            LOG.trace("Outcome: " + decision.getOutcome() + ", " + decision.getProbability());
-
-          PosTaggedToken posTaggedToken = new PosTaggedToken(token, decision, this.session);
-          PosTagSequence sequence = new PosTagSequence(history);
-          sequence.addPosTaggedToken(posTaggedToken);
-          if (decision.isStatistical())
-            sequence.addDecision(decision);
-
-          double heapIndex = token.getEndIndex();
-          // add another half for an empty token, to differentiate
-          // it from regular ones
-          if (token.getStartIndex() == token.getEndIndex())
-            heapIndex += 0.5;
+        }
+      }
 
-          // if it's the last token, make sure we end
-          if (token.getIndex() == sequence.getTokenSequence().size() - 1)
-            heapIndex = sentenceLength;
+      // is this a known word in the lexicon?
+      if (LOG.isTraceEnabled()) {
+        String posTags = "";
+        for (PosTag onePosTag : token.getPossiblePosTags()) {
+          posTags += onePosTag.getCode() + ",";
+        }
+        LOG.trace("Token: " + token.getText() + ". PosTags: " + posTags);
+      }
 
-          if (LOG.isTraceEnabled())
-            LOG.trace("Heap index: " + heapIndex);
+      List<Decision> decisionShortList = new ArrayList<Decision>();
 
-          PriorityQueue<PosTagSequence> heap = heaps.get(heapIndex);
-          if (heap == null) {
-            heap = new PriorityQueue<PosTagSequence>();
-            heaps.put(heapIndex, heap);
-          }
-          heap.add(sequence);
-        } // next outcome for this token
-      } // next history
-    } // next atomic index
-      // return the best sequence on the heap
-    List<PosTagSequence> sequences = new ArrayList<PosTagSequence>();
-    int i = 0;
-    while (!finalHeap.isEmpty()) {
-      sequences.add(finalHeap.poll());
-      i++;
-      if (i >= this.getBeamWidth())
-        break;
-    }
-
-    // apply post-processing filters
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("####Final postag sequences:");
-      int j = 1;
-      for (PosTagSequence sequence : sequences) {
-        if (LOG.isDebugEnabled()) {
-          LOG.debug("Sequence " + (j++) + ", score=" + df.format(sequence.getScore()));
-          LOG.debug("Sequence: " + sequence);
+      for (Decision decision : decisions) {
+        if (decision.getProbability() >= MIN_PROB_TO_STORE) {
+          decisionShortList.add(decision);
         }
       }
-    }
+      if (decisionShortList.size() > 0) {
+        decisions = decisionShortList;
+      }
+    } // has a rule been applied?
 
-    return sequences;
+    return decisions;
+  }
+
+  /**
+   * The index of the beam in which to store a sequence whose last token is
+   * the one provided: a token ending at index i is stored at 2*i, and an empty
+   * token at index i at 2*i+1, to differentiate it from regular ones. If it's
+   * the last token, the sequence is complete.
+   */
+  private int getBeamIndex(Token token, PosTagSequence history, int finalBeamIndex) {
+    int beamIndex = token.getEndIndex() * 2;
+    if (token.getStartIndex() == token.getEndIndex())
+      beamIndex += 1;
+
+    // if it's the last token, make sure we end
+    if (token.getIndex() == history.getTokenSequence().size() - 1)
+      beamIndex = finalBeamIndex;
+    return beamIndex;
   }
 
   @Override
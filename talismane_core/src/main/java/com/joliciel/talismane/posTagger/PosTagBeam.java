@@ -0,0 +1,83 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import java.util.AbstractList;
+
+/**
+ * The best hypotheses ending at a given position in the sentence, limited to
+ * the beam width. Hypotheses are kept in descending order of score in a fixed
+ * array, and a hypothesis which cannot enter the beam is discarded
+ * immediately. Hypotheses with equal scores are kept in the order they were
+ * added.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PosTagBeam extends AbstractList<PosTagHypothesis> {
+  private final PosTagHypothesis[] hypotheses;
+  private final double[] scores;
+  private int size = 0;
+
+  PosTagBeam(int beamWidth) {
+    this.hypotheses = new PosTagHypothesis[beamWidth];
+    this.scores = new double[beamWidth];
+  }
+
+  /**
+   * Would a hypothesis with the score provided be added to this beam?
+   */
+  public boolean accepts(double score) {
+    return size < hypotheses.length || score > scores[size - 1];
+  }
+
+  /**
+   * Add a hypothesis if it is among the best seen so far, and return true if
+   * it was added.
+   */
+  public boolean offer(PosTagHypothesis hypothesis) {
+    double score = hypothesis.getScore();
+    if (!this.accepts(score))
+      return false;
+
+    int i = size < hypotheses.length ? size : size - 1;
+    while (i > 0 && scores[i - 1] < score) {
+      hypotheses[i] = hypotheses[i - 1];
+      scores[i] = scores[i - 1];
+      i--;
+    }
+    hypotheses[i] = hypothesis;
+    scores[i] = score;
+    if (size < hypotheses.length)
+      size++;
+    return true;
+  }
+
+  @Override
+  public PosTagHypothesis get(int index) {
+    if (index < 0 || index >= size)
+      throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+    return hypotheses[index];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+}
@@ -31,25 +31,27 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.talismane.TalismaneException;
 import com.joliciel.talismane.machineLearning.ClassificationEvent;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.EventExtractor;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.posTagger.features.PosTaggerFeature;
 
 /**
- * A corpus event stream for postagging.
+ * A corpus event stream for postagging. Can also be used to extract the events
+ * for a single sentence, in a {@link ParallelClassificationEventStream}.
  * 
  * @author Assaf Urieli
  *
  */
-public class PosTagEventStream implements ClassificationEventStream {
+public class PosTagEventStream implements ClassificationEventStream, EventExtractor<PosTagSequence> {
   private static final Logger LOG = LoggerFactory.getLogger(PosTagEventStream.class);
 
   private final PosTagAnnotatedCorpusReader corpusReader;
   private final Set<PosTaggerFeature<?>> posTaggerFeatures;
 
-  PosTagSequence currentSentence;
-  PosTagSequence currentHistory;
-  int currentIndex;
+  private List<ClassificationEvent> currentEvents;
+  private int currentIndex;
 
   /**
    * Create a classification event stream for a given corpus reader and set of
@@ -67,33 +69,48 @@ public class PosTagEventStream implements ClassificationEventStream {
 
   @Override
   public boolean hasNext() throws TalismaneException, IOException {
-    while (currentSentence == null) {
+    while (currentEvents == null) {
       if (this.corpusReader.hasNextSentence()) {
-        currentSentence = this.corpusReader.nextPosTagSequence();
-        if (LOG.isDebugEnabled())
-          LOG.debug("### next sentence: " + currentSentence.getTokenSequence().getSentence());
+        PosTagSequence sentence = this.corpusReader.nextPosTagSequence();
+        currentEvents = this.getEvents(sentence);
         currentIndex = 0;
-        currentHistory = new PosTagSequence(currentSentence.getTokenSequence());
-        if (currentIndex == currentSentence.size()) {
-          currentSentence = null;
+        if (currentIndex == currentEvents.size()) {
+          currentEvents = null;
         }
       } else {
         break;
       }
     }
-    return currentSentence != null;
+    return currentEvents != null;
   }
 
   @Override
   public ClassificationEvent next() throws TalismaneException, IOException {
     ClassificationEvent event = null;
     if (this.hasNext()) {
-      PosTaggedToken taggedToken = currentSentence.get(currentIndex++);
+      event = currentEvents.get(currentIndex++);
+      if (currentIndex == currentEvents.size()) {
+        currentEvents = null;
+      }
+    }
+    return event;
+  }
+
+  /**
+   * Get the events for each token in a pos-tagged sentence, in order.
+   */
+  @Override
+  public List<ClassificationEvent> getEvents(PosTagSequence sentence) throws TalismaneException {
+    if (LOG.isDebugEnabled())
+      LOG.debug("### next sentence: " + sentence.getTokenSequence().getSentence());
+    List<ClassificationEvent> events = new ArrayList<>(sentence.size());
+    PosTagSequence history = new PosTagSequence(sentence.getTokenSequence());
+    for (PosTaggedToken taggedToken : sentence) {
       String classification = taggedToken.getTag().getCode();
 
       if (LOG.isDebugEnabled())
         LOG.debug("next event, token: " + taggedToken.getToken().getAnalyisText() + " : " + classification);
-      PosTaggerContext context = new PosTaggerContextImpl(taggedToken.getToken(), currentHistory);
+      PosTaggerContext context = new PosTaggerContextImpl(taggedToken.getToken(), history);
 
       List<FeatureResult<?>> posTagFeatureResults = new ArrayList<FeatureResult<?>>();
       for (PosTaggerFeature<?> posTaggerFeature : posTaggerFeatures) {
@@ -109,14 +126,11 @@ public class PosTagEventStream implements ClassificationEventStream {
           LOG.trace(result.toString());
         }
       }
-      event = new ClassificationEvent(posTagFeatureResults, classification);
+      events.add(new ClassificationEvent(posTagFeatureResults, classification));
 
-      currentHistory.addPosTaggedToken(taggedToken);
-      if (currentIndex == currentSentence.size()) {
-        currentSentence = null;
-      }
+      history.addPosTaggedToken(taggedToken);
     }
-    return event;
+    return events;
   }
 
   @Override
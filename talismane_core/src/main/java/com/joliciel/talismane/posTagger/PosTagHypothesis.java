@@ -0,0 +1,190 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
+import com.joliciel.talismane.machineLearning.Solution;
+import com.joliciel.talismane.tokeniser.Token;
+
+/**
+ * A candidate pos-tag sequence during the beam search, stored as a pointer
+ * back to the hypothesis it extends plus the decision made for the next token,
+ * so that candidates which get pruned never need to copy the sequence they
+ * share with their siblings. The full {@link PosTagSequence} is only built for
+ * hypotheses which survive the beam, when they get expanded or returned.<br/>
+ * <br/>
+ * The hypothesis keeps the same running decision count and sums as a
+ * {@link PosTagSequence}, and is scored by the initial sequence's scoring
+ * strategy, so that its score is identical to the one
+ * {@link PosTagSequence#getScore()} would give the full sequence.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PosTagHypothesis implements ClassificationSolution {
+  private final PosTagHypothesis parent;
+  private final Token token;
+  private final Decision decision;
+  private final int decisionCount;
+  private final double decisionProbabilityLogSum;
+  private final double decisionScoreSum;
+  private final List<Solution> underlyingSolutions;
+  @SuppressWarnings("rawtypes")
+  private final ScoringStrategy scoringStrategy;
+  private final double score;
+  private PosTagSequence sequence;
+
+  /**
+   * An initial hypothesis, wrapping an empty sequence.
+   */
+  PosTagHypothesis(PosTagSequence emptySequence) {
+    this.parent = null;
+    this.token = null;
+    this.decision = null;
+    this.decisionCount = emptySequence.getDecisionCount();
+    this.decisionProbabilityLogSum = emptySequence.getDecisionProbabilityLogSum();
+    this.decisionScoreSum = emptySequence.getDecisionScoreSum();
+    this.underlyingSolutions = emptySequence.getUnderlyingSolutions();
+    this.scoringStrategy = emptySequence.getScoringStrategy();
+    this.sequence = emptySequence;
+    this.score = emptySequence.getScore();
+  }
+
+  /**
+   * A hypothesis extending its parent with a decision for the parent's next
+   * token.
+   */
+  @SuppressWarnings("unchecked")
+  PosTagHypothesis(PosTagHypothesis parent, Token token, Decision decision) {
+    this.parent = parent;
+    this.token = token;
+    this.decision = decision;
+    this.underlyingSolutions = parent.underlyingSolutions;
+    this.scoringStrategy = parent.scoringStrategy;
+    if (decision.isStatistical()) {
+      this.decisionCount = parent.decisionCount + 1;
+      this.decisionProbabilityLogSum = parent.decisionProbabilityLogSum + decision.getProbabilityLog();
+      this.decisionScoreSum = parent.decisionScoreSum + decision.getScore();
+    } else {
+      this.decisionCount = parent.decisionCount;
+      this.decisionProbabilityLogSum = parent.decisionProbabilityLogSum;
+      this.decisionScoreSum = parent.decisionScoreSum;
+    }
+    this.score = this.scoringStrategy.calculateScore(this);
+  }
+
+  @Override
+  public double getScore() {
+    return score;
+  }
+
+  @Override
+  public int getDecisionCount() {
+    return decisionCount;
+  }
+
+  @Override
+  public double getDecisionProbabilityLogSum() {
+    return decisionProbabilityLogSum;
+  }
+
+  @Override
+  public double getDecisionScoreSum() {
+    return decisionScoreSum;
+  }
+
+  /**
+   * The statistical decisions for this hypothesis, gathered from its
+   * ancestors. Only used for logging, since the score relies on the running
+   * sums.
+   */
+  @Override
+  public List<Decision> getDecisions() {
+    if (sequence != null)
+      return sequence.getDecisions();
+    List<Decision> decisions = new ArrayList<>(decisionCount);
+    PosTagHypothesis hypothesis = this;
+    while (hypothesis.sequence == null) {
+      if (hypothesis.decision.isStatistical())
+        decisions.add(hypothesis.decision);
+      hypothesis = hypothesis.parent;
+    }
+    // gathered from the last decision backwards
+    Collections.reverse(decisions);
+    decisions.addAll(0, hypothesis.sequence.getDecisions());
+    return decisions;
+  }
+
+  /**
+   * Hypotheses are immutable: a new decision gives a new hypothesis.
+   */
+  @Override
+  public void addDecision(Decision decision) {
+    throw new UnsupportedOperationException("PosTagHypothesis is immutable");
+  }
+
+  @Override
+  public List<Solution> getUnderlyingSolutions() {
+    return underlyingSolutions;
+  }
+
+  @SuppressWarnings("rawtypes")
+  @Override
+  public ScoringStrategy getScoringStrategy() {
+    return scoringStrategy;
+  }
+
+  /**
+   * Hypotheses are immutable: the scoring strategy is that of the initial
+   * sequence.
+   */
+  @Override
+  public void setScoringStrategy(@SuppressWarnings("rawtypes") ScoringStrategy scoringStrategy) {
+    throw new UnsupportedOperationException("PosTagHypothesis is immutable");
+  }
+
+  /**
+   * The full pos-tag sequence for this hypothesis, built from the parent's
+   * sequence the first time it is requested.
+   */
+  public PosTagSequence getSequence(TalismaneSession session) throws UnknownPosTagException {
+    if (sequence == null) {
+      PosTaggedToken posTaggedToken = new PosTaggedToken(token, decision, session);
+      sequence = new PosTagSequence(parent.getSequence(session));
+      sequence.addPosTaggedToken(posTaggedToken);
+      if (decision.isStatistical())
+        sequence.addDecision(decision);
+    }
+    return sequence;
+  }
+
+  @Override
+  public String toString() {
+    if (sequence != null)
+      return sequence.toString();
+    return "PosTagHypothesis [parent=" + parent + ", token=" + token + ", decision=" + decision + "]";
+  }
+}
@@ -29,6 +29,10 @@ public class PosTagSequence extends ArrayList<PosTaggedToken>implements Comparab
   private boolean scoreCalculated = false;
   private String string = null;
   private final List<Decision> decisions = new ArrayList<>();
+  // running sums over the decisions, so that scoring is independent of the
+  // number of decisions
+  private double decisionProbabilityLogSum = 0;
+  private double decisionScoreSum = 0;
   private final List<Solution> underlyingSolutions = new ArrayList<>();
 
   @SuppressWarnings("rawtypes")
@@ -58,6 +62,9 @@ public class PosTagSequence extends ArrayList<PosTaggedToken>implements Comparab
     for (PosTaggedToken posTaggedToken : history)
       this.addPosTaggedToken(posTaggedToken);
     this.decisions.addAll(history.getDecisions());
+    this.decisionProbabilityLogSum = history.decisionProbabilityLogSum;
+    this.decisionScoreSum = history.decisionScoreSum;
+    this.scoringStrategy = history.scoringStrategy;
     this.tokenSequence = history.getTokenSequence();
 
     this.initialize();
@@ -76,6 +83,8 @@ public class PosTagSequence extends ArrayList<PosTaggedToken>implements Comparab
       this.add(newPosTaggedToken);
     }
     this.decisions.addAll(clone.getDecisions());
+    this.decisionProbabilityLogSum = clone.decisionProbabilityLogSum;
+    this.decisionScoreSum = clone.decisionScoreSum;
   }
 
   private void initialize() {
@@ -208,6 +217,24 @@ public class PosTagSequence extends ArrayList<PosTaggedToken>implements Comparab
   @Override
   public void addDecision(Decision decision) {
     this.decisions.add(decision);
+    this.decisionProbabilityLogSum += decision.getProbabilityLog();
+    this.decisionScoreSum += decision.getScore();
+    this.scoreCalculated = false;
+  }
+
+  @Override
+  public int getDecisionCount() {
+    return decisions.size();
+  }
+
+  @Override
+  public double getDecisionProbabilityLogSum() {
+    return decisionProbabilityLogSum;
+  }
+
+  @Override
+  public double getDecisionScoreSum() {
+    return decisionScoreSum;
   }
 
   @Override
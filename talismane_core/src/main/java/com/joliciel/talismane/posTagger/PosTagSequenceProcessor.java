@@ -115,6 +115,9 @@ public interface PosTagSequenceProcessor extends Closeable {
           case with_comments:
             templateName = "posTagger_template_with_comments.ftl";
             break;
+          case json:
+            templateName = "posTagger_template_json.ftl";
+            break;
           default:
             throw new RuntimeException("Unknown builtInTemplate for pos-tagger: " + builtInTemplate.name());
           }
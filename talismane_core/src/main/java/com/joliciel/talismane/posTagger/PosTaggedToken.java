@@ -19,9 +19,7 @@
 package com.joliciel.talismane.posTagger;
 
 import java.text.DecimalFormat;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
@@ -32,6 +30,7 @@ import com.joliciel.talismane.lexicon.LexicalEntry;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.features.Feature;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.FeatureResultCache;
 import com.joliciel.talismane.machineLearning.features.HasFeatureCache;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.posTagger.features.PosTaggedTokenWrapper;
@@ -50,7 +49,7 @@ import com.joliciel.talismane.tokeniser.Token;
  *
  */
 public class PosTaggedToken extends TaggedToken<PosTag>implements PosTaggedTokenWrapper, HasFeatureCache, PosTaggerContext {
-  private Map<String, FeatureResult<?>> featureResults = new HashMap<String, FeatureResult<?>>();
+  private FeatureResultCache featureResults = new FeatureResultCache();
 
   private List<LexicalEntry> lexicalEntries = null;
   private static final DecimalFormat df = new DecimalFormat("0.0000");
@@ -109,22 +108,13 @@ public class PosTaggedToken extends TaggedToken<PosTag>implements PosTaggedToken
   }
 
   @Override
-  @SuppressWarnings("unchecked")
-
   public <T, Y> FeatureResult<Y> getResultFromCache(Feature<T, Y> feature, RuntimeEnvironment env) {
-    FeatureResult<Y> result = null;
-
-    String key = feature.getName() + env.getKey();
-    if (this.featureResults.containsKey(key)) {
-      result = (FeatureResult<Y>) this.featureResults.get(key);
-    }
-    return result;
+    return this.featureResults.get(feature, env);
   }
 
   @Override
   public <T, Y> void putResultInCache(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
-    String key = feature.getName() + env.getKey();
-    this.featureResults.put(key, featureResult);
+    this.featureResults.put(feature, featureResult, env);
   }
 
   @Override
@@ -18,11 +18,10 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.posTagger;
 
-import java.util.HashMap;
-import java.util.Map;
 
 import com.joliciel.talismane.machineLearning.features.Feature;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.FeatureResultCache;
 import com.joliciel.talismane.machineLearning.features.HasFeatureCache;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.tokeniser.Token;
@@ -30,7 +29,7 @@ import com.joliciel.talismane.tokeniser.Token;
 public final class PosTaggerContextImpl implements HasFeatureCache, PosTaggerContext {
   private final Token token;
   private final PosTagSequence history;
-  private Map<String, FeatureResult<?>> featureResults = new HashMap<String, FeatureResult<?>>();
+  private FeatureResultCache featureResults = new FeatureResultCache();
 
   public PosTaggerContextImpl(Token token, PosTagSequence history) {
     this.token = token;
@@ -58,22 +57,14 @@ public final class PosTaggerContextImpl implements HasFeatureCache, PosTaggerCon
     return this.history;
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public <T, Y> FeatureResult<Y> getResultFromCache(Feature<T, Y> feature, RuntimeEnvironment env) {
-    FeatureResult<Y> result = null;
-
-    String key = feature.getName() + env.getKey();
-    if (this.featureResults.containsKey(key)) {
-      result = (FeatureResult<Y>) this.featureResults.get(key);
-    }
-    return result;
+    return this.featureResults.get(feature, env);
   }
 
   @Override
   public <T, Y> void putResultInCache(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
-    String key = feature.getName() + env.getKey();
-    this.featureResults.put(key, featureResult);
+    this.featureResults.put(feature, featureResult, env);
   }
 
   @Override
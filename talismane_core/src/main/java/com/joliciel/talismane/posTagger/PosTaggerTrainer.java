@@ -41,6 +41,7 @@ import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
 import com.joliciel.talismane.machineLearning.MachineLearningModel;
 import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
 import com.joliciel.talismane.posTagger.features.PosTaggerFeature;
 import com.joliciel.talismane.posTagger.features.PosTaggerFeatureParser;
 import com.joliciel.talismane.sentenceAnnotators.SentenceAnnotatorLoader;
@@ -94,7 +95,23 @@ public class PosTaggerTrainer {
 
     PosTaggerFeatureParser featureParser = new PosTaggerFeatureParser(session);
     Set<PosTaggerFeature<?>> features = featureParser.getFeatureSet(featureDescriptors);
-    eventStream = new PosTagEventStream(corpusReader, features);
+    PosTagEventStream posTagEventStream = new PosTagEventStream(corpusReader, features);
+
+    Config machineLearningConfig = posTaggerConfig.getConfig("train.machine-learning");
+    int featureThreads = machineLearningConfig.getInt("feature-threads");
+    if (featureThreads > 1) {
+      // each thread gets its own features, since features are not
+      // thread-safe
+      List<PosTagEventStream> extractors = new ArrayList<>();
+      extractors.add(posTagEventStream);
+      for (int i = 1; i < featureThreads; i++)
+        extractors.add(new PosTagEventStream(corpusReader, new PosTaggerFeatureParser(session).getFeatureSet(featureDescriptors)));
+      eventStream = new ParallelClassificationEventStream<PosTagSequence>(
+          () -> corpusReader.hasNextSentence() ? corpusReader.nextPosTagSequence() : null, extractors,
+          machineLearningConfig.getInt("sentences-in-flight"), posTagEventStream::getAttributes);
+    } else {
+      eventStream = posTagEventStream;
+    }
   }
 
   public ClassificationModel train() throws TalismaneException, IOException {
@@ -26,7 +26,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,7 +52,7 @@ public class PosTaggers {
   private static final Map<String, ClassificationModel> modelMap = new HashMap<>();
   private static final Map<String, PosTagger> posTaggerMap = new HashMap<>();
 
-  public static PosTagger getPosTagger(TalismaneSession session) throws IOException, TalismaneException, ClassNotFoundException {
+  public static synchronized PosTagger getPosTagger(TalismaneSession session) throws IOException, TalismaneException, ClassNotFoundException {
     PosTagger posTagger = null;
     if (session.getSessionId() != null)
       posTagger = posTaggerMap.get(session.getSessionId());
@@ -68,9 +67,8 @@ public class PosTaggers {
       LOG.debug("Getting pos-tagger model from " + modelFilePath);
       ClassificationModel model = modelMap.get(modelFilePath);
       if (model == null) {
-        InputStream tokeniserModelFile = ConfigUtils.getFileFromConfig(config, configPath);
         MachineLearningModelFactory factory = new MachineLearningModelFactory();
-        model = factory.getClassificationModel(new ZipInputStream(tokeniserModelFile));
+        model = factory.getClassificationModel(config, configPath);
         modelMap.put(modelFilePath, model);
       }
 
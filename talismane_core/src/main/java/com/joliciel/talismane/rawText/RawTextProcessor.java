@@ -76,6 +76,12 @@ public abstract class RawTextProcessor extends AnnotatedText implements CurrentF
   // initial line 0)
   private int leftoverNewline = 0;
 
+  /**
+   * Whether the last non-empty block of text processed was a final block, in
+   * which case annotations ending exactly at its end have already been closed.
+   */
+  private boolean endsClosed = false;
+
   private Sentence leftover;
 
   private static final int NUM_CHARS = 30;
@@ -103,6 +109,7 @@ public abstract class RawTextProcessor extends AnnotatedText implements CurrentF
     this.leftoverOutput = predecessor.leftoverOutput;
     this.lineNumber = predecessor.lineNumber;
     this.leftoverNewline = predecessor.leftoverNewline;
+    this.endsClosed = predecessor.endsClosed;
     this.leftover = predecessor.leftover;
     this.originalStartIndex = originalStartIndex;
   }
@@ -151,7 +158,10 @@ public abstract class RawTextProcessor extends AnnotatedText implements CurrentF
       // we add the end match
       // the 2nd condition is to ensure we add the end match, since empty
       // blocks can never match anything
-      if (annotation.getEnd() >= textStartPos
+      // if the previous block was final, it has already added end matches
+      // lying exactly on its end
+      boolean alreadyClosed = endsClosed && annotation.getEnd() == textStartPos && annotation.getStart() < textStartPos;
+      if (annotation.getEnd() >= textStartPos && !alreadyClosed
           && (annotation.getEnd() < textEndPos || (annotation.getEnd() == textEndPos && rawText.length() > 0 && finalBlock))) {
         if (LOG.isTraceEnabled()) {
           LOG.trace("End in range: textStartPos " + textStartPos + ">= matcherEnd [[" + annotation.getEnd() + "]] < textEndPos " + textEndPos);
@@ -492,6 +502,8 @@ public abstract class RawTextProcessor extends AnnotatedText implements CurrentF
     }
 
     originalIndexProcessed += rawText.length();
+    if (rawText.length() > 0)
+      endsClosed = finalBlock;
 
     this.sentenceHolder = sentenceHolder;
     return sentenceHolder;
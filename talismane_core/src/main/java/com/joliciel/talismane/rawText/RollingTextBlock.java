@@ -111,8 +111,14 @@ public class RollingTextBlock extends RawTextProcessor {
   private final String block3;
   private final String block4;
 
-  private String fileName = "";
-  private File file = null;
+  /**
+   * The file currently being read, shared by all blocks rolled from the same
+   * original block, since only the original is registered with the reader as
+   * a current file observer.
+   */
+  private final CurrentFile currentFile;
+  private final File file3;
+  private final File file4;
 
   private final SentenceHolder sentenceHolder1;
   private final SentenceHolder sentenceHolder2;
@@ -132,6 +138,10 @@ public class RollingTextBlock extends RawTextProcessor {
     this.block3 = "";
     this.block4 = "";
 
+    this.currentFile = new CurrentFile();
+    this.file3 = null;
+    this.file4 = null;
+
     this.sentenceHolder1 = new SentenceHolder(session, 0, true);
     this.sentenceHolder1.setProcessedText("");
     this.sentenceHolder2 = new SentenceHolder(session, 0, true);
@@ -149,8 +159,12 @@ public class RollingTextBlock extends RawTextProcessor {
 
     this.session = predecessor.session;
 
-    this.fileName = predecessor.fileName;
-    this.file = predecessor.file;
+    // the reader only moves to the next file once all text from the previous
+    // file has been rolled in, so the current file is the one nextText came
+    // from
+    this.currentFile = predecessor.currentFile;
+    this.file3 = predecessor.file4;
+    this.file4 = this.currentFile.file;
 
     this.sentenceHolder1 = predecessor.sentenceHolder2;
     this.sentenceHolder2 = predecessor.sentenceHolder3;
@@ -261,6 +275,10 @@ public class RollingTextBlock extends RawTextProcessor {
     int textEndPos = this.block1.length() + this.block2.length() + this.block3.length();
 
     this.sentenceHolder3 = super.processText(textStartPos, textEndPos, this.block3, this.block4.length() == 0);
+    if (this.file3 != null) {
+      this.sentenceHolder3.setFileName(this.file3.getPath());
+      this.sentenceHolder3.setFile(this.file3);
+    }
   }
 
   @Override
@@ -291,9 +309,12 @@ public class RollingTextBlock extends RawTextProcessor {
 
   @Override
   public void onNextFile(File file) {
-    this.file = file;
-    this.fileName = file.getPath();
+    this.currentFile.file = file;
     super.onNextFile(file);
   }
 
+  private static final class CurrentFile {
+    private File file = null;
+  }
+
 }
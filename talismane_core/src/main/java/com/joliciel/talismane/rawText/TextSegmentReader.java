@@ -0,0 +1,177 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2016 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.rawText;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.utils.LogUtils;
+
+/**
+ * Splits the raw text read from a reader into the segments to be rolled into a
+ * {@link RollingTextBlock}. The text is read in large buffers, and scanned for
+ * block boundaries: either an end-block character, or a whitespace character
+ * (other than a newline) once the current segment exceeds the session's
+ * block size.<br/>
+ * <br/>
+ * An end-block character ends the current segment (and is included in it),
+ * and is followed by an empty segment. Three consecutive end-block characters,
+ * or the end of the input, end the reading, and are followed by three empty
+ * segments, so as to roll all remaining text through processing.<br/>
+ * <br/>
+ * The reader is only read when the current buffer has been exhausted, so that
+ * any {@link com.joliciel.talismane.utils.io.CurrentFileProvider} notifications
+ * are received before the segments from the new file are returned.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class TextSegmentReader {
+  private static final Logger LOG = LoggerFactory.getLogger(TextSegmentReader.class);
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Reader reader;
+  private final int blockSize;
+  private final char endBlockCharacter;
+
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private int position = 0;
+  private int limit = 0;
+  private int segmentStart = 0;
+  private final StringBuilder pending = new StringBuilder();
+  private int endBlockCharacterCount = 0;
+  private boolean finished = false;
+
+  public TextSegmentReader(Reader reader, TalismaneSession session) {
+    this(reader, session.getBlockSize(), session.getEndBlockCharacter());
+  }
+
+  public TextSegmentReader(Reader reader, int blockSize, char endBlockCharacter) {
+    this.reader = reader;
+    this.blockSize = blockSize;
+    this.endBlockCharacter = endBlockCharacter;
+  }
+
+  /**
+   * Read up to the next block boundary, and return the segments it produces
+   * (at least one), or an empty list if reading has already finished.
+   */
+  public List<String> readSegments() {
+    List<String> segments = new ArrayList<>(5);
+    if (finished)
+      return segments;
+
+    char c;
+    boolean endOfInput = false;
+    while (true) {
+      if (position == limit) {
+        if (!this.fillBuffer()) {
+          endOfInput = true;
+          c = '\n';
+          break;
+        }
+      }
+      c = buffer[position];
+      if (c == endBlockCharacter)
+        break;
+      if (pending.length() + position - segmentStart > blockSize && c != '\r' && c != '\n' && Character.isWhitespace(c))
+        break;
+      endBlockCharacterCount = 0;
+      position++;
+    }
+
+    // Jump out if we have 3 consecutive end-block characters.
+    if (c == endBlockCharacter) {
+      endBlockCharacterCount++;
+      if (endBlockCharacterCount == 3) {
+        LOG.info("Three consecutive end-block characters. Exiting.");
+        finished = true;
+      }
+    } else {
+      endBlockCharacterCount = 0;
+    }
+    if (endOfInput)
+      finished = true;
+
+    // the end-block character belongs to the segment it ends
+    int end = position;
+    if (c == endBlockCharacter && !endOfInput)
+      end++;
+    pending.append(buffer, segmentStart, end - segmentStart);
+    if (c == endBlockCharacter && endOfInput)
+      pending.append(c);
+    if (pending.length() > 0) {
+      segments.add(pending.toString());
+      pending.setLength(0);
+    }
+    if (c == endBlockCharacter)
+      segments.add("");
+
+    if (finished) {
+      segments.add("");
+      segments.add("");
+      segments.add("");
+    } else {
+      // whitespace starts the next segment, whereas an end-block character has
+      // been consumed
+      segmentStart = end;
+      position++;
+    }
+    return segments;
+  }
+
+  /**
+   * Refill the buffer after moving any partial segment out of it. Returns
+   * false at the end of the input.
+   */
+  private boolean fillBuffer() {
+    pending.append(buffer, segmentStart, position - segmentStart);
+    position = 0;
+    limit = 0;
+    segmentStart = 0;
+    int charsRead = 0;
+    // some readers return 0 characters between sub-files
+    while (charsRead == 0) {
+      try {
+        charsRead = reader.read(buffer, 0, buffer.length);
+      } catch (IOException e) {
+        LogUtils.logError(LOG, e);
+        charsRead = -1;
+      }
+    }
+    if (charsRead < 0)
+      return false;
+    limit = charsRead;
+    return true;
+  }
+
+  /**
+   * Whether the end of the input, or three consecutive end-block characters,
+   * have been reached.
+   */
+  public boolean isFinished() {
+    return finished;
+  }
+}
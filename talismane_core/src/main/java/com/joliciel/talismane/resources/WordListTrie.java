@@ -0,0 +1,255 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.resources;
+
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A trie of words, used to find quickly any of the words in a text. Each word
+ * is given as the group of characters it allows at each position, as in a
+ * regex made up of a character class per position, and is stored in the trie
+ * under the characters' common folded form, ignoring case and diacritics (see
+ * {@link #fold(char)}).<br/>
+ * <br/>
+ * The text is scanned once from each position, following the trie for as long
+ * as the folded characters match, so that the time taken does not depend on
+ * the number of words. Each word can be required to start and/or end on a
+ * word boundary, as defined by the regex {@code \b} with
+ * {@link Pattern#UNICODE_CHARACTER_CLASS}. Thread-safe once all words have
+ * been added.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class WordListTrie {
+  private static final char[] foldedChars = new char[Character.MAX_VALUE + 1];
+  private static final Pattern wordBoundaryPattern = Pattern.compile("\\b", Pattern.UNICODE_CHARACTER_CLASS);
+
+  private final Node root = new Node();
+  private int size = 0;
+
+  private static final class Node {
+    private final Map<Character, Node> children = new HashMap<>();
+    /**
+     * The words ending at this node, in the order they were added, or null if
+     * none.
+     */
+    private List<Word> words = null;
+  }
+
+  private static final class Word {
+    /**
+     * The order in which this word was added.
+     */
+    private final int index;
+    /**
+     * The characters allowed at each position.
+     */
+    private final char[][] characterGroups;
+    private final boolean startBoundary;
+    private final boolean endBoundary;
+
+    private Word(int index, char[][] characterGroups, boolean startBoundary, boolean endBoundary) {
+      this.index = index;
+      this.characterGroups = characterGroups;
+      this.startBoundary = startBoundary;
+      this.endBoundary = endBoundary;
+    }
+
+    private boolean matches(CharSequence text, int start) {
+      for (int i = 0; i < characterGroups.length; i++) {
+        char c = text.charAt(start + i);
+        boolean found = false;
+        for (char allowed : characterGroups[i]) {
+          if (c == allowed) {
+            found = true;
+            break;
+          }
+        }
+        if (!found)
+          return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Add a word to this trie, matching only text with one of the characters in
+   * the corresponding group at each position. All characters in a group must
+   * have the same folded character, and the word cannot be empty.
+   * 
+   * @param startBoundary
+   *          whether the word must start on a word boundary
+   * @param endBoundary
+   *          whether the word must end on a word boundary
+   */
+  public void add(List<String> characterGroups, boolean startBoundary, boolean endBoundary) {
+    if (characterGroups.isEmpty())
+      throw new IllegalArgumentException("Cannot add an empty word");
+    Node node = root;
+    char[][] groups = new char[characterGroups.size()][];
+    for (int i = 0; i < groups.length; i++) {
+      String group = characterGroups.get(i);
+      char folded = fold(group.charAt(0));
+      for (int j = 1; j < group.length(); j++) {
+        if (fold(group.charAt(j)) != folded)
+          throw new IllegalArgumentException("Characters in group do not fold to the same character: " + group);
+      }
+      groups[i] = group.toCharArray();
+      node = this.getChild(node, folded);
+    }
+    this.addWord(node, new Word(size, groups, startBoundary, endBoundary));
+  }
+
+  private Node getChild(Node node, char c) {
+    Node child = node.children.get(c);
+    if (child == null) {
+      child = new Node();
+      node.children.put(c, child);
+    }
+    return child;
+  }
+
+  private void addWord(Node node, Word word) {
+    if (node.words == null)
+      node.words = new ArrayList<>(1);
+    node.words.add(word);
+    size++;
+  }
+
+  /**
+   * The number of words added to this trie.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Does the text contain any of the words in this trie.
+   */
+  public boolean find(CharSequence text) {
+    Scanner scanner = new Scanner(text);
+    for (int i = 0; i < text.length(); i++) {
+      if (scanner.matchAt(i) >= 0)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Find the words of this trie in the text, in the same way as a regex
+   * alternating over the words in the order they were added: scanning the text
+   * from left to right, the first word added which matches at a given position
+   * is selected, and the scan continues after it.
+   * 
+   * @return the start and end of each word found
+   */
+  public List<int[]> match(CharSequence text) {
+    List<int[]> matches = new ArrayList<>();
+    Scanner scanner = new Scanner(text);
+    int i = 0;
+    while (i < text.length()) {
+      int end = scanner.matchAt(i);
+      if (end >= 0) {
+        matches.add(new int[] { i, end });
+        i = end;
+      } else {
+        i++;
+      }
+    }
+    return matches;
+  }
+
+  private final class Scanner {
+    private final CharSequence text;
+    private final char[] folded;
+    private boolean[] wordBoundaries = null;
+
+    private Scanner(CharSequence text) {
+      this.text = text;
+      this.folded = new char[text.length()];
+      for (int i = 0; i < folded.length; i++)
+        folded[i] = fold(text.charAt(i));
+    }
+
+    /**
+     * The end of the first word added which matches at the start position
+     * provided, or -1 if none.
+     */
+    private int matchAt(int start) {
+      int bestIndex = -1;
+      int bestEnd = -1;
+      Node node = root;
+      for (int j = start;; j++) {
+        if (node.words != null) {
+          for (Word word : node.words) {
+            if (bestIndex >= 0 && word.index > bestIndex)
+              break;
+            if (word.startBoundary && !this.isWordBoundary(start))
+              continue;
+            if (word.endBoundary && !this.isWordBoundary(j))
+              continue;
+            if (word.matches(text, start)) {
+              bestIndex = word.index;
+              bestEnd = j;
+              break;
+            }
+          }
+        }
+        if (j == folded.length)
+          break;
+        node = node.children.get(folded[j]);
+        if (node == null)
+          break;
+      }
+      return bestEnd;
+    }
+
+    private boolean isWordBoundary(int i) {
+      if (wordBoundaries == null) {
+        wordBoundaries = new boolean[text.length() + 1];
+        Matcher matcher = wordBoundaryPattern.matcher(text);
+        while (matcher.find())
+          wordBoundaries[matcher.start()] = true;
+      }
+      return wordBoundaries[i];
+    }
+  }
+  /**
+   * The character used to compare two characters while ignoring case and
+   * diacritics: the lowercase form of the character's base character in its
+   * canonical decomposition.
+   */
+  public static char fold(char c) {
+    char folded = foldedChars[c];
+    if (folded == 0 && c != 0) {
+      String decomposed = Normalizer.normalize(String.valueOf(c), Form.NFD);
+      folded = Character.toLowerCase(Character.toUpperCase(decomposed.charAt(0)));
+      foldedChars[c] = folded;
+    }
+    return folded;
+  }
+}
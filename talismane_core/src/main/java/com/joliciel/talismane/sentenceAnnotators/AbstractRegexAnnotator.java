@@ -20,7 +20,9 @@ package com.joliciel.talismane.sentenceAnnotators;
 
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -37,6 +39,7 @@ import com.joliciel.talismane.Annotation;
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.rawText.Sentence;
 import com.joliciel.talismane.resources.WordList;
+import com.joliciel.talismane.resources.WordListTrie;
 import com.joliciel.talismane.tokeniser.StringAttribute;
 import com.joliciel.talismane.tokeniser.TokenAttribute;
 import com.joliciel.talismane.utils.StringUtils;
@@ -65,9 +68,16 @@ import com.joliciel.talismane.utils.StringUtils;
 public abstract class AbstractRegexAnnotator implements RegexAnnotator {
   private static final Logger LOG = LoggerFactory.getLogger(AbstractRegexAnnotator.class);
   private static Pattern wordListPattern = Pattern.compile("\\\\p\\{WordList\\((.*?)\\)\\}", Pattern.UNICODE_CHARACTER_CLASS);
+  private static Pattern pureWordListPattern = Pattern.compile("(\\\\b)?(\\((?:\\?:)?)?\\\\p\\{WordList\\([^)]*\\)\\}(\\))?(\\\\b)?",
+      Pattern.UNICODE_CHARACTER_CLASS);
+  private static Pattern anyTextPattern = Pattern.compile(".*", Pattern.DOTALL);
+  private static Pattern anyTextGroupPattern = Pattern.compile("(.*)", Pattern.DOTALL);
   private static Pattern diacriticPattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+  private static final String REGEX_SPECIAL_CHARACTERS = "\\.[]{}()*+?^$|";
+  private static final String CHARACTER_CLASS_SPECIAL_CHARACTERS = "\\[]^-&";
   private final String regex;
-  private final Pattern pattern;
+  private final String expandedRegex;
+  private volatile Pattern pattern = null;
   private final int groupIndex;
   private final Map<String, TokenAttribute<?>> attributes = new HashMap<String, TokenAttribute<?>>();
   private final boolean caseSensitive;
@@ -77,6 +87,9 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
   private final boolean singleToken;
   private final Map<String, String> parameters = new HashMap<>();
   private final TalismaneSession session;
+  private WordListTrie wordListPrefilter = null;
+  private WordListTrie wordListMatcher = null;
+  private Pattern wordListMatchPattern = null;
 
   /**
    * A constructor with the minimum required data. This is the constructor to be
@@ -91,7 +104,9 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
     this.diacriticSensitive = diacricticSensitive;
     this.autoWordBoundaries = autoWordBoundaries;
     this.singleToken = singleToken;
-    this.pattern = this.constructPattern();
+    this.expandedRegex = this.constructRegex();
+    if (this.wordListMatcher == null)
+      this.getPattern();
   }
 
   /**
@@ -167,9 +182,9 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
     if (regex == null || regex.length() == 0)
       throw new SentenceAnnotatorLoadException("Cannot use an empty regex for a filter");
 
-    this.pattern = this.constructPattern();
-    Matcher matcher = pattern.matcher("");
-    if (this.groupIndex > matcher.groupCount()) {
+    this.expandedRegex = this.constructRegex();
+    Pattern matchPattern = this.wordListMatcher != null ? this.wordListMatchPattern : this.getPattern();
+    if (this.groupIndex > matchPattern.matcher("").groupCount()) {
       throw new SentenceAnnotatorLoadException("No group " + this.groupIndex + " in pattern: " + this.regex);
     }
   }
@@ -181,7 +196,15 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
     return this.parameters;
   }
 
-  private Pattern constructPattern() throws SentenceAnnotatorLoadException {
+  /**
+   * Construct the regex actually matched, replacing word lists by their
+   * contents. If the regex is nothing but a word list, with optional word
+   * boundaries, it is matched directly by a {@link WordListTrie}, and the regex
+   * is only compiled if requested through {@link #getPattern()}. Otherwise, if
+   * every match contains a word from a word list, sentences are prefiltered
+   * with a {@link WordListTrie}.
+   */
+  private String constructRegex() throws SentenceAnnotatorLoadException {
     // we may need to replace WordLists by the list contents
     String myRegex = this.regex;
 
@@ -363,6 +386,21 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
       }
     }
 
+    int mandatoryWordListStart = findMandatoryWordList(myRegex);
+    // a regex which is nothing but a word list, possibly inside a group, can be
+    // matched directly, and any group matches the whole word
+    Pattern pureWordListMatchPattern = null;
+    Matcher pureWordListMatcher = pureWordListPattern.matcher(myRegex);
+    if (pureWordListMatcher.matches()) {
+      String openGroup = pureWordListMatcher.group(2);
+      String closeGroup = pureWordListMatcher.group(3);
+      if (openGroup == null && closeGroup == null)
+        pureWordListMatchPattern = anyTextPattern;
+      else if (openGroup != null && closeGroup != null)
+        pureWordListMatchPattern = openGroup.equals("(") ? anyTextGroupPattern : anyTextPattern;
+      if (pureWordListMatchPattern != null && this.groupIndex > pureWordListMatchPattern.matcher("").groupCount())
+        pureWordListMatchPattern = null;
+    }
     Matcher matcher = wordListPattern.matcher(myRegex);
     StringBuilder regexBuilder = new StringBuilder();
 
@@ -395,65 +433,65 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
       if (wordList == null)
         throw new SentenceAnnotatorLoadException("Unknown word list: " + wordListName);
 
+      WordListTrie trie = null;
+      boolean startBoundary = false;
+      boolean endBoundary = false;
+      boolean startsGroup = false;
+      boolean endsGroup = false;
+      if (start == mandatoryWordListStart) {
+        trie = new WordListTrie();
+        // the words are alternatives, so a word boundary applies to all of
+        // them if the word list is at the edge of a group, and otherwise only
+        // to the first or last word
+        startBoundary = followsWordBoundary(myRegex, start);
+        endBoundary = precedesWordBoundary(myRegex, end);
+        startsGroup = (start >= 1 && myRegex.charAt(start - 1) == '(' && !isEscaped(myRegex, start - 1))
+            || (start >= 3 && myRegex.startsWith("(?:", start - 3) && !isEscaped(myRegex, start - 3));
+        endsGroup = end < myRegex.length() && myRegex.charAt(end) == ')' && !isEscaped(myRegex, end);
+      }
+      int wordCount = wordList.getWordList().size();
+
       StringBuilder sb = new StringBuilder();
 
-      boolean firstWord = true;
+      int wordIndex = 0;
       for (String word : wordList.getWordList()) {
+        boolean firstWord = wordIndex == 0;
+        boolean lastWord = wordIndex == wordCount - 1;
         if (!firstWord)
           sb.append("|");
         word = Normalizer.normalize(word, Form.NFC);
-        if (uppercaseOptional || diacriticsOptional) {
-          String wordNoDiacritics = Normalizer.normalize(word, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-          String wordLowercase = word.toLowerCase(Locale.ENGLISH);
-          String wordLowercaseNoDiacritics = Normalizer.normalize(wordLowercase, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-          String wordUppercase = wordNoDiacritics.toUpperCase(Locale.ENGLISH);
-
-          boolean needsGrouping = false;
-          if (uppercaseOptional && !word.equals(wordLowercase))
-            needsGrouping = true;
-          if (diacriticsOptional && !word.equals(wordNoDiacritics))
-            needsGrouping = true;
-          if (lowercaseOptional && !word.equals(wordUppercase))
-            needsGrouping = true;
-          if (needsGrouping) {
-            for (int i = 0; i < word.length(); i++) {
-              char c = word.charAt(i);
-
-              boolean grouped = false;
-              if (uppercaseOptional && c != wordLowercase.charAt(i))
-                grouped = true;
-              if (diacriticsOptional && c != wordNoDiacritics.charAt(i))
-                grouped = true;
-              if (lowercaseOptional && c != wordUppercase.charAt(i))
-                grouped = true;
-
-              if (!grouped)
-                sb.append(c);
-              else {
-                sb.append("[");
-                String group = "" + c;
-                if (uppercaseOptional && group.indexOf(wordLowercase.charAt(i)) < 0)
-                  group += (wordLowercase.charAt(i));
-                if (lowercaseOptional && group.indexOf(wordUppercase.charAt(i)) < 0)
-                  group += (wordUppercase.charAt(i));
-                if (diacriticsOptional && group.indexOf(wordNoDiacritics.charAt(i)) < 0)
-                  group += (wordNoDiacritics.charAt(i));
-                if (uppercaseOptional && diacriticsOptional && group.indexOf(wordLowercaseNoDiacritics.charAt(i)) < 0)
-                  group += (wordLowercaseNoDiacritics.charAt(i));
-
-                sb.append(group);
-                sb.append("]");
-              } // does this letter need grouping?
-            } // next letter
+        List<String> groups = getCharacterGroups(word, uppercaseOptional, diacriticsOptional, lowercaseOptional);
+        for (String group : groups) {
+          if (group.length() == 1) {
+            sb.append(group);
           } else {
-            sb.append(word);
-          } // any options activated?
-        } else {
-          sb.append(word);
+            sb.append("[");
+            sb.append(group);
+            sb.append("]");
+          }
+        }
+        if (trie != null) {
+          if (canPrefilter(groups))
+            trie.add(groups, startBoundary && (startsGroup || firstWord), endBoundary && (endsGroup || lastWord));
+          else
+            trie = null;
         }
-        firstWord = false;
+        wordIndex++;
       } // next word in list
 
+      if (trie != null && trie.size() > 0) {
+        if (pureWordListMatchPattern != null) {
+          this.wordListMatcher = trie;
+          this.wordListMatchPattern = pureWordListMatchPattern;
+          if (LOG.isDebugEnabled())
+            LOG.debug("Matching word list " + wordListName + " directly for regex " + this.regex);
+        } else {
+          this.wordListPrefilter = trie;
+          if (LOG.isDebugEnabled())
+            LOG.debug("Prefiltering sentences with word list " + wordListName + " for regex " + this.regex);
+        }
+      }
+
       regexBuilder.append(sb.toString());
       lastIndex = end;
     } // next match
@@ -463,55 +501,271 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
       LOG.trace("Replaced regex " + this.regex + " with: ");
       LOG.trace(myRegex);
     }
-    Pattern pattern = Pattern.compile(myRegex, Pattern.UNICODE_CHARACTER_CLASS);
-    return pattern;
+    return myRegex;
   }
 
-  @Override
-  public void annotate(Sentence annotatedText, String... labels) {
-    List<Annotation<TokenPlaceholder>> placeholders = new ArrayList<>();
-    List<Annotation<TokenAttribute<?>>> annotations = new ArrayList<>();
+  /**
+   * Split a word into the groups of characters matched at each position by
+   * the regex constructed for this word, where a group with a single
+   * character matches that character only.
+   */
+  private static List<String> getCharacterGroups(String word, boolean uppercaseOptional, boolean diacriticsOptional, boolean lowercaseOptional) {
+    List<String> groups = new ArrayList<>(word.length());
+    if (uppercaseOptional || diacriticsOptional) {
+      String wordNoDiacritics = Normalizer.normalize(word, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+      String wordLowercase = word.toLowerCase(Locale.ENGLISH);
+      String wordLowercaseNoDiacritics = Normalizer.normalize(wordLowercase, Form.NFD).replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
+      String wordUppercase = wordNoDiacritics.toUpperCase(Locale.ENGLISH);
+
+      boolean needsGrouping = false;
+      if (uppercaseOptional && !word.equals(wordLowercase))
+        needsGrouping = true;
+      if (diacriticsOptional && !word.equals(wordNoDiacritics))
+        needsGrouping = true;
+      if (lowercaseOptional && !word.equals(wordUppercase))
+        needsGrouping = true;
+      if (needsGrouping) {
+        for (int i = 0; i < word.length(); i++) {
+          char c = word.charAt(i);
+
+          boolean grouped = false;
+          if (uppercaseOptional && c != wordLowercase.charAt(i))
+            grouped = true;
+          if (diacriticsOptional && c != wordNoDiacritics.charAt(i))
+            grouped = true;
+          if (lowercaseOptional && c != wordUppercase.charAt(i))
+            grouped = true;
+
+          if (!grouped)
+            groups.add("" + c);
+          else {
+            String group = "" + c;
+            if (uppercaseOptional && group.indexOf(wordLowercase.charAt(i)) < 0)
+              group += (wordLowercase.charAt(i));
+            if (lowercaseOptional && group.indexOf(wordUppercase.charAt(i)) < 0)
+              group += (wordUppercase.charAt(i));
+            if (diacriticsOptional && group.indexOf(wordNoDiacritics.charAt(i)) < 0)
+              group += (wordNoDiacritics.charAt(i));
+            if (uppercaseOptional && diacriticsOptional && group.indexOf(wordLowercaseNoDiacritics.charAt(i)) < 0)
+              group += (wordLowercaseNoDiacritics.charAt(i));
+
+            groups.add(group);
+          } // does this letter need grouping?
+        } // next letter
+        return groups;
+      }
+    }
 
-    Matcher matcher = this.getPattern().matcher(annotatedText.getText());
-    int lastStart = -1;
-    while (matcher.find()) {
-      int start = matcher.start(groupIndex);
-      if (start > lastStart) {
-        int end = matcher.end(groupIndex);
-
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("Regex: " + this.regex);
-          LOG.trace("Next match: " + annotatedText.getText().subSequence(matcher.start(), matcher.end()).toString().replace('\n', '¶').replace('\r', '¶'));
-          if (matcher.start() != start || matcher.end() != end) {
-            LOG.trace("But matching group: " + annotatedText.getText().subSequence(start, end).toString().replace('\n', '¶').replace('\r', '¶'));
-          }
-        }
+    for (int i = 0; i < word.length(); i++)
+      groups.add("" + word.charAt(i));
+    return groups;
+  }
 
-        if (this.singleToken) {
-          String replacement = this.findReplacement(annotatedText.getText(), matcher);
-          TokenPlaceholder placeholder = new TokenPlaceholder(replacement, regex);
-          Annotation<TokenPlaceholder> placeholderAnnotation = new Annotation<>(start, end, placeholder, labels);
-          placeholders.add(placeholderAnnotation);
+  /**
+   * Whether a word whose regex is made up of the character groups provided
+   * can be found using a {@link WordListTrie}, that is, whether any text
+   * matching the regex is guaranteed to be found by the trie.
+   */
+  private static boolean canPrefilter(List<String> groups) {
+    if (groups.size() == 0)
+      return false;
+    for (String group : groups) {
+      char folded = WordListTrie.fold(group.charAt(0));
+      for (int i = 0; i < group.length(); i++) {
+        char c = group.charAt(i);
+        if (Character.isSurrogate(c))
+          return false;
+        if (group.length() == 1 && REGEX_SPECIAL_CHARACTERS.indexOf(c) >= 0)
+          return false;
+        if (group.length() > 1 && CHARACTER_CLASS_SPECIAL_CHARACTERS.indexOf(c) >= 0)
+          return false;
+        if (WordListTrie.fold(c) != folded)
+          return false;
+      }
+    }
+    return true;
+  }
 
-          if (LOG.isTraceEnabled())
-            LOG.trace("Added placeholder: " + placeholder.toString());
+  /**
+   * The start index of the first word list in the regex which is contained in
+   * every match of the regex, or -1 if there is none. A word list is assumed
+   * not to be contained in every match if it is inside an optional group, a
+   * group with alternatives, or a character class, or if the regex contains
+   * any special constructs such as lookarounds or embedded flags.
+   */
+  private static int findMandatoryWordList(String regex) {
+    // each group or character class is stored as {start, end, optional}
+    List<int[]> groups = new ArrayList<>();
+    Deque<int[]> openGroups = new ArrayDeque<>();
+    boolean topLevelAlternatives = false;
+    for (int i = 0; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        if (regex.startsWith("\\Q", i))
+          return -1;
+        if (regex.startsWith("\\p{", i) || regex.startsWith("\\P{", i)) {
+          i = regex.indexOf('}', i);
+          if (i < 0)
+            return -1;
+        } else {
+          i++;
+        }
+      } else if (c == '[') {
+        int start = i;
+        int depth = 0;
+        for (; i < regex.length(); i++) {
+          char c2 = regex.charAt(i);
+          if (c2 == '\\')
+            i++;
+          else if (c2 == '[')
+            depth++;
+          else if (c2 == ']' && --depth == 0)
+            break;
         }
+        if (i >= regex.length())
+          return -1;
+        groups.add(new int[] { start, i, 1 });
+      } else if (c == '(') {
+        if (regex.startsWith("(?", i) && !regex.startsWith("(?:", i))
+          return -1;
+        openGroups.push(new int[] { i, -1, 0 });
+      } else if (c == ')') {
+        if (openGroups.isEmpty())
+          return -1;
+        int[] group = openGroups.pop();
+        group[1] = i;
+        if (isOptional(regex, i + 1))
+          group[2] = 1;
+        groups.add(group);
+      } else if (c == '|') {
+        if (openGroups.isEmpty())
+          topLevelAlternatives = true;
+        else
+          openGroups.peek()[2] = 1;
+      }
+    }
+    if (topLevelAlternatives || !openGroups.isEmpty())
+      return -1;
 
-        for (String key : attributes.keySet()) {
-          TokenAttribute<?> attribute = attributes.get(key);
-          Annotation<TokenAttribute<?>> annotation = new Annotation<>(start, end, attribute, labels);
-          annotations.add(annotation);
-          if (LOG.isTraceEnabled())
-            LOG.trace("Added attribute: " + attribute.toString());
+    Matcher matcher = wordListPattern.matcher(regex);
+    while (matcher.find()) {
+      if (isOptional(regex, matcher.end()))
+        continue;
+      boolean mandatory = true;
+      for (int[] group : groups) {
+        if (group[0] < matcher.start() && matcher.start() < group[1] && group[2] == 1) {
+          mandatory = false;
+          break;
         }
+      }
+      if (mandatory)
+        return matcher.start();
+    }
+    return -1;
+  }
+
+  /**
+   * Is the regex index provided preceded by a word boundary, ignoring any
+   * groups opened in between.
+   */
+  private static boolean followsWordBoundary(String regex, int i) {
+    while (true) {
+      if (i >= 1 && regex.charAt(i - 1) == '(' && !isEscaped(regex, i - 1))
+        i -= 1;
+      else if (i >= 3 && regex.startsWith("(?:", i - 3) && !isEscaped(regex, i - 3))
+        i -= 3;
+      else
+        break;
+    }
+    return i >= 2 && regex.startsWith("\\b", i - 2) && !isEscaped(regex, i - 2);
+  }
+
+  /**
+   * Is the regex index provided followed by a word boundary, ignoring any
+   * groups closed in between, as long as they aren't repeated.
+   */
+  private static boolean precedesWordBoundary(String regex, int i) {
+    while (i < regex.length() && regex.charAt(i) == ')' && !isOptional(regex, i + 1) && !regex.startsWith("+", i + 1) && !regex.startsWith("{", i + 1))
+      i++;
+    return regex.startsWith("\\b", i) && !isEscaped(regex, i);
+  }
+
+  /**
+   * Is the regex character at this index escaped by a backslash.
+   */
+  private static boolean isEscaped(String regex, int i) {
+    return StringUtils.countChar(regex, '\\', i - 1, false) % 2 == 1;
+  }
+
+  /**
+   * Is the regex element preceding this index made optional by a quantifier.
+   */
+  private static boolean isOptional(String regex, int i) {
+    return regex.startsWith("?", i) || regex.startsWith("*", i) || regex.startsWith("{0", i);
+  }
+
+  @Override
+  public void annotate(Sentence annotatedText, String... labels) {
+    List<Annotation<TokenPlaceholder>> placeholders = new ArrayList<>();
+    List<Annotation<TokenAttribute<?>>> annotations = new ArrayList<>();
 
+    CharSequence text = annotatedText.getText();
+    if (wordListMatcher != null) {
+      // the regex is a single word list: find its words without the regex, and
+      // match the whole word to get a matcher for replacements
+      for (int[] match : wordListMatcher.match(text)) {
+        Matcher matcher = wordListMatchPattern.matcher(text);
+        matcher.region(match[0], match[1]);
+        matcher.matches();
+        this.addMatch(text, matcher, match[0], match[1], placeholders, annotations, labels);
+      }
+    } else if (wordListPrefilter == null || wordListPrefilter.find(text)) {
+      // if the regex requires a word from a word list, sentences without any
+      // such word have been skipped
+      Matcher matcher = this.getPattern().matcher(text);
+      int lastStart = -1;
+      while (matcher.find()) {
+        int start = matcher.start(groupIndex);
+        if (start > lastStart) {
+          int end = matcher.end(groupIndex);
+          this.addMatch(text, matcher, start, end, placeholders, annotations, labels);
+        }
+        lastStart = start;
       }
-      lastStart = start;
     }
     annotatedText.addAnnotations(placeholders);
     annotatedText.addAnnotations(annotations);
   }
 
+  private void addMatch(CharSequence text, Matcher matcher, int start, int end, List<Annotation<TokenPlaceholder>> placeholders,
+      List<Annotation<TokenAttribute<?>>> annotations, String... labels) {
+    if (LOG.isTraceEnabled()) {
+      LOG.trace("Regex: " + this.regex);
+      LOG.trace("Next match: " + text.subSequence(matcher.start(), matcher.end()).toString().replace('\n', '¶').replace('\r', '¶'));
+      if (matcher.start() != start || matcher.end() != end) {
+        LOG.trace("But matching group: " + text.subSequence(start, end).toString().replace('\n', '¶').replace('\r', '¶'));
+      }
+    }
+
+    if (this.singleToken) {
+      String replacement = this.findReplacement(text, matcher);
+      TokenPlaceholder placeholder = new TokenPlaceholder(replacement, regex);
+      Annotation<TokenPlaceholder> placeholderAnnotation = new Annotation<>(start, end, placeholder, labels);
+      placeholders.add(placeholderAnnotation);
+
+      if (LOG.isTraceEnabled())
+        LOG.trace("Added placeholder: " + placeholder.toString());
+    }
+
+    for (String key : attributes.keySet()) {
+      TokenAttribute<?> attribute = attributes.get(key);
+      Annotation<TokenAttribute<?>> annotation = new Annotation<>(start, end, attribute, labels);
+      annotations.add(annotation);
+      if (LOG.isTraceEnabled())
+        LOG.trace("Added attribute: " + attribute.toString());
+    }
+  }
+
   /**
    * If the token text should be replaced, return something, otherwise return
    * null.
@@ -547,6 +801,12 @@ public abstract class AbstractRegexAnnotator implements RegexAnnotator {
 
   @Override
   public Pattern getPattern() {
+    if (pattern == null) {
+      synchronized (this) {
+        if (pattern == null)
+          pattern = Pattern.compile(expandedRegex, Pattern.UNICODE_CHARACTER_CLASS);
+      }
+    }
     return pattern;
   }
 
@@ -18,6 +18,8 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.sentenceDetector;
 
+import java.util.List;
+
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.rawText.Sentence;
 import com.joliciel.talismane.tokeniser.Token;
@@ -28,16 +30,37 @@ public class PossibleSentenceBoundary {
   private static final int NUM_CHARS = 30;
   private final CharSequence text;
   private final int index;
-  private TokenSequence tokenSequence;
+  private final TokenSequenceHolder tokenSequenceHolder;
   private String string;
   private int tokenIndex = -1;
 
   private final TalismaneSession talismaneSession;
 
   public PossibleSentenceBoundary(CharSequence text, int index, TalismaneSession talismaneSession) {
+    this(text, index, null, talismaneSession);
+  }
+
+  /**
+   * Construct a possible boundary in the same text as a previous possible
+   * boundary, sharing its token sequence, so that the text only gets
+   * tokenised once for all of its possible boundaries.
+   * 
+   * @param previousBoundary
+   *          the previous possible boundary - if null, or if it refers to a
+   *          different text, the token sequence is not shared
+   */
+  public PossibleSentenceBoundary(CharSequence text, int index, PossibleSentenceBoundary previousBoundary, TalismaneSession talismaneSession) {
     this.talismaneSession = talismaneSession;
     this.text = text;
     this.index = index;
+    if (previousBoundary != null && previousBoundary.text == text)
+      this.tokenSequenceHolder = previousBoundary.tokenSequenceHolder;
+    else
+      this.tokenSequenceHolder = new TokenSequenceHolder();
+  }
+
+  private static final class TokenSequenceHolder {
+    private TokenSequence tokenSequence;
   }
 
   /**
@@ -60,12 +83,13 @@ public class PossibleSentenceBoundary {
    * A token sequence representing the text.
    */
   public TokenSequence getTokenSequence() {
-    if (tokenSequence == null) {
+    if (tokenSequenceHolder.tokenSequence == null) {
       Sentence sentence = new Sentence(text.toString(), talismaneSession);
-      tokenSequence = new TokenSequence(sentence, talismaneSession);
+      TokenSequence tokenSequence = new TokenSequence(sentence, talismaneSession);
       tokenSequence.findDefaultTokens();
+      tokenSequenceHolder.tokenSequence = tokenSequence;
     }
-    return tokenSequence;
+    return tokenSequenceHolder.tokenSequence;
   }
 
   /**
@@ -80,12 +104,20 @@ public class PossibleSentenceBoundary {
    */
   public int getTokenIndexWithWhitespace() {
     if (tokenIndex < 0) {
-      for (Token token : this.getTokenSequence().listWithWhiteSpace()) {
-        if (token.getStartIndex() >= index) {
-          tokenIndex = token.getIndexWithWhiteSpace();
-          break;
-        }
+      // tokens are in text order: find the first one starting at or after
+      // the boundary
+      List<Token> tokens = this.getTokenSequence().listWithWhiteSpace();
+      int low = 0;
+      int high = tokens.size();
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (tokens.get(mid).getStartIndex() < index)
+          low = mid + 1;
+        else
+          high = mid;
       }
+      if (low < tokens.size())
+        tokenIndex = tokens.get(low).getIndexWithWhiteSpace();
     }
     return tokenIndex;
   }
@@ -19,7 +19,6 @@
 package com.joliciel.talismane.sentenceDetector;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -31,7 +30,6 @@ import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -53,7 +51,6 @@ import com.joliciel.talismane.rawText.RawTextMarker.RawTextNoSentenceBreakMarker
 import com.joliciel.talismane.rawText.RawTextMarker.RawTextSentenceBreakMarker;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeature;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeatureParser;
-import com.joliciel.talismane.utils.ConfigUtils;
 import com.typesafe.config.Config;
 
 /**
@@ -78,7 +75,7 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
   private final Set<SentenceDetectorFeature<?>> features;
   private final TalismaneSession session;
 
-  public static SentenceDetector getInstance(TalismaneSession session) throws IOException, ClassNotFoundException {
+  public static synchronized SentenceDetector getInstance(TalismaneSession session) throws IOException, ClassNotFoundException {
     SentenceDetector sentenceDetector = null;
     if (session.getSessionId() != null)
       sentenceDetector = sentenceDetectorMap.get(session.getSessionId());
@@ -89,9 +86,8 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
       String modelFilePath = config.getString(configPath);
       ClassificationModel sentenceModel = modelMap.get(modelFilePath);
       if (sentenceModel == null) {
-        InputStream modelFile = ConfigUtils.getFileFromConfig(config, configPath);
         MachineLearningModelFactory factory = new MachineLearningModelFactory();
-        sentenceModel = factory.getClassificationModel(new ZipInputStream(modelFile));
+        sentenceModel = factory.getClassificationModel(config, configPath);
         modelMap.put(modelFilePath, sentenceModel);
       }
 
@@ -166,20 +162,12 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
   public List<Integer> detectSentences(AnnotatedText text, String... labels) throws TalismaneException {
     LOG.debug("detectSentences");
 
-    List<Annotation<RawTextNoSentenceBreakMarker>> noSentenceBreakMarkers = text.getAnnotations(RawTextNoSentenceBreakMarker.class);
-
     Matcher matcher = SentenceDetector.POSSIBLE_BOUNDARIES.matcher(text.getText());
     List<Integer> possibleBoundaries = new ArrayList<Integer>();
     while (matcher.find()) {
       if (matcher.start() >= text.getAnalysisStart() && matcher.start() < text.getAnalysisEnd()) {
-        boolean noSentences = false;
         int position = matcher.start();
-        for (Annotation<RawTextNoSentenceBreakMarker> noSentenceBreakMarker : noSentenceBreakMarkers) {
-          if (noSentenceBreakMarker.getStart() <= position && position < noSentenceBreakMarker.getEnd()) {
-            noSentences = true;
-            break;
-          }
-        }
+        boolean noSentences = !text.getOverlappingAnnotations(RawTextNoSentenceBreakMarker.class, position, position + 1).isEmpty();
         if (!noSentences)
           possibleBoundaries.add(position);
       }
@@ -190,9 +178,13 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
     Set<Integer> guessedBoundaries = new TreeSet<>(
         sentenceBreakMarkers.stream().filter(f -> f.getEnd() >= text.getAnalysisStart()).map(f -> f.getEnd()).collect(Collectors.toList()));
 
+    // all of the possible boundaries share the same token sequence, which is
+    // only built once, and the same runtime environment
     List<PossibleSentenceBoundary> boundaries = new ArrayList<>();
+    PossibleSentenceBoundary previousBoundary = null;
+    RuntimeEnvironment env = new RuntimeEnvironment();
     for (int possibleBoundary : possibleBoundaries) {
-      PossibleSentenceBoundary boundary = new PossibleSentenceBoundary(text.getText(), possibleBoundary, session);
+      PossibleSentenceBoundary boundary = new PossibleSentenceBoundary(text.getText(), possibleBoundary, previousBoundary, session);
       if (LOG.isTraceEnabled()) {
         LOG.trace("Testing boundary: " + boundary);
         LOG.trace(" at position: " + possibleBoundary);
@@ -200,7 +192,7 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
 
       List<FeatureResult<?>> featureResults = new ArrayList<FeatureResult<?>>();
       for (SentenceDetectorFeature<?> feature : features) {
-        RuntimeEnvironment env = new RuntimeEnvironment();
+        env.clear();
         FeatureResult<?> featureResult = feature.check(boundary, env);
         if (featureResult != null)
           featureResults.add(featureResult);
@@ -210,6 +202,7 @@ public class SentenceDetector implements Annotator<AnnotatedText> {
           LOG.trace(result.toString());
         }
       }
+      previousBoundary = boundary;
 
       List<Decision> decisions = this.decisionMaker.decide(featureResults);
       if (LOG.isTraceEnabled()) {
@@ -34,31 +34,50 @@ import com.joliciel.talismane.TalismaneException;
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.machineLearning.ClassificationEvent;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.EventExtractor;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeature;
 
 /**
- * An event stream for sentence detector training/evaluation.
+ * An event stream for sentence detector training/evaluation. Can also be used
+ * to extract the events for a single sentence, in a
+ * {@link ParallelClassificationEventStream}.
  * 
  * @author Assaf Urieli
  *
  */
-public class SentenceDetectorEventStream implements ClassificationEventStream {
+public class SentenceDetectorEventStream implements ClassificationEventStream, EventExtractor<SentenceDetectorEventStream.SentenceInContext> {
   private static final Logger LOG = LoggerFactory.getLogger(SentenceDetectorEventStream.class);
 
   private final SentenceDetectorAnnotatedCorpusReader corpusReader;
   private final Set<SentenceDetectorFeature<?>> features;
   private final TalismaneSession talismaneSession;
 
-  private String currentSentence;
   private String previousSentence = ". ";
-  private int currentIndex = 0;
-  private List<Integer> possibleBoundaries = new ArrayList<Integer>();
-  private int realBoundary = -1;
   private LinkedList<String> sentences = new LinkedList<String>();
   int minCharactersAfterBoundary = 50;
 
+  private List<ClassificationEvent> currentEvents;
+  private int currentIndex;
+
+  /**
+   * A sentence read from the training corpus, with enough surrounding text to
+   * analyse each of its possible boundaries.
+   */
+  public static final class SentenceInContext {
+    private final String text;
+    private final List<Integer> possibleBoundaries;
+    private final int realBoundary;
+
+    private SentenceInContext(String text, List<Integer> possibleBoundaries, int realBoundary) {
+      this.text = text;
+      this.possibleBoundaries = possibleBoundaries;
+      this.realBoundary = realBoundary;
+    }
+  }
+
   public SentenceDetectorEventStream(SentenceDetectorAnnotatedCorpusReader corpusReader, Set<SentenceDetectorFeature<?>> features,
       TalismaneSession talismaneSession) {
     this.corpusReader = corpusReader;
@@ -70,31 +89,102 @@ public class SentenceDetectorEventStream implements ClassificationEventStream {
   public ClassificationEvent next() throws TalismaneException, IOException {
     ClassificationEvent event = null;
     if (this.hasNext()) {
-      int possibleBoundary = possibleBoundaries.get(currentIndex++);
-
-      String moreText = "";
-      int sentenceIndex = 0;
-      while (moreText.length() < minCharactersAfterBoundary) {
-        String nextSentence = "";
-        if (sentenceIndex < sentences.size()) {
-          nextSentence = sentences.get(sentenceIndex);
-        } else if (corpusReader.hasNextSentence()) {
-          nextSentence = corpusReader.nextSentence().getText().toString();
-          sentences.add(nextSentence);
-        } else {
-          break;
-        }
-        if (nextSentence.startsWith(" ") || nextSentence.startsWith("\n"))
-          moreText += sentences.get(sentenceIndex);
-        else
-          moreText += " " + sentences.get(sentenceIndex);
+      event = currentEvents.get(currentIndex++);
+      if (currentIndex == currentEvents.size()) {
+        currentEvents = null;
+      }
+    }
+    return event;
+  }
+
+  @Override
+  public boolean hasNext() throws TalismaneException, IOException {
+    while (currentEvents == null) {
+      SentenceInContext sentence = this.nextSentence();
+      if (sentence == null)
+        break;
+      currentEvents = this.getEvents(sentence);
+      currentIndex = 0;
+    }
+
+    return currentEvents != null;
+  }
 
-        sentenceIndex++;
+  /**
+   * Read the next sentence containing at least one possible boundary from the
+   * corpus, or return null if there are no more sentences.
+   */
+  public SentenceInContext nextSentence() throws TalismaneException, IOException {
+    while (true) {
+      String currentSentence = null;
+      if (!sentences.isEmpty()) {
+        currentSentence = sentences.poll();
+      } else if (corpusReader.hasNextSentence()) {
+        currentSentence = corpusReader.nextSentence().getText().toString();
+      } else {
+        return null;
       }
-      String text = previousSentence + currentSentence + moreText;
 
-      PossibleSentenceBoundary boundary = new PossibleSentenceBoundary(text, possibleBoundary, talismaneSession);
-      LOG.debug("next event, boundary: " + boundary);
+      List<Integer> possibleBoundaries = new ArrayList<Integer>();
+      Matcher matcher = SentenceDetector.POSSIBLE_BOUNDARIES.matcher(currentSentence);
+      while (matcher.find()) {
+        possibleBoundaries.add(previousSentence.length() + matcher.start());
+      }
+      int realBoundary = previousSentence.length() + currentSentence.length() - 1;
+
+      SentenceInContext sentence = null;
+      if (possibleBoundaries.size() > 0) {
+        String text = previousSentence + currentSentence + this.getFollowingText();
+        sentence = new SentenceInContext(text, possibleBoundaries, realBoundary);
+      }
+
+      if (currentSentence.endsWith(" "))
+        previousSentence = currentSentence;
+      else
+        previousSentence = currentSentence + " ";
+
+      if (sentence != null)
+        return sentence;
+    }
+  }
+
+  /**
+   * The text following the current sentence, reading ahead in the corpus until
+   * at least {@link #minCharactersAfterBoundary} characters have been read.
+   */
+  private String getFollowingText() throws TalismaneException, IOException {
+    String moreText = "";
+    int sentenceIndex = 0;
+    while (moreText.length() < minCharactersAfterBoundary) {
+      String nextSentence = "";
+      if (sentenceIndex < sentences.size()) {
+        nextSentence = sentences.get(sentenceIndex);
+      } else if (corpusReader.hasNextSentence()) {
+        nextSentence = corpusReader.nextSentence().getText().toString();
+        sentences.add(nextSentence);
+      } else {
+        break;
+      }
+      if (nextSentence.startsWith(" ") || nextSentence.startsWith("\n"))
+        moreText += sentences.get(sentenceIndex);
+      else
+        moreText += " " + sentences.get(sentenceIndex);
+
+      sentenceIndex++;
+    }
+    return moreText;
+  }
+
+  /**
+   * Get the events for each possible boundary in a sentence, in order.
+   */
+  @Override
+  public List<ClassificationEvent> getEvents(SentenceInContext sentence) throws TalismaneException {
+    List<ClassificationEvent> events = new ArrayList<>(sentence.possibleBoundaries.size());
+    for (int possibleBoundary : sentence.possibleBoundaries) {
+      PossibleSentenceBoundary boundary = new PossibleSentenceBoundary(sentence.text, possibleBoundary, talismaneSession);
+      if (LOG.isDebugEnabled())
+        LOG.debug("next event, boundary: " + boundary);
 
       List<FeatureResult<?>> featureResults = new ArrayList<FeatureResult<?>>();
       for (SentenceDetectorFeature<?> feature : features) {
@@ -109,52 +199,12 @@ public class SentenceDetectorEventStream implements ClassificationEventStream {
         }
       }
       String classification = SentenceDetectorOutcome.IS_NOT_BOUNDARY.name();
-      if (possibleBoundary == realBoundary)
+      if (possibleBoundary == sentence.realBoundary)
         classification = SentenceDetectorOutcome.IS_BOUNDARY.name();
 
-      event = new ClassificationEvent(featureResults, classification);
-
-      if (currentIndex == possibleBoundaries.size()) {
-        if (currentSentence.endsWith(" "))
-          previousSentence = currentSentence;
-        else
-          previousSentence = currentSentence + " ";
-        currentSentence = null;
-      }
+      events.add(new ClassificationEvent(featureResults, classification));
     }
-    return event;
-  }
-
-  @Override
-  public boolean hasNext() throws TalismaneException, IOException {
-    while (currentSentence == null) {
-      currentIndex = 0;
-      possibleBoundaries = new ArrayList<Integer>();
-      if (!sentences.isEmpty()) {
-        currentSentence = sentences.poll();
-      } else if (corpusReader.hasNextSentence()) {
-        currentSentence = corpusReader.nextSentence().getText().toString();
-      } else {
-        break;
-      }
-      if (currentSentence != null) {
-        Matcher matcher = SentenceDetector.POSSIBLE_BOUNDARIES.matcher(currentSentence);
-
-        while (matcher.find()) {
-          possibleBoundaries.add(previousSentence.length() + matcher.start());
-        }
-        realBoundary = previousSentence.length() + currentSentence.length() - 1;
-      }
-      if (possibleBoundaries.size() == 0) {
-        if (currentSentence.endsWith(" "))
-          previousSentence = currentSentence;
-        else
-          previousSentence = currentSentence + " ";
-        currentSentence = null;
-      }
-    }
-
-    return (currentSentence != null);
+    return events;
   }
 
   @Override
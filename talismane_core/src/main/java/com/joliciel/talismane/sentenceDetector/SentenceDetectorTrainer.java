@@ -41,6 +41,8 @@ import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
 import com.joliciel.talismane.machineLearning.MachineLearningModel;
 import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
+import com.joliciel.talismane.sentenceDetector.SentenceDetectorEventStream.SentenceInContext;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeature;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeatureParser;
 import com.joliciel.talismane.utils.ConfigUtils;
@@ -86,7 +88,22 @@ public class SentenceDetectorTrainer {
 
     SentenceDetectorFeatureParser featureParser = new SentenceDetectorFeatureParser(session);
     Set<SentenceDetectorFeature<?>> features = featureParser.getFeatureSet(featureDescriptors);
-    eventStream = new SentenceDetectorEventStream(corpusReader, features, this.session);
+    SentenceDetectorEventStream sentenceDetectorEventStream = new SentenceDetectorEventStream(corpusReader, features, this.session);
+
+    Config machineLearningConfig = sentenceConfig.getConfig("train.machine-learning");
+    int featureThreads = machineLearningConfig.getInt("feature-threads");
+    if (featureThreads > 1) {
+      // each thread gets its own features, since features are not
+      // thread-safe
+      List<SentenceDetectorEventStream> extractors = new ArrayList<>();
+      extractors.add(sentenceDetectorEventStream);
+      for (int i = 1; i < featureThreads; i++)
+        extractors.add(new SentenceDetectorEventStream(corpusReader, new SentenceDetectorFeatureParser(session).getFeatureSet(featureDescriptors), this.session));
+      eventStream = new ParallelClassificationEventStream<SentenceInContext>(sentenceDetectorEventStream::nextSentence, extractors,
+          machineLearningConfig.getInt("sentences-in-flight"), sentenceDetectorEventStream::getAttributes);
+    } else {
+      eventStream = sentenceDetectorEventStream;
+    }
   }
 
   public ClassificationModel train() throws TalismaneException, IOException {
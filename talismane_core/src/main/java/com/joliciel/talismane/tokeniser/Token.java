@@ -20,6 +20,7 @@ package com.joliciel.talismane.tokeniser;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +36,7 @@ import com.joliciel.talismane.lexicon.LexicalEntry;
 import com.joliciel.talismane.lexicon.PosTaggerLexicon;
 import com.joliciel.talismane.machineLearning.features.Feature;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.FeatureResultCache;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.posTagger.PosTag;
 import com.joliciel.talismane.rawText.Sentence;
@@ -64,6 +66,7 @@ public class Token implements TokenWrapper {
   public static final String START_TOKEN = "[[START]]";
 
   private static final Logger LOG = LoggerFactory.getLogger(Token.class);
+  private static final int UNKNOWN_POSITION = -1;
   private static Pattern whiteSpacePattern = Pattern.compile("[\\s\ufeff]+", Pattern.UNICODE_CHARACTER_CLASS);
 
   private String analysisText;
@@ -75,25 +78,25 @@ public class Token implements TokenWrapper {
   private TokenSequence tokenSequence;
   private Set<PosTag> possiblePosTags;
   private Map<PosTag, Integer> frequencies;
-  private Map<String, FeatureResult<?>> featureResults = new HashMap<String, FeatureResult<?>>();
+  private FeatureResultCache featureResults = null;
   private boolean separator;
   private final boolean whiteSpace;
   private List<TokenPatternMatch> matches = null;
   private Map<String, List<TokenPatternMatch>> matchesPerPattern = null;
-  private List<TaggedToken<TokeniserOutcome>> atomicParts = new ArrayList<TaggedToken<TokeniserOutcome>>();
+  private List<TaggedToken<TokeniserOutcome>> atomicParts = null;
 
   private final int startIndex;
   private final int endIndex;
 
   private String fileName = null;
-  private Integer lineNumber = null;
-  private Integer columnNumber = null;
-  private Integer lineNumberEnd = null;
-  private Integer columnNumberEnd = null;
+  private int lineNumber = UNKNOWN_POSITION;
+  private int columnNumber = UNKNOWN_POSITION;
+  private int lineNumberEnd = UNKNOWN_POSITION;
+  private int columnNumberEnd = UNKNOWN_POSITION;
 
   private Map<PosTag, List<LexicalEntry>> lexicalEntryMap;
   private double probability = -1;
-  private Map<String, TokenAttribute<?>> attributes = new HashMap<String, TokenAttribute<?>>();
+  private Map<String, TokenAttribute<?>> attributes = null;
 
   private final PosTaggerLexicon lexicon;
   private final TalismaneSession talismaneSession;
@@ -108,6 +111,10 @@ public class Token implements TokenWrapper {
     this.tokenSequence = tokenToClone.tokenSequence;
     this.possiblePosTags = tokenToClone.possiblePosTags;
     this.frequencies = tokenToClone.frequencies;
+    // the clone shares the cache, so that results calculated for one are
+    // available to the other
+    if (tokenToClone.featureResults == null)
+      tokenToClone.featureResults = new FeatureResultCache();
     this.featureResults = tokenToClone.featureResults;
     this.separator = tokenToClone.separator;
     this.whiteSpace = tokenToClone.whiteSpace;
@@ -257,21 +264,16 @@ public class Token implements TokenWrapper {
     this.frequencies = frequencies;
   }
 
-  @SuppressWarnings("unchecked")
-
   public <T, Y> FeatureResult<Y> getResultFromCache(Feature<T, Y> feature, RuntimeEnvironment env) {
-    FeatureResult<Y> result = null;
-
-    String key = feature.getName() + env.getKey();
-    if (this.featureResults.containsKey(key)) {
-      result = (FeatureResult<Y>) this.featureResults.get(key);
-    }
-    return result;
+    if (this.featureResults == null)
+      return null;
+    return this.featureResults.get(feature, env);
   }
 
   public <T, Y> void putResultInCache(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
-    String key = feature.getName() + env.getKey();
-    this.featureResults.put(key, featureResult);
+    if (this.featureResults == null)
+      this.featureResults = new FeatureResultCache();
+    this.featureResults.put(feature, featureResult, env);
   }
 
   /**
@@ -343,10 +345,13 @@ public class Token implements TokenWrapper {
   }
 
   /**
-   * A list of atomic decisions which make up this token.
+   * A list of atomic decisions which make up this token, empty if none have
+   * been set.
    */
 
   public List<TaggedToken<TokeniserOutcome>> getAtomicParts() {
+    if (atomicParts == null)
+      return Collections.emptyList();
     return atomicParts;
   }
 
@@ -425,7 +430,7 @@ public class Token implements TokenWrapper {
    */
 
   public int getLineNumber() {
-    if (this.lineNumber == null) {
+    if (this.lineNumber == UNKNOWN_POSITION) {
       this.lineNumber = this.getTokenSequence().getSentence().getLineNumber(this.getOriginalIndex());
     }
     return this.lineNumber;
@@ -441,7 +446,7 @@ public class Token implements TokenWrapper {
    */
 
   public int getColumnNumber() {
-    if (this.columnNumber == null) {
+    if (this.columnNumber == UNKNOWN_POSITION) {
       this.columnNumber = this.getTokenSequence().getSentence().getColumnNumber(this.getOriginalIndex());
     }
     return this.columnNumber;
@@ -456,7 +461,7 @@ public class Token implements TokenWrapper {
    */
 
   public int getLineNumberEnd() {
-    if (this.lineNumberEnd == null)
+    if (this.lineNumberEnd == UNKNOWN_POSITION)
       this.lineNumberEnd = this.getTokenSequence().getSentence().getLineNumber(this.getOriginalIndexEnd());
     return this.lineNumberEnd;
   }
@@ -471,7 +476,7 @@ public class Token implements TokenWrapper {
    */
 
   public int getColumnNumberEnd() {
-    if (this.columnNumberEnd == null)
+    if (this.columnNumberEnd == UNKNOWN_POSITION)
       this.columnNumberEnd = this.getTokenSequence().getSentence().getColumnNumber(this.getOriginalIndexEnd());
     return this.columnNumberEnd;
   }
@@ -587,9 +592,12 @@ public class Token implements TokenWrapper {
   /**
    * Any attributes assigned to this token (e.g. telling downstream systems not
    * to stem this token in a search index, in the case of a recognised acronym).
+   * Attributes are added via {@link #addAttribute(String, TokenAttribute)}.
    */
 
   public Map<String, TokenAttribute<?>> getAttributes() {
+    if (attributes == null)
+      return Collections.emptyMap();
     return attributes;
   }
 
@@ -598,6 +606,8 @@ public class Token implements TokenWrapper {
    */
 
   public <T extends Serializable> void addAttribute(String key, TokenAttribute<T> value) {
+    if (attributes == null)
+      attributes = new HashMap<String, TokenAttribute<?>>();
     if (!attributes.containsKey(key))
       attributes.put(key, value);
   }
@@ -38,7 +38,6 @@ import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.rawText.Sentence;
 import com.joliciel.talismane.tokeniser.Tokeniser.TokeniserType;
 import com.joliciel.talismane.tokeniser.patterns.PatternTokeniser;
-import com.joliciel.talismane.tokeniser.patterns.TokenPattern;
 import com.joliciel.talismane.tokeniser.patterns.TokenPatternMatchSequence;
 import com.joliciel.talismane.tokeniser.patterns.TokeniserPatternManager;
 import com.typesafe.config.Config;
@@ -122,27 +121,25 @@ public class TokenComparator {
       Map<Token, Set<TokenPatternMatchSequence>> tokenMatchSequenceMap = new HashMap<Token, Set<TokenPatternMatchSequence>>();
       Set<Token> matchedTokens = new HashSet<Token>();
 
-      for (TokenPattern parsedPattern : tokeniserPatternManager.getParsedTestPatterns()) {
-        List<TokenPatternMatchSequence> matchesForThisPattern = parsedPattern.match(realAtomicSequence);
-        for (TokenPatternMatchSequence matchSequence : matchesForThisPattern) {
-          matchingSequences.add(matchSequence);
-          matchedTokens.addAll(matchSequence.getTokensToCheck());
-
-          Token token = null;
-          for (Token aToken : matchSequence.getTokensToCheck()) {
-            token = aToken;
-            if (!aToken.isWhiteSpace()) {
-              break;
-            }
-          }
+      List<TokenPatternMatchSequence> patternMatches = tokeniserPatternManager.getTestPatternIndex().match(realAtomicSequence);
+      for (TokenPatternMatchSequence matchSequence : patternMatches) {
+        matchingSequences.add(matchSequence);
+        matchedTokens.addAll(matchSequence.getTokensToCheck());
 
-          Set<TokenPatternMatchSequence> matchSequences = tokenMatchSequenceMap.get(token);
-          if (matchSequences == null) {
-            matchSequences = new TreeSet<TokenPatternMatchSequence>();
-            tokenMatchSequenceMap.put(token, matchSequences);
+        Token token = null;
+        for (Token aToken : matchSequence.getTokensToCheck()) {
+          token = aToken;
+          if (!aToken.isWhiteSpace()) {
+            break;
           }
-          matchSequences.add(matchSequence);
         }
+
+        Set<TokenPatternMatchSequence> matchSequences = tokenMatchSequenceMap.get(token);
+        if (matchSequences == null) {
+          matchSequences = new TreeSet<TokenPatternMatchSequence>();
+          tokenMatchSequenceMap.put(token, matchSequences);
+        }
+        matchSequences.add(matchSequence);
       }
 
       TokenisedAtomicTokenSequence guess = new TokenisedAtomicTokenSequence(realSequence.getSentence(), 0, session);
@@ -2,6 +2,7 @@ package com.joliciel.talismane.tokeniser;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -52,7 +53,7 @@ public class TokenSequence extends ArrayList<Token>implements Serializable {
   private double score = 0;
   private boolean scoreCalculated = false;
   private TokenisedAtomicTokenSequence underlyingAtomicTokenSequence;
-  private Integer atomicTokenCount = null;
+  private int atomicTokenCount = -1;
   private boolean finalised = false;
   private boolean withRoot = false;
   private PosTagSequence posTagSequence;
@@ -69,10 +70,12 @@ public class TokenSequence extends ArrayList<Token>implements Serializable {
   public TokenSequence(Sentence sentence, TalismaneSession session) {
     this.sentence = sentence;
     this.session = session;
-    this.placeholderMap = new HashMap<>();
     this.listWithWhiteSpace = new ArrayList<>();
 
+    // most sentences have no placeholders or attributes, in which case the
+    // maps below are shared empty maps
     List<Annotation<TokenPlaceholder>> placeholders = sentence.getAnnotations(TokenPlaceholder.class);
+    this.placeholderMap = placeholders.isEmpty() ? Collections.emptyMap() : new HashMap<>();
     for (Annotation<TokenPlaceholder> placeholder : placeholders) {
       // take the first placeholder at this start index only
       // thus declaration order is the order at which they're
@@ -85,7 +88,7 @@ public class TokenSequence extends ArrayList<Token>implements Serializable {
 
     @SuppressWarnings("rawtypes")
     List<Annotation<TokenAttribute>> tokenAttributes = sentence.getAnnotations(TokenAttribute.class);
-    this.attributeOrderingMap = new HashMap<>();
+    this.attributeOrderingMap = tokenAttributes.isEmpty() ? Collections.emptyMap() : new HashMap<>();
     // select order in which to add attributes, when attributes exist
     // for identical keys
     for (@SuppressWarnings("rawtypes")
@@ -254,7 +257,7 @@ public class TokenSequence extends ArrayList<Token>implements Serializable {
   void markModified() {
     this.finalised = false;
     this.tokenSplits = null;
-    this.atomicTokenCount = null;
+    this.atomicTokenCount = -1;
   }
 
   /**
@@ -293,7 +296,7 @@ public class TokenSequence extends ArrayList<Token>implements Serializable {
    */
 
   public int getAtomicTokenCount() {
-    if (atomicTokenCount == null) {
+    if (atomicTokenCount < 0) {
       atomicTokenCount = 0;
       for (Token token : this) {
         if (token.getAtomicParts().size() == 0)
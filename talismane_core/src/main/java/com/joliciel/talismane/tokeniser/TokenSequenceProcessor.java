@@ -91,6 +91,9 @@ public interface TokenSequenceProcessor extends Closeable {
       case with_prob:
         tokeniserTemplateName = "tokeniser_template_with_prob.ftl";
         break;
+      case json:
+        tokeniserTemplateName = "tokeniser_template_json.ftl";
+        break;
       default:
         throw new TalismaneException("Unknown builtInTemplate for tokeniser: " + builtInTemplate.name());
       }
@@ -47,6 +47,10 @@ public class TokenisedAtomicTokenSequence extends TaggedTokenSequence<TokeniserO
 
   private TokenSequence tokenSequence = null;
   private List<Decision> decisions = new ArrayList<Decision>();
+  // running sums over the decisions, so that scoring is independent of the
+  // number of decisions
+  private double decisionProbabilityLogSum = 0;
+  private double decisionScoreSum = 0;
   private List<Solution> underlyingSolutions = new ArrayList<Solution>();
   @SuppressWarnings("rawtypes")
   private ScoringStrategy scoringStrategy = new GeometricMeanScoringStrategy();
@@ -67,6 +71,8 @@ public class TokenisedAtomicTokenSequence extends TaggedTokenSequence<TokeniserO
   public TokenisedAtomicTokenSequence(TokenisedAtomicTokenSequence history) {
     super(history);
     this.decisions = new ArrayList<Decision>(history.getDecisions());
+    this.decisionProbabilityLogSum = history.decisionProbabilityLogSum;
+    this.decisionScoreSum = history.decisionScoreSum;
     this.sentence = history.getSentence();
     this.talismaneSession = history.talismaneSession;
   }
@@ -139,6 +145,24 @@ public class TokenisedAtomicTokenSequence extends TaggedTokenSequence<TokeniserO
   @Override
   public void addDecision(Decision decision) {
     this.decisions.add(decision);
+    this.decisionProbabilityLogSum += decision.getProbabilityLog();
+    this.decisionScoreSum += decision.getScore();
+    this.scoreCalculated = false;
+  }
+
+  @Override
+  public int getDecisionCount() {
+    return decisions.size();
+  }
+
+  @Override
+  public double getDecisionProbabilityLogSum() {
+    return decisionProbabilityLogSum;
+  }
+
+  @Override
+  public double getDecisionScoreSum() {
+    return decisionScoreSum;
   }
 
   @Override
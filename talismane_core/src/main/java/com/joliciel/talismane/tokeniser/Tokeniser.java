@@ -224,7 +224,7 @@ public abstract class Tokeniser implements Annotator<Sentence> {
    *           if problems occurred reading the model
    * @throws ClassNotFoundException
    */
-  public static Tokeniser getInstance(TalismaneSession session) throws IOException, ClassNotFoundException {
+  public static synchronized Tokeniser getInstance(TalismaneSession session) throws IOException, ClassNotFoundException {
     Tokeniser tokeniser = null;
     if (session.getSessionId() != null)
       tokeniser = tokeniserMap.get(session.getSessionId());
@@ -252,7 +252,7 @@ public abstract class Tokeniser implements Annotator<Sentence> {
   /**
    * A pattern matching default separators for tokens.
    */
-  public static Pattern getTokenSeparators(TalismaneSession session) {
+  public static synchronized Pattern getTokenSeparators(TalismaneSession session) {
     Pattern tokenSeparators = tokenSeparatorMap.get(session.getSessionId());
     if (tokenSeparators == null) {
       Config config = session.getConfig();
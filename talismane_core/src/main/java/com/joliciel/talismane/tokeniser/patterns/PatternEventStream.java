@@ -32,6 +32,8 @@ import com.joliciel.talismane.TalismaneException;
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.machineLearning.ClassificationEvent;
 import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.EventExtractor;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
@@ -48,11 +50,14 @@ import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeature;
  * compounds that need to be examined. This reduces the tokeniser decision to
  * binary decision: separate or join. Unlike the Interval stream, we generate
  * one event per pattern match. The advantage is that inconsistent compounds
- * become virtually impossible, even lower down on the beam.
+ * become virtually impossible, even lower down on the beam.<br/>
+ * <br/>
+ * Can also be used to extract the events for a single sentence, in a
+ * {@link ParallelClassificationEventStream}.
  * 
  * @author Assaf Urieli
  */
-public class PatternEventStream implements ClassificationEventStream {
+public class PatternEventStream implements ClassificationEventStream, EventExtractor<TokenSequence> {
   private static final Logger LOG = LoggerFactory.getLogger(PatternEventStream.class);
   private final TokeniserAnnotatedCorpusReader corpusReader;
   private final Set<TokenPatternMatchFeature<?>> tokenPatternMatchFeatures;
@@ -61,8 +66,7 @@ public class PatternEventStream implements ClassificationEventStream {
 
   private final TalismaneSession session;
 
-  private List<TokeniserOutcome> currentOutcomes;
-  private List<TokenPatternMatch> currentPatternMatches;
+  private List<ClassificationEvent> currentEvents;
   private int currentIndex;
 
   public PatternEventStream(TokeniserAnnotatedCorpusReader corpusReader, Set<TokenPatternMatchFeature<?>> tokenPatternMatchFeatures,
@@ -75,110 +79,95 @@ public class PatternEventStream implements ClassificationEventStream {
 
   @Override
   public boolean hasNext() throws TalismaneException, IOException {
-    if (currentPatternMatches != null) {
-      if (currentIndex == currentPatternMatches.size()) {
-        currentPatternMatches = null;
-      }
-    }
-    while (currentPatternMatches == null) {
+    while (currentEvents == null) {
       if (this.corpusReader.hasNextSentence()) {
-        currentPatternMatches = new ArrayList<TokenPatternMatch>();
-        currentOutcomes = new ArrayList<TokeniserOutcome>();
-        currentIndex = 0;
-
         TokenSequence realSequence = corpusReader.nextTokenSequence();
-
-        List<Integer> tokenSplits = realSequence.getTokenSplits();
-        String text = realSequence.getSentence().getText().toString();
-        LOG.debug("Sentence: " + text);
-        Sentence sentence = new Sentence(text, session);
-
-        TokenSequence tokenSequence = new TokenSequence(sentence, session);
-        tokenSequence.findDefaultTokens();
-
-        List<TokeniserOutcome> defaultOutcomes = this.tokeniserPatternManager.getDefaultOutcomes(tokenSequence);
-
-        List<TaggedToken<TokeniserOutcome>> currentSentence = this.getTaggedTokens(tokenSequence, tokenSplits);
-
-        // check if anything matches each pattern
-        for (TokenPattern parsedPattern : this.tokeniserPatternManager.getParsedTestPatterns()) {
-          List<TokenPatternMatchSequence> tokenPatternMatches = parsedPattern.match(tokenSequence);
-          for (TokenPatternMatchSequence tokenPatternMatchSequence : tokenPatternMatches) {
-            if (LOG.isTraceEnabled())
-              LOG.trace("Matched pattern: " + parsedPattern + ": " + tokenPatternMatchSequence.getTokenSequence());
-
-            // check if entire pattern is separated or joined
-            TokeniserOutcome outcome = null;
-            TokeniserOutcome defaultOutcome = null;
-            boolean haveMismatch = false;
-            TokenPatternMatch tokenPatternMatch = null;
-            for (Token token : tokenPatternMatchSequence.getTokensToCheck()) {
-              if (tokenPatternMatch == null) {
-                for (TokenPatternMatch patternMatch : tokenPatternMatchSequence.getTokenPatternMatches()) {
-                  if (patternMatch.getToken().equals(token)) {
-                    tokenPatternMatch = patternMatch;
-                    break;
-                  }
-                }
-              }
-              TaggedToken<TokeniserOutcome> taggedToken = currentSentence.get(token.getIndexWithWhiteSpace());
-              if (outcome == null) {
-                outcome = taggedToken.getTag();
-                defaultOutcome = defaultOutcomes.get(token.getIndexWithWhiteSpace());
-              } else if (taggedToken.getTag() != outcome) {
-                // this should only happen when two patterns
-                // overlap:
-                // e.g. "aussi bien que" and "bien que", or
-                // "plutot que" and "plutot que de"
-                // AND the outer pattern is separated, while
-                // the inner pattern is joined
-                LOG.debug("Mismatch in pattern: " + tokenPatternMatch + ", " + taggedToken);
-                haveMismatch = true;
-              }
-            }
-            currentPatternMatches.add(tokenPatternMatch);
-
-            if (haveMismatch) {
-              currentOutcomes.add(defaultOutcome);
-            } else {
-              currentOutcomes.add(outcome);
-            }
-
-          }
-        } // next pattern
-
-        if (currentPatternMatches.size() == 0) {
-          currentPatternMatches = null;
-          currentOutcomes = null;
+        currentEvents = this.getEvents(realSequence);
+        currentIndex = 0;
+        if (currentIndex == currentEvents.size()) {
+          currentEvents = null;
         }
       } else {
         break;
       }
     }
 
-    return currentPatternMatches != null;
+    return currentEvents != null;
   }
 
+  /**
+   * Get the events for each pattern match in a correctly tokenised sentence,
+   * in order.
+   */
   @Override
-  public Map<String, String> getAttributes() {
-    Map<String, String> attributes = new LinkedHashMap<String, String>();
-    attributes.put("eventStream", this.getClass().getSimpleName());
-    attributes.put("corpusReader", corpusReader.getClass().getSimpleName());
+  public List<ClassificationEvent> getEvents(TokenSequence realSequence) throws TalismaneException {
+    List<TokenPatternMatch> patternMatches = new ArrayList<TokenPatternMatch>();
+    List<TokeniserOutcome> outcomes = new ArrayList<TokeniserOutcome>();
+
+    List<Integer> tokenSplits = realSequence.getTokenSplits();
+    String text = realSequence.getSentence().getText().toString();
+    LOG.debug("Sentence: " + text);
+    Sentence sentence = new Sentence(text, session);
+
+    TokenSequence tokenSequence = new TokenSequence(sentence, session);
+    tokenSequence.findDefaultTokens();
+
+    List<TokeniserOutcome> defaultOutcomes = this.tokeniserPatternManager.getDefaultOutcomes(tokenSequence);
+
+    List<TaggedToken<TokeniserOutcome>> currentSentence = this.getTaggedTokens(tokenSequence, tokenSplits);
+
+    // check if anything matches each pattern
+    List<TokenPatternMatchSequence> tokenPatternMatches = this.tokeniserPatternManager.getTestPatternIndex().match(tokenSequence);
+    for (TokenPatternMatchSequence tokenPatternMatchSequence : tokenPatternMatches) {
+      if (LOG.isTraceEnabled())
+        LOG.trace("Matched pattern: " + tokenPatternMatchSequence.getTokenPattern() + ": " + tokenPatternMatchSequence.getTokenSequence());
+
+      // check if entire pattern is separated or joined
+      TokeniserOutcome outcome = null;
+      TokeniserOutcome defaultOutcome = null;
+      boolean haveMismatch = false;
+      TokenPatternMatch tokenPatternMatch = null;
+      for (Token token : tokenPatternMatchSequence.getTokensToCheck()) {
+        if (tokenPatternMatch == null) {
+          for (TokenPatternMatch patternMatch : tokenPatternMatchSequence.getTokenPatternMatches()) {
+            if (patternMatch.getToken().equals(token)) {
+              tokenPatternMatch = patternMatch;
+              break;
+            }
+          }
+        }
+        TaggedToken<TokeniserOutcome> taggedToken = currentSentence.get(token.getIndexWithWhiteSpace());
+        if (outcome == null) {
+          outcome = taggedToken.getTag();
+          defaultOutcome = defaultOutcomes.get(token.getIndexWithWhiteSpace());
+        } else if (taggedToken.getTag() != outcome) {
+          // this should only happen when two patterns
+          // overlap:
+          // e.g. "aussi bien que" and "bien que", or
+          // "plutot que" and "plutot que de"
+          // AND the outer pattern is separated, while
+          // the inner pattern is joined
+          LOG.debug("Mismatch in pattern: " + tokenPatternMatch + ", " + taggedToken);
+          haveMismatch = true;
+        }
+      }
+      patternMatches.add(tokenPatternMatch);
 
-    attributes.putAll(corpusReader.getCharacteristics());
+      if (haveMismatch) {
+        outcomes.add(defaultOutcome);
+      } else {
+        outcomes.add(outcome);
+      }
 
-    return attributes;
-  }
+    } // next pattern match
 
-  @Override
-  public ClassificationEvent next() throws TalismaneException, IOException {
-    ClassificationEvent event = null;
-    if (this.hasNext()) {
-      TokenPatternMatch tokenPatternMatch = currentPatternMatches.get(currentIndex);
-      TokeniserOutcome outcome = currentOutcomes.get(currentIndex);
-      String classification = outcome.name();
+    List<ClassificationEvent> events = new ArrayList<>(patternMatches.size());
+    for (int i = 0; i < patternMatches.size(); i++) {
+      TokenPatternMatch tokenPatternMatch = patternMatches.get(i);
+      String classification = outcomes.get(i).name();
 
-      LOG.debug("next event, pattern match: " + tokenPatternMatch.toString() + ", outcome:" + classification);
+      if (LOG.isDebugEnabled())
+        LOG.debug("next event, pattern match: " + tokenPatternMatch.toString() + ", outcome:" + classification);
       List<FeatureResult<?>> tokenFeatureResults = new ArrayList<FeatureResult<?>>();
       for (TokenPatternMatchFeature<?> feature : tokenPatternMatchFeatures) {
         RuntimeEnvironment env = new RuntimeEnvironment();
@@ -191,11 +180,29 @@ public class PatternEventStream implements ClassificationEventStream {
         }
       }
 
-      event = new ClassificationEvent(tokenFeatureResults, classification);
+      events.add(new ClassificationEvent(tokenFeatureResults, classification));
+    }
+    return events;
+  }
 
-      currentIndex++;
-      if (currentIndex == currentPatternMatches.size()) {
-        currentPatternMatches = null;
+  @Override
+  public Map<String, String> getAttributes() {
+    Map<String, String> attributes = new LinkedHashMap<String, String>();
+    attributes.put("eventStream", this.getClass().getSimpleName());
+    attributes.put("corpusReader", corpusReader.getClass().getSimpleName());
+
+    attributes.putAll(corpusReader.getCharacteristics());
+
+    return attributes;
+  }
+
+  @Override
+  public ClassificationEvent next() throws TalismaneException, IOException {
+    ClassificationEvent event = null;
+    if (this.hasNext()) {
+      event = currentEvents.get(currentIndex++);
+      if (currentIndex == currentEvents.size()) {
+        currentEvents = null;
       }
     }
     return event;
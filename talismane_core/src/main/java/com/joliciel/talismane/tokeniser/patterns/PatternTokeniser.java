@@ -20,7 +20,6 @@ package com.joliciel.talismane.tokeniser.patterns;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -30,7 +29,6 @@ import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.zip.ZipInputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +41,8 @@ import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.ExternalResource;
 import com.joliciel.talismane.machineLearning.MachineLearningModelFactory;
+import com.joliciel.talismane.machineLearning.features.CompiledFeatureSet;
+import com.joliciel.talismane.machineLearning.features.FeatureCompiler;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.rawText.Sentence;
@@ -54,7 +54,6 @@ import com.joliciel.talismane.tokeniser.Tokeniser;
 import com.joliciel.talismane.tokeniser.TokeniserOutcome;
 import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeature;
 import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeatureParser;
-import com.joliciel.talismane.utils.ConfigUtils;
 import com.typesafe.config.Config;
 
 /**
@@ -88,6 +87,7 @@ public class PatternTokeniser extends Tokeniser {
   private final DecisionMaker decisionMaker;
   private final int beamWidth;
   private final Set<TokenPatternMatchFeature<?>> features;
+  private final CompiledFeatureSet<TokenPatternMatch> compiledFeatures;
 
   private final List<ClassificationObserver> observers;
 
@@ -102,9 +102,8 @@ public class PatternTokeniser extends Tokeniser {
     LOG.debug("Getting tokeniser model from " + modelFilePath);
     ClassificationModel tokeniserModel = modelMap.get(modelFilePath);
     if (tokeniserModel == null) {
-      InputStream tokeniserModelFile = ConfigUtils.getFileFromConfig(config, configPath);
       MachineLearningModelFactory factory = new MachineLearningModelFactory();
-      tokeniserModel = factory.getClassificationModel(new ZipInputStream(tokeniserModelFile));
+      tokeniserModel = factory.getClassificationModel(config, configPath);
       modelMap.put(modelFilePath, tokeniserModel);
     }
 
@@ -118,6 +117,10 @@ public class PatternTokeniser extends Tokeniser {
       }
     }
     this.features = featureParser.getTokenPatternMatchFeatureSet(tokeniserModel.getFeatureDescriptors());
+    if (config.getBoolean("talismane.core.compile-features"))
+      this.compiledFeatures = new FeatureCompiler().compile(features);
+    else
+      this.compiledFeatures = null;
     this.tokeniserPatternManager = new TokeniserPatternManager(tokeniserModel.getDescriptors().get(PATTERN_DESCRIPTOR_KEY), session);
     this.observers = new ArrayList<>();
 
@@ -144,6 +147,10 @@ public class PatternTokeniser extends Tokeniser {
       }
     }
     this.features = featureParser.getTokenPatternMatchFeatureSet(tokeniserModel.getFeatureDescriptors());
+    if (session.getConfig().getBoolean("talismane.core.compile-features"))
+      this.compiledFeatures = new FeatureCompiler().compile(features);
+    else
+      this.compiledFeatures = null;
     this.tokeniserPatternManager = new TokeniserPatternManager(tokeniserModel.getDescriptors().get(PATTERN_DESCRIPTOR_KEY), session);
     this.observers = new ArrayList<>();
   }
@@ -154,6 +161,7 @@ public class PatternTokeniser extends Tokeniser {
     this.decisionMaker = decisionMaker;
     this.beamWidth = beamWidth;
     this.features = features;
+    this.compiledFeatures = null;
     this.tokeniserPatternManager = tokeniserPatternManager;
     this.observers = new ArrayList<>();
   }
@@ -164,6 +172,7 @@ public class PatternTokeniser extends Tokeniser {
     this.beamWidth = tokeniser.beamWidth;
     this.tokeniserPatternManager = tokeniser.tokeniserPatternManager;
     this.features = new HashSet<>(tokeniser.features);
+    this.compiledFeatures = tokeniser.compiledFeatures;
     this.observers = new ArrayList<>(tokeniser.observers);
   }
 
@@ -239,35 +248,33 @@ public class PatternTokeniser extends Tokeniser {
       Map<TokenPatternMatchSequence, TokenPatternMatch> primaryMatchMap = new HashMap<TokenPatternMatchSequence, TokenPatternMatch>();
       Set<Token> matchedTokens = new HashSet<Token>();
 
-      for (TokenPattern parsedPattern : this.getTokeniserPatternManager().getParsedTestPatterns()) {
-        List<TokenPatternMatchSequence> matchesForThisPattern = parsedPattern.match(initialSequence);
-        for (TokenPatternMatchSequence matchSequence : matchesForThisPattern) {
-          if (matchSequence.getTokensToCheck().size() > 0) {
-            matchingSequences.add(matchSequence);
-            matchedTokens.addAll(matchSequence.getTokensToCheck());
+      List<TokenPatternMatchSequence> patternMatches = this.getTokeniserPatternManager().getTestPatternIndex().match(initialSequence);
+      for (TokenPatternMatchSequence matchSequence : patternMatches) {
+        if (matchSequence.getTokensToCheck().size() > 0) {
+          matchingSequences.add(matchSequence);
+          matchedTokens.addAll(matchSequence.getTokensToCheck());
 
-            TokenPatternMatch primaryMatch = null;
-            Token token = matchSequence.getTokensToCheck().get(0);
+          TokenPatternMatch primaryMatch = null;
+          Token token = matchSequence.getTokensToCheck().get(0);
 
-            Set<TokenPatternMatchSequence> matchSequences = tokenMatchSequenceMap.get(token);
-            if (matchSequences == null) {
-              matchSequences = new TreeSet<TokenPatternMatchSequence>();
-              tokenMatchSequenceMap.put(token, matchSequences);
-            }
-            matchSequences.add(matchSequence);
+          Set<TokenPatternMatchSequence> matchSequences = tokenMatchSequenceMap.get(token);
+          if (matchSequences == null) {
+            matchSequences = new TreeSet<TokenPatternMatchSequence>();
+            tokenMatchSequenceMap.put(token, matchSequences);
+          }
+          matchSequences.add(matchSequence);
 
-            for (TokenPatternMatch patternMatch : matchSequence.getTokenPatternMatches()) {
-              if (patternMatch.getToken().equals(token)) {
-                primaryMatch = patternMatch;
-                break;
-              }
+          for (TokenPatternMatch patternMatch : matchSequence.getTokenPatternMatches()) {
+            if (patternMatch.getToken().equals(token)) {
+              primaryMatch = patternMatch;
+              break;
             }
+          }
 
-            if (LOG.isTraceEnabled()) {
-              LOG.trace("Found match: " + primaryMatch);
-            }
-            primaryMatchMap.put(matchSequence, primaryMatch);
+          if (LOG.isTraceEnabled()) {
+            LOG.trace("Found match: " + primaryMatch);
           }
+          primaryMatchMap.put(matchSequence, primaryMatch);
         }
       }
 
@@ -275,15 +282,21 @@ public class PatternTokeniser extends Tokeniser {
       // the sequence has to correspond to a token pattern
       Map<TokenPatternMatchSequence, List<Decision>> matchSequenceDecisionMap = new HashMap<TokenPatternMatchSequence, List<Decision>>();
 
+      RuntimeEnvironment env = new RuntimeEnvironment();
       for (TokenPatternMatchSequence matchSequence : matchingSequences) {
         TokenPatternMatch match = primaryMatchMap.get(matchSequence);
         LOG.debug("next pattern match: " + match.toString());
-        List<FeatureResult<?>> tokenFeatureResults = new ArrayList<FeatureResult<?>>();
-        for (TokenPatternMatchFeature<?> feature : features) {
-          RuntimeEnvironment env = new RuntimeEnvironment();
-          FeatureResult<?> featureResult = feature.check(match, env);
-          if (featureResult != null) {
-            tokenFeatureResults.add(featureResult);
+        List<FeatureResult<?>> tokenFeatureResults = null;
+        if (compiledFeatures != null) {
+          tokenFeatureResults = compiledFeatures.check(match, env);
+        } else {
+          tokenFeatureResults = new ArrayList<FeatureResult<?>>();
+          for (TokenPatternMatchFeature<?> feature : features) {
+            env.clear();
+            FeatureResult<?> featureResult = feature.check(match, env);
+            if (featureResult != null) {
+              tokenFeatureResults.add(featureResult);
+            }
           }
         }
 
@@ -307,228 +320,330 @@ public class PatternTokeniser extends Tokeniser {
         matchSequenceDecisionMap.put(matchSequence, decisions);
       }
 
-      // initially create a heap with a single, empty sequence
-      PriorityQueue<TokenisedAtomicTokenSequence> heap = new PriorityQueue<TokenisedAtomicTokenSequence>();
-      TokenisedAtomicTokenSequence emptySequence = new TokenisedAtomicTokenSequence(sentence, 0, this.getTalismaneSession());
-      heap.add(emptySequence);
+      if (this.isGreedy()) {
+        sequences = this.tokeniseGreedy(initialSequence, sentence, defaultDecisions, tokenMatchSequenceMap, matchSequenceDecisionMap, matchedTokens);
+      } else {
+        sequences = this.tokeniseBeam(initialSequence, sentence, defaultDecisions, tokenMatchSequenceMap, matchSequenceDecisionMap, matchedTokens);
+      }
+    } else {
+      sequences = new ArrayList<TokenisedAtomicTokenSequence>();
+      TokenisedAtomicTokenSequence defaultSequence = new TokenisedAtomicTokenSequence(sentence, 0, this.getTalismaneSession());
+      int i = 0;
+      for (Token token : initialSequence.listWithWhiteSpace()) {
+        Decision decision = defaultDecisions.get(i++);
+        TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+        defaultSequence.add(taggedToken);
+      }
+      sequences.add(defaultSequence);
+    } // have decision maker?
+    return sequences;
+  }
 
-      for (int i = 0; i < initialSequence.listWithWhiteSpace().size(); i++) {
-        Token token = initialSequence.listWithWhiteSpace().get(i);
-        if (LOG.isTraceEnabled()) {
-          LOG.trace("Token : \"" + token.getAnalyisText() + "\"");
-        }
+  /**
+   * Should we tokenise greedily rather than via a beam search? True for a beam
+   * width of 1, where both give the same result.
+   */
+  boolean isGreedy() {
+    return this.beamWidth == 1;
+  }
 
-        // build a new heap for this iteration
-        PriorityQueue<TokenisedAtomicTokenSequence> previousHeap = heap;
-        heap = new PriorityQueue<TokenisedAtomicTokenSequence>();
+  /**
+   * Find the n most likely token sequences using a beam search, where each
+   * sequence has to correspond to the token patterns matched.
+   */
+  private List<TokenisedAtomicTokenSequence> tokeniseBeam(TokenSequence initialSequence, Sentence sentence, List<Decision> defaultDecisions,
+      Map<Token, Set<TokenPatternMatchSequence>> tokenMatchSequenceMap, Map<TokenPatternMatchSequence, List<Decision>> matchSequenceDecisionMap,
+      Set<Token> matchedTokens) {
+    // initially create a heap with a single, empty sequence
+    PriorityQueue<TokenisedAtomicTokenSequence> heap = new PriorityQueue<TokenisedAtomicTokenSequence>();
+    TokenisedAtomicTokenSequence emptySequence = new TokenisedAtomicTokenSequence(sentence, 0, this.getTalismaneSession());
+    heap.add(emptySequence);
+
+    for (int i = 0; i < initialSequence.listWithWhiteSpace().size(); i++) {
+      Token token = initialSequence.listWithWhiteSpace().get(i);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Token : \"" + token.getAnalyisText() + "\"");
+      }
 
-        if (i == 0) {
-          // first token is always "separate" from the outside world
-          Decision decision = new Decision(TokeniserOutcome.SEPARATE.name());
-          decision.addAuthority("_" + this.getClass().getSimpleName());
-          decision.addAuthority("_" + "DefaultDecision");
+      // build a new heap for this iteration
+      PriorityQueue<TokenisedAtomicTokenSequence> previousHeap = heap;
+      heap = new PriorityQueue<TokenisedAtomicTokenSequence>();
 
-          TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+      if (i == 0) {
+        TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(emptySequence);
+        this.addFirstToken(newSequence, token);
+        heap.add(newSequence);
+        continue;
+      }
 
-          TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(emptySequence);
-          newSequence.add(taggedToken);
+      // limit the heap breadth to K
+      int maxSequences = previousHeap.size() > this.getBeamWidth() ? this.getBeamWidth() : previousHeap.size();
+      for (int j = 0; j < maxSequences; j++) {
+        TokenisedAtomicTokenSequence history = previousHeap.poll();
+
+        // Find the separating & non-separating decisions
+        if (history.size() > i) {
+          // token already added as part of a sequence
+          // introduced by another token
+          heap.add(history);
+        } else if (tokenMatchSequenceMap.containsKey(token)) {
+          // token begins one or more match sequences
+          // these are ordered from shortest to longest (via
+          // TreeSet)
+          List<TokenPatternMatchSequence> matchSequences = new ArrayList<TokenPatternMatchSequence>(tokenMatchSequenceMap.get(token));
+          TokeniserOutcome defaultOutcome = TokeniserOutcome.valueOf(defaultDecisions.get(token.getIndexWithWhiteSpace()).getOutcome());
+          double[] decisionProbs = this.getSolutionProbabilities(matchSequences, defaultOutcome, matchSequenceDecisionMap);
+
+          // add each consistent solution to the heap
+          TokenisedAtomicTokenSequence defaultSequence = new TokenisedAtomicTokenSequence(history);
+          this.addDefaultSolution(defaultSequence, token, defaultOutcome, decisionProbs[0], matchSequences);
+          heap.add(defaultSequence);
+
+          for (int k = 0; k < matchSequences.size(); k++) {
+            TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(history);
+            this.addPatternSolution(newSequence, token, defaultOutcome, decisionProbs[k + 1], matchSequences.get(k));
+            heap.add(newSequence);
+          } // next sequence
+        } else {
+          // token doesn't start match sequence, and hasn't
+          // already been added to the current sequence
+          TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(history);
+          this.addDefaultDecision(newSequence, token, defaultDecisions.get(i), matchedTokens.contains(token));
           heap.add(newSequence);
-          continue;
         }
 
-        // limit the heap breadth to K
-        int maxSequences = previousHeap.size() > this.getBeamWidth() ? this.getBeamWidth() : previousHeap.size();
-        for (int j = 0; j < maxSequences; j++) {
-          TokenisedAtomicTokenSequence history = previousHeap.poll();
-
-          // Find the separating & non-separating decisions
-          if (history.size() > i) {
-            // token already added as part of a sequence
-            // introduced by another token
-            heap.add(history);
-          } else if (tokenMatchSequenceMap.containsKey(token)) {
-            // token begins one or more match sequences
-            // these are ordered from shortest to longest (via
-            // TreeSet)
-            List<TokenPatternMatchSequence> matchSequences = new ArrayList<TokenPatternMatchSequence>(tokenMatchSequenceMap.get(token));
-
-            // Since sequences P1..Pn contain each other,
-            // there can be exactly matchSequences.size()
-            // consistent solutions
-            // Assume the default is separate
-            // 0: all separate
-            // 1: join P1, separate rest
-            // 2: join P2, separate rest
-            // ...
-            // n: join Pn
-            // We need to add each of these to the heap
-            // by taking the product of all probabilities
-            // consistent with each solution
-            // The probabities for each solution are (j=join,
-            // s=separate)
-            // All separate: s1 x s2 x ... x sn
-            // P1: j1 x s2 x ... x sn
-            // P2: j1 x j2 x ... x sn
-            // ...
-            // Pn: j1 x j2 x ... x jn
-            // Any solution of the form s1 x j2 would be
-            // inconsistent, and is not considered
-            // If Pi and Pj start and end on the exact same
-            // token, then the solution for both is
-            // Pi: j1 x ... x ji x jj x sj+1 ... x sn
-            // Pj: j1 x ... x ji x jj x sj+1 ... x sn
-            // Note of course that we're never likely to have
-            // more than two Ps here,
-            // but we need a solution for more just to be sure
-            // to be sure
-            TokeniserOutcome defaultOutcome = TokeniserOutcome.valueOf(defaultDecisions.get(token.getIndexWithWhiteSpace()).getOutcome());
-            TokeniserOutcome otherOutcome = null;
-            if (defaultOutcome == TokeniserOutcome.SEPARATE)
-              otherOutcome = TokeniserOutcome.JOIN;
-            else
-              otherOutcome = TokeniserOutcome.SEPARATE;
-
-            double[] decisionProbs = new double[matchSequences.size() + 1];
-            for (int k = 0; k < decisionProbs.length; k++)
-              decisionProbs[k] = 1;
-
-            // Note: k0 = default decision (e.g. separate all),
-            // k1=first pattern
-            // p1 = first pattern
-            int p = 1;
-            int prevEndIndex = -1;
-            for (TokenPatternMatchSequence matchSequence : matchSequences) {
-              int endIndex = matchSequence.getTokensToCheck().get(matchSequence.getTokensToCheck().size() - 1).getEndIndex();
-              List<Decision> decisions = matchSequenceDecisionMap.get(matchSequence);
-              for (Decision decision : decisions) {
-                for (int k = 0; k < decisionProbs.length; k++) {
-                  if (decision.getOutcome().equals(defaultOutcome.name())) {
-                    // e.g. separate in most cases
-                    if (k < p && endIndex > prevEndIndex)
-                      decisionProbs[k] *= decision.getProbability();
-                    else if (k + 1 < p && endIndex <= prevEndIndex)
-                      decisionProbs[k] *= decision.getProbability();
-                  } else {
-                    // e.g. join in most cases
-                    if (k >= p && endIndex > prevEndIndex)
-                      decisionProbs[k] *= decision.getProbability();
-                    else if (k + 1 >= p && endIndex <= prevEndIndex)
-                      decisionProbs[k] *= decision.getProbability();
-                  }
-                } // next k
-              } // next decision (only 2 of these)
-              prevEndIndex = endIndex;
-              p++;
-            }
+      } // next sequence in the old heap
+    } // next token
 
-            // transform to probability distribution
-            double sumProbs = 0;
-            for (int k = 0; k < decisionProbs.length; k++)
-              sumProbs += decisionProbs[k];
-
-            if (sumProbs > 0)
-              for (int k = 0; k < decisionProbs.length; k++)
-                decisionProbs[k] /= sumProbs;
-
-            // Apply default decision
-            // Since this is the default decision for all tokens
-            // in the sequence, we don't add the other tokens
-            // for now,
-            // so as to allow them
-            // to get examined one at a time, just in case one
-            // of them starts its own separate sequence
-            Decision defaultDecision = new Decision(defaultOutcome.name(), decisionProbs[0]);
-            defaultDecision.addAuthority("_" + this.getClass().getSimpleName());
-            defaultDecision.addAuthority("_" + "Patterns");
-            for (TokenPatternMatchSequence matchSequence : matchSequences) {
-              defaultDecision.addAuthority(matchSequence.getTokenPattern().getName());
-            }
+    List<TokenisedAtomicTokenSequence> sequences = new ArrayList<TokenisedAtomicTokenSequence>();
+    int k = 0;
+    while (!heap.isEmpty()) {
+      sequences.add(heap.poll());
+      k++;
+      if (k >= this.getBeamWidth())
+        break;
+    }
+    return sequences;
+  }
 
-            TaggedToken<TokeniserOutcome> defaultTaggedToken = new TaggedToken<>(token, defaultDecision,
-                TokeniserOutcome.valueOf(defaultDecision.getOutcome()));
-            TokenisedAtomicTokenSequence defaultSequence = new TokenisedAtomicTokenSequence(history);
-            defaultSequence.add(defaultTaggedToken);
-            defaultSequence.addDecision(defaultDecision);
-            heap.add(defaultSequence);
-
-            // Apply one non-default decision per match sequence
-            for (int k = 0; k < matchSequences.size(); k++) {
-              TokenPatternMatchSequence matchSequence = matchSequences.get(k);
-              double prob = decisionProbs[k + 1];
-              Decision decision = new Decision(otherOutcome.name(), prob);
-              decision.addAuthority("_" + this.getClass().getSimpleName());
-              decision.addAuthority("_" + "Patterns");
-              decision.addAuthority(matchSequence.getTokenPattern().getName());
-
-              TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
-
-              TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(history);
-              newSequence.add(taggedToken);
-              newSequence.addDecision(decision);
-
-              // The decision is NOT the default decision for
-              // all tokens in the sequence, add all other
-              // tokens
-              // in this sequence to the solution
-              for (Token tokenInSequence : matchSequence.getTokensToCheck()) {
-                if (tokenInSequence.equals(token)) {
-                  continue;
-                }
-                Decision decisionInSequence = new Decision(decision.getOutcome());
-                decisionInSequence.addAuthority("_" + this.getClass().getSimpleName());
-                decisionInSequence.addAuthority("_" + "DecisionInSequence");
-                decisionInSequence.addAuthority("_" + "DecisionInSequence_non_default");
-                decisionInSequence.addAuthority("_" + "Patterns");
-                TaggedToken<TokeniserOutcome> taggedTokenInSequence = new TaggedToken<>(tokenInSequence, decisionInSequence,
-                    TokeniserOutcome.valueOf(decisionInSequence.getOutcome()));
-
-                newSequence.add(taggedTokenInSequence);
-              }
-
-              heap.add(newSequence);
-
-            } // next sequence
-          } else {
-            // token doesn't start match sequence, and hasn't
-            // already been added to the current sequence
-            Decision decision = defaultDecisions.get(i);
-            if (matchedTokens.contains(token)) {
-              decision = new Decision(decision.getOutcome());
-              decision.addAuthority("_" + this.getClass().getSimpleName());
-              decision.addAuthority("_" + "DecisionInSequence");
-              decision.addAuthority("_" + "DecisionInSequence_default");
-              decision.addAuthority("_" + "Patterns");
-            }
-            TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+  /**
+   * Find the most likely token sequence when the beam width is 1, by applying
+   * the best solution for each token directly to a single sequence, instead of
+   * copying the sequence for each candidate solution. Since all of the
+   * candidates for a given token add a single decision to the same history,
+   * the best candidate is the one with the most probable decision, keeping the
+   * first one in case of a tie, exactly as a beam of width 1 would.
+   */
+  private List<TokenisedAtomicTokenSequence> tokeniseGreedy(TokenSequence initialSequence, Sentence sentence, List<Decision> defaultDecisions,
+      Map<Token, Set<TokenPatternMatchSequence>> tokenMatchSequenceMap, Map<TokenPatternMatchSequence, List<Decision>> matchSequenceDecisionMap,
+      Set<Token> matchedTokens) {
+    TokenisedAtomicTokenSequence sequence = new TokenisedAtomicTokenSequence(sentence, 0, this.getTalismaneSession());
+    List<Token> tokens = initialSequence.listWithWhiteSpace();
+    for (int i = 0; i < tokens.size(); i++) {
+      Token token = tokens.get(i);
+      if (LOG.isTraceEnabled()) {
+        LOG.trace("Token : \"" + token.getAnalyisText() + "\"");
+      }
 
-            TokenisedAtomicTokenSequence newSequence = new TokenisedAtomicTokenSequence(history);
-            newSequence.add(taggedToken);
-            heap.add(newSequence);
+      if (i == 0) {
+        this.addFirstToken(sequence, token);
+      } else if (sequence.size() > i) {
+        // token already added as part of a sequence
+        // introduced by another token
+        continue;
+      } else if (tokenMatchSequenceMap.containsKey(token)) {
+        List<TokenPatternMatchSequence> matchSequences = new ArrayList<TokenPatternMatchSequence>(tokenMatchSequenceMap.get(token));
+        TokeniserOutcome defaultOutcome = TokeniserOutcome.valueOf(defaultDecisions.get(token.getIndexWithWhiteSpace()).getOutcome());
+        double[] decisionProbs = this.getSolutionProbabilities(matchSequences, defaultOutcome, matchSequenceDecisionMap);
+
+        int best = 0;
+        for (int k = 1; k < decisionProbs.length; k++) {
+          if (decisionProbs[k] > decisionProbs[best])
+            best = k;
+        }
+
+        if (best == 0)
+          this.addDefaultSolution(sequence, token, defaultOutcome, decisionProbs[0], matchSequences);
+        else
+          this.addPatternSolution(sequence, token, defaultOutcome, decisionProbs[best], matchSequences.get(best - 1));
+      } else {
+        this.addDefaultDecision(sequence, token, defaultDecisions.get(i), matchedTokens.contains(token));
+      }
+    }
+
+    List<TokenisedAtomicTokenSequence> sequences = new ArrayList<TokenisedAtomicTokenSequence>(1);
+    sequences.add(sequence);
+    return sequences;
+  }
+
+  /**
+   * Add the first token, which is always "separate" from the outside world.
+   */
+  private void addFirstToken(TokenisedAtomicTokenSequence sequence, Token token) {
+    Decision decision = new Decision(TokeniserOutcome.SEPARATE.name());
+    decision.addAuthority("_" + this.getClass().getSimpleName());
+    decision.addAuthority("_" + "DefaultDecision");
+
+    TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+    sequence.add(taggedToken);
+  }
+
+  /**
+   * Add a token which doesn't start a match sequence with its default
+   * decision.
+   */
+  private void addDefaultDecision(TokenisedAtomicTokenSequence sequence, Token token, Decision defaultDecision, boolean matched) {
+    Decision decision = defaultDecision;
+    if (matched) {
+      decision = new Decision(decision.getOutcome());
+      decision.addAuthority("_" + this.getClass().getSimpleName());
+      decision.addAuthority("_" + "DecisionInSequence");
+      decision.addAuthority("_" + "DecisionInSequence_default");
+      decision.addAuthority("_" + "Patterns");
+    }
+    TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+    sequence.add(taggedToken);
+  }
+
+  /**
+   * For a token beginning one or more match sequences, get the probability of
+   * each consistent solution: the default outcome for all sequences at index
+   * 0, followed by the non-default outcome for each sequence in turn.
+   */
+  private double[] getSolutionProbabilities(List<TokenPatternMatchSequence> matchSequences, TokeniserOutcome defaultOutcome,
+      Map<TokenPatternMatchSequence, List<Decision>> matchSequenceDecisionMap) {
+    // Since sequences P1..Pn contain each other,
+    // there can be exactly matchSequences.size()
+    // consistent solutions
+    // Assume the default is separate
+    // 0: all separate
+    // 1: join P1, separate rest
+    // 2: join P2, separate rest
+    // ...
+    // n: join Pn
+    // We need to consider each of these
+    // by taking the product of all probabilities
+    // consistent with each solution
+    // The probabities for each solution are (j=join,
+    // s=separate)
+    // All separate: s1 x s2 x ... x sn
+    // P1: j1 x s2 x ... x sn
+    // P2: j1 x j2 x ... x sn
+    // ...
+    // Pn: j1 x j2 x ... x jn
+    // Any solution of the form s1 x j2 would be
+    // inconsistent, and is not considered
+    // If Pi and Pj start and end on the exact same
+    // token, then the solution for both is
+    // Pi: j1 x ... x ji x jj x sj+1 ... x sn
+    // Pj: j1 x ... x ji x jj x sj+1 ... x sn
+    // Note of course that we're never likely to have
+    // more than two Ps here,
+    // but we need a solution for more just to be sure
+    // to be sure
+    double[] decisionProbs = new double[matchSequences.size() + 1];
+    for (int k = 0; k < decisionProbs.length; k++)
+      decisionProbs[k] = 1;
+
+    // Note: k0 = default decision (e.g. separate all),
+    // k1=first pattern
+    // p1 = first pattern
+    int p = 1;
+    int prevEndIndex = -1;
+    for (TokenPatternMatchSequence matchSequence : matchSequences) {
+      int endIndex = matchSequence.getTokensToCheck().get(matchSequence.getTokensToCheck().size() - 1).getEndIndex();
+      List<Decision> decisions = matchSequenceDecisionMap.get(matchSequence);
+      for (Decision decision : decisions) {
+        for (int k = 0; k < decisionProbs.length; k++) {
+          if (decision.getOutcome().equals(defaultOutcome.name())) {
+            // e.g. separate in most cases
+            if (k < p && endIndex > prevEndIndex)
+              decisionProbs[k] *= decision.getProbability();
+            else if (k + 1 < p && endIndex <= prevEndIndex)
+              decisionProbs[k] *= decision.getProbability();
+          } else {
+            // e.g. join in most cases
+            if (k >= p && endIndex > prevEndIndex)
+              decisionProbs[k] *= decision.getProbability();
+            else if (k + 1 >= p && endIndex <= prevEndIndex)
+              decisionProbs[k] *= decision.getProbability();
           }
+        } // next k
+      } // next decision (only 2 of these)
+      prevEndIndex = endIndex;
+      p++;
+    }
 
-        } // next sequence in the old heap
-      } // next token
+    // transform to probability distribution
+    double sumProbs = 0;
+    for (int k = 0; k < decisionProbs.length; k++)
+      sumProbs += decisionProbs[k];
 
-      sequences = new ArrayList<TokenisedAtomicTokenSequence>();
-      int k = 0;
-      while (!heap.isEmpty()) {
-        sequences.add(heap.poll());
-        k++;
-        if (k >= this.getBeamWidth())
-          break;
-      }
-    } else {
-      sequences = new ArrayList<TokenisedAtomicTokenSequence>();
-      TokenisedAtomicTokenSequence defaultSequence = new TokenisedAtomicTokenSequence(sentence, 0, this.getTalismaneSession());
-      int i = 0;
-      for (Token token : initialSequence.listWithWhiteSpace()) {
-        Decision decision = defaultDecisions.get(i++);
-        TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
-        defaultSequence.add(taggedToken);
+    if (sumProbs > 0)
+      for (int k = 0; k < decisionProbs.length; k++)
+        decisionProbs[k] /= sumProbs;
+
+    return decisionProbs;
+  }
+
+  /**
+   * Apply the default decision to a token starting one or more match
+   * sequences. Since this is the default decision for all tokens in the
+   * sequence, we don't add the other tokens for now, so as to allow them to get
+   * examined one at a time, just in case one of them starts its own separate
+   * sequence.
+   */
+  private void addDefaultSolution(TokenisedAtomicTokenSequence sequence, Token token, TokeniserOutcome defaultOutcome, double prob,
+      List<TokenPatternMatchSequence> matchSequences) {
+    Decision defaultDecision = new Decision(defaultOutcome.name(), prob);
+    defaultDecision.addAuthority("_" + this.getClass().getSimpleName());
+    defaultDecision.addAuthority("_" + "Patterns");
+    for (TokenPatternMatchSequence matchSequence : matchSequences) {
+      defaultDecision.addAuthority(matchSequence.getTokenPattern().getName());
+    }
+
+    TaggedToken<TokeniserOutcome> defaultTaggedToken = new TaggedToken<>(token, defaultDecision, TokeniserOutcome.valueOf(defaultDecision.getOutcome()));
+    sequence.add(defaultTaggedToken);
+    sequence.addDecision(defaultDecision);
+  }
+
+  /**
+   * Apply the non-default decision for a given match sequence to the token
+   * starting it. Since the decision is NOT the default decision for all tokens
+   * in the sequence, all other tokens in this sequence are added to the
+   * solution.
+   */
+  private void addPatternSolution(TokenisedAtomicTokenSequence sequence, Token token, TokeniserOutcome defaultOutcome, double prob,
+      TokenPatternMatchSequence matchSequence) {
+    TokeniserOutcome otherOutcome = null;
+    if (defaultOutcome == TokeniserOutcome.SEPARATE)
+      otherOutcome = TokeniserOutcome.JOIN;
+    else
+      otherOutcome = TokeniserOutcome.SEPARATE;
+
+    Decision decision = new Decision(otherOutcome.name(), prob);
+    decision.addAuthority("_" + this.getClass().getSimpleName());
+    decision.addAuthority("_" + "Patterns");
+    decision.addAuthority(matchSequence.getTokenPattern().getName());
+
+    TaggedToken<TokeniserOutcome> taggedToken = new TaggedToken<>(token, decision, TokeniserOutcome.valueOf(decision.getOutcome()));
+    sequence.add(taggedToken);
+    sequence.addDecision(decision);
+
+    for (Token tokenInSequence : matchSequence.getTokensToCheck()) {
+      if (tokenInSequence.equals(token)) {
+        continue;
       }
-      sequences.add(defaultSequence);
-    } // have decision maker?
-    return sequences;
+      Decision decisionInSequence = new Decision(decision.getOutcome());
+      decisionInSequence.addAuthority("_" + this.getClass().getSimpleName());
+      decisionInSequence.addAuthority("_" + "DecisionInSequence");
+      decisionInSequence.addAuthority("_" + "DecisionInSequence_non_default");
+      decisionInSequence.addAuthority("_" + "Patterns");
+      TaggedToken<TokeniserOutcome> taggedTokenInSequence = new TaggedToken<>(tokenInSequence, decisionInSequence,
+          TokeniserOutcome.valueOf(decisionInSequence.getOutcome()));
+
+      sequence.add(taggedTokenInSequence);
+    }
   }
 
   @Override
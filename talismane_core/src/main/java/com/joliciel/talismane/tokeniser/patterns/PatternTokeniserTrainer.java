@@ -41,7 +41,9 @@ import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationModelTrainer;
 import com.joliciel.talismane.machineLearning.MachineLearningModel;
 import com.joliciel.talismane.machineLearning.ModelTrainerFactory;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream;
 import com.joliciel.talismane.sentenceAnnotators.SentenceAnnotatorLoader;
+import com.joliciel.talismane.tokeniser.TokenSequence;
 import com.joliciel.talismane.tokeniser.TokeniserAnnotatedCorpusReader;
 import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeature;
 import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeatureParser;
@@ -110,7 +112,24 @@ public class PatternTokeniserTrainer {
 
     TokenPatternMatchFeatureParser featureParser = new TokenPatternMatchFeatureParser(session);
     Set<TokenPatternMatchFeature<?>> features = featureParser.getTokenPatternMatchFeatureSet(featureDescriptors);
-    eventStream = new PatternEventStream(tokenCorpusReader, features, tokeniserPatternManager, this.session);
+    PatternEventStream patternEventStream = new PatternEventStream(tokenCorpusReader, features, tokeniserPatternManager, this.session);
+
+    Config machineLearningConfig = tokeniserConfig.getConfig("train.machine-learning");
+    int featureThreads = machineLearningConfig.getInt("feature-threads");
+    if (featureThreads > 1) {
+      // each thread gets its own features, since features are not
+      // thread-safe
+      List<PatternEventStream> extractors = new ArrayList<>();
+      extractors.add(patternEventStream);
+      for (int i = 1; i < featureThreads; i++)
+        extractors.add(new PatternEventStream(tokenCorpusReader,
+            new TokenPatternMatchFeatureParser(session).getTokenPatternMatchFeatureSet(featureDescriptors), tokeniserPatternManager, this.session));
+      eventStream = new ParallelClassificationEventStream<TokenSequence>(
+          () -> tokenCorpusReader.hasNextSentence() ? tokenCorpusReader.nextTokenSequence() : null, extractors,
+          machineLearningConfig.getInt("sentences-in-flight"), patternEventStream::getAttributes);
+    } else {
+      eventStream = patternEventStream;
+    }
   }
 
   public ClassificationModel train() throws TalismaneException, IOException {
@@ -19,7 +19,10 @@
 package com.joliciel.talismane.tokeniser.patterns;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -70,6 +73,7 @@ import com.joliciel.talismane.tokeniser.TokenSequence;
 public class TokenPattern {
   private static final Logger LOG = LoggerFactory.getLogger(TokenPattern.class);
   private static final Pattern whitespacePattern = Pattern.compile("\\s", Pattern.UNICODE_CHARACTER_CLASS);
+  private static final int MAX_LITERAL_TEXTS = 64;
 
   private final String regexp;
   private final Pattern separatorPattern;
@@ -127,6 +131,44 @@ public class TokenPattern {
    */
   public List<TokenPatternMatchSequence> match(TokenSequence tokenSequence) {
     List<TokenPatternMatchSequence> matchingSequences = new ArrayList<TokenPatternMatchSequence>();
+    for (int t0 = -1; t0 < tokenSequence.listWithWhiteSpace().size(); t0++) {
+      TokenPatternMatchSequence tokenPatternMatchSequence = this.match(tokenSequence, t0);
+      if (tokenPatternMatchSequence != null)
+        matchingSequences.add(tokenPatternMatchSequence);
+    } // next token
+
+    if (LOG.isTraceEnabled()) {
+      if (matchingSequences.size() > 0)
+        LOG.trace(this.getName() + ": matchingSequences = " + matchingSequences);
+    }
+    return matchingSequences;
+  }
+
+  /**
+   * Like {@link #match(TokenSequence)}, but only trying the sequences starting
+   * at the indexes provided, in ascending order, where -1 represents the
+   * sentence start. Any sequence starting elsewhere is assumed not to match.
+   */
+  public List<TokenPatternMatchSequence> match(TokenSequence tokenSequence, List<Integer> startIndexes) {
+    List<TokenPatternMatchSequence> matchingSequences = new ArrayList<TokenPatternMatchSequence>();
+    for (int t0 : startIndexes) {
+      TokenPatternMatchSequence tokenPatternMatchSequence = this.match(tokenSequence, t0);
+      if (tokenPatternMatchSequence != null)
+        matchingSequences.add(tokenPatternMatchSequence);
+    }
+
+    if (LOG.isTraceEnabled()) {
+      if (matchingSequences.size() > 0)
+        LOG.trace(this.getName() + ": matchingSequences = " + matchingSequences);
+    }
+    return matchingSequences;
+  }
+
+  /**
+   * The sequence of <i>n</i> tokens starting at index t0 if it matches this
+   * pattern, or null otherwise.
+   */
+  private TokenPatternMatchSequence match(TokenSequence tokenSequence, int t0) {
     boolean matchSentenceStart = false;
     if (this.getParsedPattern().get(0).pattern().equals("\\b")) {
       matchSentenceStart = true;
@@ -136,69 +178,62 @@ public class TokenPattern {
       matchSentenceEnd = true;
     }
 
-    for (int t0 = -1; t0 < tokenSequence.listWithWhiteSpace().size(); t0++) {
-      boolean haveMatch = false;
-      List<Token> matchingSequence = new ArrayList<Token>();
-      if (t0 >= 0) {
-        // does the current token match the beginning of the pattern?
-        Token token = tokenSequence.listWithWhiteSpace().get(t0);
-        if (checkTokenForMatch(this.getParsedPattern().get(0), token)) {
-          // potential match, let's follow it through
-          haveMatch = true;
-          // we match so far, add it to the temp list
-          matchingSequence.add(token);
-        }
-      } else if (matchSentenceStart) {
-        // automatically match start of sentence
+    boolean haveMatch = false;
+    List<Token> matchingSequence = new ArrayList<Token>();
+    if (t0 >= 0) {
+      // does the current token match the beginning of the pattern?
+      Token token = tokenSequence.listWithWhiteSpace().get(t0);
+      if (checkTokenForMatch(this.getParsedPattern().get(0), token)) {
+        // potential match, let's follow it through
         haveMatch = true;
-        // add null token to the temp list
-        matchingSequence.add(null);
+        // we match so far, add it to the temp list
+        matchingSequence.add(token);
       }
-      if (haveMatch) {
-        int p = 1;
-        int t1 = t0 + 1;
-        while (p < this.getParsedPattern().size() && t1 < tokenSequence.listWithWhiteSpace().size()) {
-          Token aToken = tokenSequence.listWithWhiteSpace().get(t1);
-          Pattern pattern = this.getParsedPattern().get(p);
-          if (checkTokenForMatch(pattern, aToken)) {
-            // we match so far, add it to the temp list
-            matchingSequence.add(aToken);
-          } else {
-            // pattern doesn't match
-            haveMatch = false;
-            break;
-          }
-          p++;
-          t1++;
-        } // next token and parsed pattern
-
-        if (t1 == tokenSequence.listWithWhiteSpace().size() && p == this.getParsedPattern().size() - 1 && matchSentenceEnd) {
-          // add a null token representing the sentence end
-          matchingSequence.add(null);
-        }
-
-        // Did we get a full match (or did we hit the end of the
-        // sentence first)
-        if (matchingSequence.size() != this.getParsedPattern().size()) {
+    } else if (matchSentenceStart) {
+      // automatically match start of sentence
+      haveMatch = true;
+      // add null token to the temp list
+      matchingSequence.add(null);
+    }
+    if (haveMatch) {
+      int p = 1;
+      int t1 = t0 + 1;
+      while (p < this.getParsedPattern().size() && t1 < tokenSequence.listWithWhiteSpace().size()) {
+        Token aToken = tokenSequence.listWithWhiteSpace().get(t1);
+        Pattern pattern = this.getParsedPattern().get(p);
+        if (checkTokenForMatch(pattern, aToken)) {
+          // we match so far, add it to the temp list
+          matchingSequence.add(aToken);
+        } else {
+          // pattern doesn't match
           haveMatch = false;
+          break;
         }
-      } // Current token matched start of pattern, try to match the rest
-        // of the pattern
+        p++;
+        t1++;
+      } // next token and parsed pattern
 
-      if (haveMatch) {
-        TokenPatternMatchSequence tokenPatternMatchSequence = new TokenPatternMatchSequence(this, matchingSequence);
-        matchingSequences.add(tokenPatternMatchSequence);
-        for (Token aToken : matchingSequence) {
-          tokenPatternMatchSequence.addMatch(aToken);
-        }
+      if (t1 == tokenSequence.listWithWhiteSpace().size() && p == this.getParsedPattern().size() - 1 && matchSentenceEnd) {
+        // add a null token representing the sentence end
+        matchingSequence.add(null);
       }
-    } // next token
 
-    if (LOG.isTraceEnabled()) {
-      if (matchingSequences.size() > 0)
-        LOG.trace(this.getName() + ": matchingSequences = " + matchingSequences);
+      // Did we get a full match (or did we hit the end of the
+      // sentence first)
+      if (matchingSequence.size() != this.getParsedPattern().size()) {
+        haveMatch = false;
+      }
+    } // Current token matched start of pattern, try to match the rest
+      // of the pattern
+
+    if (!haveMatch)
+      return null;
+
+    TokenPatternMatchSequence tokenPatternMatchSequence = new TokenPatternMatchSequence(this, matchingSequence);
+    for (Token aToken : matchingSequence) {
+      tokenPatternMatchSequence.addMatch(aToken);
     }
-    return matchingSequences;
+    return tokenPatternMatchSequence;
   }
 
   /**
@@ -230,6 +265,106 @@ public class TokenPattern {
     }
   }
 
+  /**
+   * The only texts which a token can have in order to match the pattern at a
+   * given index in {@link #getParsedPattern()}, or null if the set of texts is
+   * unknown or too large. Follows the same logic as
+   * {@link #checkTokenForMatch(Pattern, Token)}.
+   */
+  Set<String> getLiteralTexts(int index) {
+    String regex = this.getParsedPattern().get(index).pattern();
+    if (regex.contains(".+") || regex.contains("\\D")) {
+      return null;
+    } else if (!this.separatorPattern.matcher(regex).find()) {
+      return Collections.singleton(regex);
+    } else if (regex.startsWith("\\") && !(regex.startsWith("\\d")) && !(regex.startsWith("\\s")) && !(regex.startsWith("\\p")) && !(regex.startsWith("\\b"))) {
+      return Collections.singleton(regex.substring(1));
+    } else if (regex.length() == 1) {
+      return Collections.singleton(regex);
+    } else if (regex.equals("\\b")) {
+      return null;
+    } else {
+      return getLiteralTexts(regex);
+    }
+  }
+
+  /**
+   * Expand a regex made up only of literal characters, character sets such as
+   * [aA] and non-nested alternatives such as (de|du), into the set of strings
+   * it matches, or return null for any other regex.
+   */
+  private static Set<String> getLiteralTexts(String regex) {
+    List<String> texts = new ArrayList<>();
+    texts.add("");
+    int i = 0;
+    while (i < regex.length()) {
+      List<String> alternatives = new ArrayList<>();
+      char c = regex.charAt(i);
+      if (c == '[') {
+        int end = regex.indexOf(']', i);
+        if (end < 0)
+          return null;
+        for (int j = i + 1; j < end; j++) {
+          char c2 = regex.charAt(j);
+          if ((j == i + 1 && c2 == '^') || c2 == '-' || c2 == '\\' || c2 == '[' || c2 == '&')
+            return null;
+          alternatives.add("" + c2);
+        }
+        i = end + 1;
+      } else if (c == '(') {
+        int end = regex.indexOf(')', i);
+        if (end < 0 || regex.charAt(i + 1) == '?')
+          return null;
+        for (String alternative : regex.substring(i + 1, end).split("\\|", -1)) {
+          StringBuilder sb = new StringBuilder();
+          int j = 0;
+          while (j < alternative.length()) {
+            int next = appendLiteral(alternative, j, sb);
+            if (next < 0)
+              return null;
+            j = next;
+          }
+          alternatives.add(sb.toString());
+        }
+        i = end + 1;
+      } else {
+        StringBuilder sb = new StringBuilder();
+        i = appendLiteral(regex, i, sb);
+        if (i < 0)
+          return null;
+        alternatives.add(sb.toString());
+      }
+
+      if (texts.size() * alternatives.size() > MAX_LITERAL_TEXTS)
+        return null;
+      List<String> newTexts = new ArrayList<>(texts.size() * alternatives.size());
+      for (String text : texts)
+        for (String alternative : alternatives)
+          newTexts.add(text + alternative);
+      texts = newTexts;
+    }
+    return new HashSet<>(texts);
+  }
+
+  /**
+   * Append the literal character at position i in the regex to the string
+   * builder, and return the position of the next character, or -1 if this
+   * position doesn't contain a literal character.
+   */
+  private static int appendLiteral(String regex, int i, StringBuilder sb) {
+    char c = regex.charAt(i);
+    if (c == '\\') {
+      if (i + 1 == regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1)))
+        return -1;
+      sb.append(regex.charAt(i + 1));
+      return i + 2;
+    }
+    if (".+*?()[]{}|^$".indexOf(c) >= 0)
+      return -1;
+    sb.append(c);
+    return i + 1;
+  }
+
   /**
    * Break the regexp up into chunks, where each chunk will match one token.
    * 
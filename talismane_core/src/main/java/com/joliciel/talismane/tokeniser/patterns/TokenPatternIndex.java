@@ -0,0 +1,161 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.tokeniser.patterns;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.tokeniser.Token;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+
+/**
+ * An index of token patterns, which finds the same matches as calling
+ * {@link TokenPattern#match(TokenSequence)} for each pattern in turn, while
+ * only trying each pattern at the positions where it could possibly match.<br/>
+ * <br/>
+ * Each pattern is indexed by one of its tokens, for which the pattern only
+ * allows a small set of literal texts (e.g. "parce" or "Parce" in the pattern
+ * "parce que"). When matching, the token sequence is scanned once, and each
+ * pattern is only tried for those sequences where the indexed token has one of
+ * these texts. Patterns without any such token (e.g. ".+\.\p") are tried at
+ * every position, as before. Thread-safe once constructed.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class TokenPatternIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(TokenPatternIndex.class);
+
+  private final List<TokenPattern> patterns;
+  private final boolean[] indexed;
+  private final Map<String, List<PatternPosition>> patternPositions = new HashMap<>();
+
+  private static final class PatternPosition {
+    private final int patternIndex;
+    private final int tokenIndex;
+
+    private PatternPosition(int patternIndex, int tokenIndex) {
+      this.patternIndex = patternIndex;
+      this.tokenIndex = tokenIndex;
+    }
+  }
+
+  public TokenPatternIndex(List<TokenPattern> patterns) {
+    this.patterns = patterns;
+    this.indexed = new boolean[patterns.size()];
+    int indexedCount = 0;
+    for (int i = 0; i < patterns.size(); i++) {
+      TokenPattern pattern = patterns.get(i);
+
+      // choose the token whose texts are the least likely to be found:
+      // the longest shortest text first, then the fewest texts
+      int bestTokenIndex = -1;
+      Set<String> bestTexts = null;
+      int bestLength = -1;
+      for (int j = 0; j < pattern.getTokenCount(); j++) {
+        Set<String> texts = pattern.getLiteralTexts(j);
+        if (texts == null || texts.isEmpty())
+          continue;
+        int minLength = Integer.MAX_VALUE;
+        for (String text : texts)
+          minLength = Math.min(minLength, text.length());
+        if (minLength == 0)
+          continue;
+        if (minLength > bestLength || (minLength == bestLength && texts.size() < bestTexts.size())) {
+          bestTokenIndex = j;
+          bestTexts = texts;
+          bestLength = minLength;
+        }
+      }
+
+      if (bestTexts != null) {
+        indexed[i] = true;
+        indexedCount++;
+        for (String text : bestTexts) {
+          List<PatternPosition> positions = patternPositions.get(text);
+          if (positions == null) {
+            positions = new ArrayList<>();
+            patternPositions.put(text, positions);
+          }
+          positions.add(new PatternPosition(i, bestTokenIndex));
+        }
+        if (LOG.isTraceEnabled())
+          LOG.trace("Indexed " + pattern.getName() + " by token " + bestTokenIndex + ": " + bestTexts);
+      }
+    }
+    LOG.debug("Indexed " + indexedCount + " out of " + patterns.size() + " token patterns");
+  }
+
+  /**
+   * Return the match sequences for all patterns in this index, in the same
+   * order as calling {@link TokenPattern#match(TokenSequence)} for each
+   * pattern in turn. Will also add any matches to Token.getMatches() for the
+   * matched tokens.
+   */
+  public List<TokenPatternMatchSequence> match(TokenSequence tokenSequence) {
+    // find the candidate start indexes for each indexed pattern, in ascending
+    // order
+    List<List<Integer>> startIndexes = new ArrayList<>(patterns.size());
+    for (int i = 0; i < patterns.size(); i++)
+      startIndexes.add(null);
+    List<Token> tokens = tokenSequence.listWithWhiteSpace();
+    for (int t = 0; t < tokens.size(); t++) {
+      List<PatternPosition> positions = patternPositions.get(tokens.get(t).getAnalyisText());
+      if (positions == null)
+        continue;
+      for (PatternPosition position : positions) {
+        int t0 = t - position.tokenIndex;
+        if (t0 < -1)
+          continue;
+        List<Integer> patternStartIndexes = startIndexes.get(position.patternIndex);
+        if (patternStartIndexes == null) {
+          patternStartIndexes = new ArrayList<>();
+          startIndexes.set(position.patternIndex, patternStartIndexes);
+        }
+        patternStartIndexes.add(t0);
+      }
+    }
+
+    List<TokenPatternMatchSequence> matchingSequences = new ArrayList<>();
+    for (int i = 0; i < patterns.size(); i++) {
+      TokenPattern pattern = patterns.get(i);
+      if (!indexed[i]) {
+        matchingSequences.addAll(pattern.match(tokenSequence));
+      } else {
+        List<Integer> patternStartIndexes = startIndexes.get(i);
+        if (patternStartIndexes != null)
+          matchingSequences.addAll(pattern.match(tokenSequence, patternStartIndexes));
+      }
+    }
+    return matchingSequences;
+  }
+
+  /**
+   * The patterns in this index.
+   */
+  public List<TokenPattern> getPatterns() {
+    return patterns;
+  }
+}
@@ -69,6 +69,7 @@ public class TokeniserPatternManager {
   private final List<String> testPatterns;
 
   private List<TokenPattern> parsedTestPatterns;
+  private TokenPatternIndex testPatternIndex;
   private final TalismaneSession session;
 
   /**
@@ -125,13 +126,14 @@ public class TokeniserPatternManager {
   }
 
   /**
-   * Test patterns after parsing.
+   * Test patterns after parsing. Synchronized, as the pattern manager is shared
+   * by all clones of a tokeniser.
    * 
    * @throws TalismaneException
    */
-  public List<TokenPattern> getParsedTestPatterns() throws TalismaneException {
+  public synchronized List<TokenPattern> getParsedTestPatterns() throws TalismaneException {
     if (this.parsedTestPatterns == null && this.testPatterns != null) {
-      this.parsedTestPatterns = new ArrayList<TokenPattern>();
+      List<TokenPattern> parsedTestPatterns = new ArrayList<TokenPattern>();
       for (String testPattern : this.testPatterns) {
         String pattern = testPattern;
         String name = null;
@@ -151,12 +153,27 @@ public class TokeniserPatternManager {
           parsedPattern.setName(name);
         if (groupName != null)
           parsedPattern.setGroupName(groupName);
-        this.parsedTestPatterns.add(parsedPattern);
+        parsedTestPatterns.add(parsedPattern);
       }
+      this.parsedTestPatterns = parsedTestPatterns;
     }
     return parsedTestPatterns;
   }
 
+  /**
+   * An index of the parsed test patterns, for matching all of them at once
+   * against a token sequence. Synchronized, as the pattern manager is shared
+   * by all clones of a tokeniser.
+   * 
+   * @throws TalismaneException
+   */
+  public synchronized TokenPatternIndex getTestPatternIndex() throws TalismaneException {
+    if (this.testPatternIndex == null && this.testPatterns != null) {
+      this.testPatternIndex = new TokenPatternIndex(this.getParsedTestPatterns());
+    }
+    return testPatternIndex;
+  }
+
   /**
    * Takes a sequence of atomic tokens and applies default decisions for each
    * separator.
@@ -0,0 +1,8 @@
+[#ftl]
+{"tokens":[[#t]
+[#list sentence as unit]
+[#if unit.token.index>0]
+{"index":${unit.token.index?c},"text":"${unit.token.text?json_string}","lemma":"${unit.posTaggedToken.lemmaForCoNLL?json_string}","postag":"${unit.tag.code?json_string}","morphology":"${((unit.posTaggedToken.morphologyForCoNLL)!"_")?json_string}","head":${(unit.nonProjectiveGovernor.token.index?c)!"0"},"deprel":"${(unit.nonProjectiveLabel!"_")?json_string}","phead":${(unit.governor.token.index?c)!"0"},"pdeprel":"${(unit.label!"_")?json_string}"}[#if unit?has_next],[/#if][#t]
+[/#if]
+[/#list]
+]}
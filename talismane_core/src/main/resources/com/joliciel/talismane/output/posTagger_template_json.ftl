@@ -0,0 +1,6 @@
+[#ftl]
+{"tokens":[[#t]
+[#list sentence as unit]
+{"index":${(unit.token.index+1)?c},"text":"${unit.token.text?json_string}","lemma":"${unit.lemmaForCoNLL?json_string}","postag":"${unit.tag.code?json_string}","morphology":"${((unit.morphologyForCoNLL)!"_")?json_string}"}[#if unit?has_next],[/#if][#t]
+[/#list]
+]}
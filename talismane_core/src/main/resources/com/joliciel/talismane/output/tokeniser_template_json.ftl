@@ -0,0 +1,6 @@
+[#ftl]
+{"tokens":[[#t]
+[#list sentence as token]
+{"index":${(token.index+1)?c},"text":"${token.text?json_string}"}[#if token?has_next],[/#if][#t]
+[/#list]
+]}
@@ -0,0 +1,86 @@
+package com.joliciel.talismane;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.rawText.RawTextMarker;
+import com.joliciel.talismane.rawText.RawTextMarker.RawTextNoSentenceBreakMarker;
+import com.joliciel.talismane.rawText.RawTextMarker.RawTextSentenceBreakMarker;
+
+public class AnnotatedTextTest {
+
+  @Test
+  public void testAddAnnotations() throws Exception {
+    Random random = new Random(1);
+    String[] labels = new String[0];
+    AnnotatedText text = new AnnotatedText("0123456789012345678901234567890123456789");
+    List<Annotation<?>> expected = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      List<Annotation<Serializable>> annotations = new ArrayList<>();
+      int count = random.nextInt(5);
+      for (int j = 0; j < count; j++) {
+        int start = random.nextInt(40);
+        int end = start + random.nextInt(40 - start + 1);
+        Serializable data = null;
+        switch (random.nextInt(4)) {
+        case 0:
+          data = "s" + i + "." + j;
+          break;
+        case 1:
+          data = Integer.valueOf(i * 10 + j);
+          break;
+        case 2:
+          data = new RawTextSentenceBreakMarker("s" + i + "." + j);
+          break;
+        default:
+          data = new RawTextNoSentenceBreakMarker("n" + i + "." + j);
+          break;
+        }
+        annotations.add(new Annotation<>(start, end, data, labels));
+      }
+      text.addAnnotations(annotations);
+      // the original behaviour: a stable sort of all annotations added so far
+      expected.addAll(annotations);
+      Collections.sort(expected);
+
+      if (random.nextBoolean())
+        assertEquals(expected, text.getAnnotations());
+      if (random.nextBoolean())
+        assertEquals(filter(expected, String.class), text.getAnnotations(String.class));
+      if (random.nextBoolean())
+        assertEquals(filter(expected, RawTextMarker.class), text.getAnnotations(RawTextMarker.class));
+      if (random.nextBoolean()) {
+        int start = random.nextInt(40);
+        int end = start + 1 + random.nextInt(5);
+        List<Annotation<RawTextMarker>> overlapping = new ArrayList<>();
+        for (Annotation<RawTextMarker> annotation : filter(expected, RawTextMarker.class))
+          if (annotation.getStart() < end && annotation.getEnd() > start)
+            overlapping.add(annotation);
+        assertEquals(overlapping, text.getOverlappingAnnotations(RawTextMarker.class, start, end));
+      }
+    }
+    assertEquals(expected, text.getAnnotations());
+    assertEquals(filter(expected, Integer.class), text.getAnnotations(Integer.class));
+    assertEquals(filter(expected, RawTextNoSentenceBreakMarker.class), text.getAnnotations(RawTextNoSentenceBreakMarker.class));
+    assertEquals(filter(expected, Serializable.class), text.getAnnotations(Serializable.class));
+  }
+
+  private <T extends Serializable> List<Annotation<T>> filter(List<Annotation<?>> annotations, Class<T> clazz) {
+    List<Annotation<T>> typedAnnotations = new ArrayList<>();
+    for (Annotation<?> annotation : annotations) {
+      if (clazz.isAssignableFrom(annotation.getData().getClass())) {
+        @SuppressWarnings("unchecked")
+        Annotation<T> typedAnnotation = (Annotation<T>) annotation;
+        typedAnnotations.add(typedAnnotation);
+      }
+    }
+    return typedAnnotations;
+  }
+}
@@ -0,0 +1,133 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.joliciel.talismane.utils.io.DirectoryWriter;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class DirectoryAnalyserTest {
+  private static final String[] ANIMALS = new String[] { "chat", "chien", "lapin", "cheval", "mouton" };
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testOneThread() throws Exception {
+    TalismaneSession session = getSession("directoryAnalyserOneThread");
+    Map<String, String> texts = writeInputFiles();
+    File outDir = folder.newFolder("out");
+    int fileCount = new DirectoryAnalyser(session, 1).analyse(new File(folder.getRoot(), "in"), outDir);
+    assertEquals(texts.size(), fileCount);
+    assertOutputs(texts, outDir, session);
+  }
+
+  @Test
+  public void testSeveralThreads() throws Exception {
+    TalismaneSession session = getSession("directoryAnalyserSeveralThreads");
+    Map<String, String> texts = writeInputFiles();
+    File outDir = folder.newFolder("out");
+    int fileCount = new DirectoryAnalyser(session, 3).analyse(new File(folder.getRoot(), "in"), outDir);
+    assertEquals(texts.size(), fileCount);
+    assertOutputs(texts, outDir, session);
+  }
+
+  /**
+   * When all files are read as a single stream, each file's sentences should
+   * still be written to that file's output, even after the rolling text block
+   * registered with the reader has been rolled.
+   */
+  @Test
+  public void testSingleStream() throws Exception {
+    TalismaneSession session = getSession("directoryAnalyserSingleStream");
+    Map<String, String> texts = writeInputFiles();
+    File inDir = new File(folder.getRoot(), "in");
+    File outDir = folder.newFolder("out");
+    Reader reader = TalismaneMain.getReader(inDir, true, session);
+    try (DirectoryWriter writer = new DirectoryWriter(inDir, outDir, session.getSuffix(), session.getOutputCharset())) {
+      Talismane talismane = new Talismane(writer, null, session);
+      talismane.analyse(reader);
+    }
+    assertOutputs(texts, outDir, session);
+  }
+
+  /**
+   * Writes one file per animal, each long enough to cover several blocks, and
+   * mentioning only its own animal.
+   */
+  private Map<String, String> writeInputFiles() throws Exception {
+    File inDir = folder.newFolder("in");
+    Map<String, String> texts = new LinkedHashMap<>();
+    for (String animal : ANIMALS) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 100; i++)
+        sb.append("Le " + animal + " numéro " + i + " dort.\n");
+      File file = new File(inDir, animal + ".txt");
+      Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+      texts.put(animal, sb.toString());
+    }
+    return texts;
+  }
+
+  private void assertOutputs(Map<String, String> texts, File outDir, TalismaneSession session) throws Exception {
+    assertEquals(texts.size(), outDir.list().length);
+    for (String animal : texts.keySet()) {
+      File outFile = new File(outDir, animal);
+      assertTrue("Missing output for " + animal, outFile.exists());
+      String output = new String(Files.readAllBytes(outFile.toPath()), StandardCharsets.UTF_8);
+
+      // the same as analysing the file on its own
+      Writer expected = new StringWriter();
+      new Talismane(expected, null, session).analyse(new StringReader(texts.get(animal)));
+      assertEquals("Wrong output for " + animal, expected.toString(), output);
+
+      assertTrue(output.contains("\t" + animal + "\n"));
+      assertTrue(output.contains("\t99\n"));
+      for (String other : texts.keySet()) {
+        if (!other.equals(animal))
+          assertFalse(animal + " output contains " + other, output.contains("\t" + other + "\n"));
+      }
+    }
+  }
+
+  private TalismaneSession getSession(String sessionId) throws Exception {
+    Config config = ConfigFactory.load(ConfigFactory
+        .parseString("talismane.core.analysis.start-module = tokeniser\ntalismane.core.analysis.end-module = tokeniser\n" + "talismane.core.encoding = UTF-8\n")
+        .withFallback(ConfigFactory.parseFile(new File("src/test/resources/test.conf"))));
+    return new TalismaneSession(config, sessionId);
+  }
+}
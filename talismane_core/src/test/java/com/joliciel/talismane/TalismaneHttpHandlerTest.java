@@ -0,0 +1,230 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class TalismaneHttpHandlerTest {
+  private BlockingQueue<AnalysisModules> modulePool;
+
+  @Test
+  public void testCoNLL() throws Exception {
+    TalismaneSession session = getSession("httpConll", "");
+    HttpServer server = startServer(session, 1, 1, true);
+    try {
+      Response response = post(server, "Le chat dort.");
+      assertEquals(200, response.code);
+      assertTrue(response.contentType.startsWith("text/plain"));
+      assertEquals("1\tLe\n2\tchat\n3\tdort\n4\t.\n\n", response.body);
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    TalismaneSession session = getSession("httpJson", "talismane.core.tokeniser.output.built-in-template = json");
+    HttpServer server = startServer(session, 1, 1, true);
+    try {
+      Response response = post(server, "Le chat dort.");
+      assertEquals(200, response.code);
+      assertTrue(response.contentType.startsWith("application/x-ndjson"));
+      assertEquals("{\"tokens\":[{\"index\":1,\"text\":\"Le\"},{\"index\":2,\"text\":\"chat\"},{\"index\":3,\"text\":\"dort\"},{\"index\":4,\"text\":\".\"}]}",
+          response.body.trim());
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testSeveralDocumentsPerConnection() throws Exception {
+    TalismaneSession session = getSession("httpKeepAlive", "");
+    HttpServer server = startServer(session, 1, 1, true);
+    try (Socket socket = new Socket("localhost", server.getAddress().getPort())) {
+      OutputStream out = socket.getOutputStream();
+      InputStream in = socket.getInputStream();
+      String[] texts = new String[] { "Le chat dort.", "Il pleut sur la ville.", "Oui." };
+      int[] tokenCounts = new int[] { 4, 6, 2 };
+      for (int i = 0; i < texts.length; i++) {
+        byte[] body = texts[i].getBytes(StandardCharsets.UTF_8);
+        String request = "POST /analyse HTTP/1.1\r\nHost: localhost\r\nContent-Length: " + body.length + "\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.write(body);
+        out.flush();
+
+        // read the response on the same connection, using its length
+        String statusLine = readLine(in);
+        assertEquals("HTTP/1.1 200 OK", statusLine);
+        int contentLength = -1;
+        String header;
+        while ((header = readLine(in)).length() > 0) {
+          if (header.toLowerCase().startsWith("content-length:"))
+            contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+        }
+        byte[] response = new byte[contentLength];
+        int read = 0;
+        while (read < contentLength)
+          read += in.read(response, read, contentLength - read);
+        String[] lines = new String(response, StandardCharsets.UTF_8).trim().split("\n");
+        assertEquals(tokenCounts[i], lines.length);
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testMethodNotAllowed() throws Exception {
+    TalismaneSession session = getSession("httpGet", "");
+    HttpServer server = startServer(session, 1, 1, true);
+    try {
+      HttpURLConnection connection = (HttpURLConnection) getUrl(server).openConnection();
+      connection.setRequestMethod("GET");
+      assertEquals(405, connection.getResponseCode());
+      connection.disconnect();
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testBusy() throws Exception {
+    TalismaneSession session = getSession("httpBusy", "");
+    // no modules in the pool yet, so that the first request blocks its thread
+    HttpServer server = startServer(session, 1, 1, false);
+    ThreadPoolExecutor executor = (ThreadPoolExecutor) server.getExecutor();
+    ExecutorService clients = Executors.newFixedThreadPool(2);
+    try {
+      Future<Response> first = clients.submit(() -> post(server, "Le chat dort."));
+      waitFor(() -> executor.getActiveCount() == 1);
+      Future<Response> second = clients.submit(() -> post(server, "Il pleut."));
+      waitFor(() -> executor.getQueue().size() == 1);
+
+      // one request analysing and one waiting: the next is refused
+      Response refused = post(server, "Oui.");
+      assertEquals(503, refused.code);
+
+      // release the blocked thread
+      modulePool.add(new AnalysisModules(session));
+      assertEquals(200, first.get().code);
+      assertEquals(200, second.get().code);
+      assertEquals(200, post(server, "Oui.").code);
+    } finally {
+      clients.shutdownNow();
+      server.stop(0);
+    }
+  }
+
+  private TalismaneSession getSession(String sessionId, String overrides) throws Exception {
+    Config config = ConfigFactory.load(ConfigFactory
+        .parseString("talismane.core.analysis.start-module = tokeniser\ntalismane.core.analysis.end-module = tokeniser\n"
+            + "talismane.core.encoding = UTF-8\n" + overrides)
+        .withFallback(ConfigFactory.parseFile(new File("src/test/resources/test.conf"))));
+    return new TalismaneSession(config, sessionId);
+  }
+
+  private HttpServer startServer(TalismaneSession session, int threads, int queueSize, boolean withModules) throws Exception {
+    modulePool = new ArrayBlockingQueue<>(threads);
+    if (withModules) {
+      for (int i = 0; i < threads; i++)
+        modulePool.add(new AnalysisModules(session));
+    }
+    TalismaneHttpHandler handler = new TalismaneHttpHandler(session, modulePool);
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), queueSize);
+    server.createContext("/analyse", handler);
+    server.setExecutor(handler.newExecutor(threads, queueSize));
+    server.start();
+    return server;
+  }
+
+  private URL getUrl(HttpServer server) throws IOException {
+    return new URL("http://localhost:" + server.getAddress().getPort() + "/analyse");
+  }
+
+  private Response post(HttpServer server, String text) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) getUrl(server).openConnection();
+    connection.setRequestMethod("POST");
+    connection.setDoOutput(true);
+    try (OutputStream out = connection.getOutputStream()) {
+      out.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+    Response response = new Response();
+    response.code = connection.getResponseCode();
+    response.contentType = connection.getContentType();
+    InputStream in = response.code < 400 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    int read;
+    while ((read = in.read(buffer)) >= 0)
+      bytes.write(buffer, 0, read);
+    in.close();
+    response.body = new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    return response;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    int c;
+    while ((c = in.read()) >= 0 && c != '\n') {
+      if (c != '\r')
+        sb.append((char) c);
+    }
+    return sb.toString();
+  }
+
+  private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline)
+        throw new AssertionError("Timed out");
+      Thread.sleep(10);
+    }
+  }
+
+  private static final class Response {
+    int code;
+    String contentType;
+    String body;
+  }
+}
@@ -0,0 +1,123 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.sentenceAnnotators.SentenceAnnotator;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class TalismaneTest {
+
+  @Test
+  public void testSeveralThreads() throws Exception {
+    String text = getText();
+
+    StringWriter expected = new StringWriter();
+    TalismaneSession session = getSession("talismaneOneThread", 1);
+    new Talismane(expected, null, session).analyse(new StringReader(text));
+
+    StringWriter output = new StringWriter();
+    session = getSession("talismaneSeveralThreads", 3);
+    Talismane talismane = new Talismane(output, null, session);
+    assertEquals(3, talismane.getThreads());
+    assertEquals(2, talismane.getMaxSentencesInFlight());
+    talismane.analyse(new StringReader(text));
+
+    assertEquals(expected.toString(), output.toString());
+
+    // the sentences are output in their original order
+    int lastIndex = -1;
+    for (int i = 0; i < 50; i++) {
+      int index = output.toString().indexOf("\t" + i + "\n", lastIndex + 1);
+      assertTrue("Sentence " + i + " missing or out of order", index > lastIndex);
+      lastIndex = index;
+    }
+  }
+
+  @Test
+  public void testExceptionInWorker() throws Exception {
+    TalismaneSession session = getSession("talismaneExceptionInWorker", 3);
+    final Thread callingThread = Thread.currentThread();
+    final Thread[] failingThread = new Thread[1];
+
+    // fail when the tokeniser annotates one of the sentences, which happens in
+    // a worker thread
+    session.getSentenceAnnotators().add(new SentenceAnnotator() {
+      @Override
+      public void annotate(Sentence sentence, String... labels) {
+        if (!sentence.getText().toString().contains(" 17 "))
+          return;
+        sentence.addObserver(new AnnotationObserver() {
+          @Override
+          public <T extends Serializable> void beforeAddAnnotations(AnnotatedText subject, List<Annotation<T>> annotations) {
+            failingThread[0] = Thread.currentThread();
+            throw new IllegalStateException("Failure in worker");
+          }
+
+          @Override
+          public <T extends Serializable> void afterAddAnnotations(AnnotatedText subject) {
+          }
+        });
+      }
+
+      @Override
+      public boolean isExcluded() {
+        return false;
+      }
+    });
+
+    Talismane talismane = new Talismane(new StringWriter(), null, session);
+    try {
+      talismane.analyse(new StringReader(getText()));
+      fail("Expected the worker's exception");
+    } catch (IllegalStateException e) {
+      assertEquals("Failure in worker", e.getMessage());
+    }
+    assertNotEquals(callingThread, failingThread[0]);
+  }
+
+  private String getText() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++)
+      sb.append("Le chat numéro " + i + " dort.\n");
+    return sb.toString();
+  }
+
+  private TalismaneSession getSession(String sessionId, int threads) throws Exception {
+    Config config = ConfigFactory.load(ConfigFactory
+        .parseString("talismane.core.analysis.start-module = tokeniser\ntalismane.core.analysis.end-module = tokeniser\n"
+            + "talismane.core.analysis.threads = " + threads + "\ntalismane.core.analysis.sentences-in-flight = 2\n")
+        .withFallback(ConfigFactory.parseFile(new File("src/test/resources/test.conf"))));
+    return new TalismaneSession(config, sessionId);
+  }
+}
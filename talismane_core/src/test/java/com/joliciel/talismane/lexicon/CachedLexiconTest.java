@@ -0,0 +1,236 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.lexicon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.posTagger.PosTag;
+import com.joliciel.talismane.posTagger.PosTagSet;
+
+public class CachedLexiconTest {
+  private static final String[] WORDS = new String[] { "dame", "dames", "damer", "diner", "dine", "unknown" };
+  private static final String[] LEMMAS = new String[] { "dame", "damer", "diner", "unknown" };
+
+  private int wordLookups = 0;
+  private int lemmaLookups = 0;
+
+  @Test
+  public void testSameResults() throws Exception {
+    LexiconFile lexicon = this.getLexicon();
+    CachedLexicon cachedLexicon = new CachedLexicon(lexicon, 100);
+    Set<PosTag> allPosTags = lexicon.getPosTagSet().getTags();
+
+    // twice, so that the second time is read from the cache
+    for (int i = 0; i < 2; i++) {
+      for (String word : WORDS) {
+        assertEquals(lexicon.getEntries(word), cachedLexicon.getEntries(word));
+        assertEquals(new ArrayList<>(lexicon.findPossiblePosTags(word)), new ArrayList<>(cachedLexicon.findPossiblePosTags(word)));
+        assertEquals(lexicon.findPossiblePosTags(word), cachedLexicon.findPossiblePosTags(word));
+        for (PosTag posTag : allPosTags) {
+          assertEquals(lexicon.findLexicalEntries(word, posTag), cachedLexicon.findLexicalEntries(word, posTag));
+          assertEquals(lexicon.findPossiblePosTags(word).contains(posTag), cachedLexicon.findPossiblePosTags(word).contains(posTag));
+        }
+      }
+      for (String lemma : LEMMAS) {
+        assertEquals(lexicon.getEntriesForLemma(lemma), cachedLexicon.getEntriesForLemma(lemma));
+        for (PosTag posTag : allPosTags)
+          assertEquals(lexicon.getEntriesForLemma(lemma, posTag), cachedLexicon.getEntriesForLemma(lemma, posTag));
+      }
+    }
+    assertTrue(cachedLexicon.findPossiblePosTags("dame").size() > 1);
+  }
+
+  @Test
+  public void testEviction() throws Exception {
+    CachedLexicon cachedLexicon = new CachedLexicon(this.getLexicon(), 2);
+
+    cachedLexicon.findPossiblePosTags("dame");
+    cachedLexicon.findPossiblePosTags("damer");
+    int lookups = wordLookups;
+
+    // both cached
+    cachedLexicon.findPossiblePosTags("dame");
+    cachedLexicon.findPossiblePosTags("damer");
+    cachedLexicon.getEntries("dame");
+    cachedLexicon.findLexicalEntries("dame", cachedLexicon.findPossiblePosTags("dame").iterator().next());
+    assertEquals(lookups, wordLookups);
+
+    // evicts damer, the least recently used
+    cachedLexicon.findPossiblePosTags("diner");
+    assertTrue(wordLookups > lookups);
+    lookups = wordLookups;
+    cachedLexicon.findPossiblePosTags("dame");
+    cachedLexicon.findPossiblePosTags("diner");
+    assertEquals(lookups, wordLookups);
+    cachedLexicon.findPossiblePosTags("damer");
+    assertTrue(wordLookups > lookups);
+
+    // lemmas are cached separately, with the same bound
+    cachedLexicon.getEntriesForLemma("dame");
+    cachedLexicon.getEntriesForLemma("damer");
+    lookups = lemmaLookups;
+    cachedLexicon.getEntriesForLemma("dame");
+    assertEquals(lookups, lemmaLookups);
+    cachedLexicon.getEntriesForLemma("diner");
+    cachedLexicon.getEntriesForLemma("dame");
+    assertEquals(lookups + 1, lemmaLookups);
+    cachedLexicon.getEntriesForLemma("damer");
+    assertEquals(lookups + 2, lemmaLookups);
+  }
+
+  @Test
+  public void testPrecompute() throws Exception {
+    CachedLexicon cachedLexicon = new CachedLexicon(this.getLexicon(), 1);
+    cachedLexicon.precompute();
+    int lookups = wordLookups;
+
+    // known words are never evicted
+    for (String word : WORDS) {
+      if (!word.equals("unknown"))
+        cachedLexicon.findPossiblePosTags(word);
+    }
+    assertEquals(lookups, wordLookups);
+
+    cachedLexicon.findPossiblePosTags("unknown");
+    assertTrue(wordLookups > lookups);
+  }
+
+  @Test
+  public void testImmutable() throws Exception {
+    CachedLexicon cachedLexicon = new CachedLexicon(this.getLexicon(), 100);
+    Set<PosTag> posTags = cachedLexicon.findPossiblePosTags("dame");
+    PosTag posTag = posTags.iterator().next();
+    PosTag otherPosTag = cachedLexicon.getPosTagSet().getTags().stream().filter(t -> !posTags.contains(t)).findFirst().get();
+
+    this.assertUnmodifiable(() -> posTags.add(posTag));
+    this.assertUnmodifiable(() -> posTags.add(otherPosTag));
+    this.assertUnmodifiable(() -> posTags.remove(posTag));
+    this.assertUnmodifiable(() -> posTags.clear());
+    this.assertUnmodifiable(() -> {
+      Iterator<PosTag> iterator = posTags.iterator();
+      iterator.next();
+      iterator.remove();
+    });
+    this.assertUnmodifiable(() -> cachedLexicon.findPossiblePosTags("unknown").add(posTag));
+
+    List<List<LexicalEntry>> entryLists = new ArrayList<>();
+    entryLists.add(cachedLexicon.getEntries("dame"));
+    entryLists.add(cachedLexicon.findLexicalEntries("dame", posTag));
+    entryLists.add(cachedLexicon.findLexicalEntries("dame", otherPosTag));
+    entryLists.add(cachedLexicon.getEntriesForLemma("dame"));
+    entryLists.add(cachedLexicon.getEntriesForLemma("dame", posTag));
+    for (List<LexicalEntry> entries : entryLists) {
+      this.assertUnmodifiable(() -> entries.add(null));
+      this.assertUnmodifiable(() -> entries.addAll(entryLists.get(0)));
+    }
+
+    // the views are shared, and unchanged by the attempts above
+    assertTrue(posTags == cachedLexicon.findPossiblePosTags("dame"));
+    assertTrue(posTags.contains(posTag));
+    assertFalse(posTags.contains(otherPosTag));
+    assertTrue(cachedLexicon.getEntries("dame") == entryLists.get(0));
+    assertFalse(entryLists.get(0).isEmpty());
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    LexiconFile lexicon = this.getLexicon();
+    CachedLexicon cachedLexicon = new CachedLexicon(lexicon, 100);
+    Set<PosTag> posTags = cachedLexicon.findPossiblePosTags("dame");
+    cachedLexicon.getEntriesForLemma("dame");
+    int lookups = wordLookups;
+    int lemmaLookupCount = lemmaLookups;
+
+    cachedLexicon.setPosTagSet(lexicon.getPosTagSet());
+    assertEquals(posTags, cachedLexicon.findPossiblePosTags("dame"));
+    assertTrue(wordLookups > lookups);
+    cachedLexicon.getEntriesForLemma("dame");
+    assertTrue(lemmaLookups > lemmaLookupCount);
+
+    // without a mapper, categories are read as pos-tags directly, and the
+    // Glaff categories aren't in the pos-tag set
+    lookups = wordLookups;
+    PosTagMapper posTagMapper = lexicon.getPosTagMapper();
+    cachedLexicon.setPosTagMapper(null);
+    assertEquals(lexicon.getEntries("dame"), cachedLexicon.getEntries("dame"));
+    assertTrue(wordLookups > lookups);
+
+    lookups = wordLookups;
+    cachedLexicon.setPosTagMapper(posTagMapper);
+    assertEquals(posTags, cachedLexicon.findPossiblePosTags("dame"));
+    assertTrue(wordLookups > lookups);
+  }
+
+  private interface Modification {
+    public void modify() throws Exception;
+  }
+
+  private void assertUnmodifiable(Modification modification) throws Exception {
+    try {
+      modification.modify();
+      fail("Modification should have failed");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  private LexiconFile getLexicon() throws Exception {
+    File glaffFile = new File("src/test/resources/lexicons/glaff-1.2.1_regex.txt");
+    Scanner regexScanner = new Scanner(glaffFile, "UTF-8");
+    RegexLexicalEntryReader reader = new RegexLexicalEntryReader(regexScanner);
+
+    File lexFile = new File("src/test/resources/lexicons/glaff-1.2.1_letterD.txt");
+    Scanner lexiconScanner = new Scanner(lexFile, "UTF-8");
+    LexiconFile lexiconFile = new LexiconFile("glaffD", lexiconScanner, reader) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      public List<LexicalEntry> getEntries(String word) {
+        wordLookups++;
+        return super.getEntries(word);
+      }
+
+      @Override
+      public List<LexicalEntry> getEntriesForLemma(String lemma) {
+        lemmaLookups++;
+        return super.getEntriesForLemma(lemma);
+      }
+    };
+    lexiconFile.load();
+
+    PosTagSet posTagSet = new PosTagSet(new File("src/test/resources/talismaneTagset_fr.txt"));
+    lexiconFile.setPosTagSet(posTagSet);
+    try (Scanner posTagMapScanner = new Scanner(new File("src/test/resources/lexicons/glaff-1.2.1_posTagMap.txt"), "UTF-8")) {
+      lexiconFile.setPosTagMapper(new DefaultPosTagMapper(posTagMapScanner, posTagSet));
+    }
+    return lexiconFile;
+  }
+}
@@ -6,7 +6,9 @@ import java.io.File;
 import java.util.List;
 import java.util.Set;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.joliciel.talismane.TalismaneSession;
 import com.joliciel.talismane.posTagger.PosTag;
@@ -15,6 +17,8 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
 public class LexiconReaderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
 
   @Test
   public void testReadLexicons() throws Exception {
@@ -51,4 +55,42 @@ public class LexiconReaderTest {
 
   }
 
+  @Test
+  public void testReadMappedLexicons() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+    File lexiconProperties = new File("src/test/resources/lexicons/lexicons_fr.txt");
+    LexiconReader lexiconReader = new LexiconReader(session);
+
+    List<PosTaggerLexicon> lexicons = lexiconReader.readLexicons(lexiconProperties);
+    File lexiconDir = folder.newFolder("lexicons");
+    lexiconReader.writeMappedLexicons(lexicons, lexiconDir);
+    List<PosTaggerLexicon> mappedLexicons = lexiconReader.readMappedLexicons(lexiconDir);
+    assertEquals(3, mappedLexicons.size());
+
+    PosTagSet posTagSet = session.getPosTagSet();
+    for (int i = 0; i < lexicons.size(); i++) {
+      PosTaggerLexicon lexicon = lexicons.get(i);
+      PosTaggerLexicon mappedLexicon = mappedLexicons.get(i);
+      assertEquals(lexicon.getName(), mappedLexicon.getName());
+      for (String word : new String[] { "dame", "dames", "de", "le", "inconnu" }) {
+        assertEquals(lexicon.getEntries(word).toString(), mappedLexicon.getEntries(word).toString());
+        assertEquals(lexicon.findPossiblePosTags(word), mappedLexicon.findPossiblePosTags(word));
+        assertEquals(lexicon.findLexicalEntries(word, posTagSet.getPosTag("NC")).toString(),
+            mappedLexicon.findLexicalEntries(word, posTagSet.getPosTag("NC")).toString());
+      }
+      assertEquals(lexicon.getEntriesForLemma("dame").toString(), mappedLexicon.getEntriesForLemma("dame").toString());
+    }
+
+    LexiconChain lexicon = new LexiconChain(mappedLexicons);
+    List<LexicalEntry> entries = lexicon.getEntries("dame");
+    assertEquals(9, entries.size());
+    entries = lexicon.findLexicalEntries("dame", posTagSet.getPosTag("NC"));
+    assertEquals(2, entries.size());
+    Set<PosTag> posTags = lexicon.findPossiblePosTags("dame");
+    assertEquals(4, posTags.size());
+  }
 }
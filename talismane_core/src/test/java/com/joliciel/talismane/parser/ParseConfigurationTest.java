@@ -0,0 +1,135 @@
+package com.joliciel.talismane.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.posTagger.PosTagSequence;
+import com.joliciel.talismane.posTagger.PosTaggedToken;
+import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class ParseConfigurationTest {
+
+  @Test
+  public void testCloneIsIndependent() throws Exception {
+    System.setProperty("config.file", "src/test/resources/testWithLex.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    Sentence sentence = new Sentence("le chat dort", session);
+    TokenSequence tokenSequence = new TokenSequence(sentence, session);
+    tokenSequence.addToken(0, 2);
+    tokenSequence.addToken(3, 7);
+    tokenSequence.addToken(8, 12);
+    tokenSequence.finalise();
+
+    PosTagSequence posTagSequence = new PosTagSequence(tokenSequence);
+    String[] tags = new String[] { "DET", "NC", "V" };
+    for (int i = 0; i < tags.length; i++)
+      posTagSequence.addPosTaggedToken(new PosTaggedToken(tokenSequence.get(i), new Decision(tags[i]), session));
+
+    ParseConfiguration initial = new ParseConfiguration(posTagSequence);
+    PosTaggedToken root = initial.getStack().peek();
+    PosTaggedToken le = posTagSequence.get(1);
+    PosTaggedToken chat = posTagSequence.get(2);
+    PosTaggedToken dort = posTagSequence.get(3);
+
+    ParseConfiguration shifted = new ParseConfiguration(initial);
+    new ShiftTransition().apply(shifted);
+
+    ParseConfiguration leftArc = new ParseConfiguration(shifted);
+    leftArc.addDecision(new Decision("LeftArc[det]", 0.8));
+    new LeftArcEagerTransition("det").apply(leftArc);
+
+    ParseConfiguration otherShift = new ParseConfiguration(shifted);
+    otherShift.addDecision(new Decision("Shift", 0.6));
+    new ShiftTransition().apply(otherShift);
+
+    // the parents are unaffected by transitions applied to their clones
+    assertEquals(1, initial.getStack().size());
+    assertEquals(3, initial.getBuffer().size());
+    assertEquals(0, initial.getTransitions().size());
+    assertEquals(2, shifted.getStack().size());
+    assertEquals(le, shifted.getStack().peek());
+    assertEquals(chat, shifted.getBuffer().peek());
+    assertEquals(0, shifted.getDependencyCount());
+    assertEquals(0, shifted.getDecisions().size());
+
+    // the siblings are unaffected by each other
+    assertEquals(root, leftArc.getStack().peek());
+    assertEquals(chat, leftArc.getBuffer().peek());
+    assertEquals(1, leftArc.getDependencyCount());
+    assertEquals(chat, leftArc.getHead(le));
+    assertEquals("det", leftArc.getGoverningDependency(le).getLabel());
+    assertEquals(1, leftArc.getDecisions().size());
+    assertEquals(2, leftArc.getTransitions().size());
+    DependencyArc arc = leftArc.getDependencies().iterator().next();
+    assertEquals(0.8, arc.getProbability(), 0.0001);
+    assertTrue(leftArc.getTransition(arc) instanceof LeftArcEagerTransition);
+
+    assertEquals(chat, otherShift.getStack().peek());
+    assertEquals(dort, otherShift.getBuffer().peek());
+    assertEquals(0, otherShift.getDependencyCount());
+    assertNull(otherShift.getHead(le));
+    assertEquals(1, otherShift.getDecisions().size());
+    assertEquals("Shift", otherShift.getDecisions().get(0).getOutcome());
+
+    // a clone of a configuration whose dependency set was requested
+    ParseConfiguration rightArc = new ParseConfiguration(leftArc);
+    new RightArcEagerTransition("root").apply(rightArc);
+    assertEquals(1, leftArc.getDependencies().size());
+    assertEquals(2, rightArc.getDependencies().size());
+    assertEquals(root, rightArc.getHead(chat));
+    assertEquals(1, leftArc.getLeftDependents(chat).size());
+    assertEquals(0, leftArc.getDependents(root).size());
+    assertEquals(1, rightArc.getDependents(root).size());
+  }
+
+  @Test
+  public void testIncrementalScore() throws Exception {
+    System.setProperty("config.file", "src/test/resources/testWithLex.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    Sentence sentence = new Sentence("le chat dort", session);
+    TokenSequence tokenSequence = new TokenSequence(sentence, session);
+    tokenSequence.addToken(0, 2);
+    tokenSequence.addToken(3, 7);
+    tokenSequence.addToken(8, 12);
+    tokenSequence.finalise();
+
+    PosTagSequence posTagSequence = new PosTagSequence(tokenSequence);
+    String[] tags = new String[] { "DET", "NC", "V" };
+    for (int i = 0; i < tags.length; i++)
+      posTagSequence.addPosTaggedToken(new PosTaggedToken(tokenSequence.get(i), new Decision(tags[i]), session));
+
+    ParseConfiguration configuration = new ParseConfiguration(posTagSequence);
+    double[] probabilities = new double[] { 0.9, 0.35, 0.6, 0.75 };
+    for (double probability : probabilities) {
+      configuration = new ParseConfiguration(configuration);
+      configuration.addDecision(new Decision("Shift", probability));
+    }
+
+    // the running sum is inherited from each parent, and matches a sum over the
+    // full list of decisions
+    double probLogSum = 0;
+    for (Decision decision : configuration.getDecisions())
+      probLogSum += decision.getProbabilityLog();
+    assertEquals(probabilities.length, configuration.getDecisionCount());
+    assertEquals(probLogSum, configuration.getDecisionProbabilityLogSum(), 0);
+
+    double expected = Math.exp(probLogSum / probabilities.length) * posTagSequence.getScore();
+    assertEquals(expected, configuration.getScore(), 0);
+  }
+}
@@ -0,0 +1,255 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.AdditiveScoringStrategy;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+import com.joliciel.talismane.machineLearning.features.StringFeature;
+import com.joliciel.talismane.posTagger.features.PosTaggerFeature;
+import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.tokeniser.Token;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class ForwardStatisticalPosTaggerTest {
+  private static final String[] SENTENCES = new String[] { "Je n'ai pas l'ourang-outan.", "Le chat mange la souris grise dans le jardin de mon voisin.",
+      "Il a dit qu'il viendrait demain, mais personne ne l'a cru.", "Trois petits cochons construisent leurs maisons en paille, en bois et en briques." };
+
+  @Test
+  public void testGreedyMatchesBeamOfWidthOne() throws Exception {
+    TalismaneSession session = getSession();
+    for (ScoringStrategy<ClassificationSolution> scoringStrategy : getScoringStrategies()) {
+      ForwardStatisticalPosTagger greedyPosTagger = getPosTagger(scoringStrategy, 1, session);
+      ForwardStatisticalPosTagger beamPosTagger = new ForwardStatisticalPosTagger(greedyPosTagger) {
+        @Override
+        boolean isGreedy() {
+          return false;
+        }
+      };
+      for (String text : SENTENCES) {
+        List<TokenSequence> tokenSequences = getTokenSequences(text, session);
+        List<PosTagSequence> greedySequences = greedyPosTagger.tagSentence(tokenSequences);
+        List<PosTagSequence> beamSequences = beamPosTagger.tagSentence(tokenSequences);
+
+        assertEquals(1, greedySequences.size());
+        assertEquals(1, beamSequences.size());
+        assertEquals(beamSequences.get(0).toString(), greedySequences.get(0).toString());
+        assertEquals(beamSequences.get(0).getScore(), greedySequences.get(0).getScore(), 1e-12);
+      }
+    }
+  }
+
+  @Test
+  public void testBeamMatchesHeapSearch() throws Exception {
+    TalismaneSession session = getSession();
+    for (ScoringStrategy<ClassificationSolution> scoringStrategy : getScoringStrategies()) {
+      for (int beamWidth : new int[] { 2, 3, 5, 10 }) {
+        ForwardStatisticalPosTagger posTagger = getPosTagger(scoringStrategy, beamWidth, session);
+        for (String text : SENTENCES) {
+          List<TokenSequence> tokenSequences = getTokenSequences(text, session);
+          List<PosTagSequence> sequences = posTagger.tagSentence(tokenSequences);
+          List<PosTagSequence> expected = tagSentenceWithHeaps(posTagger, tokenSequences.get(0), beamWidth, session);
+
+          assertEquals(expected.size(), sequences.size());
+          for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).toString(), sequences.get(i).toString());
+            assertEquals(expected.get(i).getScore(), sequences.get(i).getScore(), 1e-12);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * The beam search as it was before per-position beams: a heap of full
+   * sequences for each position, keyed by a double in a tree map, with every
+   * candidate sequence copied from its history.
+   */
+  static List<PosTagSequence> tagSentenceWithHeaps(ForwardStatisticalPosTagger posTagger, TokenSequence tokenSequence, int beamWidth,
+      TalismaneSession session) throws Exception {
+    int sentenceLength = tokenSequence.getSentence().getText().length();
+    DecisionMaker decisionMaker = posTagger.getDecisionMaker();
+
+    TreeMap<Double, PriorityQueue<PosTagSequence>> heaps = new TreeMap<Double, PriorityQueue<PosTagSequence>>();
+    PriorityQueue<PosTagSequence> heap0 = new PriorityQueue<PosTagSequence>();
+    PosTagSequence emptySequence = new PosTagSequence(tokenSequence);
+    emptySequence.setScoringStrategy(decisionMaker.getDefaultScoringStrategy());
+    heap0.add(emptySequence);
+    heaps.put(0.0, heap0);
+
+    PriorityQueue<PosTagSequence> finalHeap = null;
+    while (heaps.size() > 0) {
+      Entry<Double, PriorityQueue<PosTagSequence>> heapEntry = heaps.pollFirstEntry();
+      if (heapEntry.getKey() == sentenceLength) {
+        finalHeap = heapEntry.getValue();
+        break;
+      }
+      PriorityQueue<PosTagSequence> previousHeap = heapEntry.getValue();
+      int maxSequences = previousHeap.size() > beamWidth ? beamWidth : previousHeap.size();
+
+      for (int j = 0; j < maxSequences; j++) {
+        PosTagSequence history = previousHeap.poll();
+        Token token = history.getNextToken();
+        PosTaggerContext context = new PosTaggerContextImpl(token, history);
+        List<FeatureResult<?>> featureResults = new ArrayList<FeatureResult<?>>();
+        for (PosTaggerFeature<?> feature : posTagger.getPosTaggerFeatures())
+          featureResults.add(feature.check(context, new RuntimeEnvironment()));
+        List<Decision> decisions = decisionMaker.decide(featureResults);
+
+        for (Decision decision : decisions) {
+          PosTaggedToken posTaggedToken = new PosTaggedToken(token, decision, session);
+          PosTagSequence sequence = new PosTagSequence(history);
+          sequence.addPosTaggedToken(posTaggedToken);
+          sequence.addDecision(decision);
+
+          double heapIndex = token.getEndIndex();
+          if (token.getIndex() == sequence.getTokenSequence().size() - 1)
+            heapIndex = sentenceLength;
+
+          PriorityQueue<PosTagSequence> heap = heaps.get(heapIndex);
+          if (heap == null) {
+            heap = new PriorityQueue<PosTagSequence>();
+            heaps.put(heapIndex, heap);
+          }
+          heap.add(sequence);
+        }
+      }
+    }
+
+    List<PosTagSequence> sequences = new ArrayList<PosTagSequence>();
+    while (!finalHeap.isEmpty() && sequences.size() < beamWidth)
+      sequences.add(finalHeap.poll());
+    return sequences;
+  }
+
+  static TalismaneSession getSession() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+    return new TalismaneSession(config, "");
+  }
+
+  static List<ScoringStrategy<ClassificationSolution>> getScoringStrategies() {
+    List<ScoringStrategy<ClassificationSolution>> scoringStrategies = new ArrayList<>();
+    scoringStrategies.add(new GeometricMeanScoringStrategy());
+    scoringStrategies.add(new AdditiveScoringStrategy());
+    return scoringStrategies;
+  }
+
+  static ForwardStatisticalPosTagger getPosTagger(ScoringStrategy<ClassificationSolution> scoringStrategy, int beamWidth, TalismaneSession session) {
+    Set<PosTaggerFeature<?>> features = new TreeSet<>();
+    features.add(new WordAndPreviousTagFeature());
+    ForwardStatisticalPosTagger posTagger = new ForwardStatisticalPosTagger(features, new RandomDecisionMaker(scoringStrategy), beamWidth, false, session);
+    posTagger.setPosTaggerRules(Collections.emptyList());
+    return posTagger;
+  }
+
+  static List<TokenSequence> getTokenSequences(String text, TalismaneSession session) {
+    Sentence sentence = new Sentence(text, session);
+    TokenSequence tokenSequence = new TokenSequence(sentence, session);
+    tokenSequence.findDefaultTokens();
+    List<TokenSequence> tokenSequences = new ArrayList<>();
+    tokenSequences.add(tokenSequence);
+    return tokenSequences;
+  }
+
+  /**
+   * The current word followed by the previous pos-tag, so that decisions
+   * depend on the history.
+   */
+  static final class WordAndPreviousTagFeature extends AbstractFeature<PosTaggerContext, String>implements PosTaggerFeature<String>, StringFeature<PosTaggerContext> {
+    @Override
+    public FeatureResult<String> check(PosTaggerContext context, RuntimeEnvironment env) {
+      PosTagSequence history = context.getHistory();
+      String previousTag = history.size() == 0 ? "" : history.get(history.size() - 1).getTag().getCode();
+      return this.generateResult(context.getToken().getAnalyisText() + "|" + previousTag);
+    }
+  }
+
+  /**
+   * Decisions drawn at random from a generator seeded by the feature results,
+   * so that the same history always gives the same decisions. Scores are in
+   * [-10,10]. For an additive strategy, probabilities are normalised linearly
+   * as by the perceptron, and otherwise they are given by the softmax, with
+   * the scores scaled down to [-2,2].
+   */
+  static final class RandomDecisionMaker implements DecisionMaker {
+    private static final String[] OUTCOMES = new String[] { "ADJ", "ADV", "DET", "NC", "P", "PONCT", "V" };
+    private final ScoringStrategy<ClassificationSolution> scoringStrategy;
+
+    RandomDecisionMaker(ScoringStrategy<ClassificationSolution> scoringStrategy) {
+      this.scoringStrategy = scoringStrategy;
+    }
+
+    @Override
+    public List<Decision> decide(List<FeatureResult<?>> featureResults) {
+      Random random = new Random(featureResults.get(0).getOutcome().hashCode());
+      double[] scores = new double[OUTCOMES.length];
+      double min = Double.MAX_VALUE;
+      for (int i = 0; i < OUTCOMES.length; i++) {
+        scores[i] = random.nextDouble() * 20 - 10;
+        if (scores[i] < min)
+          min = scores[i];
+      }
+
+      double[] probs = new double[OUTCOMES.length];
+      double total = 0;
+      for (int i = 0; i < OUTCOMES.length; i++) {
+        if (scoringStrategy.isAdditive())
+          probs[i] = scores[i] - min + 1;
+        else
+          probs[i] = Math.exp(scores[i] / 5);
+        total += probs[i];
+      }
+
+      Set<Decision> decisions = new TreeSet<>();
+      for (int i = 0; i < OUTCOMES.length; i++)
+        decisions.add(new Decision(OUTCOMES[i], scores[i], probs[i] / total));
+      return new ArrayList<>(decisions);
+    }
+
+    @Override
+    public ScoringStrategy<ClassificationSolution> getDefaultScoringStrategy() {
+      return scoringStrategy;
+    }
+  }
+}
@@ -0,0 +1,113 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
+import com.joliciel.talismane.tokeniser.Token;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+
+public class PosTagBeamTest {
+
+  @Test
+  public void testHypothesisScore() throws Exception {
+    TalismaneSession session = ForwardStatisticalPosTaggerTest.getSession();
+    TokenSequence tokenSequence = ForwardStatisticalPosTaggerTest.getTokenSequences("Le chat mange la souris.", session).get(0);
+
+    for (ScoringStrategy<ClassificationSolution> scoringStrategy : ForwardStatisticalPosTaggerTest.getScoringStrategies()) {
+      PosTagSequence emptySequence = new PosTagSequence(tokenSequence);
+      emptySequence.setScoringStrategy(scoringStrategy);
+      PosTagHypothesis hypothesis = new PosTagHypothesis(emptySequence);
+      assertEquals(emptySequence.getScore(), hypothesis.getScore(), 1e-12);
+
+      String[] tags = new String[] { "DET", "NC", "V", "DET", "NC", "PONCT" };
+      double[] scores = new double[] { 3.5, -1.25, 0.5, 8.0, 2.0, -4.0 };
+      double[] probs = new double[] { 0.9, 0.2, 0.55, 0.7, 0.35, 0.99 };
+      for (int i = 0; i < tokenSequence.size(); i++) {
+        Token token = tokenSequence.get(i);
+        Decision decision = null;
+        if (i == 2)
+          // a rule-based decision, which doesn't count towards the score
+          decision = new Decision(tags[i]);
+        else
+          decision = new Decision(tags[i], scores[i], probs[i]);
+        hypothesis = new PosTagHypothesis(hypothesis, token, decision);
+
+        // the sequence is built from scratch the first time it is requested,
+        // and scored by the scoring strategy directly
+        PosTagSequence sequence = hypothesis.getSequence(session);
+        PosTagSequence copy = new PosTagSequence(sequence);
+        assertEquals(copy.getScore(), hypothesis.getScore(), 1e-12);
+        assertEquals(i + 1, sequence.size());
+        assertSame(sequence, hypothesis.getSequence(session));
+      }
+    }
+  }
+
+  @Test
+  public void testOffer() throws Exception {
+    TalismaneSession session = ForwardStatisticalPosTaggerTest.getSession();
+    TokenSequence tokenSequence = ForwardStatisticalPosTaggerTest.getTokenSequences("Le chat.", session).get(0);
+    PosTagSequence emptySequence = new PosTagSequence(tokenSequence);
+    emptySequence.setScoringStrategy(ForwardStatisticalPosTaggerTest.getScoringStrategies().get(0));
+    PosTagHypothesis root = new PosTagHypothesis(emptySequence);
+    Token token = tokenSequence.get(0);
+
+    PosTagBeam beam = new PosTagBeam(3);
+    assertTrue(beam.isEmpty());
+    assertTrue(beam.offer(new PosTagHypothesis(root, token, new Decision("DET", 0.5))));
+    assertTrue(beam.offer(new PosTagHypothesis(root, token, new Decision("NC", 0.2))));
+    assertTrue(beam.offer(new PosTagHypothesis(root, token, new Decision("V", 0.7))));
+    // full: a hypothesis which is no better than the worst one is discarded
+    assertFalse(beam.accepts(0.2));
+    assertFalse(beam.offer(new PosTagHypothesis(root, token, new Decision("P", 0.1))));
+    assertFalse(beam.offer(new PosTagHypothesis(root, token, new Decision("ADJ", 0.2))));
+    // a better one pushes out the worst
+    assertTrue(beam.offer(new PosTagHypothesis(root, token, new Decision("ADV", 0.6))));
+    // equal scores are kept in the order they were added
+    assertTrue(beam.offer(new PosTagHypothesis(root, token, new Decision("PONCT", 0.6))));
+
+    assertEquals(3, beam.size());
+    assertEquals(getTags(beam, session), "V,ADV,PONCT");
+    assertEquals(0.7, beam.get(0).getScore(), 1e-12);
+    assertEquals(0.6, beam.get(2).getScore(), 1e-12);
+  }
+
+  private String getTags(List<PosTagHypothesis> hypotheses, TalismaneSession session) throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (PosTagHypothesis hypothesis : hypotheses) {
+      if (sb.length() > 0)
+        sb.append(',');
+      PosTagSequence sequence = hypothesis.getSequence(session);
+      sb.append(sequence.get(sequence.size() - 1).getTag().getCode());
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,69 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.AdditiveScoringStrategy;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class PosTagSequenceTest {
+
+  @Test
+  public void testIncrementalScore() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    Sentence sentence = new Sentence("Le chat dort.", session);
+    TokenSequence tokenSequence = new TokenSequence(sentence, session);
+    tokenSequence.findDefaultTokens();
+
+    AdditiveScoringStrategy scoringStrategy = new AdditiveScoringStrategy();
+    PosTagSequence sequence = new PosTagSequence(tokenSequence);
+    sequence.setScoringStrategy(scoringStrategy);
+
+    String[] tags = new String[] { "DET", "NC", "V", "PONCT" };
+    double[] scores = new double[] { 3.0, -1.0, 2.5, 4.0 };
+    double scoreSum = 0;
+    for (int i = 0; i < tags.length; i++) {
+      // each sequence extends the previous one, as in the beam search
+      PosTagSequence history = sequence;
+      sequence = new PosTagSequence(history);
+      Decision decision = new Decision(tags[i], scores[i], 0.5);
+      sequence.addPosTaggedToken(new PosTaggedToken(tokenSequence.get(i), decision, session));
+      sequence.addDecision(decision);
+      scoreSum += scores[i];
+
+      assertSame(scoringStrategy, sequence.getScoringStrategy());
+      assertEquals(i + 1, sequence.getDecisionCount());
+      assertEquals(scoreSum, sequence.getDecisionScoreSum(), 1e-12);
+      assertEquals(scoreSum / (i + 1), sequence.getScore(), 1e-12);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.posTagger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+
+/**
+ * Compares the time taken by the per-position beam search against the
+ * original search over heaps of full sequences, at beam widths 1, 5 and 20,
+ * for each scoring strategy, using a random decision maker so that only the
+ * search itself is measured. Not a unit test: run it directly from the
+ * talismane_core directory, e.g.<br/>
+ * <code>java -cp ... com.joliciel.talismane.posTagger.PosTaggerBeamBenchmark [iterations]</code>
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class PosTaggerBeamBenchmark {
+  private static final int[] BEAM_WIDTHS = new int[] { 1, 5, 20 };
+  private static final String[] TEXTS = new String[] { "Le chat mange la souris grise dans le jardin de mon voisin.",
+      "Il a dit qu'il viendrait demain, mais personne ne l'a cru, pas même sa soeur qui pourtant le connaissait depuis toujours.",
+      "Trois petits cochons construisent leurs maisons en paille, en bois et en briques, pendant que le loup attend patiemment au fond de la forêt." };
+
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    TalismaneSession session = ForwardStatisticalPosTaggerTest.getSession();
+    List<List<TokenSequence>> sentences = new ArrayList<>();
+    for (String text : TEXTS)
+      sentences.add(ForwardStatisticalPosTaggerTest.getTokenSequences(text, session));
+
+    for (ScoringStrategy<ClassificationSolution> scoringStrategy : ForwardStatisticalPosTaggerTest.getScoringStrategies()) {
+      for (int beamWidth : BEAM_WIDTHS) {
+        ForwardStatisticalPosTagger posTagger = ForwardStatisticalPosTaggerTest.getPosTagger(scoringStrategy, beamWidth, session);
+
+        // warm up both searches before timing them
+        for (int i = 0; i < iterations / 4 + 1; i++) {
+          for (List<TokenSequence> tokenSequences : sentences) {
+            posTagger.tagSentence(tokenSequences);
+            ForwardStatisticalPosTaggerTest.tagSentenceWithHeaps(posTagger, tokenSequences.get(0), beamWidth, session);
+          }
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+          for (List<TokenSequence> tokenSequences : sentences)
+            posTagger.tagSentence(tokenSequences);
+        long beamTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+          for (List<TokenSequence> tokenSequences : sentences)
+            ForwardStatisticalPosTaggerTest.tagSentenceWithHeaps(posTagger, tokenSequences.get(0), beamWidth, session);
+        long heapTime = System.nanoTime() - start;
+
+        int sentenceCount = iterations * sentences.size();
+        System.out.println(String.format("%s, beam width %d: beams %.1f us/sentence, heaps %.1f us/sentence", scoringStrategy.getClass().getSimpleName(),
+            beamWidth, beamTime / 1000.0 / sentenceCount, heapTime / 1000.0 / sentenceCount));
+      }
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package com.joliciel.talismane.rawText;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TextSegmentReaderTest {
+
+  @Test
+  public void testReadSegments() throws Exception {
+    TextSegmentReader segmentReader = new TextSegmentReader(new StringReader("One two three\ffour five\f\f\fsix"), 5, '\f');
+    List<String> segments = readAll(segmentReader);
+    List<String> expected = new ArrayList<>();
+    expected.add("One two");
+    expected.add(" three\f");
+    expected.add("");
+    expected.add("four five\f");
+    expected.add("");
+    expected.add("\f");
+    expected.add("");
+    expected.add("\f");
+    expected.add("");
+    expected.add("");
+    expected.add("");
+    expected.add("");
+    assertEquals(expected, segments);
+  }
+
+  @Test
+  public void testSameAsCharacterReading() throws Exception {
+    Random random = new Random(1);
+    String alphabet = "abcdefgh  \n\r\t\f";
+    for (int i = 0; i < 200; i++) {
+      StringBuilder sb = new StringBuilder();
+      int length = random.nextInt(2000);
+      for (int j = 0; j < length; j++)
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      String text = sb.toString();
+      int blockSize = 1 + random.nextInt(50);
+
+      List<String> expected = readOneCharAtATime(new StringReader(text), blockSize, '\f');
+      // read in small chunks, to check segments spanning several reads
+      final int chunkSize = 1 + random.nextInt(20);
+      Reader chunkReader = new StringReader(text) {
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+          return super.read(cbuf, off, Math.min(len, chunkSize));
+        }
+      };
+      List<String> segments = readAll(new TextSegmentReader(chunkReader, blockSize, '\f'));
+      assertEquals(expected, segments);
+    }
+  }
+
+  private List<String> readAll(TextSegmentReader segmentReader) {
+    List<String> segments = new ArrayList<>();
+    while (!segmentReader.isFinished())
+      segments.addAll(segmentReader.readSegments());
+    return segments;
+  }
+
+  /**
+   * The original character-by-character segmentation.
+   */
+  private List<String> readOneCharAtATime(Reader reader, int blockSize, char endBlockCharacter) throws IOException {
+    List<String> segments = new ArrayList<>();
+    StringBuilder stringBuilder = new StringBuilder();
+    boolean finished = false;
+    int endBlockCharacterCount = 0;
+    while (!finished) {
+      char c;
+      int r = reader.read();
+      if (r == -1) {
+        finished = true;
+        c = '\n';
+      } else {
+        c = (char) r;
+      }
+      if (c == endBlockCharacter) {
+        endBlockCharacterCount++;
+        if (endBlockCharacterCount == 3)
+          finished = true;
+      } else {
+        endBlockCharacterCount = 0;
+      }
+      if (finished || (Character.isWhitespace(c) && c != '\r' && c != '\n' && stringBuilder.length() > blockSize) || c == endBlockCharacter) {
+        if (c == endBlockCharacter)
+          stringBuilder.append(c);
+        if (stringBuilder.length() > 0) {
+          segments.add(stringBuilder.toString());
+          stringBuilder = new StringBuilder();
+        }
+        if (c == endBlockCharacter)
+          segments.add("");
+      }
+      if (finished) {
+        segments.add("");
+        segments.add("");
+        segments.add("");
+      }
+      if (c != endBlockCharacter)
+        stringBuilder.append(c);
+    }
+    return segments;
+  }
+}
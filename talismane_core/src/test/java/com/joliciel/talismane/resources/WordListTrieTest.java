@@ -0,0 +1,87 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class WordListTrieTest {
+
+  @Test
+  public void testFind() throws Exception {
+    WordListTrie trie = new WordListTrie();
+    trie.add(Arrays.asList("Cc", "h", "a", "t"), false, false);
+    assertTrue(trie.find("Le chat dort."));
+    assertTrue(trie.find("Le Chat dort."));
+    assertFalse(trie.find("Le CHAT dort."));
+    assertTrue(trie.find("Les chatons dorment."));
+    assertFalse(trie.find("Le chien dort."));
+
+    trie = new WordListTrie();
+    trie.add(Arrays.asList("c", "h", "a", "t"), true, true);
+    assertTrue(trie.find("Le chat dort."));
+    assertTrue(trie.find("chat"));
+    assertFalse(trie.find("Les chatons dorment."));
+    assertFalse(trie.find("Un petitchat dort."));
+
+    trie = new WordListTrie();
+    trie.add(Arrays.asList("Éé", "t", "é"), true, false);
+    assertTrue(trie.find("Été."));
+    assertTrue(trie.find("En été."));
+    assertFalse(trie.find("En ete."));
+    assertFalse(trie.find("Un pétété."));
+  }
+
+  @Test
+  public void testMatch() throws Exception {
+    WordListTrie trie = new WordListTrie();
+    trie.add(Arrays.asList("J", "o"), false, true);
+    trie.add(Arrays.asList("J", "o", "ëe", "l", "l", "e"), false, false);
+    trie.add(Arrays.asList("l", "l", "e"), false, false);
+
+    String text = "Jo, Joëlle, Joelles";
+    List<String> matches = new ArrayList<>();
+    for (int[] match : trie.match(text))
+      matches.add(text.substring(match[0], match[1]));
+    assertEquals("[Jo, Joëlle, Joelle]", matches.toString());
+
+    // the first word added is preferred
+    trie = new WordListTrie();
+    trie.add(Arrays.asList("J", "o"), false, false);
+    trie.add(Arrays.asList("J", "o", "ëe", "l", "l", "e"), false, false);
+    trie.add(Arrays.asList("l", "l", "e"), false, false);
+    matches = new ArrayList<>();
+    for (int[] match : trie.match(text))
+      matches.add(text.substring(match[0], match[1]));
+    assertEquals("[Jo, Jo, lle, Jo, lle]", matches.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGroupWithDifferentFoldedCharacters() throws Exception {
+    WordListTrie trie = new WordListTrie();
+    trie.add(Arrays.asList("ab"), false, false);
+  }
+}
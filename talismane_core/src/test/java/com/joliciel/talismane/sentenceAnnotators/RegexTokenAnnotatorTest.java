@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.junit.Test;
@@ -222,6 +223,141 @@ public class RegexTokenAnnotatorTest {
     assertEquals("\\b([Cc]hlo[ée]|[Mm]arcel|[Jj]o[ëe]lle|[ÉéEe]douard) [A-Z]\\w+\\b", pattern.pattern());
   }
 
+  @Test
+  public void testWordListPrefilter() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    final List<String> wordList = new ArrayList<String>();
+    wordList.add("Chloé");
+    wordList.add("Marcel");
+    wordList.add("Joëlle");
+    wordList.add("Édouard");
+
+    WordList nameList = new WordList("FirstNames", wordList);
+    session.getWordListFinder().addWordList(nameList);
+
+    String regex = "\\b(\\p{WordList(FirstNames,diacriticsOptional,uppercaseOptional)}) [A-Z]\\w+\\b";
+    RegexTokenAnnotator filter = new RegexTokenAnnotator(regex, "Name", null, session);
+
+    Sentence text = new Sentence("Je vois edouard Dupont.", session);
+    filter.annotate(text);
+    List<Annotation<TokenPlaceholder>> placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(1, placeholders.size());
+    assertEquals(8, placeholders.get(0).getStart());
+    assertEquals(22, placeholders.get(0).getEnd());
+
+    text = new Sentence("Je vois Paul Dupont.", session);
+    filter.annotate(text);
+    assertEquals(0, text.getAnnotations(TokenPlaceholder.class).size());
+
+    // uppercase is only optional, so an uppercase word isn't found
+    text = new Sentence("Je vois MARCEL Dupont.", session);
+    filter.annotate(text);
+    assertEquals(0, text.getAnnotations(TokenPlaceholder.class).size());
+
+    // an optional word list cannot be used to prefilter
+    regex = "\\b(\\p{WordList(FirstNames)} )?Dupont\\b";
+    filter = new RegexTokenAnnotator(regex, "Name", null, session);
+    text = new Sentence("Je vois Paul Dupont.", session);
+    filter.annotate(text);
+    placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(1, placeholders.size());
+    assertEquals(13, placeholders.get(0).getStart());
+    assertEquals(19, placeholders.get(0).getEnd());
+
+    // the word list must start on a word boundary
+    regex = "\\b(?:\\p{WordList(FirstNames)}) Dupont\\b";
+    filter = new RegexTokenAnnotator(regex, "Name", null, session);
+    text = new Sentence("Je vois AnneMarcel Dupont et Marcel Dupont.", session);
+    filter.annotate(text);
+    placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(1, placeholders.size());
+    assertEquals(29, placeholders.get(0).getStart());
+    assertEquals(42, placeholders.get(0).getEnd());
+  }
+
+  @Test
+  public void testWordListDirectMatch() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    final List<String> wordList = new ArrayList<String>();
+    wordList.add("Jo");
+    wordList.add("Joëlle");
+    wordList.add("Chloé");
+    wordList.add("Marcel");
+    wordList.add("Édouard");
+
+    WordList nameList = new WordList("FirstNames", wordList);
+    session.getWordListFinder().addWordList(nameList);
+
+    String sentence = "Joëlle, joelle, JOELLE et Jo voient chloe, Chloé, Marcello, MarieJo, Jocelyn et edouard.";
+
+    String regex = "\\p{WordList(FirstNames,diacriticsOptional,uppercaseOptional)}";
+    RegexTokenAnnotator filter = new RegexTokenAnnotator(regex, "Name", null, session);
+    Sentence text = new Sentence(sentence, session);
+    filter.annotate(text);
+    List<Annotation<TokenPlaceholder>> placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(regexMatches(filter, sentence), placeholderSpans(placeholders));
+    assertEquals("[Jo, jo, Jo, chloe, Chloé, Marcel, Jo, Jo, edouard]", placeholderTexts(placeholders, sentence).toString());
+
+    // the words are alternatives, so the word boundaries only apply to the
+    // first and last word
+    regex = "\\b\\p{WordList(FirstNames,diacriticsOptional,uppercaseOptional)}\\b";
+    filter = new RegexTokenAnnotator(regex, "Name", null, session);
+    text = new Sentence(sentence, session);
+    filter.annotate(text);
+    placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(regexMatches(filter, sentence), placeholderSpans(placeholders));
+    assertEquals("[Jo, jo, Jo, chloe, Chloé, Marcel, Jo, edouard]", placeholderTexts(placeholders, sentence).toString());
+
+    regex = "\\b(?:\\p{WordList(FirstNames,diacriticsOptional,uppercaseOptional)})\\b";
+    filter = new RegexTokenAnnotator(regex, "Name", null, session);
+    text = new Sentence(sentence, session);
+    filter.annotate(text);
+    placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(regexMatches(filter, sentence), placeholderSpans(placeholders));
+    assertEquals("[Joëlle, joelle, Jo, chloe, Chloé, edouard]", placeholderTexts(placeholders, sentence).toString());
+
+    // a group around the word list can be used in the replacement
+    regex = "(\\p{WordList(FirstNames)})";
+    filter = new RegexTokenAnnotator(regex, "Name:$1", null, 0, true, true, true, session);
+    assertEquals("\\b(Jo|Joëlle|Chloé|Marcel|Édouard)\\b", filter.getPattern().pattern());
+    text = new Sentence(sentence, session);
+    filter.annotate(text);
+    placeholders = text.getAnnotations(TokenPlaceholder.class);
+    assertEquals(regexMatches(filter, sentence), placeholderSpans(placeholders));
+    assertEquals("[Joëlle, Jo, Chloé]", placeholderTexts(placeholders, sentence).toString());
+    assertEquals("Name:Joëlle", placeholders.get(0).getData().getReplacement());
+  }
+
+  private List<String> regexMatches(RegexTokenAnnotator filter, String text) {
+    List<String> spans = new ArrayList<>();
+    Matcher matcher = filter.getPattern().matcher(text);
+    while (matcher.find())
+      spans.add(matcher.start() + "-" + matcher.end());
+    return spans;
+  }
+
+  private List<String> placeholderSpans(List<Annotation<TokenPlaceholder>> placeholders) {
+    List<String> spans = new ArrayList<>();
+    for (Annotation<TokenPlaceholder> placeholder : placeholders)
+      spans.add(placeholder.getStart() + "-" + placeholder.getEnd());
+    return spans;
+  }
+
+  private List<String> placeholderTexts(List<Annotation<TokenPlaceholder>> placeholders, String text) {
+    List<String> texts = new ArrayList<>();
+    for (Annotation<TokenPlaceholder> placeholder : placeholders)
+      texts.add(text.substring(placeholder.getStart(), placeholder.getEnd()));
+    return texts;
+  }
+
   @Test
   public void testAutoWordBoundaries() throws Exception {
     System.setProperty("config.file", "src/test/resources/test.conf");
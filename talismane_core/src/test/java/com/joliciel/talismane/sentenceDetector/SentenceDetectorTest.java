@@ -3,9 +3,11 @@ package com.joliciel.talismane.sentenceDetector;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
@@ -18,9 +20,11 @@ import com.joliciel.talismane.machineLearning.DecisionMaker;
 import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
 import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
 import com.joliciel.talismane.rawText.RawTextMarker.RawTextNoSentenceBreakMarker;
 import com.joliciel.talismane.rawText.RawTextMarker.RawTextSentenceBreakMarker;
 import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeature;
+import com.joliciel.talismane.sentenceDetector.features.SentenceDetectorFeatureParser;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -152,4 +156,86 @@ public class SentenceDetectorTest {
 
   }
 
+  /**
+   * Boundaries covered by no-sentence-break markers which overlap, which are
+   * nested, or which are adjacent, and features evaluated for the remaining
+   * boundaries in a shared token sequence and runtime environment.
+   */
+  @Test
+  public void testOverlappingNoSentenceBreakMarkers() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    final List<List<String>> featureResultsList = new ArrayList<>();
+    DecisionMaker decisionMaker = new DecisionMaker() {
+
+      @Override
+      public ScoringStrategy<ClassificationSolution> getDefaultScoringStrategy() {
+        return new GeometricMeanScoringStrategy();
+      }
+
+      @Override
+      public List<Decision> decide(List<FeatureResult<?>> featureResults) {
+        featureResultsList.add(featureResults.stream().map(r -> r.toString()).sorted().collect(Collectors.toList()));
+        List<Decision> decisions = new ArrayList<>();
+        Decision decision = new Decision(SentenceDetectorOutcome.IS_BOUNDARY.name(), 1.0);
+        decisions.add(decision);
+        return decisions;
+      }
+    };
+
+    String[] labels = new String[0];
+
+    SentenceDetectorFeatureParser parser = new SentenceDetectorFeatureParser(session);
+    Set<SentenceDetectorFeature<?>> features = parser.getFeatureSet(Arrays.asList("PreviousTokens(2)", "NextTokens(2)", "Surroundings(4)"));
+
+    SentenceDetector sentenceDetector = new SentenceDetector(decisionMaker, features, session);
+
+    String text = "One. Two. Three. Four. Five. Six. Seven. Eight. Nine.";
+    List<Integer> periods = new ArrayList<>();
+    for (int i = text.indexOf('.'); i >= 0; i = text.indexOf('.', i + 1))
+      periods.add(i);
+
+    AnnotatedText annotatedText = new AnnotatedText(text);
+
+    List<Annotation<RawTextNoSentenceBreakMarker>> noSentenceBreakMarkers = new ArrayList<>();
+    // covers the first three periods, with a shorter marker nested inside it
+    noSentenceBreakMarkers.add(
+        new Annotation<RawTextNoSentenceBreakMarker>(periods.get(0) - 2, periods.get(2) + 1, new RawTextNoSentenceBreakMarker("long"), labels));
+    noSentenceBreakMarkers.add(
+        new Annotation<RawTextNoSentenceBreakMarker>(periods.get(1) - 1, periods.get(1) + 1, new RawTextNoSentenceBreakMarker("nested"), labels));
+    // adjacent markers covering the fourth and fifth periods, but not the
+    // sixth, where the second one ends
+    noSentenceBreakMarkers
+        .add(new Annotation<RawTextNoSentenceBreakMarker>(periods.get(3) - 1, periods.get(4), new RawTextNoSentenceBreakMarker("first"), labels));
+    noSentenceBreakMarkers
+        .add(new Annotation<RawTextNoSentenceBreakMarker>(periods.get(4), periods.get(5), new RawTextNoSentenceBreakMarker("second"), labels));
+    // a marker lying strictly between the seventh and eighth periods
+    noSentenceBreakMarkers.add(
+        new Annotation<RawTextNoSentenceBreakMarker>(periods.get(6) + 1, periods.get(7), new RawTextNoSentenceBreakMarker("between"), labels));
+    annotatedText.addAnnotations(noSentenceBreakMarkers);
+
+    List<Integer> sentenceBreaks = sentenceDetector.detectSentences(annotatedText);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 5; i < periods.size(); i++)
+      expected.add(periods.get(i) + 1);
+    assertEquals(expected, sentenceBreaks);
+
+    // each boundary gets the same feature results as it would on its own
+    assertEquals(periods.size() - 5, featureResultsList.size());
+    for (int i = 5; i < periods.size(); i++) {
+      PossibleSentenceBoundary boundary = new PossibleSentenceBoundary(text, periods.get(i), session);
+      List<String> featureResults = new ArrayList<>();
+      for (SentenceDetectorFeature<?> feature : features) {
+        FeatureResult<?> featureResult = feature.check(boundary, new RuntimeEnvironment());
+        if (featureResult != null)
+          featureResults.add(featureResult.toString());
+      }
+      featureResults.sort(null);
+      assertEquals(featureResults, featureResultsList.get(i - 5));
+    }
+  }
 }
@@ -0,0 +1,56 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.tokeniser;
+
+/**
+ * Measures the retained heap size per token, by creating a large number of
+ * tokens and comparing the heap before and after. Not a unit test: run it
+ * directly, with a fixed heap to reduce noise, e.g.<br/>
+ * <code>java -Xms1g -Xmx1g -cp ... com.joliciel.talismane.tokeniser.TokenMemoryBenchmark [tokenCount]</code>
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class TokenMemoryBenchmark {
+
+  public static void main(String[] args) {
+    int tokenCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+    // warm up, so that class loading isn't counted
+    for (int i = 0; i < 1000; i++)
+      new Token("a", null, i, i, i + 1, null, null);
+
+    Token[] tokens = new Token[tokenCount];
+    long heapBefore = usedHeap();
+    for (int i = 0; i < tokenCount; i++)
+      tokens[i] = new Token("a", null, i, i, i + 1, null, null);
+    long heapAfter = usedHeap();
+
+    // the array itself is allocated before the first measurement
+    System.out.println("Tokens: " + tokens.length);
+    System.out.println("Bytes per token: " + (heapAfter - heapBefore) / tokenCount);
+  }
+
+  private static long usedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+}
@@ -0,0 +1,77 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.tokeniser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+import com.joliciel.talismane.machineLearning.features.StringFeature;
+
+public class TokenTest {
+
+  @Test
+  public void testEmptyViewsBeforeWrite() throws Exception {
+    Token token = new Token("a", null, 0, 0, 1, null, null);
+    assertTrue(token.getAttributes().isEmpty());
+    assertTrue(token.getAtomicParts().isEmpty());
+
+    token.addAttribute("key", new StringAttribute("key", "value"));
+    assertEquals(1, token.getAttributes().size());
+    assertEquals("value", token.getAttributes().get("key").getValue());
+
+    List<TaggedToken<TokeniserOutcome>> atomicParts = new ArrayList<>();
+    token.setAtomicParts(atomicParts);
+    assertSame(atomicParts, token.getAtomicParts());
+  }
+
+  @Test
+  public void testCloneSharesFeatureCache() throws Exception {
+    TextFeature feature = new TextFeature();
+    RuntimeEnvironment env = new RuntimeEnvironment();
+
+    Token token = new Token("a", null, 0, 0, 1, null, null);
+    assertNull(token.getResultFromCache(feature, env));
+
+    // no result has been written yet, so neither token has a cache of its
+    // own when the clone is made
+    Token clone = token.cloneToken();
+
+    FeatureResult<String> result = feature.check(clone, env);
+    clone.putResultInCache(feature, result, env);
+    assertSame(result, token.getResultFromCache(feature, env));
+    assertSame(result, clone.getResultFromCache(feature, env));
+  }
+
+  private static final class TextFeature extends AbstractFeature<Token, String>implements StringFeature<Token> {
+    @Override
+    public FeatureResult<String> check(Token context, RuntimeEnvironment env) {
+      return this.generateResult(context.getOriginalText());
+    }
+  }
+}
@@ -19,9 +19,13 @@
 package com.joliciel.talismane.tokeniser.patterns;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -29,10 +33,22 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.talismane.Annotation;
 import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.ClassificationSolution;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
+import com.joliciel.talismane.machineLearning.ScoringStrategy;
+import com.joliciel.talismane.machineLearning.features.AbstractFeature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.RuntimeEnvironment;
+import com.joliciel.talismane.machineLearning.features.StringFeature;
 import com.joliciel.talismane.rawText.Sentence;
 import com.joliciel.talismane.sentenceAnnotators.TokenPlaceholder;
 import com.joliciel.talismane.tokeniser.Token;
 import com.joliciel.talismane.tokeniser.TokenSequence;
+import com.joliciel.talismane.tokeniser.TokeniserOutcome;
+import com.joliciel.talismane.tokeniser.TokenisedAtomicTokenSequence;
+import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeature;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -92,4 +108,84 @@ public class PatternTokeniserTest {
       i++;
     }
   }
+
+  @Test
+  public void testGreedyMatchesBeamOfWidthOne() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+
+    List<String> tokeniserPatterns = new ArrayList<String>();
+    tokeniserPatterns.add("IS_NOT_SEPARATOR -_");
+    tokeniserPatterns.add("IS_SEPARATOR_AFTER '");
+    tokeniserPatterns.add("ellipses\t\\.\\.\\.");
+    tokeniserPatterns.add("-t-elle\t.+-{t-(elle|elles|il|ils|on)}");
+    tokeniserPatterns.add("1,000\tNUMPatterns\t\\d+,\\d+");
+    tokeniserPatterns.add("ainsi que\tCCPatterns\tainsi qu{'}");
+    tokeniserPatterns.add("ou bien\tCCPatterns\tou (alors|bien|encore|même)");
+    tokeniserPatterns.add("ou bien encore\tCCPatterns\tou bien encore");
+
+    TokeniserPatternManager patternManager = new TokeniserPatternManager(tokeniserPatterns, session);
+    Set<TokenPatternMatchFeature<?>> features = new TreeSet<>();
+    features.add(new PatternAndTokenFeature());
+
+    PatternTokeniser greedyTokeniser = new PatternTokeniser(new RandomDecisionMaker(), patternManager, features, 1, session);
+    PatternTokeniser beamTokeniser = new PatternTokeniser(greedyTokeniser) {
+      @Override
+      boolean isGreedy() {
+        return false;
+      }
+    };
+
+    String[] texts = new String[] { "Ainsi qu'il l'a dit... viendra-t-elle ou bien encore 1,000 fois ?",
+        "Ou bien il vient, ou alors elle part-t-elle ainsi qu'un chat-huant." };
+    for (String text : texts) {
+      List<TokenisedAtomicTokenSequence> greedySequences = greedyTokeniser.tokeniseWithDecisions(text);
+      List<TokenisedAtomicTokenSequence> beamSequences = beamTokeniser.tokeniseWithDecisions(text);
+      assertEquals(1, greedySequences.size());
+      assertEquals(1, beamSequences.size());
+      TokenisedAtomicTokenSequence greedySequence = greedySequences.get(0);
+      TokenisedAtomicTokenSequence beamSequence = beamSequences.get(0);
+      LOG.debug(greedySequence.toString());
+      // make sure some patterns were actually decided on
+      assertTrue(greedySequence.getDecisions().size() > 2);
+      assertEquals(beamSequence.size(), greedySequence.size());
+      for (int i = 0; i < beamSequence.size(); i++)
+        assertEquals(beamSequence.get(i).getTag(), greedySequence.get(i).getTag());
+      assertEquals(beamSequence.inferTokenSequence().toString(), greedySequence.inferTokenSequence().toString());
+      assertEquals(beamSequence.getScore(), greedySequence.getScore(), 1e-12);
+    }
+  }
+
+  private static final class PatternAndTokenFeature extends AbstractFeature<TokenPatternMatch, String>
+      implements TokenPatternMatchFeature<String>, StringFeature<TokenPatternMatch> {
+    @Override
+    public FeatureResult<String> check(TokenPatternMatch context, RuntimeEnvironment env) {
+      return this.generateResult(context.getPattern().getName() + "|" + context.getIndex() + "|" + context.getToken().getAnalyisText());
+    }
+  }
+
+  /**
+   * Decisions drawn at random from a generator seeded by the feature results.
+   */
+  private static final class RandomDecisionMaker implements DecisionMaker {
+    private final ScoringStrategy<ClassificationSolution> scoringStrategy = new GeometricMeanScoringStrategy();
+
+    @Override
+    public List<Decision> decide(List<FeatureResult<?>> featureResults) {
+      Random random = new Random(featureResults.get(0).getOutcome().hashCode());
+      double joinProb = 0.05 + random.nextDouble() * 0.9;
+      Set<Decision> decisions = new TreeSet<>();
+      decisions.add(new Decision(TokeniserOutcome.JOIN.name(), joinProb));
+      decisions.add(new Decision(TokeniserOutcome.SEPARATE.name(), 1 - joinProb));
+      return new ArrayList<>(decisions);
+    }
+
+    @Override
+    public ScoringStrategy<ClassificationSolution> getDefaultScoringStrategy() {
+      return scoringStrategy;
+    }
+  }
 }
@@ -0,0 +1,121 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.tokeniser.patterns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.rawText.Sentence;
+import com.joliciel.talismane.tokeniser.Token;
+import com.joliciel.talismane.tokeniser.TokenSequence;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+public class TokenPatternIndexTest {
+  private static final Logger LOG = LoggerFactory.getLogger(TokenPatternIndexTest.class);
+
+  private static final String[] SENTENCES = new String[] { "Parce qu'il pleuvait, nous sommes restés à la maison, c'est-à-dire chez nous.",
+      "Mr. Smith est arrivé à 6 h 30 au 12, rue de la Paix (Côtes-d'Armor) avec 1,000 euros et 3.5 kilos...",
+      "Aujourd'hui, va-t-il venir ou bien encore rester là-bas ?", "Quelqu'un a dit qu'au même titre que la S.A. Canal+ (1) il faut partir.",
+      "Y a-t-il quelque chose à faire, plutôt que de rester là, ainsi qu'à Paris ?", "« Dis-moi », fit-elle - tout comme lui - en riant.",
+      "En effet, bien que le trompe-l'oeil soit réussi, il y a lieu de s'en méfier.", "" };
+
+  @Test
+  public void testMatch() throws Exception {
+    System.setProperty("config.file", "src/test/resources/test.conf");
+    ConfigFactory.invalidateCaches();
+    final Config config = ConfigFactory.load();
+
+    final TalismaneSession session = new TalismaneSession(config, "");
+    List<String> descriptors = Files.readAllLines(new File("languagePacks/french/features/tokeniserPatterns_fr.txt").toPath(), StandardCharsets.UTF_8);
+    TokeniserPatternManager patternManager = new TokeniserPatternManager(descriptors, session);
+    List<TokenPattern> patterns = patternManager.getParsedTestPatterns();
+    TokenPatternIndex index = patternManager.getTestPatternIndex();
+
+    int matchCount = 0;
+    for (String text : SENTENCES) {
+      TokenSequence tokenSequence = new TokenSequence(new Sentence(text, session), session);
+      tokenSequence.findDefaultTokens();
+      List<TokenPatternMatchSequence> expected = new ArrayList<>();
+      for (TokenPattern pattern : patterns)
+        expected.addAll(pattern.match(tokenSequence));
+
+      TokenSequence indexedSequence = new TokenSequence(new Sentence(text, session), session);
+      indexedSequence.findDefaultTokens();
+      List<TokenPatternMatchSequence> matches = index.match(indexedSequence);
+
+      assertEquals(text, this.describe(expected), this.describe(matches));
+      for (int i = 0; i < tokenSequence.listWithWhiteSpace().size(); i++) {
+        Token token = tokenSequence.listWithWhiteSpace().get(i);
+        Token indexedToken = indexedSequence.listWithWhiteSpace().get(i);
+        assertEquals(text, token.getMatches().size(), indexedToken.getMatches().size());
+        for (int j = 0; j < token.getMatches().size(); j++) {
+          assertEquals(text, token.getMatches().get(j).getPattern(), indexedToken.getMatches().get(j).getPattern());
+          assertEquals(text, token.getMatches().get(j).getIndex(), indexedToken.getMatches().get(j).getIndex());
+        }
+      }
+      matchCount += matches.size();
+    }
+    assertTrue(matchCount > 0);
+
+    // compare the time taken by both methods
+    List<TokenSequence> tokenSequences = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      for (String text : SENTENCES) {
+        TokenSequence tokenSequence = new TokenSequence(new Sentence(text, session), session);
+        tokenSequence.findDefaultTokens();
+        tokenSequences.add(tokenSequence);
+      }
+    }
+    long startTime = System.nanoTime();
+    for (TokenSequence tokenSequence : tokenSequences)
+      for (TokenPattern pattern : patterns)
+        pattern.match(tokenSequence);
+    long patternTime = System.nanoTime() - startTime;
+    startTime = System.nanoTime();
+    for (TokenSequence tokenSequence : tokenSequences)
+      index.match(tokenSequence);
+    long indexTime = System.nanoTime() - startTime;
+    LOG.debug("Matched " + patterns.size() + " patterns against " + tokenSequences.size() + " sentences: " + (patternTime / 1000000) + " ms by pattern, "
+        + (indexTime / 1000000) + " ms with the index");
+  }
+
+  private String describe(List<TokenPatternMatchSequence> matchSequences) {
+    StringBuilder sb = new StringBuilder();
+    for (TokenPatternMatchSequence matchSequence : matchSequences) {
+      sb.append(matchSequence.getTokenPattern().getName());
+      sb.append(":");
+      for (Token token : matchSequence.getTokenSequence())
+        sb.append(" ").append(token == null ? "null" : token.getIndexWithWhiteSpace() + "=" + token.getAnalyisText());
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+}
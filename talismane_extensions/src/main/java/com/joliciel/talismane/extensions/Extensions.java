@@ -52,6 +52,7 @@ import com.joliciel.talismane.extensions.corpus.CorpusProjectifier;
 import com.joliciel.talismane.extensions.corpus.CorpusProjectifier.ProjectivationStrategy;
 import com.joliciel.talismane.extensions.corpus.CorpusStatistics;
 import com.joliciel.talismane.extensions.corpus.PosTaggerStatistics;
+import com.joliciel.talismane.extensions.model.ModelConverter;
 import com.joliciel.talismane.extensions.standoff.ConllFileSplitter;
 import com.joliciel.talismane.extensions.standoff.StandoffReader;
 import com.joliciel.talismane.extensions.standoff.StandoffWriter;
@@ -85,7 +86,8 @@ public class Extensions {
     corpusStatistics,
     posTaggerStatistics,
     modifyCorpus,
-    projectify
+    projectify,
+    convertModel
   }
 
   public static void main(String[] args) throws Exception {
@@ -106,6 +108,8 @@ public class Extensions {
     parser.accepts(ExtendedCommand.posTaggerStatistics.name(), "calculate various pos-tagger statistics from a pos-tagged corpus");
     parser.accepts(ExtendedCommand.modifyCorpus.name(), "modify various aspects of a dependency annotation");
     parser.accepts(ExtendedCommand.projectify.name(), "automatically projectify a non-projective annotated (parsed) corpus");
+    parser.accepts(ExtendedCommand.convertModel.name(),
+        "convert a model to the mapped layout in outDir, comparing decisions on the annotated corpus in inFile if provided");
     parser.acceptsAll(Arrays.asList("?", "help"), "show help").forHelp();
 
     OptionSpec<File> inFileOption = parser.accepts("inFile", "input file or directory").withRequiredArg().ofType(File.class);
@@ -172,6 +176,11 @@ public class Extensions {
         .accepts("projectifierStrategy", "Strategy to select the projective head: " + Arrays.toString(ProjectivationStrategy.values()))
         .availableIf(ExtendedCommand.projectify.name()).withRequiredArg().ofType(ProjectivationStrategy.class);
 
+    OptionSpec<File> modelOption = parser.accepts("model", "the model to convert").requiredIf(ExtendedCommand.convertModel.name()).withRequiredArg()
+        .ofType(File.class);
+    OptionSpec<Module> moduleOption = parser.accepts("module", "the module for which the model was trained: " + Arrays.toString(Module.values()))
+        .availableIf(ExtendedCommand.convertModel.name()).withRequiredArg().ofType(Module.class);
+
     OptionSet options = parser.parse(args);
     if (args.length == 0 || options.has("help")) {
       parser.printHelpOn(System.out);
@@ -196,6 +205,10 @@ public class Extensions {
       command = ExtendedCommand.projectify;
     } else if (options.has(ExtendedCommand.toStandoff.name())) {
       command = ExtendedCommand.toStandoff;
+    } else if (options.has(ExtendedCommand.convertModel.name())) {
+      command = ExtendedCommand.convertModel;
+      if (options.has(moduleOption))
+        values.put("talismane.core.module", options.valueOf(moduleOption).name());
     }
 
     if (options.has(localeOption))
@@ -315,6 +328,13 @@ public class Extensions {
     if (options.has(outDirOption))
       outDir = options.valueOf(outDirOption);
 
+    if (command == ExtendedCommand.convertModel) {
+      if (outDir == null)
+        throw new TalismaneException("outDir is required for convertModel command");
+      extensions.convertModel(options.valueOf(modelOption), inFile, outDir, options.has(moduleOption) ? options.valueOf(moduleOption) : null);
+      return;
+    }
+
     extensions.execute(inFile, outFile, outDir);
   }
 
@@ -527,6 +547,23 @@ public class Extensions {
 
   }
 
+  /**
+   * Convert a model to the mapped layout in outDir, comparing the decisions of
+   * both models on the annotated corpus in inFile, if provided.
+   */
+  public void convertModel(File modelFile, File inFile, File outDir, Module module)
+      throws IOException, ClassNotFoundException, ReflectiveOperationException, TalismaneException, SentenceAnnotatorLoadException {
+    TalismaneSession session = new TalismaneSession(config, "");
+    ModelConverter converter = new ModelConverter(session);
+    if (inFile == null) {
+      converter.convert(modelFile, outDir, module, null);
+    } else {
+      try (Reader reader = TalismaneMain.getReader(inFile, false, session)) {
+        converter.convert(modelFile, outDir, module, reader);
+      }
+    }
+  }
+
   public String getReferenceStatsPath() {
     return referenceStatsPath;
   }
@@ -0,0 +1,236 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.extensions.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.zip.ZipInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.Talismane.Module;
+import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.TalismaneSession;
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+import com.joliciel.talismane.machineLearning.ClassificationEventStream;
+import com.joliciel.talismane.machineLearning.ClassificationModel;
+import com.joliciel.talismane.machineLearning.Decision;
+import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.MachineLearningModel;
+import com.joliciel.talismane.machineLearning.MachineLearningModelFactory;
+import com.joliciel.talismane.parser.ParseEventStream;
+import com.joliciel.talismane.parser.ParserAnnotatedCorpusReader;
+import com.joliciel.talismane.parser.features.ParseConfigurationFeature;
+import com.joliciel.talismane.parser.features.ParserFeatureParser;
+import com.joliciel.talismane.posTagger.PosTagAnnotatedCorpusReader;
+import com.joliciel.talismane.posTagger.PosTagEventStream;
+import com.joliciel.talismane.posTagger.features.PosTaggerFeature;
+import com.joliciel.talismane.posTagger.features.PosTaggerFeatureParser;
+import com.joliciel.talismane.tokeniser.TokeniserAnnotatedCorpusReader;
+import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeature;
+import com.joliciel.talismane.tokeniser.features.TokenPatternMatchFeatureParser;
+import com.joliciel.talismane.tokeniser.patterns.PatternEventStream;
+import com.joliciel.talismane.tokeniser.patterns.PatternTokeniser;
+import com.joliciel.talismane.tokeniser.patterns.TokeniserPatternManager;
+import com.typesafe.config.Config;
+
+/**
+ * Converts a model from the zip layout to the mapped layout (see
+ * {@link com.joliciel.talismane.machineLearning.AbstractMachineLearningModel#persistMapped(File)}),
+ * and reports the time and memory required to load the model in each layout.
+ * <br/>
+ * <br/>
+ * If an annotated corpus is provided for the model's module, the classification
+ * events are generated from this corpus using the model's own feature
+ * descriptors, and the decisions made by both models for each event are
+ * compared: the conversion is only considered successful if they are
+ * identical, including the exact bits of each score and probability.<br/>
+ * <br/>
+ * The memory reported is the heap used after garbage collection, and the
+ * resident set size of the process, when available (on Linux). Note that the
+ * mapped model is loaded after the zip model, in an already warmed-up JVM.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class ModelConverter {
+  private static final Logger LOG = LoggerFactory.getLogger(ModelConverter.class);
+
+  private final TalismaneSession session;
+  private final MachineLearningModelFactory modelFactory = new MachineLearningModelFactory();
+
+  public ModelConverter(TalismaneSession session) {
+    this.session = session;
+  }
+
+  /**
+   * Convert a model.
+   *
+   * @param modelFile
+   *          the model in the zip layout
+   * @param outDir
+   *          the directory to which the mapped model should be written
+   * @param module
+   *          the module for which the model was trained, only required if a
+   *          corpus is provided
+   * @param corpusReader
+   *          the annotated corpus on which to compare decisions, or null if
+   *          they should not be compared
+   * @return the number of decisions compared
+   * @throws TalismaneException
+   *           if any decision differs between the two models
+   */
+  public int convert(File modelFile, File outDir, Module module, Reader corpusReader)
+      throws IOException, ClassNotFoundException, ReflectiveOperationException, TalismaneException {
+    long heapBefore = getUsedHeap();
+    long residentBefore = getResidentMemory();
+    long startTime = System.currentTimeMillis();
+    ClassificationModel zipModel = null;
+    try (ZipInputStream zis = new ZipInputStream(new FileInputStream(modelFile))) {
+      zipModel = modelFactory.getClassificationModel(zis);
+    }
+    long zipLoadTime = System.currentTimeMillis() - startTime;
+    long zipHeap = getUsedHeap() - heapBefore;
+    long zipResident = getResidentMemory() - residentBefore;
+
+    LOG.info("Writing " + zipModel.getAlgorithm().name() + " model " + modelFile.getPath() + " to " + outDir.getPath());
+    zipModel.persistMapped(outDir);
+
+    heapBefore = getUsedHeap();
+    residentBefore = getResidentMemory();
+    startTime = System.currentTimeMillis();
+    ClassificationModel mappedModel = modelFactory.getClassificationModel(outDir);
+    long mappedLoadTime = System.currentTimeMillis() - startTime;
+    long mappedHeap = getUsedHeap() - heapBefore;
+    long mappedResident = getResidentMemory() - residentBefore;
+
+    LOG.info("Load time: zip " + zipLoadTime + " ms, mapped " + mappedLoadTime + " ms");
+    LOG.info("Heap used after load: zip " + toMegabytes(zipHeap) + " MB, mapped " + toMegabytes(mappedHeap) + " MB");
+    if (residentBefore >= 0)
+      LOG.info("Resident memory after load: zip " + toMegabytes(zipResident) + " MB, mapped " + toMegabytes(mappedResident) + " MB");
+
+    int decisionCount = 0;
+    if (corpusReader != null) {
+      if (module == null)
+        throw new TalismaneException("A module is required to compare decisions on a corpus");
+      ClassificationEventStream eventStream = this.getEventStream(zipModel, module, corpusReader);
+      DecisionMaker zipDecisionMaker = zipModel.getDecisionMaker();
+      DecisionMaker mappedDecisionMaker = mappedModel.getDecisionMaker();
+      long zipDecisionTime = 0;
+      long mappedDecisionTime = 0;
+      while (eventStream.hasNext()) {
+        ClassificationEvent event = eventStream.next();
+        long decisionStart = System.nanoTime();
+        List<Decision> zipDecisions = zipDecisionMaker.decide(event.getFeatureResults());
+        zipDecisionTime += System.nanoTime() - decisionStart;
+        decisionStart = System.nanoTime();
+        List<Decision> mappedDecisions = mappedDecisionMaker.decide(event.getFeatureResults());
+        mappedDecisionTime += System.nanoTime() - decisionStart;
+        this.compare(zipDecisions, mappedDecisions, decisionCount);
+        decisionCount++;
+      }
+      LOG.info("Compared " + decisionCount + " decisions: all identical");
+      LOG.info("Decision time: zip " + (zipDecisionTime / 1000000) + " ms, mapped " + (mappedDecisionTime / 1000000) + " ms");
+    }
+    return decisionCount;
+  }
+
+  private void compare(List<Decision> zipDecisions, List<Decision> mappedDecisions, int index) throws TalismaneException {
+    boolean identical = zipDecisions.size() == mappedDecisions.size();
+    for (int i = 0; identical && i < zipDecisions.size(); i++) {
+      Decision zipDecision = zipDecisions.get(i);
+      Decision mappedDecision = mappedDecisions.get(i);
+      identical = zipDecision.getOutcome().equals(mappedDecision.getOutcome())
+          && Double.doubleToLongBits(zipDecision.getScore()) == Double.doubleToLongBits(mappedDecision.getScore())
+          && Double.doubleToLongBits(zipDecision.getProbability()) == Double.doubleToLongBits(mappedDecision.getProbability());
+    }
+    if (!identical)
+      throw new TalismaneException("Decisions differ for event " + index + ". Zip: " + zipDecisions + ". Mapped: " + mappedDecisions);
+  }
+
+  private ClassificationEventStream getEventStream(ClassificationModel model, Module module, Reader reader)
+      throws IOException, ClassNotFoundException, ReflectiveOperationException, TalismaneException {
+    Config config = session.getConfig();
+    List<String> featureDescriptors = model.getDescriptors().get(MachineLearningModel.FEATURE_DESCRIPTOR_KEY);
+    switch (module) {
+    case tokeniser: {
+      List<String> patternDescriptors = model.getDescriptors().get(PatternTokeniser.PATTERN_DESCRIPTOR_KEY);
+      TokeniserPatternManager tokeniserPatternManager = new TokeniserPatternManager(patternDescriptors, session);
+      TokeniserAnnotatedCorpusReader corpusReader = TokeniserAnnotatedCorpusReader.getCorpusReader(reader,
+          config.getConfig("talismane.core.tokeniser.train"), session);
+      TokenPatternMatchFeatureParser featureParser = new TokenPatternMatchFeatureParser(session);
+      Set<TokenPatternMatchFeature<?>> features = featureParser.getTokenPatternMatchFeatureSet(featureDescriptors);
+      return new PatternEventStream(corpusReader, features, tokeniserPatternManager, session);
+    }
+    case posTagger: {
+      PosTagAnnotatedCorpusReader corpusReader = PosTagAnnotatedCorpusReader.getCorpusReader(reader, config.getConfig("talismane.core.pos-tagger.train"),
+          session);
+      PosTaggerFeatureParser featureParser = new PosTaggerFeatureParser(session);
+      Set<PosTaggerFeature<?>> features = featureParser.getFeatureSet(featureDescriptors);
+      return new PosTagEventStream(corpusReader, features);
+    }
+    case parser: {
+      ParserAnnotatedCorpusReader corpusReader = ParserAnnotatedCorpusReader.getCorpusReader(reader, config.getConfig("talismane.core.parser.train"),
+          session);
+      ParserFeatureParser featureParser = new ParserFeatureParser(session);
+      Set<ParseConfigurationFeature<?>> features = featureParser.getFeatures(featureDescriptors);
+      return new ParseEventStream(corpusReader, features, true);
+    }
+    default:
+      throw new TalismaneException("Decision comparison not yet supported for module: " + module);
+    }
+  }
+
+  private static long getUsedHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++)
+      System.gc();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /**
+   * The resident set size of the current process in bytes, or -1 if it
+   * cannot be determined.
+   */
+  private static long getResidentMemory() {
+    File statusFile = new File("/proc/self/status");
+    if (!statusFile.exists())
+      return -1;
+    try (Scanner scanner = new Scanner(statusFile, "UTF-8")) {
+      while (scanner.hasNextLine()) {
+        String line = scanner.nextLine();
+        if (line.startsWith("VmRSS:"))
+          return Long.parseLong(line.substring("VmRSS:".length()).replace("kB", "").trim()) * 1024;
+      }
+    } catch (IOException | NumberFormatException e) {
+      LOG.debug("Cannot read resident memory", e);
+    }
+    return -1;
+  }
+
+  private static String toMegabytes(long bytes) {
+    return String.format("%.1f", bytes / (1024.0 * 1024.0));
+  }
+}
@@ -0,0 +1,5 @@
+/**
+ * Extensions for manipulating trained models, including a converter from the
+ * zip layout to the mapped layout.
+ */
+package com.joliciel.talismane.extensions.model;
@@ -18,8 +18,12 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.machineLearning;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -46,6 +50,7 @@ import java.util.zip.ZipOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.joliciel.talismane.utils.JolicielException;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 
@@ -149,18 +154,101 @@ public abstract class AbstractMachineLearningModel implements MachineLearningMod
     zos.close();
   }
 
+  /**
+   * Write this model to a directory in the mapped layout, as an alternative to
+   * {@link #persist(File)}. The directory contains the same entries as the zip
+   * file, uncompressed, except that instead of a serialised model.bin, the
+   * feature names and weights are written as flat binary files (see
+   * {@link MappedStringTable} and {@link MappedWeightMatrix}), which are
+   * memory-mapped when the model is loaded rather than being deserialised onto
+   * the heap. Only supported by some algorithms.
+   */
+  @Override
+  public final void persistMapped(File directory) throws IOException {
+    // check first, so that nothing is written if the algorithm doesn't support it
+    this.checkMappedSupported();
+
+    directory.mkdirs();
+    this.writeMappedData(directory);
+
+    try (Writer writer = this.getWriter(new File(directory, "algorithm.txt"))) {
+      writer.write(this.getAlgorithm().name());
+    }
+
+    try (Writer writer = this.getWriter(new File(directory, "config.txt"))) {
+      writer.write(this.getConfig().root().render());
+    }
+
+    for (String descriptorKey : descriptors.keySet()) {
+      try (Writer writer = this.getWriter(new File(directory, descriptorKey + "_descriptors.txt"))) {
+        for (String descriptor : descriptors.get(descriptorKey))
+          writer.write(descriptor + "\n");
+      }
+    }
+
+    this.writeObject(new File(directory, "attributes.obj"), this.getModelAttributes());
+
+    for (String name : this.dependencies.keySet())
+      this.writeObject(new File(directory, name + "_dependency.obj"), this.dependencies.get(name));
+
+    if (this.externalResources != null)
+      this.writeObject(new File(directory, "externalResources.obj"), externalResources);
+  }
+
+  private Writer getWriter(File file) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, false), "UTF-8"));
+  }
+
+  private void writeObject(File file, Object object) throws IOException {
+    try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)))) {
+      oos.writeObject(object);
+    }
+  }
+
+  /**
+   * Load this model from a directory written by {@link #persistMapped(File)}.
+   * The model's weights remain in the mapped files.
+   */
+  public final void loadMapped(File directory) throws IOException, ClassNotFoundException {
+    File[] files = directory.listFiles();
+    if (files == null)
+      throw new FileNotFoundException("Model directory not found: " + directory.getPath());
+    for (File file : files) {
+      String name = file.getName();
+      if (name.equals("config.txt") || name.equals("attributes.obj") || name.equals("externalResources.obj") || name.endsWith("_descriptors.txt")
+          || name.endsWith("_dependency.obj")) {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file))) {
+          this.loadEntry(inputStream, name);
+        }
+      }
+    }
+    this.loadMappedData(directory);
+  }
+
   @Override
   public boolean loadZipEntry(ZipInputStream zis, ZipEntry ze) throws IOException, ClassNotFoundException {
     boolean loaded = true;
     if (ze.getName().equals("model.bin")) {
       this.loadModelFromStream(zis);
-    } else if (ze.getName().equals("externalResources.obj")) {
+    } else if (!this.loadEntry(zis, ze.getName())) {
+      loaded = this.loadDataFromStream(zis, ze);
+    }
+    return loaded;
+  }
+
+  /**
+   * Load one of the entries common to all models, returning false if the name
+   * provided isn't a common entry.
+   */
+  private boolean loadEntry(InputStream zis, String name) throws IOException, ClassNotFoundException {
+    boolean loaded = true;
+    if (name.equals("externalResources.obj")) {
       ObjectInputStream in = new ObjectInputStream(zis);
       @SuppressWarnings("unchecked")
       List<ExternalResource<?>> externalResources = (List<ExternalResource<?>>) in.readObject();
       this.setExternalResources(externalResources);
-    } else if (ze.getName().endsWith("_descriptors.txt")) {
-      String key = ze.getName().substring(0, ze.getName().length() - "_descriptors.txt".length());
+    } else if (name.endsWith("_descriptors.txt")) {
+      String key = name.substring(0, name.length() - "_descriptors.txt".length());
       @SuppressWarnings("resource")
       Scanner scanner = new Scanner(zis, "UTF-8");
       List<String> descriptorList = new ArrayList<String>();
@@ -169,19 +257,19 @@ public abstract class AbstractMachineLearningModel implements MachineLearningMod
         descriptorList.add(descriptor);
       }
       this.getDescriptors().put(key, descriptorList);
-    } else if (ze.getName().endsWith("_dependency.obj")) {
-      String key = ze.getName().substring(0, ze.getName().length() - "_dependency.obj".length());
+    } else if (name.endsWith("_dependency.obj")) {
+      String key = name.substring(0, name.length() - "_dependency.obj".length());
       ObjectInputStream in = new ObjectInputStream(zis);
 
       Object dependency = in.readObject();
       this.dependencies.put(key, dependency);
-    } else if (ze.getName().equals("attributes.obj")) {
+    } else if (name.equals("attributes.obj")) {
       ObjectInputStream in = new ObjectInputStream(zis);
 
       @SuppressWarnings("unchecked")
       Map<String, Object> attributes = (Map<String, Object>) in.readObject();
       this.setModelAttributes(attributes);
-    } else if (ze.getName().equals("attributes.txt")) {
+    } else if (name.equals("attributes.txt")) {
       // for backwards compatibility, when attributes where always strings
       @SuppressWarnings("resource")
       Scanner scanner = new Scanner(zis, "UTF-8");
@@ -189,19 +277,19 @@ public abstract class AbstractMachineLearningModel implements MachineLearningMod
         String line = scanner.nextLine();
         if (line.length() > 0) {
           String[] parts = line.split("\t");
-          String name = parts[0];
+          String attributeName = parts[0];
           String value = "";
           if (parts.length > 1)
             value = parts[1];
-          this.addModelAttribute(name, value);
+          this.addModelAttribute(attributeName, value);
         }
       }
-    } else if (ze.getName().equals("config.txt")) {
+    } else if (name.equals("config.txt")) {
       Reader reader = new InputStreamReader(zis, "UTF-8");
 
       this.config = ConfigFactory.parseReader(reader);
     } else {
-      loaded = this.loadDataFromStream(zis, ze);
+      loaded = false;
     }
     return loaded;
   }
@@ -290,6 +378,58 @@ public abstract class AbstractMachineLearningModel implements MachineLearningMod
    */
   protected abstract void writeModelToStream(OutputStream outputStream) throws IOException;
 
+  /**
+   * Check whether this model can be written in the mapped layout, throwing an
+   * exception if not. By default, the mapped layout is not supported.
+   */
+  protected void checkMappedSupported() {
+    throw new JolicielException("Mapped model layout not supported for " + this.getAlgorithm().name());
+  }
+
+  /**
+   * Write the data specific to this model type to a directory in the mapped
+   * layout. Only called once {@link #checkMappedSupported()} has succeeded.
+   * 
+   * @throws IOException
+   */
+  protected void writeMappedData(File directory) throws IOException {
+    throw new JolicielException("Mapped model layout not supported for " + this.getAlgorithm().name());
+  }
+
+  /**
+   * Load the data specific to this model type from a directory in the mapped
+   * layout. By default, the mapped layout is not supported.
+   * 
+   * @throws IOException
+   */
+  protected void loadMappedData(File directory) throws IOException {
+    throw new JolicielException("Mapped model layout not supported for " + this.getAlgorithm().name());
+  }
+
+  /**
+   * Write a list of outcomes to a directory in the mapped layout, one per line,
+   * in index order.
+   */
+  protected void writeMappedOutcomes(File directory, List<String> outcomes) throws IOException {
+    try (Writer writer = this.getWriter(new File(directory, "outcomes.txt"))) {
+      for (String outcome : outcomes)
+        writer.write(outcome + "\n");
+    }
+  }
+
+  /**
+   * Read a list of outcomes written by
+   * {@link #writeMappedOutcomes(File, List)}.
+   */
+  protected List<String> readMappedOutcomes(File directory) throws IOException {
+    List<String> outcomes = new ArrayList<String>();
+    try (Scanner scanner = new Scanner(new File(directory, "outcomes.txt"), "UTF-8")) {
+      while (scanner.hasNextLine())
+        outcomes.add(scanner.nextLine());
+    }
+    return outcomes;
+  }
+
   /**
    * Loads data from the input stream that is specific to this model type.
    * 
@@ -34,10 +34,9 @@ public class AdditiveScoringStrategy implements ScoringStrategy<ClassificationSo
   @Override
   public double calculateScore(ClassificationSolution solution) {
     double score = 0;
-    if (solution != null && solution.getDecisions().size() > 0) {
-      for (Decision decision : solution.getDecisions())
-        score += decision.getScore();
-      score /= solution.getDecisions().size();
+    if (solution != null && solution.getDecisionCount() > 0) {
+      score = solution.getDecisionScoreSum();
+      score /= solution.getDecisionCount();
     }
 
     if (LOG.isTraceEnabled()) {
@@ -36,4 +36,38 @@ public interface ClassificationSolution extends Solution {
    * Add a decision to this particular solution.
    */
   public void addDecision(Decision decision);
+
+  /**
+   * The number of decisions used to arrive at this solution. Implementations
+   * should keep a running count, so that scoring doesn't require the full
+   * list of decisions.
+   */
+  public default int getDecisionCount() {
+    return this.getDecisions().size();
+  }
+
+  /**
+   * The sum of the probability logs of this solution's decisions, summed in
+   * the order in which the decisions were added. Implementations should keep
+   * a running sum, updated by {@link #addDecision(Decision)} and inherited
+   * when a solution is extended.
+   */
+  public default double getDecisionProbabilityLogSum() {
+    double sum = 0;
+    for (Decision decision : this.getDecisions())
+      sum += decision.getProbabilityLog();
+    return sum;
+  }
+
+  /**
+   * The sum of the scores of this solution's decisions, summed in the order in
+   * which the decisions were added. Implementations should keep a running
+   * sum, as for {@link #getDecisionProbabilityLogSum()}.
+   */
+  public default double getDecisionScoreSum() {
+    double sum = 0;
+    for (Decision decision : this.getDecisions())
+      sum += decision.getScore();
+    return sum;
+  }
 }
@@ -0,0 +1,247 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.utils.WeightedOutcome;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+/**
+ * Resolves feature results directly to a model's integer feature indexes,
+ * without building the feature's training name for each result.<br/>
+ * <br/>
+ * A model's features are indexed by training name, which is either the
+ * feature's name alone (numeric features), the feature's name followed by
+ * ":" and the outcome (string and boolean features), or the feature's name
+ * followed by "|" and the outcome (string collection features). The first time
+ * a given feature is encountered, all training names starting with the
+ * feature's name are located in a sorted copy of the model's names, and an
+ * outcome-to-index map is built for this feature. Subsequent lookups for the
+ * same feature only hash the outcome string, which for most features is
+ * already cached by the String itself.<br/>
+ * <br/>
+ * The indexes returned are exactly those which would have been found by
+ * looking up the full training name in the model. The names can also be read
+ * from a {@link MappedStringTable}, in which case only the names belonging to
+ * features actually encountered are ever loaded onto the heap. Thread-safe.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class FeatureIndex {
+  private final String[] names;
+  private final int[] indexes;
+  private final MappedStringTable table;
+  private volatile boolean sorted = false;
+  private final ConcurrentMap<String, FeatureOutcomes> featureOutcomes = new ConcurrentHashMap<>();
+  private final ThreadLocal<FeatureVector> featureVectors = ThreadLocal.withInitial(FeatureVector::new);
+
+  /**
+   * Construct an index from a map of training names to feature indexes.
+   */
+  public FeatureIndex(TObjectIntMap<String> featureIndexMap) {
+    this.table = null;
+    this.names = new String[featureIndexMap.size()];
+    this.indexes = new int[featureIndexMap.size()];
+    int[] i = new int[1];
+    featureIndexMap.forEachEntry((name, index) -> {
+      names[i[0]] = name;
+      indexes[i[0]] = index;
+      i[0]++;
+      return true;
+    });
+  }
+
+  /**
+   * Construct an index from an array of training names, where each name's
+   * feature index is its position in the array. Null names are skipped.
+   */
+  public FeatureIndex(String[] featureNames) {
+    this.table = null;
+    int count = 0;
+    for (String name : featureNames)
+      if (name != null)
+        count++;
+    this.names = new String[count];
+    this.indexes = new int[count];
+    int j = 0;
+    for (int i = 0; i < featureNames.length; i++) {
+      if (featureNames[i] != null) {
+        names[j] = featureNames[i];
+        indexes[j] = i;
+        j++;
+      }
+    }
+  }
+
+  /**
+   * Construct an index from a mapped table of training names to feature
+   * indexes.
+   */
+  public FeatureIndex(MappedStringTable table) {
+    this.table = table;
+    this.names = null;
+    this.indexes = null;
+    this.sorted = true;
+  }
+
+  /**
+   * Fill a feature vector with the indexes and values corresponding to the
+   * feature results provided. Results whose training name is not in the model
+   * are skipped. Values are the feature's weight for string collection
+   * features, the outcome for double features, and 1 otherwise.
+   */
+  public void fill(List<FeatureResult<?>> featureResults, FeatureVector vector) {
+    vector.clear();
+    for (FeatureResult<?> featureResult : featureResults) {
+      if (featureResult == null)
+        continue;
+      FeatureOutcomes outcomes = this.getFeatureOutcomes(featureResult.getFeature().getName());
+      Object outcome = featureResult.getOutcome();
+      if (outcome instanceof List) {
+        @SuppressWarnings("unchecked")
+        List<WeightedOutcome<String>> weightedOutcomes = (List<WeightedOutcome<String>>) outcome;
+        for (WeightedOutcome<String> weightedOutcome : weightedOutcomes) {
+          int index = outcomes.collectionIndexes.get(featureResult.getTrainingOutcome(weightedOutcome.getOutcome()));
+          if (index >= 0)
+            vector.add(index, weightedOutcome.getWeight());
+        }
+      } else if (outcome instanceof Double) {
+        if (outcomes.index >= 0)
+          vector.add(outcomes.index, ((Double) outcome).doubleValue());
+      } else if (outcome instanceof Integer) {
+        if (outcomes.index >= 0)
+          vector.add(outcomes.index, 1.0);
+      } else {
+        String string = null;
+        if (outcome instanceof String)
+          string = featureResult.getTrainingOutcome((String) outcome);
+        else
+          string = outcome.toString();
+        int index = outcomes.outcomeIndexes.get(string);
+        if (index >= 0)
+          vector.add(index, 1.0);
+      }
+    }
+  }
+
+  /**
+   * Like {@link #fill(List, FeatureVector)}, but using a feature vector
+   * reused by the current thread. The vector returned is only valid until the
+   * next call to this method from the same thread.
+   */
+  public FeatureVector getFeatureVector(List<FeatureResult<?>> featureResults) {
+    FeatureVector vector = featureVectors.get();
+    this.fill(featureResults, vector);
+    return vector;
+  }
+
+  private FeatureOutcomes getFeatureOutcomes(String featureName) {
+    FeatureOutcomes outcomes = featureOutcomes.get(featureName);
+    if (outcomes == null) {
+      outcomes = featureOutcomes.computeIfAbsent(featureName, this::buildFeatureOutcomes);
+    }
+    return outcomes;
+  }
+
+  private FeatureOutcomes buildFeatureOutcomes(String featureName) {
+    this.sort();
+    FeatureOutcomes outcomes = new FeatureOutcomes();
+    int start = this.lowerBound(featureName);
+    int prefixLength = featureName.length();
+    int size = this.size();
+    for (int i = start; i < size; i++) {
+      String name = this.getName(i);
+      if (!name.startsWith(featureName))
+        break;
+      if (name.length() == prefixLength) {
+        outcomes.index = this.getIndex(i);
+      } else {
+        char separator = name.charAt(prefixLength);
+        if (separator == ':')
+          outcomes.outcomeIndexes.put(name.substring(prefixLength + 1), this.getIndex(i));
+        else if (separator == '|')
+          outcomes.collectionIndexes.put(name.substring(prefixLength + 1), this.getIndex(i));
+      }
+    }
+    return outcomes;
+  }
+
+  private int size() {
+    return table == null ? names.length : table.size();
+  }
+
+  private String getName(int i) {
+    return table == null ? names[i] : table.getString(i);
+  }
+
+  private int getIndex(int i) {
+    return table == null ? indexes[i] : table.getValue(i);
+  }
+
+  private int lowerBound(String key) {
+    if (table != null)
+      return table.lowerBound(key);
+    int low = 0;
+    int high = names.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (names[mid].compareTo(key) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  private void sort() {
+    if (!sorted) {
+      synchronized (this) {
+        if (!sorted) {
+          Integer[] order = new Integer[names.length];
+          for (int i = 0; i < order.length; i++)
+            order[i] = i;
+          String[] unsortedNames = names.clone();
+          int[] unsortedIndexes = indexes.clone();
+          java.util.Arrays.sort(order, (a, b) -> unsortedNames[a].compareTo(unsortedNames[b]));
+          for (int i = 0; i < order.length; i++) {
+            names[i] = unsortedNames[order[i]];
+            indexes[i] = unsortedIndexes[order[i]];
+          }
+          sorted = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * The model indexes for all training names belonging to a single feature.
+   */
+  private static final class FeatureOutcomes {
+    private int index = -1;
+    private final TObjectIntMap<String> outcomeIndexes = new TObjectIntHashMap<>(10, 0.7f, -1);
+    private final TObjectIntMap<String> collectionIndexes = new TObjectIntHashMap<>(10, 0.7f, -1);
+  }
+}
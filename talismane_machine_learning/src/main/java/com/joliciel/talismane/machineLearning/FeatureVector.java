@@ -0,0 +1,110 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import java.util.Arrays;
+
+/**
+ * A sparse vector of feature indexes and values, as used by a model to score a
+ * single event. The underlying arrays grow as required, and are meant to be
+ * reused from one event to the next via {@link #clear()}, so that scoring an
+ * event allocates nothing once the vector has reached its working size.<br/>
+ * <br/>
+ * Only the first {@link #size()} elements of {@link #getIndexes()} and
+ * {@link #getValues()} are meaningful. Not thread-safe.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class FeatureVector {
+  private int[] indexes;
+  private double[] values;
+  private int size = 0;
+
+  public FeatureVector() {
+    this(64);
+  }
+
+  public FeatureVector(int initialCapacity) {
+    this.indexes = new int[initialCapacity];
+    this.values = new double[initialCapacity];
+  }
+
+  /**
+   * Add a feature index and its value to the end of this vector.
+   */
+  public void add(int index, double value) {
+    if (size == indexes.length) {
+      int newCapacity = Math.max(8, indexes.length * 2);
+      indexes = Arrays.copyOf(indexes, newCapacity);
+      values = Arrays.copyOf(values, newCapacity);
+    }
+    indexes[size] = index;
+    values[size] = value;
+    size++;
+  }
+
+  /**
+   * Empty this vector, without releasing the underlying arrays.
+   */
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * The number of features in this vector.
+   */
+  public int size() {
+    return size;
+  }
+
+  public int getIndex(int i) {
+    return indexes[i];
+  }
+
+  public double getValue(int i) {
+    return values[i];
+  }
+
+  /**
+   * The underlying index array, only meaningful up to {@link #size()}.
+   */
+  public int[] getIndexes() {
+    return indexes;
+  }
+
+  /**
+   * The underlying value array, only meaningful up to {@link #size()}.
+   */
+  public double[] getValues() {
+    return values;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0)
+        sb.append(", ");
+      sb.append(indexes[i]).append('=').append(values[i]);
+    }
+    sb.append(']');
+    return sb.toString();
+  }
+}
@@ -23,7 +23,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Takes the geometric mean of the individual decision scores, and multiplies it
- * by the scores of underlying solutions.
+ * by the scores of underlying solutions. The mean is based on the solution's
+ * running sum of probability logs, so that scoring a solution doesn't require
+ * iterating over its decisions.
  * 
  * @author Assaf Urieli
  *
@@ -34,11 +36,8 @@ public class GeometricMeanScoringStrategy implements ScoringStrategy<Classificat
   @Override
   public double calculateScore(ClassificationSolution solution) {
     double score = 0;
-    if (solution != null && solution.getDecisions().size() > 0) {
-      for (Decision decision : solution.getDecisions())
-        score += decision.getProbabilityLog();
-
-      score = score / solution.getDecisions().size();
+    if (solution != null && solution.getDecisionCount() > 0) {
+      score = solution.getDecisionProbabilityLogSum() / solution.getDecisionCount();
     }
     score = Math.exp(score);
 
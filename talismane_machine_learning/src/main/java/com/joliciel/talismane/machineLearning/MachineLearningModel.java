@@ -55,6 +55,14 @@ public interface MachineLearningModel {
    */
   public void persist(File modelFile) throws IOException;
 
+  /**
+   * Persist this model to a directory in the mapped layout, which can be
+   * loaded far faster than a zip file.
+   * 
+   * @throws IOException
+   */
+  public void persistMapped(File directory) throws IOException;
+
   /**
    * Get this model's defining attributes.
    */
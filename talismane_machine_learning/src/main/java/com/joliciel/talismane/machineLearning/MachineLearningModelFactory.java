@@ -18,6 +18,7 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.machineLearning;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Scanner;
 import java.util.zip.ZipEntry;
@@ -30,8 +31,10 @@ import com.joliciel.talismane.machineLearning.linearsvm.LinearSVMModel;
 import com.joliciel.talismane.machineLearning.linearsvm.LinearSVMOneVsRestModel;
 import com.joliciel.talismane.machineLearning.maxent.MaximumEntropyModel;
 import com.joliciel.talismane.machineLearning.perceptron.PerceptronClassificationModel;
+import com.joliciel.talismane.utils.ConfigUtils;
 import com.joliciel.talismane.utils.JolicielException;
 import com.joliciel.talismane.utils.LogUtils;
+import com.typesafe.config.Config;
 
 /**
  * A class for constructing models implementing AbstractMachineLearningModel.
@@ -63,34 +66,7 @@ public class MachineLearningModelFactory {
       // note: assuming the model type will always be the first entry
       @SuppressWarnings("resource")
       Scanner typeScanner = new Scanner(zis, "UTF-8");
-      MachineLearningAlgorithm algorithm = MachineLearningAlgorithm.MaxEnt;
-      if (typeScanner.hasNextLine()) {
-        String algorithmString = typeScanner.nextLine();
-        try {
-          algorithm = MachineLearningAlgorithm.valueOf(algorithmString);
-        } catch (IllegalArgumentException iae) {
-          LogUtils.logError(LOG, iae);
-          throw new JolicielException("Unknown algorithm: " + algorithmString);
-        }
-      } else {
-        throw new JolicielException("Cannot find algorithm in zip file");
-      }
-      switch (algorithm) {
-      case MaxEnt:
-        machineLearningModel = new MaximumEntropyModel();
-        break;
-      case LinearSVM:
-        machineLearningModel = new LinearSVMModel();
-        break;
-      case LinearSVMOneVsRest:
-        machineLearningModel = new LinearSVMOneVsRestModel();
-        break;
-      case Perceptron:
-        machineLearningModel = new PerceptronClassificationModel();
-        break;
-      default:
-        throw new JolicielException("Machine learning algorithm not yet supported: " + algorithm);
-      }
+      machineLearningModel = this.getModel(typeScanner);
 
       while ((ze = zis.getNextEntry()) != null) {
         LOG.debug(ze.getName());
@@ -112,4 +88,66 @@ public class MachineLearningModelFactory {
     }
   }
 
+  /**
+   * Load the classification model at a given config path, which is either a
+   * zip file, or a local directory in the mapped layout written by
+   * {@link AbstractMachineLearningModel#persistMapped(File)}.
+   */
+  public ClassificationModel getClassificationModel(Config config, String configPath) throws IOException, ClassNotFoundException {
+    File directory = new File(config.getString(configPath));
+    if (directory.isDirectory())
+      return this.getClassificationModel(directory);
+    return this.getClassificationModel(new ZipInputStream(ConfigUtils.getFileFromConfig(config, configPath)));
+  }
+
+  /**
+   * Load a classification model from a directory in the mapped layout.
+   */
+  public ClassificationModel getClassificationModel(File directory) throws IOException, ClassNotFoundException {
+    MachineLearningModel model = this.getMachineLearningModel(directory);
+    if (!(model instanceof ClassificationModel))
+      throw new JolicielException("Model in directory not " + ClassificationModel.class.getSimpleName());
+    return (ClassificationModel) model;
+  }
+
+  /**
+   * Load a model from a directory in the mapped layout.
+   */
+  public MachineLearningModel getMachineLearningModel(File directory) throws IOException, ClassNotFoundException {
+    AbstractMachineLearningModel machineLearningModel = null;
+    try (Scanner typeScanner = new Scanner(new File(directory, "algorithm.txt"), "UTF-8")) {
+      machineLearningModel = this.getModel(typeScanner);
+    }
+    machineLearningModel.loadMapped(directory);
+    machineLearningModel.onLoadComplete();
+    return machineLearningModel;
+  }
+
+  private AbstractMachineLearningModel getModel(Scanner typeScanner) {
+    MachineLearningAlgorithm algorithm = MachineLearningAlgorithm.MaxEnt;
+    if (typeScanner.hasNextLine()) {
+      String algorithmString = typeScanner.nextLine();
+      try {
+        algorithm = MachineLearningAlgorithm.valueOf(algorithmString);
+      } catch (IllegalArgumentException iae) {
+        LogUtils.logError(LOG, iae);
+        throw new JolicielException("Unknown algorithm: " + algorithmString);
+      }
+    } else {
+      throw new JolicielException("Cannot find algorithm in model");
+    }
+    switch (algorithm) {
+    case MaxEnt:
+      return new MaximumEntropyModel();
+    case LinearSVM:
+      return new LinearSVMModel();
+    case LinearSVMOneVsRest:
+      return new LinearSVMOneVsRestModel();
+    case Perceptron:
+      return new PerceptronClassificationModel();
+    default:
+      throw new JolicielException("Machine learning algorithm not yet supported: " + algorithm);
+    }
+  }
+
 }
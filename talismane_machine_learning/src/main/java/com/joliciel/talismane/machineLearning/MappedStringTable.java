@@ -0,0 +1,229 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import com.joliciel.talismane.utils.JolicielException;
+
+import gnu.trove.map.TObjectIntMap;
+
+/**
+ * A read-only table of strings, each associated with an int value, stored in a
+ * memory-mapped file in sorted order. The table can be searched without
+ * loading the strings onto the heap: strings are compared to a key without
+ * being decoded. Used for a model's feature names in the mapped model
+ * layout.<br/>
+ * <br/>
+ * The file is little-endian, and contains the string count, followed by the
+ * value of each string in sorted order, followed by count+1 offsets of each
+ * string's UTF-8 bytes in the string area, followed by the string area.
+ * Strings are sorted as by {@link String#compareTo(String)}. Thread-safe.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class MappedStringTable {
+  private final ByteBuffer buffer;
+  private final int size;
+  private final int valueStart;
+  private final int offsetStart;
+  private final int stringStart;
+
+  /**
+   * Map an existing table file.
+   */
+  public MappedStringTable(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    size = buffer.getInt(0);
+    valueStart = 4;
+    offsetStart = valueStart + 4 * size;
+    stringStart = offsetStart + 4 * (size + 1);
+  }
+
+  /**
+   * Write a table containing all of the entries in a map.
+   */
+  public static void write(File file, TObjectIntMap<String> map) throws IOException {
+    String[] strings = map.keys(new String[map.size()]);
+    Arrays.sort(strings);
+    byte[][] bytes = new byte[strings.length][];
+    long stringAreaSize = 0;
+    for (int i = 0; i < strings.length; i++) {
+      bytes[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+      stringAreaSize += bytes[i].length;
+    }
+    long fileSize = 4 + 4L * strings.length + 4L * (strings.length + 1) + stringAreaSize;
+    if (fileSize > Integer.MAX_VALUE)
+      throw new JolicielException("String table too large to map: " + fileSize + " bytes");
+
+    ByteBuffer header = ByteBuffer.allocate(4 + 8 * strings.length + 4).order(ByteOrder.LITTLE_ENDIAN);
+    header.putInt(strings.length);
+    for (String string : strings)
+      header.putInt(map.get(string));
+    int offset = 0;
+    header.putInt(offset);
+    for (byte[] stringBytes : bytes) {
+      offset += stringBytes.length;
+      header.putInt(offset);
+    }
+    header.flip();
+
+    file.delete();
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+      while (header.hasRemaining())
+        channel.write(header);
+      ByteBuffer stringBuffer = ByteBuffer.allocate(64 * 1024);
+      for (byte[] stringBytes : bytes) {
+        if (stringBytes.length > stringBuffer.remaining()) {
+          stringBuffer.flip();
+          while (stringBuffer.hasRemaining())
+            channel.write(stringBuffer);
+          stringBuffer.clear();
+          if (stringBytes.length > stringBuffer.capacity())
+            stringBuffer = ByteBuffer.allocate(stringBytes.length);
+        }
+        stringBuffer.put(stringBytes);
+      }
+      stringBuffer.flip();
+      while (stringBuffer.hasRemaining())
+        channel.write(stringBuffer);
+    }
+  }
+
+  /**
+   * The number of strings in this table.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The i-th string, in sorted order.
+   */
+  public String getString(int i) {
+    int start = buffer.getInt(offsetStart + 4 * i);
+    int end = buffer.getInt(offsetStart + 4 * (i + 1));
+    byte[] bytes = new byte[end - start];
+    int position = stringStart + start;
+    for (int j = 0; j < bytes.length; j++)
+      bytes[j] = buffer.get(position + j);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * The value associated with the i-th string, in sorted order.
+   */
+  public int getValue(int i) {
+    return buffer.getInt(valueStart + 4 * i);
+  }
+
+  /**
+   * Compare the i-th string to a key, with the same sign as
+   * {@link String#compareTo(String)}, decoding the UTF-8 bytes on the fly
+   * rather than constructing the string.
+   */
+  public int compareTo(int i, String key) {
+    int position = stringStart + buffer.getInt(offsetStart + 4 * i);
+    int end = stringStart + buffer.getInt(offsetStart + 4 * (i + 1));
+    int keyLength = key.length();
+    int k = 0;
+    while (position < end) {
+      int b = buffer.get(position) & 0xFF;
+      int codePoint;
+      if (b < 0x80) {
+        codePoint = b;
+        position += 1;
+      } else if (b < 0xE0) {
+        codePoint = ((b & 0x1F) << 6) | (buffer.get(position + 1) & 0x3F);
+        position += 2;
+      } else if (b < 0xF0) {
+        codePoint = ((b & 0x0F) << 12) | ((buffer.get(position + 1) & 0x3F) << 6) | (buffer.get(position + 2) & 0x3F);
+        position += 3;
+      } else {
+        codePoint = ((b & 0x07) << 18) | ((buffer.get(position + 1) & 0x3F) << 12) | ((buffer.get(position + 2) & 0x3F) << 6)
+            | (buffer.get(position + 3) & 0x3F);
+        position += 4;
+      }
+
+      // compare UTF-16 code units, as String does
+      char c = Character.isBmpCodePoint(codePoint) ? (char) codePoint : Character.highSurrogate(codePoint);
+      if (k == keyLength)
+        return 1;
+      int diff = c - key.charAt(k++);
+      if (diff != 0)
+        return diff;
+      if (!Character.isBmpCodePoint(codePoint)) {
+        if (k == keyLength)
+          return 1;
+        diff = Character.lowSurrogate(codePoint) - key.charAt(k++);
+        if (diff != 0)
+          return diff;
+      }
+    }
+    return k - keyLength;
+  }
+
+  /**
+   * The position of the first string which is greater than or equal to the key
+   * provided, or {@link #size()} if there is none.
+   */
+  public int lowerBound(String key) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.compareTo(mid, key) < 0)
+        low = mid + 1;
+      else
+        high = mid;
+    }
+    return low;
+  }
+
+  /**
+   * The position of a given string, or -1 if the string is not in this table.
+   */
+  public int indexOf(String key) {
+    int i = this.lowerBound(key);
+    if (i < size && this.compareTo(i, key) == 0)
+      return i;
+    return -1;
+  }
+
+  /**
+   * The value associated with a given string, or -1 if the string is not in
+   * this table.
+   */
+  public int get(String key) {
+    int i = this.indexOf(key);
+    if (i >= 0)
+      return this.getValue(i);
+    return -1;
+  }
+}
@@ -0,0 +1,148 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only matrix of weights, typically feature x outcome, stored row by
+ * row as little-endian doubles in a memory-mapped file, so that a model can be
+ * scored without loading its weights onto the heap, and so that several
+ * processes using the same model share the same pages. Large matrices are
+ * mapped in several segments, each containing a whole number of rows.<br/>
+ * <br/>
+ * The file contains the row count and column count as little-endian ints,
+ * followed by the weights. Thread-safe.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public final class MappedWeightMatrix {
+  private static final int HEADER_SIZE = 8;
+  private final int rowCount;
+  private final int columnCount;
+  private final int rowsPerSegment;
+  private final DoubleBuffer[] segments;
+
+  /**
+   * Map an existing weight file.
+   */
+  public MappedWeightMatrix(File file) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+      ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+      rowCount = header.getInt(0);
+      columnCount = header.getInt(4);
+      rowsPerSegment = Math.max(1, Integer.MAX_VALUE / (8 * Math.max(1, columnCount)));
+      int segmentCount = rowCount == 0 ? 0 : (rowCount - 1) / rowsPerSegment + 1;
+      segments = new DoubleBuffer[segmentCount];
+      for (int i = 0; i < segmentCount; i++) {
+        long start = HEADER_SIZE + (long) i * rowsPerSegment * columnCount * 8;
+        int rows = Math.min(rowsPerSegment, rowCount - i * rowsPerSegment);
+        long length = (long) rows * columnCount * 8;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+      }
+    }
+  }
+
+  /**
+   * Write a matrix given as an array of rows.
+   */
+  public static void write(File file, double[][] weights, int columnCount) throws IOException {
+    try (Writer writer = new Writer(file, weights.length, columnCount)) {
+      for (double[] row : weights)
+        for (int j = 0; j < columnCount; j++)
+          writer.put(row[j]);
+    }
+  }
+
+  /**
+   * Write a matrix given as a single array, row by row.
+   */
+  public static void write(File file, double[] weights, int columnCount) throws IOException {
+    try (Writer writer = new Writer(file, weights.length / columnCount, columnCount)) {
+      for (double weight : weights)
+        writer.put(weight);
+    }
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return columnCount;
+  }
+
+  public double get(int row, int column) {
+    return segments[row / rowsPerSegment].get((row % rowsPerSegment) * columnCount + column);
+  }
+
+  /**
+   * Add a given row multiplied by a value to the results, which should contain
+   * one element per column.
+   */
+  public void addRow(double[] results, int row, double value) {
+    DoubleBuffer segment = segments[row / rowsPerSegment];
+    int start = (row % rowsPerSegment) * columnCount;
+    for (int j = 0; j < columnCount; j++)
+      results[j] += value * segment.get(start + j);
+  }
+
+  private static final class Writer implements AutoCloseable {
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+
+    public Writer(File file, int rowCount, int columnCount) throws IOException {
+      file.delete();
+      raf = new RandomAccessFile(file, "rw");
+      channel = raf.getChannel();
+      buffer.putInt(rowCount);
+      buffer.putInt(columnCount);
+    }
+
+    public void put(double weight) throws IOException {
+      if (buffer.remaining() < 8)
+        this.flush();
+      buffer.putDouble(weight);
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        this.flush();
+      } finally {
+        raf.close();
+      }
+    }
+  }
+}
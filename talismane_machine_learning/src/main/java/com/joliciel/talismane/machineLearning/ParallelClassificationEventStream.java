@@ -0,0 +1,224 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.TalismaneException;
+
+/**
+ * A classification event stream which extracts events in a pool of worker
+ * threads, for training corpora where feature extraction takes longer than
+ * training itself.<br/>
+ * <br/>
+ * Units (typically sentences) are read sequentially in the calling thread by
+ * a {@link UnitReader}. The events for each unit are extracted in a worker
+ * thread, by an {@link EventExtractor} which no other thread is using at the
+ * same time, since feature sets are not thread-safe. Events are returned in
+ * the order in which their units were read, so that the stream is identical
+ * to a sequential stream, whatever the number of threads. At most
+ * {@link #getMaxUnitsInFlight()} units are read but not yet returned.<br/>
+ * <br/>
+ * The worker threads are started by the first call to {@link #hasNext()}, and
+ * stopped when the stream is exhausted or an exception is thrown.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public class ParallelClassificationEventStream<S> implements ClassificationEventStream {
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelClassificationEventStream.class);
+
+  /**
+   * Reads the units from which events are extracted.
+   */
+  public interface UnitReader<S> {
+    /**
+     * The next unit, or null if there are no more units.
+     */
+    public S nextUnit() throws TalismaneException, IOException;
+  }
+
+  /**
+   * Extracts the events for a single unit.
+   */
+  public interface EventExtractor<S> {
+    /**
+     * All of the events for a given unit, in order.
+     */
+    public List<ClassificationEvent> getEvents(S unit) throws TalismaneException, IOException;
+  }
+
+  private final UnitReader<S> unitReader;
+  private final BlockingQueue<EventExtractor<S>> extractorPool;
+  private final int threads;
+  private final int maxUnitsInFlight;
+  private final Supplier<Map<String, String>> attributes;
+
+  private ExecutorService executor = null;
+  private final LinkedList<Future<List<ClassificationEvent>>> pendingUnits = new LinkedList<>();
+  private Iterator<ClassificationEvent> currentEvents = null;
+  private boolean finishedReading = false;
+
+  /**
+   * 
+   * @param unitReader
+   *          reads the units in the calling thread
+   * @param extractors
+   *          one extractor per worker thread
+   * @param maxUnitsInFlight
+   *          the maximum number of units read but not yet returned - if &lt;=
+   *          0, will be set to four times the number of threads
+   * @param attributes
+   *          supplies the attributes of the equivalent sequential event
+   *          stream
+   */
+  public ParallelClassificationEventStream(UnitReader<S> unitReader, List<? extends EventExtractor<S>> extractors, int maxUnitsInFlight,
+      Supplier<Map<String, String>> attributes) {
+    if (extractors.isEmpty())
+      throw new IllegalArgumentException("At least one event extractor is required");
+    this.unitReader = unitReader;
+    this.threads = extractors.size();
+    this.extractorPool = new ArrayBlockingQueue<>(threads);
+    this.extractorPool.addAll(extractors);
+    this.maxUnitsInFlight = maxUnitsInFlight > 0 ? maxUnitsInFlight : threads * 4;
+    this.attributes = attributes;
+  }
+
+  @Override
+  public boolean hasNext() throws TalismaneException, IOException {
+    try {
+      while (currentEvents == null || !currentEvents.hasNext()) {
+        this.readUnits();
+        if (pendingUnits.isEmpty()) {
+          this.shutdown();
+          return false;
+        }
+        currentEvents = this.getEvents(pendingUnits.removeFirst()).iterator();
+      }
+      return true;
+    } catch (TalismaneException | IOException | RuntimeException e) {
+      this.shutdown();
+      throw e;
+    }
+  }
+
+  @Override
+  public ClassificationEvent next() throws TalismaneException, IOException {
+    ClassificationEvent event = null;
+    if (this.hasNext())
+      event = currentEvents.next();
+    return event;
+  }
+
+  /**
+   * Read units and submit them to the workers, until the maximum number of
+   * units in flight is reached, or there are no more units to read.
+   */
+  private void readUnits() throws TalismaneException, IOException {
+    while (!finishedReading && pendingUnits.size() < maxUnitsInFlight) {
+      S unit = unitReader.nextUnit();
+      if (unit == null) {
+        finishedReading = true;
+        break;
+      }
+      if (executor == null) {
+        LOG.debug("Starting " + threads + " feature extraction threads");
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+          Thread thread = new Thread(runnable, "classification-event-stream");
+          // don't stop the JVM from exiting if the stream isn't read to the
+          // end
+          thread.setDaemon(true);
+          return thread;
+        });
+      }
+      pendingUnits.add(executor.submit(() -> {
+        EventExtractor<S> extractor = extractorPool.take();
+        try {
+          return extractor.getEvents(unit);
+        } finally {
+          extractorPool.add(extractor);
+        }
+      }));
+    }
+  }
+
+  /**
+   * Wait for the events extracted in a worker thread, re-throwing any
+   * exception thrown during extraction.
+   */
+  private List<ClassificationEvent> getEvents(Future<List<ClassificationEvent>> future) throws TalismaneException, IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TalismaneException("Interrupted while waiting for event extraction", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof TalismaneException)
+        throw (TalismaneException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private void shutdown() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+    pendingUnits.clear();
+    finishedReading = true;
+  }
+
+  @Override
+  public Map<String, String> getAttributes() {
+    return attributes.get();
+  }
+
+  /**
+   * The number of worker threads.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * The maximum number of units read but not yet returned.
+   */
+  public int getMaxUnitsInFlight() {
+    return maxUnitsInFlight;
+  }
+}
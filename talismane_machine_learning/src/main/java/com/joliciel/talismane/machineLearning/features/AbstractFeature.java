@@ -30,6 +30,7 @@ import java.util.List;
 public abstract class AbstractFeature<T, Y> implements Feature<T, Y>, Comparable<Feature<T, ?>> {
 
   private String name = null;
+  private int id = -1;
   private String groupName = null;
   private List<Feature<T, ?>> arguments = new ArrayList<Feature<T, ?>>();
   private boolean topLevelFeature = false;
@@ -49,6 +50,15 @@ public abstract class AbstractFeature<T, Y> implements Feature<T, Y>, Comparable
   @Override
   public final void setName(String name) {
     this.name = name;
+    this.id = -1;
+  }
+
+  @Override
+  public final int getId() {
+    if (id < 0) {
+      id = FeatureResultCache.getFeatureId(this.getName());
+    }
+    return id;
   }
 
   @Override
@@ -0,0 +1,104 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.joliciel.talismane.TalismaneException;
+
+/**
+ * A set of top-level features compiled to a single class by
+ * {@link FeatureCompiler}, which checks all of the features on a given context
+ * in one pass, giving the same results in the same order as checking each
+ * feature in turn.<br/>
+ * <br/>
+ * Thread-safe: each call to {@link #check(Object, RuntimeEnvironment)} works
+ * on a new instance of the compiled class, which holds the intermediate
+ * values for the context being checked.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public abstract class CompiledFeatureSet<T> {
+  /**
+   * The features which are not compiled, but checked directly by the compiled
+   * class.
+   */
+  protected final Feature<T, ?>[] features;
+
+  /**
+   * The features used to generate the result of each compiled top-level
+   * feature.
+   */
+  protected final Feature<T, ?>[] topLevelFeatures;
+
+  /**
+   * The context currently being checked.
+   */
+  protected Object context;
+
+  /**
+   * The environment in which the context is being checked.
+   */
+  protected RuntimeEnvironment env;
+
+  protected CompiledFeatureSet(Feature<T, ?>[] features, Feature<T, ?>[] topLevelFeatures) {
+    this.features = features;
+    this.topLevelFeatures = topLevelFeatures;
+  }
+
+  /**
+   * Check all of the top-level features on a given context, and return the
+   * non-null results, in the order in which the features were compiled. The
+   * environment is cleared before checking each top-level feature.
+   */
+  public List<FeatureResult<?>> check(T context, RuntimeEnvironment env) throws TalismaneException {
+    CompiledFeatureSet<T> instance = this.newInstance();
+    instance.context = context;
+    instance.env = env;
+    List<FeatureResult<?>> results = new ArrayList<>(topLevelFeatures.length);
+    instance.evaluate(results);
+    return results;
+  }
+
+  /**
+   * The number of top-level features in this set.
+   */
+  public int size() {
+    return topLevelFeatures.length;
+  }
+
+  /**
+   * A new instance of the compiled class, sharing this instance's features.
+   */
+  protected abstract CompiledFeatureSet<T> newInstance();
+
+  /**
+   * Add the non-null result of each top-level feature to the list provided.
+   */
+  protected abstract void evaluate(List<FeatureResult<?>> results) throws TalismaneException;
+
+  /**
+   * Generate a result for a given feature, as the feature itself would.
+   */
+  protected static <Y> FeatureResult<Y> result(Feature<?, Y> feature, Y outcome) {
+    return new FeatureResultImpl<Y>(feature, outcome);
+  }
+}
@@ -73,4 +73,11 @@ public class EqualsOperatorForDouble<T> extends AbstractCachableFeature<T, Boole
     this.operand2 = operand2;
   }
 
+  /**
+   * The error margin within which two doubles are considered equal.
+   */
+  public double getSigma() {
+    return sigma;
+  }
+
 }
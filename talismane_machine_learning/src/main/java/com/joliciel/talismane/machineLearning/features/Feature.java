@@ -58,6 +58,12 @@ public interface Feature<T, Y> extends Comparable<Feature<T, ?>> {
    */
   public void setName(String name);
 
+  /**
+   * A dense integer id for this feature's name, shared by all features with
+   * the same name, used to key feature result caches.
+   */
+  public int getId();
+
   /**
    * Returns the feature's return type interface, e.g. BooleanFeature,
    * StringFeature or DoubleFeature.
@@ -0,0 +1,629 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.features;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticListener;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.joliciel.talismane.utils.compiler.DynamicCompiler;
+import com.joliciel.talismane.utils.compiler.DynamicCompilerException;
+
+/**
+ * Compiles a set of top-level features into a single {@link CompiledFeatureSet}
+ * class, using the {@link DynamicCompiler}.<br/>
+ * <br/>
+ * The generic operators and literals in each feature's argument tree (boolean
+ * logic, comparisons, arithmetic, concatenation, if-then-else, etc.) are
+ * translated to Java code working on primitive values, rather than being
+ * checked through nested calls returning a {@link FeatureResult} each. All
+ * other features (typically the features specific to a given module, such as
+ * a token's word form) are checked directly by the compiled class. Sub-features
+ * with the same name are considered to be the same, and are checked at most
+ * once per context, in line with the feature result cache. As with the
+ * features themselves, sub-features are only checked when their result is
+ * needed, so that the compiled class gives exactly the same results as checking
+ * each top-level feature in turn.<br/>
+ * <br/>
+ * Feature wrappers (see {@link FeatureWrapper}) are assumed to return the
+ * wrapped feature's result unchanged.
+ *
+ * @author Assaf Urieli
+ *
+ */
+public class FeatureCompiler {
+  private static final Logger LOG = LoggerFactory.getLogger(FeatureCompiler.class);
+  private static final String PACKAGE_NAME = "com.joliciel.talismane.machineLearning.features.compiled";
+  private static final AtomicInteger classCount = new AtomicInteger();
+
+  private enum Kind {
+    BOOLEAN("boolean", "Boolean"),
+    INTEGER("int", "Integer"),
+    DOUBLE("double", "Double"),
+    STRING("String", "String"),
+    OTHER(null, null);
+
+    private final String primitiveType;
+    private final String boxedType;
+
+    private Kind(String primitiveType, String boxedType) {
+      this.primitiveType = primitiveType;
+      this.boxedType = boxedType;
+    }
+  }
+
+  /**
+   * Compile a set of top-level features, whose results will be returned in
+   * the collection's iteration order.
+   *
+   * @throws DynamicCompilerException
+   *           if no Java compiler is available, or if compilation fails
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompiledFeatureSet<T> compile(Collection<? extends Feature<T, ?>> features) {
+    if (ToolProvider.getSystemJavaCompiler() == null)
+      throw new DynamicCompilerException("No Java compiler available: feature compilation requires a JDK");
+
+    long startTime = System.currentTimeMillis();
+    String className = "CompiledFeatures" + classCount.incrementAndGet();
+    Generator generator = new Generator(className);
+    for (Feature<T, ?> feature : features)
+      generator.addTopLevelFeature(feature);
+    String source = generator.getSource();
+    if (LOG.isTraceEnabled())
+      LOG.trace(source);
+
+    DynamicCompiler compiler = new DynamicCompiler(FeatureCompiler.class.getClassLoader(), new DiagnosticLogger());
+    Class<?> compiledClass = compiler.compile(PACKAGE_NAME + "." + className, source, null);
+    try {
+      Constructor<?> constructor = compiledClass.getConstructor(Feature[].class, Feature[].class);
+      Feature<?, ?>[] leafFeatures = generator.leafFeatures.toArray(new Feature<?, ?>[generator.leafFeatures.size()]);
+      Feature<?, ?>[] topLevelFeatures = generator.topLevelFeatures.toArray(new Feature<?, ?>[generator.topLevelFeatures.size()]);
+      CompiledFeatureSet<T> compiledFeatureSet = (CompiledFeatureSet<T>) constructor.newInstance(leafFeatures, topLevelFeatures);
+      LOG.info("Compiled " + features.size() + " features (" + generator.nodes.size() + " distinct sub-features, of which " + leafFeatures.length
+          + " checked directly) in " + (System.currentTimeMillis() - startTime) + " ms");
+      return compiledFeatureSet;
+    } catch (ReflectiveOperationException e) {
+      throw new DynamicCompilerException(e);
+    }
+  }
+
+  private static final class Node {
+    private final int id;
+    private final Kind kind;
+    private final boolean leaf;
+
+    private Node(int id, Kind kind, boolean leaf) {
+      this.id = id;
+      this.kind = kind;
+      this.leaf = leaf;
+    }
+
+    /**
+     * A call computing this node's value if required, and returning true if
+     * it is not null.
+     */
+    private String check() {
+      return "c" + id + "()";
+    }
+
+    /**
+     * This node's value, only valid after {@link #check()} has returned true.
+     */
+    private String value() {
+      return "v" + id;
+    }
+
+    private String set(String expression) {
+      return "v" + id + " = " + expression + "; s" + id + " = 1;";
+    }
+  }
+
+  private static final class Generator {
+    private final String className;
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final List<Feature<?, ?>> leafFeatures = new ArrayList<>();
+    private final List<Feature<?, ?>> topLevelFeatures = new ArrayList<>();
+    private final StringBuilder members = new StringBuilder();
+    private final StringBuilder evaluation = new StringBuilder();
+
+    private Generator(String className) {
+      this.className = className;
+    }
+
+    private void addTopLevelFeature(Feature<?, ?> feature) {
+      Feature<?, ?> innerFeature = unwrap(feature);
+      Node node = this.getNode(feature);
+      evaluation.append("    env.clear();\n");
+      if (node.leaf) {
+        evaluation.append("    if (" + node.check() + ")\n");
+        evaluation.append("      results.add(r" + node.id + ");\n");
+      } else {
+        String outcome = node.value();
+        if (node.kind != Kind.STRING)
+          outcome = node.kind.boxedType + ".valueOf(" + outcome + ")";
+        evaluation.append("    if (" + node.check() + ")\n");
+        evaluation.append("      results.add(result(topLevelFeatures[" + topLevelFeatures.size() + "], " + outcome + "));\n");
+      }
+      topLevelFeatures.add(innerFeature);
+    }
+
+    private String getSource() {
+      StringBuilder sb = new StringBuilder();
+      sb.append("package " + PACKAGE_NAME + ";\n\n");
+      sb.append("import java.util.List;\n\n");
+      sb.append("import com.joliciel.talismane.TalismaneException;\n");
+      sb.append("import com.joliciel.talismane.machineLearning.features.CompiledFeatureSet;\n");
+      sb.append("import com.joliciel.talismane.machineLearning.features.Feature;\n");
+      sb.append("import com.joliciel.talismane.machineLearning.features.FeatureResult;\n\n");
+      sb.append("@SuppressWarnings({ \"rawtypes\", \"unchecked\" })\n");
+      sb.append("public final class " + className + " extends CompiledFeatureSet {\n");
+      sb.append("  public " + className + "(Feature[] features, Feature[] topLevelFeatures) {\n");
+      sb.append("    super(features, topLevelFeatures);\n");
+      sb.append("  }\n\n");
+      sb.append("  @Override\n");
+      sb.append("  protected CompiledFeatureSet newInstance() {\n");
+      sb.append("    return new " + className + "(features, topLevelFeatures);\n");
+      sb.append("  }\n\n");
+      sb.append("  @Override\n");
+      sb.append("  protected void evaluate(List results) throws TalismaneException {\n");
+      sb.append(evaluation);
+      sb.append("  }\n");
+      sb.append(members);
+      sb.append("}\n");
+      return sb.toString();
+    }
+
+    private Node getNode(Feature<?, ?> feature) {
+      Kind kind = getKind(feature);
+      feature = unwrap(feature);
+      if (kind == Kind.OTHER)
+        kind = getKind(feature);
+      String key = feature.getClass().getName() + "|" + kind.name() + "|" + feature.getName();
+      Node node = nodes.get(key);
+      if (node == null) {
+        node = this.addNode(feature, kind);
+        nodes.put(key, node);
+      }
+      return node;
+    }
+
+    private Node addNode(Feature<?, ?> feature, Kind kind) {
+      // generate the arguments first, as they are needed to generate this
+      // feature's body
+      List<Node> arguments = new ArrayList<>();
+      for (Feature<?, ?> argument : getCompiledArguments(feature))
+        arguments.add(this.getNode(argument));
+
+      boolean leaf = arguments.isEmpty() && !isLiteral(feature);
+      if (!leaf && kind == Kind.OTHER)
+        throw new DynamicCompilerException("Unknown return type for feature " + feature.getName());
+      Node node = new Node(nodes.size(), kind, leaf);
+      String body = null;
+      if (leaf) {
+        body = this.getLeafBody(node);
+        leafFeatures.add(feature);
+      } else {
+        body = getBody(feature, node, arguments);
+      }
+
+      members.append("\n");
+      members.append("  // " + feature.getName().replace('\n', ' ').replace('\r', ' ') + "\n");
+      members.append("  private byte s" + node.id + ";\n");
+      if (kind != Kind.OTHER)
+        members.append("  private " + kind.primitiveType + " v" + node.id + ";\n");
+      if (leaf)
+        members.append("  private FeatureResult r" + node.id + ";\n");
+      members.append("\n");
+      members.append("  private boolean c" + node.id + "() throws TalismaneException {\n");
+      members.append("    if (s" + node.id + " == 0) {\n");
+      members.append("      s" + node.id + " = 2;\n");
+      for (String line : body.split("\n"))
+        members.append("      " + line + "\n");
+      members.append("    }\n");
+      members.append("    return s" + node.id + " == 1;\n");
+      members.append("  }\n");
+      return node;
+    }
+
+    private String getLeafBody(Node node) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("r" + node.id + " = features[" + leafFeatures.size() + "].check(context, env);\n");
+      sb.append("if (r" + node.id + " != null) {\n");
+      if (node.kind == Kind.OTHER)
+        sb.append("  s" + node.id + " = 1;\n");
+      else if (node.kind == Kind.STRING)
+        sb.append("  " + node.set("(String) r" + node.id + ".getOutcome()") + "\n");
+      else
+        sb.append("  " + node.set("((" + node.kind.boxedType + ") r" + node.id + ".getOutcome())." + node.kind.primitiveType + "Value()") + "\n");
+      sb.append("}");
+      return sb.toString();
+    }
+  }
+
+  private static Feature<?, ?> unwrap(Feature<?, ?> feature) {
+    while (feature instanceof FeatureWrapper)
+      feature = ((FeatureWrapper<?, ?>) feature).getWrappedFeature();
+    return feature;
+  }
+
+  private static Kind getKind(Feature<?, ?> feature) {
+    if (feature instanceof BooleanFeature)
+      return Kind.BOOLEAN;
+    if (feature instanceof StringFeature)
+      return Kind.STRING;
+    if (feature instanceof DoubleFeature)
+      return Kind.DOUBLE;
+    if (feature instanceof IntegerFeature)
+      return Kind.INTEGER;
+    return Kind.OTHER;
+  }
+
+  private static boolean isLiteral(Feature<?, ?> feature) {
+    return feature instanceof StringLiteralFeature || feature instanceof BooleanLiteralFeature || feature instanceof IntegerLiteralFeature
+        || feature instanceof DoubleLiteralFeature;
+  }
+
+  /**
+   * The arguments of a feature which can be compiled, or an empty list if the
+   * feature should be checked directly.
+   */
+  private static List<Feature<?, ?>> getCompiledArguments(Feature<?, ?> feature) {
+    List<Feature<?, ?>> arguments = new ArrayList<>();
+    if (feature instanceof AndFeature) {
+      for (Feature<?, ?> argument : ((AndFeature<?>) feature).getBooleanFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof AndFeatureAllowNulls) {
+      for (Feature<?, ?> argument : ((AndFeatureAllowNulls<?>) feature).getBooleanFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof OrFeature) {
+      for (Feature<?, ?> argument : ((OrFeature<?>) feature).getBooleanFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof OrFeatureAllowNulls) {
+      for (Feature<?, ?> argument : ((OrFeatureAllowNulls<?>) feature).getBooleanFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof ConcatenateFeature) {
+      for (Feature<?, ?> argument : ((ConcatenateFeature<?>) feature).getStringFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof ConcatenateWithNullsFeature) {
+      for (Feature<?, ?> argument : ((ConcatenateWithNullsFeature<?>) feature).getStringFeatures())
+        arguments.add(argument);
+    } else if (feature instanceof NotFeature) {
+      arguments.add(((NotFeature<?>) feature).getOperand());
+    } else if (feature instanceof EqualsOperatorForString) {
+      arguments.add(((EqualsOperatorForString<?>) feature).getOperand1());
+      arguments.add(((EqualsOperatorForString<?>) feature).getOperand2());
+    } else if (feature instanceof EqualsOperatorForBoolean) {
+      arguments.add(((EqualsOperatorForBoolean<?>) feature).getOperand1());
+      arguments.add(((EqualsOperatorForBoolean<?>) feature).getOperand2());
+    } else if (feature instanceof EqualsOperatorForDouble) {
+      arguments.add(((EqualsOperatorForDouble<?>) feature).getOperand1());
+      arguments.add(((EqualsOperatorForDouble<?>) feature).getOperand2());
+    } else if (feature instanceof GreaterThanIntegerOperator) {
+      arguments.add(((GreaterThanIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((GreaterThanIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof GreaterThanOperator) {
+      arguments.add(((GreaterThanOperator<?>) feature).getOperand1());
+      arguments.add(((GreaterThanOperator<?>) feature).getOperand2());
+    } else if (feature instanceof GreaterThanOrEqualsIntegerOperator) {
+      arguments.add(((GreaterThanOrEqualsIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((GreaterThanOrEqualsIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof GreaterThanOrEqualsOperator) {
+      arguments.add(((GreaterThanOrEqualsOperator<?>) feature).getOperand1());
+      arguments.add(((GreaterThanOrEqualsOperator<?>) feature).getOperand2());
+    } else if (feature instanceof LessThanIntegerOperator) {
+      arguments.add(((LessThanIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((LessThanIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof LessThanOperator) {
+      arguments.add(((LessThanOperator<?>) feature).getOperand1());
+      arguments.add(((LessThanOperator<?>) feature).getOperand2());
+    } else if (feature instanceof LessThanOrEqualsIntegerOperator) {
+      arguments.add(((LessThanOrEqualsIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((LessThanOrEqualsIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof LessThanOrEqualsOperator) {
+      arguments.add(((LessThanOrEqualsOperator<?>) feature).getOperand1());
+      arguments.add(((LessThanOrEqualsOperator<?>) feature).getOperand2());
+    } else if (feature instanceof PlusIntegerOperator) {
+      arguments.add(((PlusIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((PlusIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof PlusOperator) {
+      arguments.add(((PlusOperator<?>) feature).getOperand1());
+      arguments.add(((PlusOperator<?>) feature).getOperand2());
+    } else if (feature instanceof MinusIntegerOperator) {
+      arguments.add(((MinusIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((MinusIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof MinusOperator) {
+      arguments.add(((MinusOperator<?>) feature).getOperand1());
+      arguments.add(((MinusOperator<?>) feature).getOperand2());
+    } else if (feature instanceof MultiplyIntegerOperator) {
+      arguments.add(((MultiplyIntegerOperator<?>) feature).getOperand1());
+      arguments.add(((MultiplyIntegerOperator<?>) feature).getOperand2());
+    } else if (feature instanceof MultiplyOperator) {
+      arguments.add(((MultiplyOperator<?>) feature).getOperand1());
+      arguments.add(((MultiplyOperator<?>) feature).getOperand2());
+    } else if (feature instanceof DivideOperator) {
+      arguments.add(((DivideOperator<?>) feature).getOperand1());
+      arguments.add(((DivideOperator<?>) feature).getOperand2());
+    } else if (feature instanceof ModuloOperator) {
+      arguments.add(((ModuloOperator<?>) feature).getOperand1());
+      arguments.add(((ModuloOperator<?>) feature).getOperand2());
+    } else if (feature instanceof IfThenElseStringFeature) {
+      IfThenElseStringFeature<?> ifThenElse = (IfThenElseStringFeature<?>) feature;
+      arguments.add(ifThenElse.getCondition());
+      arguments.add(ifThenElse.getThenFeature());
+      arguments.add(ifThenElse.getElseFeature());
+    } else if (feature instanceof IfThenElseBooleanFeature) {
+      IfThenElseBooleanFeature<?> ifThenElse = (IfThenElseBooleanFeature<?>) feature;
+      arguments.add(ifThenElse.getCondition());
+      arguments.add(ifThenElse.getThenFeature());
+      arguments.add(ifThenElse.getElseFeature());
+    } else if (feature instanceof IfThenElseIntegerFeature) {
+      IfThenElseIntegerFeature<?> ifThenElse = (IfThenElseIntegerFeature<?>) feature;
+      arguments.add(ifThenElse.getCondition());
+      arguments.add(ifThenElse.getThenFeature());
+      arguments.add(ifThenElse.getElseFeature());
+    } else if (feature instanceof IfThenElseDoubleFeature) {
+      IfThenElseDoubleFeature<?> ifThenElse = (IfThenElseDoubleFeature<?>) feature;
+      arguments.add(ifThenElse.getCondition());
+      arguments.add(ifThenElse.getThenFeature());
+      arguments.add(ifThenElse.getElseFeature());
+    } else if (feature instanceof NullIfStringFeature) {
+      arguments.add(((NullIfStringFeature<?>) feature).getCondition());
+      arguments.add(((NullIfStringFeature<?>) feature).getResultFeature());
+    } else if (feature instanceof NullIfBooleanFeature) {
+      arguments.add(((NullIfBooleanFeature<?>) feature).getCondition());
+      arguments.add(((NullIfBooleanFeature<?>) feature).getResultFeature());
+    } else if (feature instanceof NullIfIntegerFeature) {
+      arguments.add(((NullIfIntegerFeature<?>) feature).getCondition());
+      arguments.add(((NullIfIntegerFeature<?>) feature).getResultFeature());
+    } else if (feature instanceof NullIfDoubleFeature) {
+      arguments.add(((NullIfDoubleFeature<?>) feature).getCondition());
+      arguments.add(((NullIfDoubleFeature<?>) feature).getResultFeature());
+    } else if (feature instanceof IsNullFeature) {
+      arguments.add(((IsNullFeature<?>) feature).getTestFeature());
+    } else if (feature instanceof NullToFalseFeature) {
+      arguments.add(((NullToFalseFeature<?>) feature).getWrappedFeature());
+    } else if (feature instanceof OnlyTrueFeature) {
+      arguments.add(((OnlyTrueFeature<?>) feature).getWrappedFeature());
+    } else if (feature instanceof ToStringFeature) {
+      arguments.add(((ToStringFeature<?>) feature).getFeatureToString());
+    } else if (feature instanceof ToStringAllowNullsFeature) {
+      arguments.add(((ToStringAllowNullsFeature<?>) feature).getFeatureToString());
+    } else if (feature instanceof IntegerToDoubleFeature) {
+      arguments.add(((IntegerToDoubleFeature<?>) feature).getIntegerFeature());
+    } else if (feature instanceof IntegerLiteralFeatureWrapper) {
+      arguments.add(((IntegerLiteralFeatureWrapper<?>) feature).getIntegerLiteralFeature());
+    }
+    // Other features, including EqualsOperatorForInteger (which compares
+    // boxed integers by reference) and the features whose operand type is only
+    // known at runtime, are checked directly.
+    return arguments;
+  }
+
+  /**
+   * The Java statements computing a compiled feature's value from its
+   * arguments, mirroring the order in which the feature checks its arguments.
+   */
+  private static String getBody(Feature<?, ?> feature, Node node, List<Node> args) {
+    StringBuilder sb = new StringBuilder();
+    if (feature instanceof StringLiteralFeature) {
+      sb.append(node.set(toJavaString(((StringLiteralFeature<?>) feature).getLiteral())));
+    } else if (feature instanceof BooleanLiteralFeature) {
+      sb.append(node.set("" + ((BooleanLiteralFeature<?>) feature).isLiteral()));
+    } else if (feature instanceof IntegerLiteralFeature) {
+      sb.append(node.set("" + ((IntegerLiteralFeature<?>) feature).getLiteral()));
+    } else if (feature instanceof DoubleLiteralFeature) {
+      double literal = ((DoubleLiteralFeature<?>) feature).getLiteral();
+      sb.append(node.set("Double.longBitsToDouble(0x" + Long.toHexString(Double.doubleToRawLongBits(literal)) + "L)"));
+    } else if (feature instanceof AndFeature || feature instanceof OrFeature) {
+      // every argument is checked until a null is found
+      String operator = feature instanceof AndFeature ? "&&" : "||";
+      sb.append("boolean result = " + (feature instanceof AndFeature) + ";\n");
+      sb.append("boolean hasNull = false;\n");
+      for (Node arg : args) {
+        sb.append("if (!hasNull) {\n");
+        sb.append("  if (" + arg.check() + ")\n");
+        sb.append("    result = result " + operator + " " + arg.value() + ";\n");
+        sb.append("  else\n");
+        sb.append("    hasNull = true;\n");
+        sb.append("}\n");
+      }
+      sb.append("if (!hasNull) {\n");
+      sb.append("  " + node.set("result") + "\n");
+      sb.append("}");
+    } else if (feature instanceof AndFeatureAllowNulls) {
+      sb.append("boolean result = true;\n");
+      for (Node arg : args)
+        sb.append("if (result)\n  result = " + arg.check() + " && " + arg.value() + ";\n");
+      sb.append(node.set("result"));
+    } else if (feature instanceof OrFeatureAllowNulls) {
+      sb.append("boolean result = false;\n");
+      for (Node arg : args)
+        sb.append("if (!result)\n  result = " + arg.check() + " && " + arg.value() + ";\n");
+      sb.append(node.set("result"));
+    } else if (feature instanceof ConcatenateFeature) {
+      sb.append("StringBuilder sb = new StringBuilder();\n");
+      sb.append("boolean hasNull = false;\n");
+      boolean first = true;
+      for (Node arg : args) {
+        sb.append("if (!hasNull) {\n");
+        if (!first)
+          sb.append("  sb.append('|');\n");
+        sb.append("  if (" + arg.check() + ")\n");
+        sb.append("    sb.append(" + arg.value() + ");\n");
+        sb.append("  else\n");
+        sb.append("    hasNull = true;\n");
+        sb.append("}\n");
+        first = false;
+      }
+      sb.append("if (!hasNull) {\n");
+      sb.append("  " + node.set("sb.toString()") + "\n");
+      sb.append("}");
+    } else if (feature instanceof ConcatenateWithNullsFeature) {
+      sb.append("StringBuilder sb = new StringBuilder();\n");
+      boolean first = true;
+      for (Node arg : args) {
+        if (!first)
+          sb.append("sb.append('|');\n");
+        sb.append("sb.append(" + arg.check() + " ? " + arg.value() + " : \"null\");\n");
+        first = false;
+      }
+      sb.append(node.set("sb.toString()"));
+    } else if (feature instanceof NotFeature) {
+      sb.append("if (" + args.get(0).check() + ") {\n");
+      sb.append("  " + node.set("!" + args.get(0).value()) + "\n");
+      sb.append("}");
+    } else if (feature instanceof EqualsOperatorForString || feature instanceof EqualsOperatorForBoolean
+        || feature instanceof EqualsOperatorForDouble) {
+      // the second operand is only checked if the first is not null
+      String expression = null;
+      if (feature instanceof EqualsOperatorForString)
+        expression = args.get(0).value() + ".equals(" + args.get(1).value() + ")";
+      else if (feature instanceof EqualsOperatorForBoolean)
+        expression = args.get(0).value() + " == " + args.get(1).value();
+      else
+        expression = "Math.abs(" + args.get(0).value() + " - " + args.get(1).value() + ") <= Double.longBitsToDouble(0x"
+            + Long.toHexString(Double.doubleToRawLongBits(((EqualsOperatorForDouble<?>) feature).getSigma())) + "L)";
+      sb.append("if (" + args.get(0).check() + " && " + args.get(1).check() + ") {\n");
+      sb.append("  " + node.set(expression) + "\n");
+      sb.append("}");
+    } else if (isBinaryOperator(feature)) {
+      // both operands are always checked
+      String operator = getBinaryOperator(feature);
+      sb.append("boolean hasOperand1 = " + args.get(0).check() + ";\n");
+      sb.append("boolean hasOperand2 = " + args.get(1).check() + ";\n");
+      if (feature instanceof DivideOperator)
+        sb.append("if (hasOperand1 && hasOperand2 && " + args.get(1).value() + " != 0) {\n");
+      else
+        sb.append("if (hasOperand1 && hasOperand2) {\n");
+      sb.append("  " + node.set(args.get(0).value() + " " + operator + " " + args.get(1).value()) + "\n");
+      sb.append("}");
+    } else if (feature instanceof IfThenElseStringFeature || feature instanceof IfThenElseBooleanFeature || feature instanceof IfThenElseIntegerFeature
+        || feature instanceof IfThenElseDoubleFeature) {
+      sb.append("if (" + args.get(0).check() + ") {\n");
+      sb.append("  if (" + args.get(0).value() + ") {\n");
+      sb.append("    if (" + args.get(1).check() + ") {\n");
+      sb.append("      " + node.set(args.get(1).value()) + "\n");
+      sb.append("    }\n");
+      sb.append("  } else {\n");
+      sb.append("    if (" + args.get(2).check() + ") {\n");
+      sb.append("      " + node.set(args.get(2).value()) + "\n");
+      sb.append("    }\n");
+      sb.append("  }\n");
+      sb.append("}");
+    } else if (feature instanceof NullIfStringFeature || feature instanceof NullIfBooleanFeature || feature instanceof NullIfIntegerFeature
+        || feature instanceof NullIfDoubleFeature) {
+      sb.append("if (" + args.get(0).check() + " && !" + args.get(0).value() + ") {\n");
+      sb.append("  if (" + args.get(1).check() + ") {\n");
+      sb.append("    " + node.set(args.get(1).value()) + "\n");
+      sb.append("  }\n");
+      sb.append("}");
+    } else if (feature instanceof IsNullFeature) {
+      sb.append(node.set("!" + args.get(0).check()));
+    } else if (feature instanceof NullToFalseFeature) {
+      sb.append(node.set(args.get(0).check() + " && " + args.get(0).value()));
+    } else if (feature instanceof OnlyTrueFeature) {
+      sb.append("if (" + args.get(0).check() + " && " + args.get(0).value() + ") {\n");
+      sb.append("  " + node.set("true") + "\n");
+      sb.append("}");
+    } else if (feature instanceof ToStringFeature || feature instanceof ToStringAllowNullsFeature) {
+      Node arg = args.get(0);
+      String string = arg.kind == Kind.OTHER ? "r" + arg.id + ".getOutcome().toString()" : "String.valueOf(" + arg.value() + ")";
+      sb.append("if (" + arg.check() + ") {\n");
+      sb.append("  " + node.set(string) + "\n");
+      if (feature instanceof ToStringAllowNullsFeature) {
+        sb.append("} else {\n");
+        sb.append("  " + node.set("\"null\"") + "\n");
+      }
+      sb.append("}");
+    } else if (feature instanceof IntegerToDoubleFeature || feature instanceof IntegerLiteralFeatureWrapper) {
+      sb.append("if (" + args.get(0).check() + ") {\n");
+      sb.append("  " + node.set(args.get(0).value()) + "\n");
+      sb.append("}");
+    } else {
+      throw new DynamicCompilerException("Cannot compile feature " + feature.getName());
+    }
+    return sb.toString();
+  }
+
+  private static boolean isBinaryOperator(Feature<?, ?> feature) {
+    return getBinaryOperator(feature) != null;
+  }
+
+  private static String getBinaryOperator(Feature<?, ?> feature) {
+    if (feature instanceof GreaterThanIntegerOperator || feature instanceof GreaterThanOperator)
+      return ">";
+    if (feature instanceof GreaterThanOrEqualsIntegerOperator || feature instanceof GreaterThanOrEqualsOperator)
+      return ">=";
+    if (feature instanceof LessThanIntegerOperator || feature instanceof LessThanOperator)
+      return "<";
+    if (feature instanceof LessThanOrEqualsIntegerOperator || feature instanceof LessThanOrEqualsOperator)
+      return "<=";
+    if (feature instanceof PlusIntegerOperator || feature instanceof PlusOperator)
+      return "+";
+    if (feature instanceof MinusIntegerOperator || feature instanceof MinusOperator)
+      return "-";
+    if (feature instanceof MultiplyIntegerOperator || feature instanceof MultiplyOperator)
+      return "*";
+    if (feature instanceof DivideOperator)
+      return "/";
+    if (feature instanceof ModuloOperator)
+      return "%";
+    return null;
+  }
+
+  private static String toJavaString(String string) {
+    StringBuilder sb = new StringBuilder("\"");
+    for (int i = 0; i < string.length(); i++) {
+      char c = string.charAt(i);
+      if (c == '"' || c == '\\')
+        sb.append('\\').append(c);
+      else if (c < 0x20 || c > 0x7e)
+        sb.append(String.format("\\u%04x", (int) c));
+      else
+        sb.append(c);
+    }
+    sb.append('"');
+    return sb.toString();
+  }
+
+  private static final class DiagnosticLogger implements DiagnosticListener<JavaFileObject> {
+    @Override
+    public void report(Diagnostic<? extends JavaFileObject> diagnostic) {
+      String message = "Line " + diagnostic.getLineNumber() + ": " + diagnostic.getMessage(Locale.ENGLISH);
+      if (diagnostic.getKind() == Diagnostic.Kind.ERROR)
+        LOG.error(message);
+      else
+        LOG.debug(message);
+    }
+  }
+}
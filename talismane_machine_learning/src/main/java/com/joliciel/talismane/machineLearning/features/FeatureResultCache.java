@@ -0,0 +1,93 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.features;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+/**
+ * A cache of feature results for a single context, used by implementations of
+ * {@link HasFeatureCache}.<br/>
+ * <br/>
+ * Results checked in an empty runtime environment, by far the most common
+ * case, are keyed by the feature's integer id, so that a lookup allocates
+ * nothing. Results checked in a non-empty environment (inside a string
+ * collection cross-product) are keyed by the feature name and environment key,
+ * since the environment values form an open vocabulary which we don't want to
+ * intern globally.<br/>
+ * <br/>
+ * Not thread-safe, like the contexts which hold it.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+public final class FeatureResultCache {
+  private static final ConcurrentMap<String, Integer> featureIds = new ConcurrentHashMap<>();
+  private static final AtomicInteger nextFeatureId = new AtomicInteger();
+
+  private TIntObjectMap<FeatureResult<?>> results = null;
+  private Map<String, FeatureResult<?>> environmentResults = null;
+
+  /**
+   * Get the dense integer id for a given feature name, assigning a new one if
+   * this name hasn't been seen yet. The same name always gets the same id.
+   */
+  public static int getFeatureId(String featureName) {
+    Integer id = featureIds.get(featureName);
+    if (id == null)
+      id = featureIds.computeIfAbsent(featureName, name -> nextFeatureId.getAndIncrement());
+    return id;
+  }
+
+  /**
+   * Get a feature result from the cache, or null if it's not there.
+   */
+  @SuppressWarnings("unchecked")
+  public <T, Y> FeatureResult<Y> get(Feature<T, Y> feature, RuntimeEnvironment env) {
+    if (env.isEmpty()) {
+      if (results == null)
+        return null;
+      return (FeatureResult<Y>) results.get(feature.getId());
+    }
+    if (environmentResults == null)
+      return null;
+    return (FeatureResult<Y>) environmentResults.get(feature.getName() + env.getKey());
+  }
+
+  /**
+   * Place a feature result in the cache.
+   */
+  public <T, Y> void put(Feature<T, Y> feature, FeatureResult<Y> featureResult, RuntimeEnvironment env) {
+    if (env.isEmpty()) {
+      if (results == null)
+        results = new TIntObjectHashMap<>();
+      results.put(feature.getId(), featureResult);
+    } else {
+      if (environmentResults == null)
+        environmentResults = new HashMap<>();
+      environmentResults.put(feature.getName() + env.getKey(), featureResult);
+    }
+  }
+}
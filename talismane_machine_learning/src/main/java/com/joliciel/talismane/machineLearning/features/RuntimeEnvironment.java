@@ -41,6 +41,23 @@ public class RuntimeEnvironment {
     key = null;
   }
 
+  /**
+   * Remove all variables from this environment, so that it can be reused for
+   * checking another top-level feature.
+   */
+  public void clear() {
+    if (!variableMap.isEmpty())
+      variableMap.clear();
+    key = null;
+  }
+
+  /**
+   * Whether any variables have been set in this environment.
+   */
+  public boolean isEmpty() {
+    return variableMap.isEmpty();
+  }
+
   /**
    * A key uniquely describing this environment.
    */
@@ -28,37 +28,58 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.talismane.machineLearning.ClassificationSolution;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
+import com.joliciel.talismane.machineLearning.FeatureVector;
 import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
 import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 
 import de.bwaldvogel.liblinear.Feature;
 import de.bwaldvogel.liblinear.Linear;
 import de.bwaldvogel.liblinear.Model;
-import gnu.trove.map.TObjectIntMap;
 
 class LinearSVMDecisionMaker implements DecisionMaker {
   private static final Logger LOG = LoggerFactory.getLogger(LinearSVMDecisionMaker.class);
 
   private Model model;
-  TObjectIntMap<String> featureIndexMap = null;
+  private MappedWeightMatrix mappedWeights;
+  private int classCount;
+  private int maxFeatureIndex;
+  FeatureIndex featureIndex = null;
   List<String> outcomes = null;
   private transient ScoringStrategy<ClassificationSolution> scoringStrategy = null;
 
-  public LinearSVMDecisionMaker(Model model, TObjectIntMap<String> featureIndexMap, List<String> outcomes) {
+  public LinearSVMDecisionMaker(Model model, FeatureIndex featureIndex, List<String> outcomes) {
     super();
     this.model = model;
-    this.featureIndexMap = featureIndexMap;
+    this.classCount = model.getNrClass();
+    this.featureIndex = featureIndex;
+    this.outcomes = outcomes;
+  }
+
+  /**
+   * A decision maker for a logistic regression model whose weights are read
+   * from a mapped matrix, as written for a liblinear model with the class
+   * count, feature count and bias provided.
+   */
+  public LinearSVMDecisionMaker(MappedWeightMatrix mappedWeights, int classCount, int featureCount, double bias, FeatureIndex featureIndex,
+      List<String> outcomes) {
+    super();
+    this.mappedWeights = mappedWeights;
+    this.classCount = classCount;
+    this.maxFeatureIndex = bias >= 0 ? featureCount + 1 : featureCount;
+    this.featureIndex = featureIndex;
     this.outcomes = outcomes;
   }
 
   @Override
   public List<Decision> decide(List<FeatureResult<?>> featureResults) {
-    List<Feature> featureList = LinearSVMUtils.prepareData(featureResults, featureIndexMap);
+    FeatureVector featureVector = featureIndex.getFeatureVector(featureResults);
 
     List<Decision> decisions = null;
 
-    if (featureList.size() == 0) {
+    if (featureVector.size() == 0) {
       LOG.info("No features for current context.");
       TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
       double uniformProb = 1 / outcomes.size();
@@ -68,14 +89,16 @@ class LinearSVMDecisionMaker implements DecisionMaker {
       }
       decisions = new ArrayList<Decision>(outcomeSet);
     } else {
-      Feature[] instance = new Feature[1];
-      instance = featureList.toArray(instance);
-
-      double[] probabilities = new double[model.getLabels().length];
-      Linear.predictProbability(model, instance, probabilities);
+      double[] probabilities = new double[classCount];
+      if (mappedWeights != null) {
+        this.predictProbability(featureVector, probabilities);
+      } else {
+        Feature[] instance = LinearSVMUtils.prepareData(featureVector);
+        Linear.predictProbability(model, instance, probabilities);
+      }
 
       TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
-      for (int i = 0; i < model.getLabels().length; i++) {
+      for (int i = 0; i < classCount; i++) {
         Decision decision = new Decision(outcomes.get(i), probabilities[i]);
         outcomeSet.add(decision);
       }
@@ -86,6 +109,35 @@ class LinearSVMDecisionMaker implements DecisionMaker {
 
   }
 
+  /**
+   * Calculate the probability of each class from the mapped weights, exactly
+   * as liblinear's Linear.predictProbability would for logistic regression.
+   */
+  private void predictProbability(FeatureVector featureVector, double[] probabilities) {
+    int weightVectorCount = classCount == 2 ? 1 : classCount;
+    double[] decisionValues = new double[weightVectorCount];
+    for (int i = 0; i < featureVector.size(); i++) {
+      int index = featureVector.getIndex(i);
+      // the dimension of testing data may exceed that of training
+      if (index <= maxFeatureIndex)
+        mappedWeights.addRow(decisionValues, index - 1, featureVector.getValue(i));
+    }
+
+    for (int i = 0; i < weightVectorCount; i++)
+      probabilities[i] = 1 / (1 + Math.exp(-decisionValues[i]));
+
+    if (classCount == 2) {
+      probabilities[1] = 1. - probabilities[0];
+    } else {
+      double sum = 0;
+      for (int i = 0; i < classCount; i++)
+        sum += probabilities[i];
+
+      for (int i = 0; i < classCount; i++)
+        probabilities[i] = probabilities[i] / sum;
+    }
+  }
+
   @Override
   public ScoringStrategy<ClassificationSolution> getDefaultScoringStrategy() {
     if (scoringStrategy == null)
@@ -18,7 +18,9 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.machineLearning.linearsvm;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -31,6 +33,7 @@ import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.List;
 import java.util.Map;
+import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.zip.ZipEntry;
@@ -43,7 +46,10 @@ import com.joliciel.talismane.machineLearning.AbstractMachineLearningModel;
 import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
 import com.joliciel.talismane.machineLearning.MachineLearningAlgorithm;
+import com.joliciel.talismane.machineLearning.MappedStringTable;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
 import com.joliciel.talismane.utils.JolicielException;
 import com.joliciel.talismane.utils.LogUtils;
 import com.joliciel.talismane.utils.io.UnclosableWriter;
@@ -59,6 +65,12 @@ public class LinearSVMModel extends AbstractMachineLearningModel implements Clas
   private TObjectIntMap<String> featureIndexMap = null;
   private List<String> outcomes = null;
   private transient Set<String> outcomeNames = null;
+  private transient FeatureIndex featureIndex = null;
+  private MappedStringTable mappedFeatureNames = null;
+  private MappedWeightMatrix mappedWeights = null;
+  private int classCount;
+  private int modelFeatureCount;
+  private double bias;
 
   /**
    * Default constructor for factory.
@@ -76,7 +88,9 @@ public class LinearSVMModel extends AbstractMachineLearningModel implements Clas
 
   @Override
   public DecisionMaker getDecisionMaker() {
-    LinearSVMDecisionMaker decisionMaker = new LinearSVMDecisionMaker(model, this.featureIndexMap, this.outcomes);
+    if (mappedWeights != null)
+      return new LinearSVMDecisionMaker(mappedWeights, classCount, modelFeatureCount, bias, this.getFeatureIndex(), this.outcomes);
+    LinearSVMDecisionMaker decisionMaker = new LinearSVMDecisionMaker(model, this.getFeatureIndex(), this.outcomes);
     return decisionMaker;
   }
 
@@ -121,6 +135,17 @@ public class LinearSVMModel extends AbstractMachineLearningModel implements Clas
 
   public void setFeatureIndexMap(TObjectIntMap<String> featureIndexMap) {
     this.featureIndexMap = featureIndexMap;
+    this.featureIndex = null;
+  }
+
+  private synchronized FeatureIndex getFeatureIndex() {
+    if (featureIndex == null) {
+      if (mappedFeatureNames != null)
+        featureIndex = new FeatureIndex(mappedFeatureNames);
+      else
+        featureIndex = new FeatureIndex(featureIndexMap);
+    }
+    return featureIndex;
   }
 
   /**
@@ -135,6 +160,57 @@ public class LinearSVMModel extends AbstractMachineLearningModel implements Clas
     this.outcomes = outcomes;
   }
 
+  /**
+   * Only logistic regression models can be written in the mapped layout.
+   */
+  @Override
+  protected void checkMappedSupported() {
+    if (!model.isProbabilityModel())
+      throw new JolicielException("Only logistic regression models are supported for the mapped layout.");
+  }
+
+  /**
+   * Writes the liblinear model's header to model.txt, in the format of
+   * liblinear's own model files, and its weights to weights.bin, with one row per feature and one
+   * column per weight vector.
+   */
+  @Override
+  protected void writeMappedData(File directory) throws IOException {
+    this.writeMappedOutcomes(directory, outcomes);
+    MappedStringTable.write(new File(directory, "features.bin"), featureIndexMap);
+    int weightVectorCount = model.getNrClass() == 2 ? 1 : model.getNrClass();
+    MappedWeightMatrix.write(new File(directory, "weights.bin"), model.getFeatureWeights(), weightVectorCount);
+
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(directory, "model.txt"), false), "UTF-8"))) {
+      writer.write("nr_class " + model.getNrClass() + "\n");
+      writer.write("label");
+      for (int label : model.getLabels())
+        writer.write(" " + label);
+      writer.write("\n");
+      writer.write("nr_feature " + model.getNrFeature() + "\n");
+      writer.write("bias " + model.getBias() + "\n");
+    }
+  }
+
+  @Override
+  protected void loadMappedData(File directory) throws IOException {
+    outcomes = this.readMappedOutcomes(directory);
+    mappedFeatureNames = new MappedStringTable(new File(directory, "features.bin"));
+    mappedWeights = new MappedWeightMatrix(new File(directory, "weights.bin"));
+    try (Scanner scanner = new Scanner(new File(directory, "model.txt"), "UTF-8")) {
+      while (scanner.hasNextLine()) {
+        String[] parts = scanner.nextLine().split(" ");
+        if (parts[0].equals("nr_class")) {
+          classCount = Integer.parseInt(parts[1]);
+        } else if (parts[0].equals("nr_feature")) {
+          modelFeatureCount = Integer.parseInt(parts[1]);
+        } else if (parts[0].equals("bias")) {
+          bias = Double.parseDouble(parts[1]);
+        }
+      }
+    }
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   protected boolean loadDataFromStream(InputStream inputStream, ZipEntry zipEntry) throws IOException, ClassNotFoundException {
@@ -25,6 +25,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,6 +104,7 @@ public class LinearSVMModelTrainer implements ClassificationMultiModelTrainer {
   private LinearSVMSolverType solverType;
   private boolean oneVsRest;
   private boolean balanceEventCounts;
+  private int threads = 1;
   private File outDir = null;
   private List<Map<String, Object>> parameterSets;
   private Config config;
@@ -229,87 +234,35 @@ public class LinearSVMModelTrainer implements ClassificationMultiModelTrainer {
 
       linearSVMModel.getModelAttributes().putAll(corpusEventStream.getAttributes());
       // build one 1-vs-All model per outcome
+      // the feature matrix is shared read-only by all of the outcomes, so
+      // that they can be trained concurrently
+      final int[] eventOutcomes = outcomeList.toArray();
+      final int featureCount = countingInfo.currentFeatureIndex;
+      List<Callable<Model>> tasks = new ArrayList<Callable<Model>>(atomicOutcomes.size());
       for (int j = 0; j < atomicOutcomes.size(); j++) {
-        String outcome = atomicOutcomes.get(j);
-        LOG.info("Building model for outcome: " + outcome);
-
-        // create an outcome array with 1 for the current outcome
-        // and 0 for all others
-        double[] outcomeArray = new double[countingInfo.numEvents];
-        int i = 0;
-        TIntIterator outcomeIterator = outcomeList.iterator();
-        int myOutcomeCount = 0;
-        while (outcomeIterator.hasNext()) {
-          boolean isMyOutcome = false;
-          int originalOutcomeIndex = outcomeIterator.next();
-          if (multiClassOutcomes.contains(originalOutcomeIndex)) {
-            if (outcomeComponentMap.get(originalOutcomeIndex).contains(j))
-              isMyOutcome = true;
-          } else {
-            if (oldIndexNewIndexMap.get(originalOutcomeIndex) == j)
-              isMyOutcome = true;
+        final int outcomeIndex = j;
+        tasks.add(() -> this.trainOneVsRestModel(outcomeIndex, atomicOutcomes.get(outcomeIndex), eventOutcomes, multiClassOutcomes, outcomeComponentMap,
+            oldIndexNewIndexMap, featureMatrix, featureCount, solver));
+      }
+
+      try {
+        if (threads > 1) {
+          ExecutorService executor = Executors.newFixedThreadPool(threads);
+          try {
+            // futures are returned in task order, so that the model order
+            // does not depend on which outcome finishes first
+            for (Future<Model> future : executor.invokeAll(tasks))
+              linearSVMModel.addModel(future.get());
+          } finally {
+            executor.shutdown();
           }
-          int myOutcome = (isMyOutcome ? 1 : 0);
-          if (myOutcome == 1)
-            myOutcomeCount++;
-          outcomeArray[i++] = myOutcome;
+        } else {
+          for (Callable<Model> task : tasks)
+            linearSVMModel.addModel(task.call());
         }
-
-        LOG.debug("Found " + myOutcomeCount + " out of " + countingInfo.numEvents + " outcomes of type: " + outcome);
-
-        double[] myOutcomeArray = outcomeArray;
-        Feature[][] myFeatureMatrix = featureMatrix;
-        if (balanceEventCounts) {
-          // we start with the truncated proportion of false
-          // events to true events
-          // we want these approximately balanced
-          // we only balance up, never balance down
-          int otherCount = countingInfo.numEvents - myOutcomeCount;
-          int proportion = otherCount / myOutcomeCount;
-          if (proportion > 1) {
-            LOG.debug("Balancing events for " + outcome + " by " + proportion);
-            int newSize = otherCount + myOutcomeCount * proportion;
-            myOutcomeArray = new double[newSize];
-            myFeatureMatrix = new Feature[newSize][];
-            int l = 0;
-            for (int k = 0; k < outcomeArray.length; k++) {
-              double myOutcome = outcomeArray[k];
-              Feature[] myFeatures = featureMatrix[k];
-              if (myOutcome == 0) {
-                myOutcomeArray[l] = myOutcome;
-                myFeatureMatrix[l] = myFeatures;
-                l++;
-              } else {
-                for (int m = 0; m < proportion; m++) {
-                  myOutcomeArray[l] = myOutcome;
-                  myFeatureMatrix[l] = myFeatures;
-                  l++;
-                }
-              } // is it the right outcome or not?
-            } // next outcome in original array
-          } // requires balancing?
-        } // balance event counts?
-
-        Problem problem = new Problem();
-
-        // problem.l = ... // number of training examples
-        // problem.n = ... // number of features
-        // problem.x = ... // feature nodes - note: must be ordered
-        // by index
-        // problem.y = ... // target values
-
-        problem.l = countingInfo.numEvents; // number of training
-        // examples
-        problem.n = countingInfo.currentFeatureIndex; // number of
-        // features
-        problem.x = myFeatureMatrix; // feature nodes - note: must
-        // be ordered by index
-        problem.y = myOutcomeArray; // target values
-
-        Parameter parameter = new Parameter(solver, this.constraintViolationCost, this.epsilon);
-        Model model = Linear.train(problem, parameter);
-
-        linearSVMModel.addModel(model);
+      } catch (Exception e) {
+        LOG.error(e.getMessage(), e);
+        throw new RuntimeException(e);
       }
 
       return linearSVMModel;
@@ -356,6 +309,71 @@ public class LinearSVMModelTrainer implements ClassificationMultiModelTrainer {
     }
   }
 
+  /**
+   * Train a single one vs. rest model for a given atomic outcome.
+   */
+  private Model trainOneVsRestModel(int outcomeIndex, String outcome, int[] eventOutcomes, TIntSet multiClassOutcomes,
+      TIntObjectMap<TIntSet> outcomeComponentMap, TIntIntMap oldIndexNewIndexMap, Feature[][] featureMatrix, int featureCount, SolverType solver) {
+    LOG.info("Building model for outcome: " + outcome);
+
+    // create an outcome array with 1 for the current outcome
+    // and 0 for all others
+    double[] outcomeArray = new double[eventOutcomes.length];
+    int myOutcomeCount = 0;
+    for (int i = 0; i < eventOutcomes.length; i++) {
+      boolean isMyOutcome = false;
+      int originalOutcomeIndex = eventOutcomes[i];
+      if (multiClassOutcomes.contains(originalOutcomeIndex)) {
+        if (outcomeComponentMap.get(originalOutcomeIndex).contains(outcomeIndex))
+          isMyOutcome = true;
+      } else {
+        if (oldIndexNewIndexMap.get(originalOutcomeIndex) == outcomeIndex)
+          isMyOutcome = true;
+      }
+      int myOutcome = (isMyOutcome ? 1 : 0);
+      if (myOutcome == 1)
+        myOutcomeCount++;
+      outcomeArray[i] = myOutcome;
+    }
+
+    LOG.debug("Found " + myOutcomeCount + " out of " + eventOutcomes.length + " outcomes of type: " + outcome);
+
+    Parameter parameter = new Parameter(solver, this.constraintViolationCost, this.epsilon);
+
+    if (balanceEventCounts) {
+      // we start with the truncated proportion of false
+      // events to true events
+      // we want these approximately balanced
+      // we only balance up, never balance down
+      int otherCount = eventOutcomes.length - myOutcomeCount;
+      int proportion = otherCount / myOutcomeCount;
+      if (proportion > 1) {
+        LOG.debug("Balancing events for " + outcome + " by " + proportion);
+        // rather than repeating each event for the current outcome
+        // proportion times, we multiply the cost of violating it by
+        // proportion, which gives the solver the same objective without
+        // copying the feature matrix
+        parameter.setWeights(new double[] { proportion }, new int[] { 1 });
+      } // requires balancing?
+    } // balance event counts?
+
+    Problem problem = new Problem();
+
+    // problem.l = ... // number of training examples
+    // problem.n = ... // number of features
+    // problem.x = ... // feature nodes - note: must be ordered
+    // by index
+    // problem.y = ... // target values
+
+    problem.l = eventOutcomes.length; // number of training examples
+    problem.n = featureCount; // number of features
+    problem.x = featureMatrix; // feature nodes - note: must
+    // be ordered by index
+    problem.y = outcomeArray; // target values
+
+    return Linear.train(problem, parameter);
+  }
+
   private Feature[][] getFeatureMatrix(ClassificationEventStream corpusEventStream, TObjectIntMap<String> featureIndexMap,
       TObjectIntMap<String> outcomeIndexMap, TIntList outcomeList, TIntIntMap featureCountMap, CountingInfo countingInfo) {
     try {
@@ -531,6 +549,18 @@ public class LinearSVMModelTrainer implements ClassificationMultiModelTrainer {
     this.balanceEventCounts = balanceEventCounts;
   }
 
+  /**
+   * If one vs. rest is used, the number of threads among which to divide the
+   * outcomes during training.
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
   @Override
   public void setParameters(Config config) {
     this.config = config;
@@ -542,6 +572,7 @@ public class LinearSVMModelTrainer implements ClassificationMultiModelTrainer {
     this.setEpsilon(linearSVMConfig.getDouble("epsilon"));
     this.setBalanceEventCounts(linearSVMConfig.getBoolean("balance-event-counts"));
     this.setOneVsRest(linearSVMConfig.getBoolean("one-vs-rest"));
+    this.setThreads(linearSVMConfig.getInt("threads"));
   }
 
   @Override
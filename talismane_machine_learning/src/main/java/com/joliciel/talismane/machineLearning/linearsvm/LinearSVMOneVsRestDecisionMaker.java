@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import com.joliciel.talismane.machineLearning.ClassificationSolution;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
 import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
 import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
@@ -35,30 +36,29 @@ import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import de.bwaldvogel.liblinear.Feature;
 import de.bwaldvogel.liblinear.Linear;
 import de.bwaldvogel.liblinear.Model;
-import gnu.trove.map.TObjectIntMap;
 
 class LinearSVMOneVsRestDecisionMaker implements DecisionMaker {
   private static final Logger LOG = LoggerFactory.getLogger(LinearSVMOneVsRestDecisionMaker.class);
 
   private List<Model> models;
-  private TObjectIntMap<String> featureIndexMap = null;
+  private FeatureIndex featureIndex = null;
   private List<String> outcomes = null;
   private transient ScoringStrategy<ClassificationSolution> scoringStrategy = null;
 
-  public LinearSVMOneVsRestDecisionMaker(List<Model> models, TObjectIntMap<String> featureIndexMap, List<String> outcomes) {
+  public LinearSVMOneVsRestDecisionMaker(List<Model> models, FeatureIndex featureIndex, List<String> outcomes) {
     super();
     this.models = models;
-    this.featureIndexMap = featureIndexMap;
+    this.featureIndex = featureIndex;
     this.outcomes = outcomes;
   }
 
   @Override
   public List<Decision> decide(List<FeatureResult<?>> featureResults) {
-    List<Feature> featureList = LinearSVMUtils.prepareData(featureResults, featureIndexMap);
+    Feature[] instance = LinearSVMUtils.prepareData(featureIndex.getFeatureVector(featureResults));
 
     List<Decision> decisions = null;
 
-    if (featureList.size() == 0) {
+    if (instance.length == 0) {
       LOG.info("No features for current context.");
       TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
       double uniformProb = 1 / outcomes.size();
@@ -68,9 +68,6 @@ class LinearSVMOneVsRestDecisionMaker implements DecisionMaker {
       }
       decisions = new ArrayList<Decision>(outcomeSet);
     } else {
-      Feature[] instance = new Feature[1];
-      instance = featureList.toArray(instance);
-
       TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
 
       int i = 0;
@@ -45,6 +45,7 @@ import com.joliciel.talismane.machineLearning.AbstractMachineLearningModel;
 import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
 import com.joliciel.talismane.machineLearning.MachineLearningAlgorithm;
 import com.joliciel.talismane.utils.JolicielException;
 import com.joliciel.talismane.utils.io.UnclosableWriter;
@@ -60,6 +61,7 @@ public class LinearSVMOneVsRestModel extends AbstractMachineLearningModel implem
   private TObjectIntMap<String> featureIndexMap = null;
   private List<String> outcomes = null;
   private transient Set<String> outcomeNames = null;
+  private transient FeatureIndex featureIndex = null;
 
   /**
    * Default constructor for factory.
@@ -80,7 +82,7 @@ public class LinearSVMOneVsRestModel extends AbstractMachineLearningModel implem
 
   @Override
   public DecisionMaker getDecisionMaker() {
-    LinearSVMOneVsRestDecisionMaker decisionMaker = new LinearSVMOneVsRestDecisionMaker(models, this.featureIndexMap, this.outcomes);
+    LinearSVMOneVsRestDecisionMaker decisionMaker = new LinearSVMOneVsRestDecisionMaker(models, this.getFeatureIndex(), this.outcomes);
     return decisionMaker;
   }
 
@@ -135,6 +137,13 @@ public class LinearSVMOneVsRestModel extends AbstractMachineLearningModel implem
 
   public void setFeatureIndexMap(TObjectIntMap<String> featureIndexMap) {
     this.featureIndexMap = featureIndexMap;
+    this.featureIndex = null;
+  }
+
+  private synchronized FeatureIndex getFeatureIndex() {
+    if (featureIndex == null)
+      featureIndex = new FeatureIndex(featureIndexMap);
+    return featureIndex;
   }
 
   /**
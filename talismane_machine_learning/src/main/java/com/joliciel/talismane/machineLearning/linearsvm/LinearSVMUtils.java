@@ -23,6 +23,7 @@ import gnu.trove.map.TObjectIntMap;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.joliciel.talismane.machineLearning.FeatureVector;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.utils.WeightedOutcome;
 
@@ -30,6 +31,18 @@ import de.bwaldvogel.liblinear.Feature;
 import de.bwaldvogel.liblinear.FeatureNode;
 
 class LinearSVMUtils {
+  /**
+   * Convert a feature vector into liblinear features, in the same order.
+   */
+  public static Feature[] prepareData(FeatureVector featureVector) {
+    Feature[] features = new Feature[featureVector.size()];
+    int[] indexes = featureVector.getIndexes();
+    double[] values = featureVector.getValues();
+    for (int i = 0; i < features.length; i++)
+      features[i] = new FeatureNode(indexes[i], values[i]);
+    return features;
+  }
+
   public static List<Feature> prepareData(List<FeatureResult<?>> featureResults, TObjectIntMap<String> featureIndexMap) {
     List<Feature> featureList = new ArrayList<Feature>(featureResults.size());
     for (FeatureResult<?> featureResult : featureResults) {
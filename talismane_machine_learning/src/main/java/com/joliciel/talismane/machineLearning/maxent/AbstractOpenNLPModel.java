@@ -18,10 +18,17 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.machineLearning.maxent;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Scanner;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.zip.ZipEntry;
@@ -32,8 +39,17 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.talismane.machineLearning.AbstractMachineLearningModel;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
+import com.joliciel.talismane.machineLearning.MappedStringTable;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
+import com.joliciel.talismane.utils.JolicielException;
 import com.typesafe.config.Config;
 
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import opennlp.maxent.GISModel;
+import opennlp.model.Context;
+import opennlp.model.IndexHashTable;
 import opennlp.model.MaxentModel;
 
 /**
@@ -51,6 +67,13 @@ abstract class AbstractOpenNLPModel extends AbstractMachineLearningModel impleme
 
   private MaxentModel model;
   private transient Set<String> outcomeNames = null;
+  private transient FeatureIndex featureIndex = null;
+  private List<String> mappedOutcomes = null;
+  private MappedStringTable mappedFeatureNames = null;
+  private MappedWeightMatrix mappedWeights = null;
+  private MappedWeightMatrix mappedActiveOutcomes = null;
+  private double correctionConstant;
+  private double correctionParam;
 
   /**
    * Default constructor for factory.
@@ -68,10 +91,16 @@ abstract class AbstractOpenNLPModel extends AbstractMachineLearningModel impleme
 
   @Override
   public DecisionMaker getDecisionMaker() {
-    OpenNLPDecisionMaker decisionMaker = new OpenNLPDecisionMaker(this.getModel());
+    if (mappedWeights != null)
+      return new OpenNLPDecisionMaker(mappedOutcomes, this.getFeatureIndex(), mappedWeights, mappedActiveOutcomes, correctionConstant, correctionParam);
+    OpenNLPDecisionMaker decisionMaker = new OpenNLPDecisionMaker(this.getModel(), this.getFeatureIndex());
     return decisionMaker;
   }
 
+  /**
+   * The underlying model, or null if this model was loaded from the mapped
+   * layout.
+   */
   @Override
   public MaxentModel getModel() {
     return model;
@@ -79,6 +108,22 @@ abstract class AbstractOpenNLPModel extends AbstractMachineLearningModel impleme
 
   public void setModel(MaxentModel model) {
     this.model = model;
+    this.featureIndex = null;
+  }
+
+  /**
+   * An integer index over the model's predicates, or null if the underlying
+   * model is not a GIS model, in which case contexts are evaluated by name.
+   */
+  private synchronized FeatureIndex getFeatureIndex() {
+    if (featureIndex == null && mappedFeatureNames != null) {
+      featureIndex = new FeatureIndex(mappedFeatureNames);
+    } else if (featureIndex == null && model instanceof GISModel) {
+      @SuppressWarnings("unchecked")
+      IndexHashTable<String> pmap = (IndexHashTable<String>) ((GISModel) model).getDataStructures()[1];
+      featureIndex = new FeatureIndex(pmap.toArray(new String[pmap.size()]));
+    }
+    return featureIndex;
   }
 
   @Override
@@ -93,7 +138,9 @@ abstract class AbstractOpenNLPModel extends AbstractMachineLearningModel impleme
 
   @Override
   public Set<String> getOutcomeNames() {
-    if (outcomeNames == null) {
+    if (outcomeNames == null && mappedOutcomes != null) {
+      outcomeNames = new TreeSet<String>(mappedOutcomes);
+    } else if (outcomeNames == null) {
       outcomeNames = new TreeSet<String>();
       for (int i = 0; i < this.model.getNumOutcomes(); i++) {
         outcomeNames.add(this.model.getOutcome(i));
@@ -106,4 +153,90 @@ abstract class AbstractOpenNLPModel extends AbstractMachineLearningModel impleme
   protected void persistOtherEntries(ZipOutputStream zos) throws IOException {
   }
 
+  /**
+   * Only GIS models can be written in the mapped layout.
+   */
+  @Override
+  protected void checkMappedSupported() {
+    if (!(model instanceof GISModel))
+      throw new JolicielException("Only GIS models are supported for the mapped layout.");
+  }
+
+  /**
+   * The predicate parameters are written to weights.bin as a dense matrix with
+   * one row per predicate and one column per outcome, and the GIS correction
+   * constant and parameter to model.txt. If the correction parameter is not 0,
+   * the evaluation depends on which outcomes are active for each predicate, and
+   * these are written to active.bin as a matrix of the same shape containing 1
+   * for each active outcome.
+   */
+  @Override
+  protected void writeMappedData(File directory) throws IOException {
+    Object[] dataStructures = ((GISModel) model).getDataStructures();
+    Context[] params = (Context[]) dataStructures[0];
+    @SuppressWarnings("unchecked")
+    IndexHashTable<String> pmap = (IndexHashTable<String>) dataStructures[1];
+    int modelCorrectionConstant = (Integer) dataStructures[3];
+    double modelCorrectionParam = (Double) dataStructures[4];
+    int outcomeCount = model.getNumOutcomes();
+
+    List<String> outcomes = new ArrayList<String>(outcomeCount);
+    for (int i = 0; i < outcomeCount; i++)
+      outcomes.add(model.getOutcome(i));
+    this.writeMappedOutcomes(directory, outcomes);
+
+    String[] predicates = pmap.toArray(new String[pmap.size()]);
+    TObjectIntMap<String> predicateIndexMap = new TObjectIntHashMap<String>(predicates.length, 0.7f, -1);
+    for (int i = 0; i < predicates.length; i++)
+      predicateIndexMap.put(predicates[i], i);
+    MappedStringTable.write(new File(directory, "features.bin"), predicateIndexMap);
+
+    double[][] weights = new double[params.length][outcomeCount];
+    double[][] activeOutcomes = modelCorrectionParam != 0 ? new double[params.length][outcomeCount] : null;
+    for (int i = 0; i < params.length; i++) {
+      int[] contextOutcomes = params[i].getOutcomes();
+      double[] contextParameters = params[i].getParameters();
+      for (int j = 0; j < contextOutcomes.length; j++) {
+        weights[i][contextOutcomes[j]] = contextParameters[j];
+        if (activeOutcomes != null)
+          activeOutcomes[i][contextOutcomes[j]] = 1;
+      }
+    }
+    MappedWeightMatrix.write(new File(directory, "weights.bin"), weights, outcomeCount);
+    if (activeOutcomes != null)
+      MappedWeightMatrix.write(new File(directory, "active.bin"), activeOutcomes, outcomeCount);
+
+    try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(directory, "model.txt"), false), "UTF-8"))) {
+      writer.write("correction_constant " + modelCorrectionConstant + "\n");
+      writer.write("correction_param " + modelCorrectionParam + "\n");
+    }
+  }
+
+  @Override
+  protected void loadMappedData(File directory) throws IOException {
+    mappedOutcomes = this.readMappedOutcomes(directory);
+    mappedFeatureNames = new MappedStringTable(new File(directory, "features.bin"));
+    mappedWeights = new MappedWeightMatrix(new File(directory, "weights.bin"));
+    File activeFile = new File(directory, "active.bin");
+    if (activeFile.exists())
+      mappedActiveOutcomes = new MappedWeightMatrix(activeFile);
+    try (Scanner scanner = new Scanner(new File(directory, "model.txt"), "UTF-8")) {
+      while (scanner.hasNextLine()) {
+        String[] parts = scanner.nextLine().split(" ");
+        if (parts[0].equals("correction_constant")) {
+          correctionConstant = Integer.parseInt(parts[1]);
+        } else if (parts[0].equals("correction_param")) {
+          correctionParam = Double.parseDouble(parts[1]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Whether this model was loaded from the mapped layout.
+   */
+  protected boolean isMapped() {
+    return mappedWeights != null;
+  }
+
 }
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.MachineLearningAlgorithm;
+import com.joliciel.talismane.utils.JolicielException;
 import com.typesafe.config.Config;
 
 import opennlp.model.MaxentModel;
@@ -67,6 +68,8 @@ public class MaximumEntropyModel extends AbstractOpenNLPModel {
 
   @Override
   public ClassificationObserver getDetailedAnalysisObserver(File file) throws IOException {
+    if (this.isMapped())
+      throw new JolicielException("No detailed analysis observer currently available for mapped maxent models.");
     MaxentDetailedAnalysisWriter observer = new MaxentDetailedAnalysisWriter(this.getModel(), file);
     return observer;
   }
@@ -19,30 +19,151 @@
 package com.joliciel.talismane.machineLearning.maxent;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.TreeSet;
 
 import com.joliciel.talismane.machineLearning.ClassificationSolution;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
+import com.joliciel.talismane.machineLearning.FeatureVector;
 import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
 import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.utils.WeightedOutcome;
 
+import opennlp.maxent.GISModel;
+import opennlp.model.Context;
+import opennlp.model.EvalParameters;
 import opennlp.model.MaxentModel;
 
 class OpenNLPDecisionMaker implements DecisionMaker {
   private MaxentModel model;
+  private FeatureIndex featureIndex;
+  private EvalParameters evalParameters;
+  private List<String> mappedOutcomes;
+  private MappedWeightMatrix mappedWeights;
+  private MappedWeightMatrix mappedActiveOutcomes;
+  private double correctionConstant;
+  private double correctionParam;
   private transient ScoringStrategy<ClassificationSolution> scoringStrategy = null;
 
   public OpenNLPDecisionMaker(MaxentModel model) {
+    this(model, null);
+  }
+
+  /**
+   * If a feature index is provided for a GIS model, contexts are evaluated
+   * directly by predicate index rather than by predicate name.
+   */
+  public OpenNLPDecisionMaker(MaxentModel model, FeatureIndex featureIndex) {
     super();
     this.model = model;
+    if (featureIndex != null && model instanceof GISModel) {
+      this.featureIndex = featureIndex;
+      Object[] dataStructures = ((GISModel) model).getDataStructures();
+      Context[] params = (Context[]) dataStructures[0];
+      int correctionConstant = (Integer) dataStructures[3];
+      double correctionParam = (Double) dataStructures[4];
+      this.evalParameters = new EvalParameters(params, correctionParam, correctionConstant, model.getNumOutcomes());
+    }
+  }
+
+  /**
+   * A decision maker for a GIS model in the mapped layout, whose parameters
+   * are read from a dense predicate x outcome matrix. If the correction
+   * parameter is not 0, a matrix of the same shape indicating the active
+   * outcomes for each predicate is required.
+   */
+  public OpenNLPDecisionMaker(List<String> outcomes, FeatureIndex featureIndex, MappedWeightMatrix weights, MappedWeightMatrix activeOutcomes,
+      double correctionConstant, double correctionParam) {
+    super();
+    this.mappedOutcomes = outcomes;
+    this.featureIndex = featureIndex;
+    this.mappedWeights = weights;
+    this.mappedActiveOutcomes = activeOutcomes;
+    this.correctionConstant = correctionConstant;
+    this.correctionParam = correctionParam;
   }
 
   @Override
   public List<Decision> decide(List<FeatureResult<?>> featureResults) {
+    double[] probs = null;
+    if (mappedWeights != null)
+      probs = this.evalMapped(featureResults);
+    else if (featureIndex != null)
+      probs = this.evalIndexed(featureResults);
+    else
+      probs = this.evalByName(featureResults);
+
+    String[] outcomes = new String[probs.length];
+    for (int i = 0; i < probs.length; i++)
+      outcomes[i] = mappedOutcomes != null ? mappedOutcomes.get(i) : model.getOutcome(i);
+
+    TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
+    for (int i = 0; i < probs.length; i++) {
+      Decision decision = new Decision(outcomes[i], probs[i]);
+      outcomeSet.add(decision);
+    }
+
+    List<Decision> decisions = new ArrayList<Decision>(outcomeSet);
+
+    return decisions;
+  }
+
+  private double[] evalIndexed(List<FeatureResult<?>> featureResults) {
+    FeatureVector vector = featureIndex.getFeatureVector(featureResults);
+    int[] contexts = new int[vector.size()];
+    float[] weights = new float[vector.size()];
+    for (int i = 0; i < contexts.length; i++) {
+      contexts[i] = vector.getIndex(i);
+      weights[i] = (float) vector.getValue(i);
+    }
+
+    // GIS models are always constructed with a uniform prior
+    int numOutcomes = evalParameters.getNumOutcomes();
+    double[] prior = new double[numOutcomes];
+    Arrays.fill(prior, Math.log(1.0 / numOutcomes));
+    return GISModel.eval(contexts, weights, prior, evalParameters);
+  }
+
+  /**
+   * Performs exactly the same calculations as
+   * {@link GISModel#eval(int[], float[], double[], EvalParameters)}, in the
+   * same order, so that the results are identical. Inactive outcomes have a
+   * parameter of 0, which doesn't change the sums.
+   */
+  private double[] evalMapped(List<FeatureResult<?>> featureResults) {
+    FeatureVector vector = featureIndex.getFeatureVector(featureResults);
+    int numOutcomes = mappedOutcomes.size();
+    double[] prior = new double[numOutcomes];
+    Arrays.fill(prior, Math.log(1.0 / numOutcomes));
+    double[] numfeats = new double[numOutcomes];
+    for (int i = 0; i < vector.size(); i++) {
+      double value = (float) vector.getValue(i);
+      mappedWeights.addRow(prior, vector.getIndex(i), value);
+      if (mappedActiveOutcomes != null)
+        mappedActiveOutcomes.addRow(numfeats, vector.getIndex(i), 1.0);
+    }
+
+    double constantInverse = 1.0 / correctionConstant;
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (correctionParam != 0)
+        prior[oid] = Math.exp(prior[oid] * constantInverse + ((1.0 - (numfeats[oid] / correctionConstant)) * correctionParam));
+      else
+        prior[oid] = Math.exp(prior[oid] * constantInverse);
+      normal += prior[oid];
+    }
+
+    for (int oid = 0; oid < numOutcomes; oid++)
+      prior[oid] /= normal;
+    return prior;
+  }
+
+  private double[] evalByName(List<FeatureResult<?>> featureResults) {
     List<String> contextList = new ArrayList<String>();
     List<Float> weightList = new ArrayList<Float>();
     OpenNLPDecisionMaker.prepareData(featureResults, contextList, weightList);
@@ -59,21 +180,7 @@ class OpenNLPDecisionMaker implements DecisionMaker {
       weights[i++] = weight;
     }
 
-    double[] probs = model.eval(contexts, weights);
-
-    String[] outcomes = new String[probs.length];
-    for (i = 0; i < probs.length; i++)
-      outcomes[i] = model.getOutcome(i);
-
-    TreeSet<Decision> outcomeSet = new TreeSet<Decision>();
-    for (i = 0; i < probs.length; i++) {
-      Decision decision = new Decision(outcomes[i], probs[i]);
-      outcomeSet.add(decision);
-    }
-
-    List<Decision> decisions = new ArrayList<Decision>(outcomeSet);
-
-    return decisions;
+    return model.eval(contexts, weights);
   }
 
   static void prepareData(List<FeatureResult<?>> featureResults, List<String> contextList, List<Float> weightList) {
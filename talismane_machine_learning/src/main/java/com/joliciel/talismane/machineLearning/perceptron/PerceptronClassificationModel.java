@@ -38,7 +38,11 @@ import com.joliciel.talismane.machineLearning.AbstractMachineLearningModel;
 import com.joliciel.talismane.machineLearning.ClassificationModel;
 import com.joliciel.talismane.machineLearning.ClassificationObserver;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
 import com.joliciel.talismane.machineLearning.MachineLearningAlgorithm;
+import com.joliciel.talismane.machineLearning.MappedStringTable;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
+import com.joliciel.talismane.utils.JolicielException;
 import com.typesafe.config.Config;
 
 public class PerceptronClassificationModel extends AbstractMachineLearningModel implements ClassificationModel {
@@ -47,6 +51,8 @@ public class PerceptronClassificationModel extends AbstractMachineLearningModel
   PerceptronModelParameters params = null;
   PerceptronDecisionMaker decisionMaker;
   private transient Set<String> outcomeNames = null;
+  private MappedStringTable mappedFeatureNames = null;
+  private MappedWeightMatrix mappedWeights = null;
 
   public PerceptronClassificationModel() {
   }
@@ -59,13 +65,18 @@ public class PerceptronClassificationModel extends AbstractMachineLearningModel
   @Override
   public DecisionMaker getDecisionMaker() {
     if (decisionMaker == null) {
-      decisionMaker = new PerceptronDecisionMaker(params, this.getPerceptronScoring());
+      if (mappedWeights != null)
+        decisionMaker = new PerceptronDecisionMaker(params, new FeatureIndex(mappedFeatureNames), mappedWeights, this.getPerceptronScoring());
+      else
+        decisionMaker = new PerceptronDecisionMaker(params, this.getPerceptronScoring());
     }
     return decisionMaker;
   }
 
   @Override
   public ClassificationObserver getDetailedAnalysisObserver(File file) throws IOException {
+    if (mappedWeights != null)
+      throw new JolicielException("No detailed analysis observer currently available for mapped perceptron models.");
     return new PerceptronDetailedAnalysisWriter(decisionMaker, file);
   }
 
@@ -87,6 +98,25 @@ public class PerceptronClassificationModel extends AbstractMachineLearningModel
     out.writeObject(params);
   }
 
+  @Override
+  protected void checkMappedSupported() {
+    // the perceptron's parameters can always be mapped
+  }
+
+  @Override
+  protected void writeMappedData(File directory) throws IOException {
+    this.writeMappedOutcomes(directory, params.getOutcomes());
+    MappedStringTable.write(new File(directory, "features.bin"), params.getFeatureIndexes());
+    MappedWeightMatrix.write(new File(directory, "weights.bin"), params.getFeatureWeights(), params.getOutcomeCount());
+  }
+
+  @Override
+  protected void loadMappedData(File directory) throws IOException {
+    mappedFeatureNames = new MappedStringTable(new File(directory, "features.bin"));
+    mappedWeights = new MappedWeightMatrix(new File(directory, "weights.bin"));
+    params = new PerceptronModelParameters(this.readMappedOutcomes(directory), mappedWeights.getRowCount());
+  }
+
   @Override
   public boolean loadDataFromStream(InputStream inputStream, ZipEntry zipEntry) {
     return false;
@@ -18,20 +18,17 @@
 //////////////////////////////////////////////////////////////////////////////
 package com.joliciel.talismane.machineLearning.perceptron;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -78,12 +75,15 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
   private double[][] totalFeatureWeights;
   private PerceptronModelParameters params;
   private File eventFile;
+  private File[] shardFiles;
+  private ExecutorService executor;
   private PerceptronDecisionMaker decisionMaker;
   private Map<String, List<String>> descriptors;
   private ClassificationEventStream corpusEventStream;
   private PerceptronModelTrainerObserver observer;
   private List<Integer> observationPoints;
   private boolean averageAtIntervals = false;
+  private int threads = 1;
 
   private Config config;
 
@@ -92,27 +92,26 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
 
   void prepareData(ClassificationEventStream eventStream) throws TalismaneException {
     try {
-      eventFile = File.createTempFile("events", "txt");
+      eventFile = File.createTempFile("events", "bin");
       eventFile.deleteOnExit();
-      Writer eventWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(eventFile), "UTF-8"));
-      while (eventStream.hasNext()) {
-        ClassificationEvent corpusEvent = eventStream.next();
-        PerceptronEvent event = new PerceptronEvent(corpusEvent, params);
-        event.write(eventWriter);
+      try (PerceptronEventWriter eventWriter = new PerceptronEventWriter(eventFile)) {
+        while (eventStream.hasNext()) {
+          ClassificationEvent corpusEvent = eventStream.next();
+          PerceptronEvent event = new PerceptronEvent(corpusEvent, params);
+          eventWriter.write(event);
+        }
       }
-      eventWriter.flush();
-      eventWriter.close();
 
       if (cutoff > 1) {
         params.initialiseCounts();
         File originalEventFile = eventFile;
-        try (Scanner scanner = new Scanner(new BufferedReader(new InputStreamReader(new FileInputStream(eventFile), "UTF-8")))) {
-
-          while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            PerceptronEvent event = new PerceptronEvent(line);
-            for (int featureIndex : event.getFeatureIndexes()) {
-              params.getFeatureCounts()[featureIndex]++;
+        PerceptronEvent event = new PerceptronEvent();
+        try (PerceptronEventReader eventReader = new PerceptronEventReader(eventFile)) {
+          while (eventReader.hasNext()) {
+            eventReader.next(event);
+            int[] featureIndexes = event.getFeatureIndexes();
+            for (int i = 0; i < event.getFeatureCount(); i++) {
+              params.getFeatureCounts()[featureIndexes[i]]++;
             }
           }
         }
@@ -134,20 +133,45 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
         PerceptronModelParameters cutoffParams = new PerceptronModelParameters();
         int[] newIndexes = cutoffParams.initialise(params, cutoff);
         decisionMaker = new PerceptronDecisionMaker(cutoffParams, this.scoring);
-        try (Scanner scanner = new Scanner(new BufferedReader(new InputStreamReader(new FileInputStream(eventFile), "UTF-8")))) {
-          eventFile = File.createTempFile("eventsCutoff", "txt");
-          eventFile.deleteOnExit();
-          try (Writer eventCutoffWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(eventFile), "UTF-8"))) {
-            while (scanner.hasNextLine()) {
-              String line = scanner.nextLine();
-              PerceptronEvent oldEvent = new PerceptronEvent(line);
-              PerceptronEvent newEvent = new PerceptronEvent(oldEvent, newIndexes);
-              newEvent.write(eventCutoffWriter);
+        eventFile = File.createTempFile("eventsCutoff", "bin");
+        eventFile.deleteOnExit();
+        try (PerceptronEventReader eventReader = new PerceptronEventReader(originalEventFile);
+            PerceptronEventWriter eventCutoffWriter = new PerceptronEventWriter(eventFile)) {
+          while (eventReader.hasNext()) {
+            eventReader.next(event);
+            event.reindex(newIndexes);
+            eventCutoffWriter.write(event);
+          }
+        }
+        params = cutoffParams;
+        originalEventFile.delete();
+      }
+
+      if (threads > 1) {
+        // distribute the events in round-robin fashion between the shards,
+        // so that the shards are identical from one run to the next
+        shardFiles = new File[threads];
+        PerceptronEventWriter[] shardWriters = new PerceptronEventWriter[threads];
+        try {
+          for (int i = 0; i < threads; i++) {
+            shardFiles[i] = File.createTempFile("eventsShard" + i + "_", "bin");
+            shardFiles[i].deleteOnExit();
+            shardWriters[i] = new PerceptronEventWriter(shardFiles[i]);
+          }
+          PerceptronEvent event = new PerceptronEvent();
+          int eventIndex = 0;
+          try (PerceptronEventReader eventReader = new PerceptronEventReader(eventFile)) {
+            while (eventReader.hasNext()) {
+              eventReader.next(event);
+              shardWriters[eventIndex % threads].write(event);
+              eventIndex++;
             }
-            eventCutoffWriter.flush();
           }
-          params = cutoffParams;
-          originalEventFile.delete();
+        } finally {
+          for (PerceptronEventWriter shardWriter : shardWriters) {
+            if (shardWriter != null)
+              shardWriter.close();
+          }
         }
       }
 
@@ -166,42 +190,38 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
       double prevAccuracy3 = 0.0;
       int i = 0;
       int averagingCount = 0;
+      List<EpochTask> shardTasks = new ArrayList<>(threads);
+      if (threads > 1) {
+        executor = Executors.newFixedThreadPool(threads);
+        for (File shardFile : shardFiles) {
+          PerceptronModelParameters shardParams = params.clone();
+          shardTasks.add(new EpochTask(shardFile, shardParams, new PerceptronDecisionMaker(shardParams, this.scoring)));
+        }
+      }
       for (i = 1; i <= iterations; i++) {
         LOG.debug("Iteration " + i);
         int totalErrors = 0;
         int totalEvents = 0;
 
-        try (Scanner scanner = new Scanner(new BufferedReader(new InputStreamReader(new FileInputStream(eventFile), "UTF-8")))) {
-
-          while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
-            PerceptronEvent event = new PerceptronEvent(line);
-            totalEvents++;
-
-            // don't normalise unless we calculate the
-            // log-likelihood,
-            // to avoid mathematical cost of normalising
-            double[] results = decisionMaker.predict(event.getFeatureIndexes(), event.getFeatureValues());
-            double maxValue = results[0];
-            int predicted = 0;
-            for (int j = 1; j < results.length; j++) {
-              if (results[j] > maxValue) {
-                maxValue = results[j];
-                predicted = j;
-              }
-            }
-
-            int actual = event.getOutcomeIndex();
-
-            if (actual != predicted) {
-              for (int j = 0; j < event.getFeatureIndexes().size(); j++) {
-                double[] classWeights = params.getFeatureWeights()[event.getFeatureIndexes().get(j)];
-                classWeights[actual] += event.getFeatureValues().get(j);
-                classWeights[predicted] -= event.getFeatureValues().get(j);
-              }
-              totalErrors++;
-            } // correct outcome?
-          } // next event
+        if (threads > 1) {
+          // iterative parameter mixing: train each shard separately, starting
+          // from the current weights, and then average the resulting weights
+          List<Future<EpochTask>> futures = new ArrayList<>(threads);
+          for (EpochTask shardTask : shardTasks) {
+            shardTask.resetWeights(params.getFeatureWeights());
+            futures.add(executor.submit(shardTask));
+          }
+          for (Future<EpochTask> future : futures) {
+            EpochTask shardTask = future.get();
+            totalEvents += shardTask.getTotalEvents();
+            totalErrors += shardTask.getTotalErrors();
+          }
+          this.mixWeights(shardTasks);
+        } else {
+          EpochTask task = new EpochTask(eventFile, params, decisionMaker);
+          task.call();
+          totalEvents = task.getTotalEvents();
+          totalErrors = task.getTotalErrors();
         }
 
         // Add feature weights for this iteration
@@ -264,75 +284,106 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
         }
       }
 
-    } catch (IOException e) {
+    } catch (IOException | InterruptedException | ExecutionException e) {
       LogUtils.logError(LOG, e);
       throw new RuntimeException(e);
+    } finally {
+      if (executor != null)
+        executor.shutdown();
     }
   }
 
-  private static final class PerceptronEvent {
-    List<Integer> featureIndexes;
-    List<Double> featureValues;
-    int outcomeIndex;
-
-    public PerceptronEvent(ClassificationEvent corpusEvent, PerceptronModelParameters params) {
-      featureIndexes = new ArrayList<Integer>();
-      featureValues = new ArrayList<Double>();
-      params.prepareData(corpusEvent.getFeatureResults(), featureIndexes, featureValues, true);
-      outcomeIndex = params.getOrCreateOutcomeIndex(corpusEvent.getClassification());
-    }
-
-    public PerceptronEvent(String line) {
-      String[] parts = line.split(" ");
-      this.outcomeIndex = Integer.parseInt(parts[0]);
-      int featureCount = (parts.length - 1) / 2;
-      featureIndexes = new ArrayList<Integer>(featureCount);
-      featureValues = new ArrayList<Double>(featureCount);
-      int j = 1;
-      for (int i = 0; i < featureCount; i++) {
-        featureIndexes.add(Integer.parseInt(parts[j++]));
-        featureValues.add(Double.parseDouble(parts[j++]));
+  /**
+   * Replace the current weights by the average of the weights trained on each
+   * shard.
+   */
+  private void mixWeights(List<EpochTask> shardTasks) {
+    double[][] featureWeights = params.getFeatureWeights();
+    for (int j = 0; j < featureWeights.length; j++) {
+      double[] classWeights = featureWeights[j];
+      for (int k = 0; k < classWeights.length; k++) {
+        double total = 0.0;
+        for (EpochTask shardTask : shardTasks)
+          total += shardTask.params.getFeatureWeights()[j][k];
+        classWeights[k] = total / shardTasks.size();
       }
     }
+  }
 
-    public PerceptronEvent(PerceptronEvent oldEvent, int[] newIndexes) {
-      featureIndexes = new ArrayList<Integer>();
-      featureValues = new ArrayList<Double>();
-      int i = 0;
-      for (int oldIndex : oldEvent.featureIndexes) {
-        if (newIndexes[oldIndex] >= 0) {
-          featureIndexes.add(newIndexes[oldIndex]);
-          featureValues.add(oldEvent.featureValues.get(i));
-        }
-        i++;
-      }
-      outcomeIndex = oldEvent.outcomeIndex;
+  /**
+   * A single pass of the perceptron algorithm over the events in a file,
+   * updating the weights of the parameters provided whenever an event is
+   * misclassified.
+   */
+  private static final class EpochTask implements Callable<EpochTask> {
+    private final File eventFile;
+    private final PerceptronModelParameters params;
+    private final PerceptronDecisionMaker decisionMaker;
+    private int totalEvents;
+    private int totalErrors;
+
+    public EpochTask(File eventFile, PerceptronModelParameters params, PerceptronDecisionMaker decisionMaker) {
+      this.eventFile = eventFile;
+      this.params = params;
+      this.decisionMaker = decisionMaker;
     }
 
-    public List<Integer> getFeatureIndexes() {
-      return featureIndexes;
+    /**
+     * Start the next pass from a copy of the weights provided.
+     */
+    public void resetWeights(double[][] featureWeights) {
+      for (int j = 0; j < featureWeights.length; j++)
+        System.arraycopy(featureWeights[j], 0, params.getFeatureWeights()[j], 0, featureWeights[j].length);
     }
 
-    public List<Double> getFeatureValues() {
-      return featureValues;
-    }
+    @Override
+    public EpochTask call() throws IOException {
+      totalEvents = 0;
+      totalErrors = 0;
+      PerceptronEvent event = new PerceptronEvent();
+      try (PerceptronEventReader eventReader = new PerceptronEventReader(eventFile)) {
+        while (eventReader.hasNext()) {
+          eventReader.next(event);
+          totalEvents++;
+
+          // don't normalise unless we calculate the
+          // log-likelihood,
+          // to avoid mathematical cost of normalising
+          int[] featureIndexes = event.getFeatureIndexes();
+          double[] featureValues = event.getFeatureValues();
+          int featureCount = event.getFeatureCount();
+          double[] results = decisionMaker.predict(featureIndexes, featureValues, featureCount);
+          double maxValue = results[0];
+          int predicted = 0;
+          for (int j = 1; j < results.length; j++) {
+            if (results[j] > maxValue) {
+              maxValue = results[j];
+              predicted = j;
+            }
+          }
 
-    public int getOutcomeIndex() {
-      return outcomeIndex;
-    }
+          int actual = event.getOutcomeIndex();
 
-    public void write(Writer writer) throws IOException {
-      writer.write("" + outcomeIndex);
-      for (int i = 0; i < featureIndexes.size(); i++) {
-        writer.write(" ");
-        writer.write("" + featureIndexes.get(i));
-        writer.write(" ");
-        writer.write("" + featureValues.get(i));
+          if (actual != predicted) {
+            for (int j = 0; j < featureCount; j++) {
+              double[] classWeights = params.getFeatureWeights()[featureIndexes[j]];
+              classWeights[actual] += featureValues[j];
+              classWeights[predicted] -= featureValues[j];
+            }
+            totalErrors++;
+          } // correct outcome?
+        } // next event
       }
-      writer.write("\n");
-      writer.flush();
+      return this;
+    }
+
+    public int getTotalEvents() {
+      return totalEvents;
     }
 
+    public int getTotalErrors() {
+      return totalErrors;
+    }
   }
 
   /**
@@ -376,6 +427,20 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
     this.averageAtIntervals = averageAtIntervals;
   }
 
+  /**
+   * The number of threads to use for training. If greater than 1, the events
+   * are split into as many shards, each shard is trained separately in each
+   * iteration, and the resulting weights are averaged at the end of the
+   * iteration (iterative parameter mixing).
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
   public void trainModelsWithObserver(ClassificationEventStream corpusEventStream, List<String> featureDescriptors, PerceptronModelTrainerObserver observer,
       List<Integer> observationPoints) throws TalismaneException {
     Map<String, List<String>> descriptors = new HashMap<String, List<String>>();
@@ -394,9 +459,7 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
     this.prepareData(corpusEventStream);
     this.train();
 
-    if (this.eventFile != null) {
-      this.eventFile.delete();
-    }
+    this.deleteEventFiles();
 
   }
 
@@ -417,12 +480,20 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
     this.train();
     ClassificationModel model = this.getModel(params, this.getIterations());
 
-    if (this.eventFile != null)
-      this.eventFile.delete();
+    this.deleteEventFiles();
 
     return model;
   }
 
+  private void deleteEventFiles() {
+    if (this.eventFile != null)
+      this.eventFile.delete();
+    if (this.shardFiles != null) {
+      for (File shardFile : shardFiles)
+        shardFile.delete();
+    }
+  }
+
   ClassificationModel getModel(PerceptronModelParameters params, int iterations) {
     PerceptronClassificationModel model = new PerceptronClassificationModel(params, config, descriptors);
     model.addModelAttribute("cutoff", this.getCutoff());
@@ -430,6 +501,7 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
     model.addModelAttribute("tolerance", this.getTolerance());
     model.addModelAttribute("averageAtIntervals", this.isAverageAtIntervals());
     model.addModelAttribute("scoring", this.getScoring());
+    model.addModelAttribute("threads", this.getThreads());
 
     model.getModelAttributes().putAll(corpusEventStream.getAttributes());
 
@@ -447,6 +519,7 @@ public class PerceptronClassificationModelTrainer implements ClassificationModel
     this.setTolerance(perceptronConfig.getDouble("tolerance"));
     this.setAverageAtIntervals(perceptronConfig.getBoolean("average-at-intervals"));
     this.setScoring(PerceptronScoring.valueOf(perceptronConfig.getString("scoring")));
+    this.setThreads(perceptronConfig.getInt("threads"));
   }
 
   public PerceptronScoring getScoring() {
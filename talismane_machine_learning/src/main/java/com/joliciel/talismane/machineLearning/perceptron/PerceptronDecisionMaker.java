@@ -26,7 +26,10 @@ import com.joliciel.talismane.machineLearning.AdditiveScoringStrategy;
 import com.joliciel.talismane.machineLearning.ClassificationSolution;
 import com.joliciel.talismane.machineLearning.Decision;
 import com.joliciel.talismane.machineLearning.DecisionMaker;
+import com.joliciel.talismane.machineLearning.FeatureIndex;
+import com.joliciel.talismane.machineLearning.FeatureVector;
 import com.joliciel.talismane.machineLearning.GeometricMeanScoringStrategy;
+import com.joliciel.talismane.machineLearning.MappedWeightMatrix;
 import com.joliciel.talismane.machineLearning.ScoringStrategy;
 import com.joliciel.talismane.machineLearning.features.FeatureResult;
 import com.joliciel.talismane.utils.JolicielException;
@@ -35,20 +38,31 @@ class PerceptronDecisionMaker implements DecisionMaker {
   private PerceptronModelParameters modelParameters;
   private transient ScoringStrategy<ClassificationSolution> scoringStrategy = null;
   private transient PerceptronScoring perceptronScoring = null;
+  private volatile FeatureIndex featureIndex = null;
+  private final MappedWeightMatrix mappedWeights;
 
   public PerceptronDecisionMaker(PerceptronModelParameters params, PerceptronScoring perceptronScoring) {
+    this(params, null, null, perceptronScoring);
+  }
+
+  /**
+   * A decision maker whose feature indexes and weights are read from the index
+   * and mapped matrix provided, rather than from the parameters.
+   */
+  public PerceptronDecisionMaker(PerceptronModelParameters params, FeatureIndex featureIndex, MappedWeightMatrix mappedWeights,
+      PerceptronScoring perceptronScoring) {
     super();
     this.modelParameters = params;
+    this.featureIndex = featureIndex;
+    this.mappedWeights = mappedWeights;
     this.perceptronScoring = perceptronScoring;
   }
 
   @Override
   public List<Decision> decide(List<FeatureResult<?>> featureResults) {
-    List<Integer> featureIndexList = new ArrayList<Integer>();
-    List<Double> featureValueList = new ArrayList<Double>();
-    modelParameters.prepareData(featureResults, featureIndexList, featureValueList);
+    FeatureVector featureVector = this.getFeatureIndex().getFeatureVector(featureResults);
 
-    double[] results = this.predict(featureIndexList, featureValueList);
+    double[] results = this.predict(featureVector);
     double[] probs = new double[results.length];
 
     if (this.getPerceptronScoring() == PerceptronScoring.normalisedExponential) {
@@ -109,8 +123,44 @@ class PerceptronDecisionMaker implements DecisionMaker {
 
   }
 
+  /**
+   * Score each outcome for the feature vector provided.
+   */
+  public double[] predict(FeatureVector featureVector) {
+    return this.predict(featureVector.getIndexes(), featureVector.getValues(), featureVector.size());
+  }
+
+  /**
+   * Score each outcome for the first featureCount features in the arrays
+   * provided.
+   */
+  public double[] predict(int[] featureIndexes, double[] featureValues, int featureCount) {
+    double[] results = new double[modelParameters.getOutcomeCount()];
+    if (mappedWeights != null) {
+      for (int i = 0; i < featureCount; i++)
+        mappedWeights.addRow(results, featureIndexes[i], featureValues[i]);
+      return results;
+    }
+    double[][] featureWeights = modelParameters.getFeatureWeights();
+    for (int i = 0; i < featureCount; i++) {
+      double[] classWeights = featureWeights[featureIndexes[i]];
+      double value = featureValues[i];
+
+      for (int j = 0; j < results.length; j++) {
+        results[j] += value * classWeights[j];
+      }
+    }
+
+    return results;
+  }
+
   public double[] predict(List<Integer> featureIndexList, List<Double> featureValueList) {
     double[] results = new double[modelParameters.getOutcomeCount()];
+    if (mappedWeights != null) {
+      for (int i = 0; i < featureIndexList.size(); i++)
+        mappedWeights.addRow(results, featureIndexList.get(i), featureValueList.get(i));
+      return results;
+    }
     for (int i = 0; i < featureIndexList.size(); i++) {
       int featureIndex = featureIndexList.get(i);
       double value = featureValueList.get(i);
@@ -125,6 +175,16 @@ class PerceptronDecisionMaker implements DecisionMaker {
     return results;
   }
 
+  private FeatureIndex getFeatureIndex() {
+    if (featureIndex == null) {
+      synchronized (this) {
+        if (featureIndex == null)
+          featureIndex = new FeatureIndex(modelParameters.getFeatureIndexes());
+      }
+    }
+    return featureIndex;
+  }
+
   public PerceptronModelParameters getModelParameters() {
     return modelParameters;
   }
@@ -0,0 +1,124 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.perceptron;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.joliciel.talismane.machineLearning.ClassificationEvent;
+
+/**
+ * A training event for the perceptron, in which features and outcomes have
+ * been replaced by their indexes in the model parameters. The arrays are
+ * reused when the event is read from a {@link PerceptronEventReader}, so that
+ * reading an event allocates nothing.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PerceptronEvent {
+  private int outcomeIndex;
+  private int[] featureIndexes;
+  private double[] featureValues;
+  private int featureCount;
+
+  /**
+   * An empty event, to be filled in by a reader.
+   */
+  PerceptronEvent() {
+    this.featureIndexes = new int[16];
+    this.featureValues = new double[16];
+  }
+
+  PerceptronEvent(ClassificationEvent corpusEvent, PerceptronModelParameters params) {
+    List<Integer> featureIndexList = new ArrayList<Integer>();
+    List<Double> featureValueList = new ArrayList<Double>();
+    params.prepareData(corpusEvent.getFeatureResults(), featureIndexList, featureValueList, true);
+    this.outcomeIndex = params.getOrCreateOutcomeIndex(corpusEvent.getClassification());
+    this.featureCount = featureIndexList.size();
+    this.featureIndexes = new int[featureCount];
+    this.featureValues = new double[featureCount];
+    for (int i = 0; i < featureCount; i++) {
+      featureIndexes[i] = featureIndexList.get(i);
+      featureValues[i] = featureValueList.get(i);
+    }
+  }
+
+  /**
+   * Empty this event, so that it can be filled with a new outcome and
+   * features.
+   */
+  void reset(int outcomeIndex) {
+    this.outcomeIndex = outcomeIndex;
+    this.featureCount = 0;
+  }
+
+  void addFeature(int featureIndex, double featureValue) {
+    if (featureCount == featureIndexes.length) {
+      int newLength = Math.max(16, featureCount * 2);
+      featureIndexes = Arrays.copyOf(featureIndexes, newLength);
+      featureValues = Arrays.copyOf(featureValues, newLength);
+    }
+    featureIndexes[featureCount] = featureIndex;
+    featureValues[featureCount] = featureValue;
+    featureCount++;
+  }
+
+  /**
+   * Replace each feature index by the new index provided, removing any
+   * feature whose new index is negative.
+   */
+  void reindex(int[] newIndexes) {
+    int j = 0;
+    for (int i = 0; i < featureCount; i++) {
+      int newIndex = newIndexes[featureIndexes[i]];
+      if (newIndex >= 0) {
+        featureIndexes[j] = newIndex;
+        featureValues[j] = featureValues[i];
+        j++;
+      }
+    }
+    featureCount = j;
+  }
+
+  /**
+   * The feature indexes, of which only the first {@link #getFeatureCount()}
+   * are valid.
+   */
+  int[] getFeatureIndexes() {
+    return featureIndexes;
+  }
+
+  /**
+   * The feature values, of which only the first {@link #getFeatureCount()}
+   * are valid.
+   */
+  double[] getFeatureValues() {
+    return featureValues;
+  }
+
+  int getFeatureCount() {
+    return featureCount;
+  }
+
+  int getOutcomeIndex() {
+    return outcomeIndex;
+  }
+}
@@ -0,0 +1,96 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.perceptron;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads perceptron events written by a {@link PerceptronEventWriter}, through
+ * a memory-mapped buffer. Files larger than the maximum size of a single
+ * mapping are mapped one segment at a time.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PerceptronEventReader implements Closeable {
+  private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+
+  private final FileChannel channel;
+  private final long fileSize;
+  private long segmentStart;
+  private MappedByteBuffer buffer;
+
+  PerceptronEventReader(File file) throws IOException {
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.fileSize = channel.size();
+    this.map(0);
+  }
+
+  private void map(long start) throws IOException {
+    this.segmentStart = start;
+    this.buffer = channel.map(MapMode.READ_ONLY, start, Math.min(MAX_SEGMENT_SIZE, fileSize - start));
+  }
+
+  public boolean hasNext() {
+    return segmentStart + buffer.position() < fileSize;
+  }
+
+  /**
+   * Read the next event into the event provided.
+   */
+  public void next(PerceptronEvent event) throws IOException {
+    if (buffer.remaining() < 4 || buffer.remaining() < 4 + buffer.getInt(buffer.position()))
+      this.map(segmentStart + buffer.position());
+
+    buffer.getInt();
+    event.reset((int) this.readVarLong());
+    int featureCount = (int) this.readVarLong();
+    for (int i = 0; i < featureCount; i++) {
+      long code = this.readVarLong();
+      int featureIndex = (int) (code >>> 1);
+      double featureValue = 1.0;
+      if ((code & 1L) == 0)
+        featureValue = Double.longBitsToDouble(buffer.getLong());
+      event.addFeature(featureIndex, featureValue);
+    }
+  }
+
+  private long readVarLong() {
+    long value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,95 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.perceptron;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes perceptron events to a compact binary file, to be read back by a
+ * {@link PerceptronEventReader} on each training iteration.<br/>
+ * <br/>
+ * Each event is written as a 4-byte length, followed by the outcome index
+ * and feature count as varints, followed by each feature. A feature is
+ * written as a varint containing the feature index shifted left by one, with
+ * the lowest bit set if the value is 1.0 (the case for all boolean features).
+ * Otherwise, the value follows as an 8-byte double, so that events are read
+ * back exactly as they were written.
+ * 
+ * @author Assaf Urieli
+ *
+ */
+final class PerceptronEventWriter implements Closeable {
+  private final DataOutputStream out;
+  private byte[] record = new byte[256];
+  private int recordLength;
+
+  PerceptronEventWriter(File file) throws IOException {
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+  }
+
+  public void write(PerceptronEvent event) throws IOException {
+    recordLength = 0;
+    this.writeVarLong(event.getOutcomeIndex());
+    this.writeVarLong(event.getFeatureCount());
+    int[] featureIndexes = event.getFeatureIndexes();
+    double[] featureValues = event.getFeatureValues();
+    for (int i = 0; i < event.getFeatureCount(); i++) {
+      double value = featureValues[i];
+      if (value == 1.0) {
+        this.writeVarLong(((long) featureIndexes[i] << 1) | 1L);
+      } else {
+        this.writeVarLong((long) featureIndexes[i] << 1);
+        this.writeLong(Double.doubleToRawLongBits(value));
+      }
+    }
+    out.writeInt(recordLength);
+    out.write(record, 0, recordLength);
+  }
+
+  private void ensureCapacity(int extra) {
+    if (recordLength + extra > record.length)
+      record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + extra));
+  }
+
+  private void writeVarLong(long value) {
+    this.ensureCapacity(10);
+    while ((value & ~0x7FL) != 0) {
+      record[recordLength++] = (byte) ((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    record[recordLength++] = (byte) value;
+  }
+
+  private void writeLong(long value) {
+    this.ensureCapacity(8);
+    for (int shift = 56; shift >= 0; shift -= 8)
+      record[recordLength++] = (byte) (value >>> shift);
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -51,6 +51,16 @@ class PerceptronModelParameters implements Serializable {
   public PerceptronModelParameters() {
   }
 
+  /**
+   * Parameters for a model whose feature indexes and weights are stored
+   * elsewhere, e.g. in a mapped file. Only the outcomes and counts are set.
+   */
+  PerceptronModelParameters(List<String> outcomes, int featureCount) {
+    for (String outcome : outcomes)
+      this.getOrCreateOutcomeIndex(outcome);
+    this.featureCount = featureCount;
+  }
+
   public PerceptronModelParameters clone() {
     PerceptronModelParameters params = new PerceptronModelParameters(this);
     return params;
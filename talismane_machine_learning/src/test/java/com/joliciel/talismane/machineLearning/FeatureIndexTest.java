@@ -0,0 +1,131 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.machineLearning.features.BooleanLiteralFeature;
+import com.joliciel.talismane.machineLearning.features.DoubleLiteralFeature;
+import com.joliciel.talismane.machineLearning.features.Feature;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+import com.joliciel.talismane.machineLearning.features.StringLiteralFeature;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+public class FeatureIndexTest {
+
+  @Test
+  public void testFill() throws Exception {
+    List<FeatureResult<?>> featureResults = new ArrayList<>();
+    featureResults.add(this.check(new StringLiteralFeature<String>("a b"), "word"));
+    featureResults.add(this.check(new DoubleLiteralFeature<String>(0.5), "score"));
+    featureResults.add(this.check(new BooleanLiteralFeature<String>(true), "flag"));
+    featureResults.add(this.check(new StringLiteralFeature<String>("unknown"), "word"));
+    featureResults.add(this.check(new StringLiteralFeature<String>("x"), "word:a"));
+    featureResults.add(null);
+
+    TObjectIntMap<String> featureIndexMap = new TObjectIntHashMap<>(10, 0.7f, -1);
+    featureIndexMap.put("word:a·b", 3);
+    featureIndexMap.put("score", 7);
+    featureIndexMap.put("flag:true", 1);
+    featureIndexMap.put("flag:false", 2);
+    featureIndexMap.put("word:a:x", 5);
+    featureIndexMap.put("wordy:a·b", 9);
+
+    FeatureIndex featureIndex = new FeatureIndex(featureIndexMap);
+    FeatureVector vector = featureIndex.getFeatureVector(featureResults);
+
+    assertEquals(4, vector.size());
+    int i = 0;
+    for (FeatureResult<?> featureResult : featureResults) {
+      if (featureResult == null)
+        continue;
+      int index = featureIndexMap.get(featureResult.getTrainingName());
+      if (index < 0)
+        continue;
+      assertEquals(index, vector.getIndex(i));
+      double value = featureResult.getOutcome() instanceof Double ? (Double) featureResult.getOutcome() : 1.0;
+      assertEquals(value, vector.getValue(i), 0.0001);
+      i++;
+    }
+  }
+
+  @Test
+  public void testFillMapped() throws Exception {
+    List<FeatureResult<?>> featureResults = new ArrayList<>();
+    featureResults.add(this.check(new StringLiteralFeature<String>("a b"), "word"));
+    featureResults.add(this.check(new DoubleLiteralFeature<String>(0.5), "score"));
+    featureResults.add(this.check(new BooleanLiteralFeature<String>(true), "flag"));
+    featureResults.add(this.check(new StringLiteralFeature<String>("unknown"), "word"));
+    featureResults.add(this.check(new StringLiteralFeature<String>("x"), "word:a"));
+
+    TObjectIntMap<String> featureIndexMap = new TObjectIntHashMap<>(10, 0.7f, -1);
+    featureIndexMap.put("word:a·b", 3);
+    featureIndexMap.put("score", 7);
+    featureIndexMap.put("flag:true", 1);
+    featureIndexMap.put("flag:false", 2);
+    featureIndexMap.put("word:a:x", 5);
+    featureIndexMap.put("wordy:a·b", 9);
+
+    File file = File.createTempFile("features", ".bin");
+    file.deleteOnExit();
+    MappedStringTable.write(file, featureIndexMap);
+    MappedStringTable table = new MappedStringTable(file);
+    assertEquals(6, table.size());
+    assertEquals(3, table.get("word:a·b"));
+    assertEquals(-1, table.get("word"));
+
+    FeatureVector expected = new FeatureIndex(featureIndexMap).getFeatureVector(featureResults);
+    FeatureVector vector = new FeatureVector();
+    new FeatureIndex(table).fill(featureResults, vector);
+    assertEquals(expected.toString(), vector.toString());
+    assertEquals(4, vector.size());
+  }
+
+  @Test
+  public void testMappedWeightMatrix() throws Exception {
+    double[][] weights = new double[][] { { 1.0, -2.0, 0.5 }, { 0.0, 3.0, 4.0 } };
+    File file = File.createTempFile("weights", ".bin");
+    file.deleteOnExit();
+    MappedWeightMatrix.write(file, weights, 3);
+    MappedWeightMatrix matrix = new MappedWeightMatrix(file);
+    assertEquals(2, matrix.getRowCount());
+    assertEquals(3, matrix.getColumnCount());
+    assertEquals(4.0, matrix.get(1, 2), 0.0);
+
+    double[] results = new double[3];
+    matrix.addRow(results, 0, 2.0);
+    matrix.addRow(results, 1, 1.0);
+    assertEquals(2.0, results[0], 0.0);
+    assertEquals(-1.0, results[1], 0.0);
+    assertEquals(5.0, results[2], 0.0);
+  }
+
+  private <Y> FeatureResult<Y> check(Feature<String, Y> feature, String name) throws Exception {
+    feature.setName(name);
+    return feature.check("", null);
+  }
+}
@@ -0,0 +1,99 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneException;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.EventExtractor;
+import com.joliciel.talismane.machineLearning.ParallelClassificationEventStream.UnitReader;
+import com.joliciel.talismane.machineLearning.features.FeatureResult;
+
+public class ParallelClassificationEventStreamTest {
+
+  private static UnitReader<Integer> getUnitReader(int unitCount) {
+    int[] nextUnit = new int[] { 0 };
+    return () -> nextUnit[0] < unitCount ? nextUnit[0]++ : null;
+  }
+
+  @Test
+  public void testEventOrder() throws Exception {
+    // unit i has i % 4 events, and later units are extracted faster than
+    // earlier ones
+    EventExtractor<Integer> extractor = unit -> {
+      try {
+        Thread.sleep((20 - unit % 20) / 4);
+      } catch (InterruptedException e) {
+        throw new TalismaneException("interrupted", e);
+      }
+      List<ClassificationEvent> events = new ArrayList<>();
+      for (int i = 0; i < unit % 4; i++)
+        events.add(new ClassificationEvent(new ArrayList<FeatureResult<?>>(), unit + "-" + i));
+      return events;
+    };
+    List<EventExtractor<Integer>> extractors = new ArrayList<>();
+    for (int i = 0; i < 4; i++)
+      extractors.add(extractor);
+
+    ParallelClassificationEventStream<Integer> eventStream = new ParallelClassificationEventStream<>(getUnitReader(100), extractors, 0,
+        () -> Collections.singletonMap("eventStream", "test"));
+    assertEquals(4, eventStream.getThreads());
+    assertEquals(16, eventStream.getMaxUnitsInFlight());
+
+    for (int unit = 0; unit < 100; unit++) {
+      for (int i = 0; i < unit % 4; i++) {
+        ClassificationEvent event = eventStream.next();
+        assertEquals(unit + "-" + i, event.getClassification());
+      }
+    }
+    assertFalse(eventStream.hasNext());
+    assertEquals(null, eventStream.next());
+    assertEquals("test", eventStream.getAttributes().get("eventStream"));
+  }
+
+  @Test
+  public void testExtractionException() throws Exception {
+    EventExtractor<Integer> extractor = unit -> {
+      if (unit == 5)
+        throw new TalismaneException("bad unit " + unit);
+      return Collections.singletonList(new ClassificationEvent(new ArrayList<FeatureResult<?>>(), "" + unit));
+    };
+
+    ParallelClassificationEventStream<Integer> eventStream = new ParallelClassificationEventStream<>(getUnitReader(10), Collections.nCopies(2, extractor),
+        3, () -> Collections.emptyMap());
+
+    for (int unit = 0; unit < 5; unit++)
+      assertEquals("" + unit, eventStream.next().getClassification());
+
+    try {
+      eventStream.next();
+      fail("Expected exception");
+    } catch (TalismaneException e) {
+      assertEquals("bad unit 5", e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,71 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.features;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.TalismaneException;
+
+public class FeatureCompilerTest {
+
+  @Test
+  public void testCompile() throws TalismaneException {
+    FunctionDescriptorParser functionDescriptorParser = new FunctionDescriptorParser();
+    TestParser parser = new TestParser();
+
+    String[] descriptors = new String[] { "Length()", "Length()+1", "Length()*2-3", "Length()/2", "Length()%3", "Length()>2", "Length()<=2.5",
+        "Substring(0,2)", "Substring(0,2)==\"ab\"", "Substring(1,3)||Substring(0,1)", "ConcatWithNulls(Substring(0,2),Substring(1,3))",
+        "Substring(0,2)==\"ab\" & Length()>3", "Substring(0,2)==\"ab\" && Length()>3", "Substring(0,2)==\"ab\" | Length()>3",
+        "Not(Substring(0,2)==\"ab\")", "IsNull(Substring(0,3))", "IfThenElse(Length()>2,Substring(0,3),\"short\")",
+        "IfThenElse(Length()>2,Length()*1.5,0.5)", "NullIf(Length()>3,Length())", "NullIf(Length()>3,Substring(0,1))", "ToString(Length()>2)",
+        "ToString(Length()/3)", "Length()/3==1.0", "Length()==3", "Substring(0,4)==\"abc\\\"d\"" };
+
+    List<Feature<String, ?>> features = new ArrayList<>();
+    for (String descriptor : descriptors)
+      features.addAll(parser.parse(functionDescriptorParser.parseDescriptor(descriptor)));
+
+    FeatureCompiler compiler = new FeatureCompiler();
+    CompiledFeatureSet<String> compiledFeatures = compiler.compile(features);
+    assertEquals(features.size(), compiledFeatures.size());
+
+    RuntimeEnvironment env = new RuntimeEnvironment();
+    for (String context : new String[] { "", "a", "ab", "abc", "abcd", "abc\"d", "xyzxyz" }) {
+      List<FeatureResult<?>> expected = new ArrayList<>();
+      for (Feature<String, ?> feature : features) {
+        env.clear();
+        FeatureResult<?> result = feature.check(context, env);
+        if (result != null)
+          expected.add(result);
+      }
+
+      List<FeatureResult<?>> results = compiledFeatures.check(context, env);
+      assertEquals(context, expected.size(), results.size());
+      for (int i = 0; i < expected.size(); i++) {
+        assertEquals(context, expected.get(i).getFeature().getName(), results.get(i).getFeature().getName());
+        assertEquals(context, expected.get(i).getTrainingName(), results.get(i).getTrainingName());
+        assertEquals(context + ": " + expected.get(i).getTrainingName(), expected.get(i).getOutcome(), results.get(i).getOutcome());
+      }
+    }
+  }
+}
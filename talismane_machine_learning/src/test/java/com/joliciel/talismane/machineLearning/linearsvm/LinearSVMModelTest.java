@@ -0,0 +1,90 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.linearsvm;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.utils.JolicielException;
+import com.typesafe.config.ConfigFactory;
+
+import de.bwaldvogel.liblinear.Feature;
+import de.bwaldvogel.liblinear.FeatureNode;
+import de.bwaldvogel.liblinear.Linear;
+import de.bwaldvogel.liblinear.Model;
+import de.bwaldvogel.liblinear.Parameter;
+import de.bwaldvogel.liblinear.Problem;
+import de.bwaldvogel.liblinear.SolverType;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+
+public class LinearSVMModelTest {
+
+  @Test
+  public void testPersistMapped() throws Exception {
+    LinearSVMModel model = this.getModel(SolverType.L2R_LR);
+    File directory = new File(Files.createTempDirectory("linearSVM").toFile(), "model");
+    model.persistMapped(directory);
+    assertTrue(new File(directory, "weights.bin").exists());
+    assertTrue(new File(directory, "model.txt").exists());
+  }
+
+  @Test
+  public void testPersistMappedNonProbabilityModel() throws Exception {
+    LinearSVMModel model = this.getModel(SolverType.L2R_L2LOSS_SVC);
+    File directory = new File(Files.createTempDirectory("linearSVM").toFile(), "model");
+    try {
+      model.persistMapped(directory);
+      fail("Expected exception for a non-probability model");
+    } catch (JolicielException e) {
+      // expected
+    }
+    assertFalse(directory.exists());
+  }
+
+  private LinearSVMModel getModel(SolverType solverType) {
+    LinearSVMModel model = new LinearSVMModel(this.train(solverType), ConfigFactory.empty(), new HashMap<>());
+    TObjectIntMap<String> featureIndexMap = new TObjectIntHashMap<>(10, 0.7f, -1);
+    featureIndexMap.put("a", 1);
+    featureIndexMap.put("b", 2);
+    model.setFeatureIndexMap(featureIndexMap);
+    model.setOutcomes(Arrays.asList("x", "y"));
+    return model;
+  }
+
+  private Model train(SolverType solverType) {
+    Problem problem = new Problem();
+    problem.l = 4;
+    problem.n = 2;
+    problem.x = new Feature[][] { { new FeatureNode(1, 1.0) }, { new FeatureNode(1, 1.0) }, { new FeatureNode(2, 1.0) },
+        { new FeatureNode(2, 1.0) } };
+    problem.y = new double[] { 1, 1, 2, 2 };
+    problem.bias = -1;
+    Linear.disableDebugOutput();
+    return Linear.train(problem, new Parameter(solverType, 1.0, 0.01));
+  }
+}
@@ -0,0 +1,67 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.maxent;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+
+import org.junit.Test;
+
+import com.joliciel.talismane.utils.JolicielException;
+import com.typesafe.config.ConfigFactory;
+
+import opennlp.maxent.GISModel;
+import opennlp.model.Context;
+import opennlp.perceptron.PerceptronModel;
+
+public class MaximumEntropyModelTest {
+
+  @Test
+  public void testPersistMapped() throws Exception {
+    GISModel gisModel = new GISModel(this.getParameters(), new String[] { "a", "b" }, new String[] { "x", "y" }, 1, 0.0);
+    MaximumEntropyModel model = new MaximumEntropyModel(gisModel, ConfigFactory.empty(), new HashMap<>());
+    File directory = new File(Files.createTempDirectory("maxent").toFile(), "model");
+    model.persistMapped(directory);
+    assertTrue(new File(directory, "weights.bin").exists());
+    assertTrue(new File(directory, "model.txt").exists());
+  }
+
+  @Test
+  public void testPersistMappedNonGISModel() throws Exception {
+    PerceptronModel perceptronModel = new PerceptronModel(this.getParameters(), new String[] { "a", "b" }, new String[] { "x", "y" });
+    MaximumEntropyModel model = new MaximumEntropyModel(perceptronModel, ConfigFactory.empty(), new HashMap<>());
+    File directory = new File(Files.createTempDirectory("maxent").toFile(), "model");
+    try {
+      model.persistMapped(directory);
+      fail("Expected exception for a non-GIS model");
+    } catch (JolicielException e) {
+      // expected
+    }
+    assertFalse(directory.exists());
+  }
+
+  private Context[] getParameters() {
+    return new Context[] { new Context(new int[] { 0 }, new double[] { 1.0 }), new Context(new int[] { 1 }, new double[] { 1.0 }) };
+  }
+}
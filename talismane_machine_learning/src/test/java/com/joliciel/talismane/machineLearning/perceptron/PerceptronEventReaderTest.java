@@ -0,0 +1,95 @@
+///////////////////////////////////////////////////////////////////////////////
+//Copyright (C) 2014 Joliciel Informatique
+//
+//This file is part of Talismane.
+//
+//Talismane is free software: you can redistribute it and/or modify
+//it under the terms of the GNU Affero General Public License as published by
+//the Free Software Foundation, either version 3 of the License, or
+//(at your option) any later version.
+//
+//Talismane is distributed in the hope that it will be useful,
+//but WITHOUT ANY WARRANTY; without even the implied warranty of
+//MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//GNU Affero General Public License for more details.
+//
+//You should have received a copy of the GNU Affero General Public License
+//along with Talismane.  If not, see <http://www.gnu.org/licenses/>.
+//////////////////////////////////////////////////////////////////////////////
+package com.joliciel.talismane.machineLearning.perceptron;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class PerceptronEventReaderTest {
+
+  @Test
+  public void testReadWhatWasWritten() throws Exception {
+    File file = File.createTempFile("events", "bin");
+    file.deleteOnExit();
+
+    PerceptronEvent event = new PerceptronEvent();
+    try (PerceptronEventWriter writer = new PerceptronEventWriter(file)) {
+      event.reset(2);
+      event.addFeature(0, 1.0);
+      event.addFeature(300, 0.1);
+      event.addFeature(Integer.MAX_VALUE, -2.5);
+      writer.write(event);
+
+      event.reset(0);
+      writer.write(event);
+
+      event.reset(70000);
+      for (int i = 0; i < 40; i++)
+        event.addFeature(i * 1000, i % 2 == 0 ? 1.0 : i / 3.0);
+      writer.write(event);
+    }
+
+    PerceptronEvent readEvent = new PerceptronEvent();
+    try (PerceptronEventReader reader = new PerceptronEventReader(file)) {
+      assertTrue(reader.hasNext());
+      reader.next(readEvent);
+      assertEquals(2, readEvent.getOutcomeIndex());
+      assertEquals(3, readEvent.getFeatureCount());
+      assertEquals(0, readEvent.getFeatureIndexes()[0]);
+      assertEquals(1.0, readEvent.getFeatureValues()[0], 0);
+      assertEquals(300, readEvent.getFeatureIndexes()[1]);
+      assertEquals(0.1, readEvent.getFeatureValues()[1], 0);
+      assertEquals(Integer.MAX_VALUE, readEvent.getFeatureIndexes()[2]);
+      assertEquals(-2.5, readEvent.getFeatureValues()[2], 0);
+
+      reader.next(readEvent);
+      assertEquals(0, readEvent.getOutcomeIndex());
+      assertEquals(0, readEvent.getFeatureCount());
+
+      reader.next(readEvent);
+      assertEquals(70000, readEvent.getOutcomeIndex());
+      assertEquals(40, readEvent.getFeatureCount());
+      for (int i = 0; i < 40; i++) {
+        assertEquals(i * 1000, readEvent.getFeatureIndexes()[i]);
+        assertEquals(i % 2 == 0 ? 1.0 : i / 3.0, readEvent.getFeatureValues()[i], 0);
+      }
+      assertFalse(reader.hasNext());
+    }
+  }
+
+  @Test
+  public void testReindex() throws Exception {
+    PerceptronEvent event = new PerceptronEvent();
+    event.reset(1);
+    event.addFeature(0, 1.0);
+    event.addFeature(1, 2.0);
+    event.addFeature(2, 3.0);
+    event.reindex(new int[] { 1, -1, 0 });
+    assertEquals(2, event.getFeatureCount());
+    assertEquals(1, event.getFeatureIndexes()[0]);
+    assertEquals(1.0, event.getFeatureValues()[0], 0);
+    assertEquals(0, event.getFeatureIndexes()[1]);
+    assertEquals(3.0, event.getFeatureValues()[1], 0);
+  }
+}
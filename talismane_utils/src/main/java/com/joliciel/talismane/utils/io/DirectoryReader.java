@@ -131,6 +131,13 @@ public class DirectoryReader extends Reader implements CurrentFileProvider {
     }
   }
 
+  /**
+   * The files to be read, in reading order.
+   */
+  public List<File> getFiles() {
+    return files;
+  }
+
   public void addCurrentFileObserver(CurrentFileObserver observer) {
     this.observers.add(observer);
   }